@@ -0,0 +1,121 @@
+package com.sd.lib.stream;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 线程安全的弱引用key的Map，key按对象地址比较
+ *
+ * @param <K>
+ * @param <V>
+ */
+final class ConcurrentWeakIdentityMap<K, V>
+{
+    private final Map<Object, V> mMap = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> mReferenceQueue = new ReferenceQueue<>();
+
+    public V get(K key)
+    {
+        if (key == null)
+            return null;
+        return mMap.get(new IdentityKey(key));
+    }
+
+    public V put(K key, V value)
+    {
+        if (key == null)
+            throw new IllegalArgumentException("key is null");
+        if (value == null)
+            throw new IllegalArgumentException("value is null");
+
+        expunge();
+        return mMap.put(new WeakKey<>(key, mReferenceQueue), value);
+    }
+
+    public V remove(K key)
+    {
+        if (key == null)
+            return null;
+
+        expunge();
+        return mMap.remove(new IdentityKey(key));
+    }
+
+    public int size()
+    {
+        expunge();
+        return mMap.size();
+    }
+
+    /**
+     * 返回所有未被回收的key
+     *
+     * @return
+     */
+    public List<K> keys()
+    {
+        expunge();
+        final List<K> list = new ArrayList<>(mMap.size());
+        for (Object item : mMap.keySet())
+        {
+            // mMap的key只有put()放入的WeakKey<K>，IdentityKey只用于查找，不会放入mMap
+            @SuppressWarnings("unchecked")
+            final WeakKey<K> weakKey = (WeakKey<K>) item;
+            final K key = weakKey.get();
+            if (key != null)
+                list.add(key);
+        }
+        return list;
+    }
+
+    private void expunge()
+    {
+        while (true)
+        {
+            final Reference<? extends K> reference = mReferenceQueue.poll();
+            if (reference == null)
+                break;
+
+            mMap.remove(reference);
+        }
+    }
+
+    private static final class WeakKey<K> extends WeakReference<K>
+    {
+        private final int mHashCode;
+
+        public WeakKey(K referent, ReferenceQueue<? super K> queue)
+        {
+            super(referent, queue);
+            mHashCode = System.identityHashCode(referent);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+
+            final Object referent = get();
+            if (referent == null)
+                return false;
+
+            if (obj instanceof IdentityKey)
+                return ((IdentityKey) obj).get() == referent;
+            if (obj instanceof WeakKey)
+                return ((WeakKey<?>) obj).get() == referent;
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return mHashCode;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.sd.lib.stream;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分发批次，{@link FStreamManager#beginBatch()}
+ * <p>
+ * 批次中无返回值方法的调用先保存起来，批次结束的时候统一分发
+ */
+final class DispatchBatch
+{
+    private final FStreamManager.BatchPolicy mPolicy;
+    private final Map<BatchKey, BatchCall> mMapCall = new LinkedHashMap<>();
+    private final List<BatchCall> mListCall = new ArrayList<>();
+
+    private int mDepth;
+
+    public DispatchBatch(FStreamManager.BatchPolicy policy)
+    {
+        mPolicy = policy;
+    }
+
+    public void begin()
+    {
+        mDepth++;
+    }
+
+    /**
+     * 结束一层批次
+     *
+     * @return true-最外层的批次已经结束
+     */
+    public boolean end()
+    {
+        mDepth--;
+        return mDepth <= 0;
+    }
+
+    /**
+     * 添加调用
+     *
+     * @param handler
+     * @param method
+     * @param args
+     */
+    public void add(ProxyInvocationHandler handler, Method method, Object[] args)
+    {
+        final BatchCall call = new BatchCall(handler, method, args);
+        if (mPolicy == FStreamManager.BatchPolicy.ALL_CALLS)
+        {
+            mListCall.add(call);
+        } else
+        {
+            // 同一个调用保留最后一次，并且移动到最后，保证不同方法之间的先后顺序
+            final BatchKey key = new BatchKey(handler, method);
+            mMapCall.remove(key);
+            mMapCall.put(key, call);
+        }
+    }
+
+    /**
+     * 返回保存的调用数量
+     *
+     * @return
+     */
+    public int size()
+    {
+        return mPolicy == FStreamManager.BatchPolicy.ALL_CALLS ? mListCall.size() : mMapCall.size();
+    }
+
+    /**
+     * 分发保存的调用，某个调用抛出异常不影响其他调用，全部分发之后再抛出第一个异常
+     */
+    public void flush()
+    {
+        final List<BatchCall> list = mPolicy == FStreamManager.BatchPolicy.ALL_CALLS
+                ? new ArrayList<>(mListCall)
+                : new ArrayList<>(mMapCall.values());
+        mListCall.clear();
+        mMapCall.clear();
+
+        RuntimeException exception = null;
+        for (BatchCall item : list)
+        {
+            try
+            {
+                item.nHandler.dispatchBatchCall(item.nMethod, item.nArgs);
+            } catch (RuntimeException e)
+            {
+                if (exception == null)
+                    exception = e;
+            }
+        }
+
+        if (exception != null)
+            throw exception;
+    }
+
+    private static final class BatchCall
+    {
+        public final ProxyInvocationHandler nHandler;
+        public final Method nMethod;
+        public final Object[] nArgs;
+
+        public BatchCall(ProxyInvocationHandler handler, Method method, Object[] args)
+        {
+            nHandler = handler;
+            nMethod = method;
+            nArgs = args;
+        }
+    }
+
+    /**
+     * 按代理对象合并，不同代理对象的tag匹配方式和分发配置可能不同，即使接口和tag相同也不能合并
+     */
+    private static final class BatchKey
+    {
+        private final ProxyInvocationHandler nHandler;
+        private final Method nMethod;
+
+        public BatchKey(ProxyInvocationHandler handler, Method method)
+        {
+            nHandler = handler;
+            nMethod = method;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof BatchKey))
+                return false;
+
+            final BatchKey other = (BatchKey) obj;
+            return nHandler == other.nHandler && nMethod.equals(other.nMethod);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * System.identityHashCode(nHandler) + nMethod.hashCode();
+        }
+    }
+}
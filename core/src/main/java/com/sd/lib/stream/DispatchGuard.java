@@ -0,0 +1,172 @@
+package com.sd.lib.stream;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 分发保护
+ * <p>
+ * 对每个流对象的方法调用计时并隔离异常，同一个流对象在某个流接口上连续超时或者抛异常达到阈值之后，
+ * 在冷却时间内会被跳过，避免单个有问题的流对象拖慢所有调用方
+ * <p>
+ * {@link FStreamManager#setDispatchGuard(DispatchGuard)}
+ */
+public class DispatchGuard
+{
+    private final long mLatencyBudgetNanos;
+    private final int mFailureThreshold;
+    private final long mCoolDown;
+
+    private volatile Callback mCallback;
+
+    /**
+     * @param latencyBudget    单次调用的耗时预算（毫秒），小于等于0-不检查耗时
+     * @param failureThreshold 连续失败多少次之后隔离
+     * @param coolDown         隔离时长（毫秒）
+     */
+    public DispatchGuard(long latencyBudget, int failureThreshold, long coolDown)
+    {
+        if (failureThreshold <= 0)
+            throw new IllegalArgumentException("failureThreshold must be greater than 0");
+        if (coolDown < 0)
+            throw new IllegalArgumentException("coolDown must not be less than 0");
+
+        mLatencyBudgetNanos = latencyBudget <= 0 ? 0 : latencyBudget * 1000000L;
+        mFailureThreshold = failureThreshold;
+        mCoolDown = coolDown;
+    }
+
+    /**
+     * 设置回调
+     *
+     * @param callback
+     */
+    public void setCallback(Callback callback)
+    {
+        mCallback = callback;
+    }
+
+    /**
+     * 返回流对象当前是否处于隔离状态
+     *
+     * @param connection
+     * @param clazz
+     * @return
+     */
+    boolean isQuarantined(StreamConnection connection, Class<? extends FStream> clazz)
+    {
+        return connection.getQuarantineUntil(clazz) > System.currentTimeMillis();
+    }
+
+    /**
+     * 调用流对象的方法，捕获并隔离异常
+     *
+     * @param stream     流对象
+     * @param connection 流对象的连接，默认流对象为null
+     * @param clazz      流接口
+     * @param method     方法
+     * @param args       参数
+     * @return 方法的返回值，抛异常返回null
+     */
+    Object invoke(FStream stream, StreamConnection connection, Class<? extends FStream> clazz, Method method, Object[] args)
+    {
+        final long start = System.nanoTime();
+
+        Object result = null;
+        Throwable throwable = null;
+        try
+        {
+            result = method.invoke(stream, args);
+        } catch (InvocationTargetException e)
+        {
+            throwable = e.getCause() != null ? e.getCause() : e;
+        } catch (IllegalAccessException e)
+        {
+            throwable = e;
+        }
+
+        final long duration = System.nanoTime() - start;
+        final Callback callback = mCallback;
+
+        if (throwable != null)
+        {
+            StreamLog.e(FStream.class.getSimpleName(), "dispatch exception class:" + clazz.getName()
+                    + " method:" + method.getName()
+                    + " stream:" + stream, throwable);
+
+            if (callback != null)
+                callback.onException(stream, clazz, method, throwable);
+
+            onFailure(stream, connection, clazz, method);
+        } else if (mLatencyBudgetNanos > 0 && duration > mLatencyBudgetNanos)
+        {
+            final long durationMillis = duration / 1000000L;
+            StreamLog.w(FStream.class.getSimpleName(), "dispatch slow class:" + clazz.getName()
+                    + " method:" + method.getName()
+                    + " stream:" + stream
+                    + " duration:" + durationMillis);
+
+            if (callback != null)
+                callback.onSlow(stream, clazz, method, durationMillis);
+
+            onFailure(stream, connection, clazz, method);
+        } else
+        {
+            if (connection != null)
+                connection.resetFailure(clazz);
+        }
+
+        return result;
+    }
+
+    private void onFailure(FStream stream, StreamConnection connection, Class<? extends FStream> clazz, Method method)
+    {
+        if (connection == null)
+            return;
+
+        if (connection.onFailure(clazz, mFailureThreshold, mCoolDown))
+        {
+            StreamLog.w(FStream.class.getSimpleName(), "dispatch quarantine class:" + clazz.getName()
+                    + " method:" + method.getName()
+                    + " stream:" + stream
+                    + " coolDown:" + mCoolDown);
+
+            final Callback callback = mCallback;
+            if (callback != null)
+                callback.onQuarantine(stream, clazz, method, mCoolDown);
+        }
+    }
+
+    public interface Callback
+    {
+        /**
+         * 流对象的方法抛出异常
+         *
+         * @param stream
+         * @param clazz
+         * @param method
+         * @param e
+         */
+        void onException(FStream stream, Class<? extends FStream> clazz, Method method, Throwable e);
+
+        /**
+         * 流对象的方法耗时超过预算
+         *
+         * @param stream
+         * @param clazz
+         * @param method
+         * @param duration 耗时（毫秒）
+         */
+        void onSlow(FStream stream, Class<? extends FStream> clazz, Method method, long duration);
+
+        /**
+         * 流对象被隔离，在冷却时间内不会收到该流接口的分发
+         *
+         * @param stream
+         * @param clazz
+         * @param method   最后一次失败的方法
+         * @param coolDown 隔离时长（毫秒）
+         */
+        void onQuarantine(FStream stream, Class<? extends FStream> clazz, Method method, long coolDown);
+    }
+}
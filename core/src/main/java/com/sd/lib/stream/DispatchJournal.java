@@ -0,0 +1,26 @@
+package com.sd.lib.stream;
+
+import java.lang.reflect.Method;
+
+/**
+ * 分发记录
+ * <p>
+ * {@link FStreamManager#setDispatchJournal(DispatchJournal)}设置之后，代理对象每次同步分发完成都会调用{@link #record}，
+ * 这个方法在分发线程调用，实现类需要保证线程安全并且尽量不要有耗时操作
+ */
+public interface DispatchJournal
+{
+    /**
+     * 记录一次分发
+     *
+     * @param clazz     流接口
+     * @param method    触发的方法
+     * @param tag       代理对象的tag
+     * @param timestamp 分发开始的时间（{@link System#currentTimeMillis()}）
+     * @param durations 每个被通知的流对象方法耗时（纳秒），数组会被复用，不要保存
+     * @param offset    第一个流对象耗时在durations中的位置
+     * @param count     被通知的流对象数量
+     */
+    void record(Class<? extends FStream> clazz, Method method, Object tag, long timestamp,
+                long[] durations, int offset, int count);
+}
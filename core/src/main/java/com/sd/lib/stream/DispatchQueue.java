@@ -0,0 +1,232 @@
+package com.sd.lib.stream;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+
+/**
+ * 有界的异步分发队列
+ * <p>
+ * 代理对象的调用需要异步分发的时候（例如{@link MainThreadDispatch}），调用会先放到这个队列中，
+ * 队列满了之后根据{@link OverflowPolicy}处理新的调用，保证突发的大量调用不会无限制的堆积
+ * <p>
+ * 同一个队列对象可以设置给多个代理对象，这些代理对象的异步调用共享一个容量
+ */
+public class DispatchQueue
+{
+    private final int mCapacity;
+    private final OverflowPolicy mPolicy;
+
+    private final ArrayDeque<Node> mQueue = new ArrayDeque<>();
+    private boolean mIsScheduled;
+
+    private long mDroppedCount;
+    private long mCoalescedCount;
+
+    public DispatchQueue(int capacity, OverflowPolicy policy)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        if (policy == null)
+            throw new IllegalArgumentException("policy is null");
+
+        mCapacity = capacity;
+        mPolicy = policy;
+    }
+
+    /**
+     * 返回队列容量
+     *
+     * @return
+     */
+    public int getCapacity()
+    {
+        return mCapacity;
+    }
+
+    /**
+     * 返回溢出策略
+     *
+     * @return
+     */
+    public OverflowPolicy getPolicy()
+    {
+        return mPolicy;
+    }
+
+    /**
+     * 返回队列中等待分发的调用数量
+     *
+     * @return
+     */
+    public synchronized int size()
+    {
+        return mQueue.size();
+    }
+
+    /**
+     * 返回因为队列满了而被丢弃的调用数量
+     *
+     * @return
+     */
+    public synchronized long getDroppedCount()
+    {
+        return mDroppedCount;
+    }
+
+    /**
+     * 返回被合并的调用数量，只有{@link OverflowPolicy#COALESCE}策略才会合并
+     *
+     * @return
+     */
+    public synchronized long getCoalescedCount()
+    {
+        return mCoalescedCount;
+    }
+
+    /**
+     * 添加调用
+     *
+     * @param owner      发起调用的对象
+     * @param method     调用的方法
+     * @param task       分发任务
+     * @param dispatcher 执行任务的分发器
+     * @return true-添加成功或者被合并；false-被丢弃
+     */
+    synchronized boolean offer(Object owner, Method method, Runnable task, MainThreadDispatcher dispatcher)
+    {
+        if (mPolicy == OverflowPolicy.COALESCE)
+        {
+            for (Node item : mQueue)
+            {
+                if (item.nOwner == owner && item.nMethod.equals(method))
+                {
+                    item.nTask = task;
+                    mCoalescedCount++;
+                    return true;
+                }
+            }
+        }
+
+        if (mQueue.size() >= mCapacity)
+        {
+            switch (mPolicy)
+            {
+                case BLOCK:
+                    try
+                    {
+                        while (mQueue.size() >= mCapacity)
+                        {
+                            wait();
+                        }
+                    } catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        mDroppedCount++;
+                        return false;
+                    }
+                    break;
+                case DROP_NEWEST:
+                    mDroppedCount++;
+                    return false;
+                case DROP_OLDEST:
+                case COALESCE:
+                    mQueue.pollFirst();
+                    mDroppedCount++;
+                    break;
+            }
+        }
+
+        mQueue.offerLast(new Node(owner, method, task));
+
+        if (!mIsScheduled)
+        {
+            mIsScheduled = true;
+            dispatcher.post(new DrainTask(dispatcher));
+        }
+        return true;
+    }
+
+    private synchronized Runnable poll()
+    {
+        final Node node = mQueue.pollFirst();
+        if (node == null)
+            return null;
+
+        notifyAll();
+        return node.nTask;
+    }
+
+    private final class DrainTask implements Runnable
+    {
+        private final MainThreadDispatcher nDispatcher;
+
+        public DrainTask(MainThreadDispatcher dispatcher)
+        {
+            nDispatcher = dispatcher;
+        }
+
+        @Override
+        public void run()
+        {
+            int count = size();
+            try
+            {
+                while (count > 0)
+                {
+                    final Runnable task = poll();
+                    if (task == null)
+                        break;
+
+                    count--;
+                    task.run();
+                }
+            } finally
+            {
+                synchronized (DispatchQueue.this)
+                {
+                    if (mQueue.isEmpty())
+                        mIsScheduled = false;
+                    else
+                        nDispatcher.post(this);
+                }
+            }
+        }
+    }
+
+    private static final class Node
+    {
+        public final Object nOwner;
+        public final Method nMethod;
+        public Runnable nTask;
+
+        public Node(Object owner, Method method, Runnable task)
+        {
+            nOwner = owner;
+            nMethod = method;
+            nTask = task;
+        }
+    }
+
+    /**
+     * 队列满了之后的处理策略
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * 阻塞调用线程，直到队列有空位
+         */
+        BLOCK,
+        /**
+         * 丢弃队列中最早的调用
+         */
+        DROP_OLDEST,
+        /**
+         * 丢弃新的调用
+         */
+        DROP_NEWEST,
+        /**
+         * 如果队列中已经有同一个代理对象同一个方法的调用，则用新的参数替换它，否则按{@link #DROP_OLDEST}处理
+         */
+        COALESCE
+    }
+}
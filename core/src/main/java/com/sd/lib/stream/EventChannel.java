@@ -0,0 +1,498 @@
+package com.sd.lib.stream;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于环形缓冲区的事件通道，适用于高频事件（传感器数据，音量等）
+ * <p>
+ * 事件对象在创建通道的时候预先分配并重复使用，发送方通过序号申请事件槽位，填充之后发布，
+ * 处理线程按批次读取已经发布的事件，依次通知通过{@link #subscribe(EventStream)}订阅这个通道的{@link EventStream}，整个过程没有反射调用和对象分配。
+ * {@link #subscribe(EventStream, Object)}订阅的订阅者在目标对象的生命周期结束之后自动取消订阅。
+ * <p>
+ * 支持多个线程同时发送，缓冲区满了之后{@link #publishEvent(EventTranslator)}会等待处理线程，
+ * 如果处理线程没有运行（还未{@link #start(Executor)}或者已经{@link #stop()}）会抛出{@link IllegalStateException}；
+ * {@link #tryPublishEvent(EventTranslator)}直接返回false
+ *
+ * @param <E>
+ */
+public class EventChannel<E>
+{
+    private static final EventStream<?>[] EMPTY_SUBSCRIBERS = new EventStream<?>[0];
+
+    private final Object mTag;
+    private final int mBufferSize;
+    private final int mIndexMask;
+    private final int mIndexShift;
+    private final Object[] mEntries;
+    /** 每个槽位已经发布的轮次 */
+    private final AtomicIntegerArray mAvailable;
+
+    /** 已经申请的最大序号 */
+    private final AtomicLong mCursor = new AtomicLong(-1);
+    /** 已经处理的最大序号 */
+    private final AtomicLong mConsumerSequence = new AtomicLong(-1);
+
+    private volatile boolean mIsRunning;
+    private volatile boolean mIsWaiting;
+    private volatile Thread mProcessorThread;
+    /** 每次{@link #start(Executor)}加1，旧的处理线程发现不一致之后退出 */
+    private volatile int mGeneration;
+    /** 处理线程运行期间持有这个锁，新的处理线程等旧的处理线程退出之后才开始处理 */
+    private final Object mProcessorLock = new Object();
+
+    /** 订阅者，修改的时候复制 */
+    private volatile EventStream<? super E>[] mSubscribers = emptySubscribers();
+
+    /**
+     * @param tag        通道的tag
+     * @param bufferSize 缓冲区大小，必须是2的幂
+     * @param factory    事件对象工厂
+     */
+    public EventChannel(Object tag, int bufferSize, EventFactory<E> factory)
+    {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1)
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        if (factory == null)
+            throw new IllegalArgumentException("factory is null");
+
+        mTag = tag;
+        mBufferSize = bufferSize;
+        mIndexMask = bufferSize - 1;
+        mIndexShift = Integer.numberOfTrailingZeros(bufferSize);
+
+        mEntries = new Object[bufferSize];
+        mAvailable = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++)
+        {
+            mEntries[i] = factory.newInstance();
+            mAvailable.set(i, -1);
+        }
+    }
+
+    /**
+     * 返回通道的tag
+     *
+     * @return
+     */
+    public Object getTag()
+    {
+        return mTag;
+    }
+
+    /**
+     * 订阅通道的事件，同一个订阅者可以订阅多个通道
+     *
+     * @param subscriber
+     * @return false-已经订阅过了
+     */
+    public synchronized boolean subscribe(EventStream<? super E> subscriber)
+    {
+        if (subscriber == null)
+            throw new IllegalArgumentException("subscriber is null");
+
+        final EventStream<? super E>[] subscribers = mSubscribers;
+        for (EventStream<? super E> item : subscribers)
+        {
+            if (item == subscriber)
+                return false;
+        }
+
+        final EventStream<? super E>[] newSubscribers = Arrays.copyOf(subscribers, subscribers.length + 1);
+        newSubscribers[subscribers.length] = subscriber;
+        mSubscribers = newSubscribers;
+        return true;
+    }
+
+    /**
+     * 订阅通道的事件，target所属的生命周期对象销毁之后自动取消订阅
+     * <p>
+     * 生命周期对象由{@link StreamPlatform#getLifecycleOwner(Object)}决定，和{@link FStreamManager#bindStream(FStream, Object)}
+     * 的目标对象一样，Android平台是Activity或者View所在的Activity
+     *
+     * @param subscriber
+     * @param target
+     * @return false-已经订阅过了，或者生命周期对象已经销毁
+     * @throws IllegalArgumentException 平台不支持这个目标对象
+     */
+    public boolean subscribe(EventStream<? super E> subscriber, Object target)
+    {
+        if (subscriber == null)
+            throw new IllegalArgumentException("subscriber is null");
+        if (target == null)
+            throw new IllegalArgumentException("target is null");
+
+        final StreamPlatform platform = StreamPlatform.get();
+        final Object owner = platform.getLifecycleOwner(target);
+        if (owner == null)
+            throw new IllegalArgumentException("unsupported target:" + target);
+        if (platform.isLifecycleDestroyed(owner))
+            return false;
+
+        if (!subscribe(subscriber))
+            return false;
+
+        platform.watchLifecycle(owner, new UnsubscribeTask<>(this, subscriber));
+        return true;
+    }
+
+    /**
+     * 取消订阅
+     *
+     * @param subscriber
+     * @return false-没有订阅
+     */
+    public synchronized boolean unsubscribe(EventStream<? super E> subscriber)
+    {
+        final EventStream<? super E>[] subscribers = mSubscribers;
+        for (int i = 0; i < subscribers.length; i++)
+        {
+            if (subscribers[i] != subscriber)
+                continue;
+
+            final EventStream<? super E>[] newSubscribers = Arrays.copyOf(subscribers, subscribers.length - 1);
+            System.arraycopy(subscribers, i + 1, newSubscribers, i, subscribers.length - i - 1);
+            mSubscribers = newSubscribers;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 返回订阅者数量
+     *
+     * @return
+     */
+    public int getSubscriberCount()
+    {
+        return mSubscribers.length;
+    }
+
+    /**
+     * 返回缓冲区大小
+     *
+     * @return
+     */
+    public int getBufferSize()
+    {
+        return mBufferSize;
+    }
+
+    /**
+     * 在executor中启动处理线程，处理线程会一直占用executor的一个线程直到{@link #stop()}
+     * <p>
+     * {@link #stop()}之后马上再次启动的话，新的处理线程会等旧的处理线程处理完当前批次并退出之后才开始处理，
+     * 同一时间只有一个处理线程通知订阅者
+     *
+     * @param executor
+     */
+    public synchronized void start(Executor executor)
+    {
+        if (executor == null)
+            throw new IllegalArgumentException("executor is null");
+        if (mIsRunning)
+            return;
+
+        final int generation = ++mGeneration;
+        mIsRunning = true;
+        executor.execute(new Processor(generation));
+    }
+
+    /**
+     * 停止处理线程
+     * <p>
+     * 处理线程处理完当前批次之后退出，已经发布还未处理的事件保留在缓冲区中，再次{@link #start(Executor)}之后继续处理
+     */
+    public synchronized void stop()
+    {
+        mIsRunning = false;
+
+        final Thread thread = mProcessorThread;
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * 申请下一个事件槽位，缓冲区满了的话等待处理线程
+     *
+     * @return 事件序号
+     * @throws IllegalStateException 缓冲区满了并且处理线程没有运行
+     */
+    public long next()
+    {
+        while (true)
+        {
+            final long current = mCursor.get();
+            final long next = current + 1;
+            if (next - mBufferSize > mConsumerSequence.get())
+            {
+                if (!mIsRunning)
+                    throw new IllegalStateException("buffer is full and channel is not running, tag:" + mTag);
+
+                LockSupport.parkNanos(1);
+                continue;
+            }
+
+            if (mCursor.compareAndSet(current, next))
+                return next;
+        }
+    }
+
+    /**
+     * 申请下一个事件槽位
+     *
+     * @return 事件序号，-1表示缓冲区已满
+     */
+    public long tryNext()
+    {
+        while (true)
+        {
+            final long current = mCursor.get();
+            final long next = current + 1;
+            if (next - mBufferSize > mConsumerSequence.get())
+                return -1;
+
+            if (mCursor.compareAndSet(current, next))
+                return next;
+        }
+    }
+
+    /**
+     * 返回序号对应的事件对象
+     *
+     * @param sequence
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence)
+    {
+        // mEntries中只保存了factory创建的事件对象
+        return (E) mEntries[(int) sequence & mIndexMask];
+    }
+
+    /**
+     * 发布事件，序号必须是通过{@link #next()}或者{@link #tryNext()}申请的
+     *
+     * @param sequence
+     */
+    public void publish(long sequence)
+    {
+        mAvailable.set((int) sequence & mIndexMask, (int) (sequence >>> mIndexShift));
+
+        if (mIsWaiting)
+        {
+            final Thread thread = mProcessorThread;
+            if (thread != null)
+                LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 申请槽位，填充并发布事件
+     *
+     * @param translator
+     */
+    public void publishEvent(EventTranslator<E> translator)
+    {
+        final long sequence = next();
+        try
+        {
+            translator.translateTo(get(sequence), sequence);
+        } finally
+        {
+            publish(sequence);
+        }
+    }
+
+    /**
+     * 申请槽位，填充并发布事件，缓冲区满了的话直接返回
+     *
+     * @param translator
+     * @return false-缓冲区已满
+     */
+    public boolean tryPublishEvent(EventTranslator<E> translator)
+    {
+        final long sequence = tryNext();
+        if (sequence < 0)
+            return false;
+
+        try
+        {
+            translator.translateTo(get(sequence), sequence);
+        } finally
+        {
+            publish(sequence);
+        }
+        return true;
+    }
+
+    /**
+     * 返回还未处理的事件数量
+     *
+     * @return
+     */
+    public long getPendingCount()
+    {
+        return mCursor.get() - mConsumerSequence.get();
+    }
+
+    private boolean isAvailable(long sequence)
+    {
+        return mAvailable.get((int) sequence & mIndexMask) == (int) (sequence >>> mIndexShift);
+    }
+
+    /**
+     * 返回从sequence开始连续发布的最大序号
+     */
+    private long getHighestPublished(long sequence, long cursor)
+    {
+        for (long i = sequence; i <= cursor; i++)
+        {
+            if (!isAvailable(i))
+                return i - 1;
+        }
+        return cursor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> EventStream<? super E>[] emptySubscribers()
+    {
+        // 空数组不会读取到元素，转换是安全的
+        return (EventStream<? super E>[]) EMPTY_SUBSCRIBERS;
+    }
+
+    private final class Processor implements Runnable
+    {
+        private final int nGeneration;
+
+        public Processor(int generation)
+        {
+            nGeneration = generation;
+        }
+
+        private boolean isActive()
+        {
+            return mIsRunning && nGeneration == mGeneration;
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized (mProcessorLock)
+            {
+                if (!isActive())
+                    return;
+
+                mProcessorThread = Thread.currentThread();
+                try
+                {
+                    process();
+                } finally
+                {
+                    mProcessorThread = null;
+                }
+            }
+        }
+
+        private void process()
+        {
+            long nextSequence = mConsumerSequence.get() + 1;
+            while (isActive())
+            {
+                final long available = waitFor(nextSequence);
+                if (available < nextSequence)
+                    continue;
+
+                final EventStream<? super E>[] subscribers = mSubscribers;
+                for (long sequence = nextSequence; sequence <= available; sequence++)
+                {
+                    final E event = get(sequence);
+                    final boolean endOfBatch = sequence == available;
+                    for (EventStream<? super E> item : subscribers)
+                    {
+                        try
+                        {
+                            item.onEvent(event, sequence, endOfBatch);
+                        } catch (Throwable e)
+                        {
+                            StreamLog.e(EventChannel.class.getSimpleName(), "onEvent error tag:" + mTag + " subscriber:" + item, e);
+                        }
+                    }
+                }
+
+                mConsumerSequence.set(available);
+                nextSequence = available + 1;
+            }
+        }
+
+        /**
+         * 等待序号对应的事件发布
+         *
+         * @return 可以处理的最大序号，小于sequence表示已经停止
+         */
+        private long waitFor(long sequence)
+        {
+            while (isActive())
+            {
+                final long available = getHighestPublished(sequence, mCursor.get());
+                if (available >= sequence)
+                    return available;
+
+                mIsWaiting = true;
+                // 设置等待标志之后再检查一次，避免错过发布的通知
+                if (getHighestPublished(sequence, mCursor.get()) < sequence && isActive())
+                    LockSupport.park(this);
+                mIsWaiting = false;
+            }
+            return sequence - 1;
+        }
+    }
+
+    /**
+     * 生命周期对象销毁之后取消订阅，弱引用订阅者和通道，手动取消订阅之后不会一直持有它们
+     */
+    private static final class UnsubscribeTask<E> implements Runnable
+    {
+        private final WeakReference<EventChannel<E>> nChannel;
+        private final WeakReference<EventStream<? super E>> nSubscriber;
+
+        public UnsubscribeTask(EventChannel<E> channel, EventStream<? super E> subscriber)
+        {
+            nChannel = new WeakReference<>(channel);
+            nSubscriber = new WeakReference<EventStream<? super E>>(subscriber);
+        }
+
+        @Override
+        public void run()
+        {
+            final EventChannel<E> channel = nChannel.get();
+            final EventStream<? super E> subscriber = nSubscriber.get();
+            if (channel != null && subscriber != null)
+                channel.unsubscribe(subscriber);
+        }
+    }
+
+    /**
+     * 事件对象工厂
+     *
+     * @param <E>
+     */
+    public interface EventFactory<E>
+    {
+        E newInstance();
+    }
+
+    /**
+     * 填充事件对象
+     *
+     * @param <E>
+     */
+    public interface EventTranslator<E>
+    {
+        void translateTo(E event, long sequence);
+    }
+}
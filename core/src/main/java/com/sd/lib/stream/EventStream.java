@@ -0,0 +1,23 @@
+package com.sd.lib.stream;
+
+/**
+ * {@link EventChannel}的订阅者
+ * <p>
+ * 通过{@link EventChannel#subscribe(EventStream)}订阅某个通道，订阅者只会收到自己订阅的通道的事件，
+ * EventStream&lt;Object&gt;这样的订阅者可以同时订阅多个事件类型的通道
+ *
+ * @param <E>
+ */
+public interface EventStream<E>
+{
+    /**
+     * 收到事件，在通道的处理线程触发
+     * <p>
+     * 事件对象是通道预先创建并重复使用的，不能在这个方法外保存事件对象的引用
+     *
+     * @param event      事件
+     * @param sequence   事件序号
+     * @param endOfBatch 是否是本批次的最后一个事件
+     */
+    void onEvent(E event, long sequence, boolean endOfBatch);
+}
@@ -0,0 +1,304 @@
+package com.sd.lib.stream;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 流接口
+ */
+public interface FStream
+{
+    /**
+     * 返回当前流对象的tag
+     * <p>
+     * 代理对象方法被触发的时候，会调用流对象的这个方法返回一个tag用于和代理对象的tag比较，tag相等的流对象才会被通知
+     *
+     * @param clazz 哪个接口的代理对象方法被触发
+     * @return
+     */
+    Object getTagForStream(Class<? extends FStream> clazz);
+
+    class ProxyBuilder
+    {
+        Class<? extends FStream> mClass;
+        Object mTag;
+        boolean mIsTagPrefix;
+        DispatchCallback mDispatchCallback;
+        ResultFilter mResultFilter;
+        DispatchQueue mDispatchQueue;
+        Executor mMailboxExecutor;
+        ResultPredicate mFirstResponder;
+        FrameBudget mFrameBudget;
+        boolean mIsDistinctUntilChanged;
+        long mThrottleInterval;
+        ThrottleMode mThrottleMode;
+        boolean mIsCacheTagMatch;
+
+        /**
+         * 设置代理对象的tag
+         *
+         * @param tag
+         * @return
+         */
+        public ProxyBuilder setTag(Object tag)
+        {
+            mTag = tag;
+            mIsTagPrefix = false;
+            return this;
+        }
+
+        /**
+         * 设置层级tag前缀，只通知tag等于前缀或者在前缀层级下的流对象，前缀中的{@link StreamTag#WILDCARD}匹配任意一段
+         * <p>
+         * 用{@link #setTag(Object)}设置{@link StreamTag}的话，只通知段数相同并且匹配的流对象。
+         * 流对象的层级tag在注册的时候建立索引，分发的时候只访问匹配的子树，如果流对象的tag会变化，需要调用{@link StreamConnection#notifyTagChanged()}
+         *
+         * @param prefix
+         * @return
+         */
+        public ProxyBuilder setTagPrefix(StreamTag prefix)
+        {
+            if (prefix == null)
+                throw new IllegalArgumentException("prefix is null");
+
+            mTag = prefix;
+            mIsTagPrefix = true;
+            return this;
+        }
+
+        /**
+         * 设置流对象方法分发回调
+         *
+         * @param callback
+         * @return
+         */
+        public ProxyBuilder setDispatchCallback(DispatchCallback callback)
+        {
+            mDispatchCallback = callback;
+            return this;
+        }
+
+        /**
+         * 设置返回值过滤对象
+         *
+         * @param filter
+         * @return
+         */
+        public ProxyBuilder setResultFilter(ResultFilter filter)
+        {
+            mResultFilter = filter;
+            return this;
+        }
+
+        /**
+         * 设置异步分发队列，代理对象的调用需要异步分发的时候会先放到这个队列中
+         * <p>
+         * {@link MainThreadDispatch}
+         *
+         * @param queue
+         * @return
+         */
+        public ProxyBuilder setDispatchQueue(DispatchQueue queue)
+        {
+            mDispatchQueue = queue;
+            return this;
+        }
+
+        /**
+         * 设置邮箱分发模式的线程池
+         * <p>
+         * 设置之后，返回值为void的方法会以邮箱模式分发：每个流对象有一个串行邮箱，代理对象的方法被触发的时候，
+         * 只是把调用放到每个流对象的邮箱中然后立即返回，邮箱在这个线程池中依次执行。
+         * 同一个流对象收到通知的顺序和调用顺序一致，不同的流对象可以并行收到通知
+         * <p>
+         * 注意：邮箱模式下{@link DispatchCallback}的返回值和{@link StreamConnection#breakDispatch(Class)}不能停止分发
+         *
+         * @param executor
+         * @return
+         */
+        public ProxyBuilder setMailboxExecutor(Executor executor)
+        {
+            mMailboxExecutor = executor;
+            return this;
+        }
+
+        /**
+         * 设置首个响应模式，只对有返回值的方法有效
+         * <p>
+         * 按优先级顺序通知流对象，一旦某个流对象的返回值满足predicate就停止分发并返回这个值，
+         * 都不满足的话返回null（基本类型返回默认值）。<br>
+         * 这个模式下不需要流对象调用{@link StreamConnection#breakDispatch(Class)}，{@link #setResultFilter(ResultFilter)}也无效
+         *
+         * @param predicate null-关闭；{@link ResultPredicate#NOT_NULL}-返回第一个不为null的值
+         * @return
+         */
+        public ProxyBuilder setFirstResponder(ResultPredicate predicate)
+        {
+            mFirstResponder = predicate;
+            return this;
+        }
+
+        /**
+         * 设置帧预算，只对在主线程分发的无返回值的方法有效
+         * <p>
+         * 一次分发累计耗时超过预算之后，剩下的流对象延后到主线程的下一个消息继续分发，
+         * 延后的数量可以通过{@link FrameBudget#getDeferredCount()}查询
+         * <p>
+         * 这个代理对象在主线程再次分发同一个方法之前，会先不受预算限制地分发完上一次调用延后的部分，
+         * 保证每个流对象按调用顺序收到；其他线程的调用、其他代理对象的调用和不同方法之间的顺序不保证
+         *
+         * @param budget null-不限制
+         * @return
+         */
+        public ProxyBuilder setFrameBudget(FrameBudget budget)
+        {
+            mFrameBudget = budget;
+            return this;
+        }
+
+        /**
+         * 设置是否去重，只对无返回值的方法有效
+         * <p>
+         * 开启之后，如果某个方法的参数和这个代理对象上一次分发的参数相同（{@link java.util.Arrays#deepEquals(Object[], Object[])}），
+         * 则不分发。注意参数对象是按引用保存的，调用之后修改参数对象会影响比较结果
+         *
+         * @param distinct
+         * @return
+         */
+        public ProxyBuilder setDistinctUntilChanged(boolean distinct)
+        {
+            mIsDistinctUntilChanged = distinct;
+            return this;
+        }
+
+        /**
+         * 设置节流，只对无返回值的方法有效，每个方法单独节流
+         *
+         * @param interval 节流间隔（毫秒），小于等于0-不节流
+         * @param mode     {@link ThrottleMode}
+         * @return
+         */
+        public ProxyBuilder setThrottle(long interval, ThrottleMode mode)
+        {
+            if (interval > 0 && mode == null)
+                throw new IllegalArgumentException("mode is null");
+
+            mThrottleInterval = interval;
+            mThrottleMode = mode;
+            return this;
+        }
+
+        /**
+         * 设置是否缓存tag的匹配结果
+         * <p>
+         * 开启之后，流对象的tag只在流对象有变化（注册，取消注册，优先级变化）的时候匹配一次，
+         * 如果流对象的tag会变化，需要调用{@link StreamConnection#notifyTagChanged()}
+         *
+         * @param cache
+         * @return
+         */
+        public ProxyBuilder setCacheTagMatch(boolean cache)
+        {
+            mIsCacheTagMatch = cache;
+            return this;
+        }
+
+        /**
+         * 创建代理对象
+         *
+         * @param clazz
+         * @param <T>
+         * @return
+         */
+        public <T extends FStream> T build(Class<T> clazz)
+        {
+            if (clazz == null)
+                throw new IllegalArgumentException("clazz is null");
+            if (!clazz.isInterface())
+                throw new IllegalArgumentException("clazz must be an interface");
+            if (clazz == FStream.class)
+                throw new IllegalArgumentException("clazz must not be:" + FStream.class.getName());
+
+            mClass = clazz;
+            return (T) FStreamManager.getInstance().newProxyInstance(this);
+        }
+    }
+
+    interface DispatchCallback
+    {
+        /**
+         * 流对象的方法被通知之前触发
+         *
+         * @param stream       流对象
+         * @param method       方法
+         * @param methodParams 方法参数
+         * @return true-停止分发，false-继续分发
+         */
+        boolean beforeDispatch(FStream stream, Method method, Object[] methodParams);
+
+        /**
+         * 流对象的方法被通知之后触发
+         *
+         * @param stream       流对象
+         * @param method       方法
+         * @param methodParams 方法参数
+         * @param methodResult 流对象方法被调用后的返回值
+         * @return true-停止分发，false-继续分发
+         */
+        boolean afterDispatch(FStream stream, Method method, Object[] methodParams, Object methodResult);
+    }
+
+    interface ResultFilter
+    {
+        /**
+         * 过滤返回值
+         *
+         * @param method       方法
+         * @param methodParams 方法参数
+         * @param results      所有流对象的返回值
+         * @return
+         */
+        Object filter(Method method, Object[] methodParams, List<Object> results);
+    }
+
+    interface ResultPredicate
+    {
+        /**
+         * 返回值不为null
+         */
+        ResultPredicate NOT_NULL = new ResultPredicate()
+        {
+            @Override
+            public boolean accept(Method method, Object[] methodParams, Object result)
+            {
+                return result != null;
+            }
+        };
+
+        /**
+         * 返回值是否满足条件
+         *
+         * @param method       方法
+         * @param methodParams 方法参数
+         * @param result       流对象的返回值
+         * @return true-满足条件，停止分发
+         */
+        boolean accept(Method method, Object[] methodParams, Object result);
+    }
+
+    /**
+     * 节流模式，{@link ProxyBuilder#setThrottle(long, ThrottleMode)}
+     */
+    enum ThrottleMode
+    {
+        /**
+         * 分发窗口内的第一次调用，丢弃之后的调用
+         */
+        LEADING,
+        /**
+         * 窗口结束的时候分发窗口内的最后一次调用
+         */
+        TRAILING
+    }
+}
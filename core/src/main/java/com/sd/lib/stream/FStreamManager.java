@@ -0,0 +1,1052 @@
+package com.sd.lib.stream;
+
+import com.sd.lib.stream.factory.DefaultStreamFactory;
+import com.sd.lib.stream.factory.WeakCacheDefaultStreamFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 流管理类
+ */
+public class FStreamManager
+{
+    private static final FStreamManager INSTANCE = new FStreamManager();
+
+    private FStreamManager()
+    {
+    }
+
+    public static FStreamManager getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private final Map<Class<? extends FStream>, StreamHolder> mMapStream = new ConcurrentHashMap<>();
+    private final ConcurrentWeakIdentityMap<FStream, StreamBinder<?>> mMapStreamBinder = new ConcurrentWeakIdentityMap<>();
+    private final ConcurrentWeakIdentityMap<Object, StreamBinder<?>> mMapTargetBinder = new ConcurrentWeakIdentityMap<>();
+
+    private final Map<IdentityKey, InternalStreamConnection> mMapStreamConnection = new ConcurrentHashMap<>();
+    /** 取消注册的流对象的串行邮箱，重新注册的时候继续使用，保证之前提交的任务执行完之后才执行新的任务 */
+    private final ConcurrentWeakIdentityMap<FStream, SerialMailbox> mMapRetiredMailbox = new ConcurrentWeakIdentityMap<>();
+    private final Set<Class<? extends FStream>> mAdaptiveOrderingClass = new HashSet<>();
+
+    private final MainThreadDispatcher mMainThreadDispatcher = new MainThreadDispatcher();
+
+    private boolean mIsDebug;
+    private volatile DispatchJournal mDispatchJournal;
+    private volatile DispatchGuard mDispatchGuard;
+    private final ThreadLocal<DispatchBatch> mBatch = new ThreadLocal<>();
+
+    private volatile Thread mConfinedThread;
+    private DispatchBatch mConfinedBatch;
+
+    private final StickyCache mStickyCache = new StickyCache();
+    /** 持有锁的时候注册的流对象，粘性调用等释放锁之后再通知 */
+    private final ThreadLocal<List<PendingSticky>> mPendingSticky = new ThreadLocal<>();
+    private volatile StickyStore mStickyStore;
+    private volatile LeakWatcher mLeakWatcher;
+
+    public boolean isDebug()
+    {
+        return mIsDebug;
+    }
+
+    public void setDebug(boolean debug)
+    {
+        mIsDebug = debug;
+    }
+
+    /**
+     * {@link #bindStream(FStream, Object)}
+     */
+    @Deprecated
+    public void bindActivity(FStream stream, Object target)
+    {
+        bindStream(stream, target);
+    }
+
+    /**
+     * {@link #bindStream(FStream, Object)}
+     */
+    @Deprecated
+    public void bindView(FStream stream, Object target)
+    {
+        bindStream(stream, target);
+    }
+
+    /**
+     * 绑定流对象，目标对象失效的时候自动取消注册
+     * <p>
+     * 支持的目标对象由{@link StreamPlatform#createStreamBinder(Object)}决定，Android平台支持Activity和View，
+     * Android工程可以使用类型检查更严格的{@code FStreamBinding}
+     *
+     * @param stream
+     * @param target
+     * @return true-绑定成功或者已绑定；false-绑定失败
+     */
+    public boolean bindStream(FStream stream, Object target)
+    {
+        return bindStream(stream, target, 0);
+    }
+
+    /**
+     * 绑定流对象
+     * <p>
+     * 目标对象失效之后延迟detachDelay毫秒才取消注册，在这期间目标对象恢复的话流对象保持注册状态，
+     * 例如Android平台列表中频繁移除添加的View
+     *
+     * @param stream
+     * @param target
+     * @param detachDelay 目标对象失效之后延迟取消注册的时间（毫秒），小于等于0立即取消注册
+     * @return true-绑定成功或者已绑定；false-绑定失败
+     */
+    public boolean bindStream(FStream stream, Object target, long detachDelay)
+    {
+        final boolean result;
+        try
+        {
+            result = bindStreamLocked(stream, target, detachDelay);
+        } finally
+        {
+            replayPendingSticky();
+        }
+        return result;
+    }
+
+    private synchronized boolean bindStreamLocked(FStream stream, Object target, long detachDelay)
+    {
+        if (target == null)
+            return false;
+
+        if (!checkBindStream(stream))
+            return false;
+
+        if (checkOldBinder(stream, target))
+        {
+            final StreamBinder<?> binder = mMapStreamBinder.get(stream);
+            if (binder != null)
+                binder.setDetachDelay(stream, detachDelay);
+            return true;
+        }
+
+        StreamBinder<?> binder = mMapTargetBinder.get(target);
+        if (binder == null)
+        {
+            binder = StreamPlatform.get().createStreamBinder(target);
+            if (binder == null)
+                throw new IllegalArgumentException("unsupported target:" + target);
+        }
+
+        if (!bindStreamInternal(stream, target, binder))
+            return false;
+
+        binder.setDetachDelay(stream, detachDelay);
+        return true;
+    }
+
+    /**
+     * 检查流对象是否已经绑定
+     *
+     * @param stream
+     * @param target
+     * @return true-已经绑定到target；false-未绑定，如果绑定到了其他对象会先解绑
+     */
+    private boolean checkOldBinder(FStream stream, Object target)
+    {
+        final StreamBinder<?> oldBinder = mMapStreamBinder.get(stream);
+        if (oldBinder != null)
+        {
+            if (oldBinder.getTarget() == target)
+            {
+                //  已经绑定过了
+                return true;
+            } else
+            {
+                unbindStream(stream);
+            }
+        }
+        return false;
+    }
+
+    private boolean bindStreamInternal(FStream stream, Object target, StreamBinder<?> binder)
+    {
+        if (binder.bind(stream))
+        {
+            mMapStreamBinder.put(stream, binder);
+            mMapTargetBinder.put(target, binder);
+
+            final LeakWatcher watcher = mLeakWatcher;
+            if (watcher != null)
+                watcher.onBind(stream, target);
+
+            if (mIsDebug)
+            {
+                StreamLog.i(FStream.class.getSimpleName(), "bind"
+                        + " stream:" + stream
+                        + " target:" + target
+                        + " targetSize:" + binder.size()
+                        + " size:" + mMapStreamBinder.size());
+            }
+
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解绑并取消注册
+     *
+     * @param stream
+     * @return
+     */
+    public synchronized boolean unbindStream(FStream stream)
+    {
+        final StreamBinder<?> binder = mMapStreamBinder.remove(stream);
+        if (binder != null)
+        {
+            binder.unbind(stream);
+            if (binder.size() <= 0)
+            {
+                binder.destroy();
+
+                final Object target = binder.getTarget();
+                if (target != null && mMapTargetBinder.get(target) == binder)
+                    mMapTargetBinder.remove(target);
+            }
+
+            if (mIsDebug)
+            {
+                StreamLog.i(FStream.class.getSimpleName(), "unbind"
+                        + " stream:" + stream
+                        + " target:" + binder.getTarget()
+                        + " size:" + mMapStreamBinder.size());
+            }
+
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解绑并取消注册某个对象绑定的所有流对象
+     *
+     * @param target
+     * @return 解绑的流对象数量
+     */
+    public synchronized int unbindAll(Object target)
+    {
+        final StreamBinder<?> binder = mMapTargetBinder.remove(target);
+        if (binder == null)
+            return 0;
+
+        final List<FStream> list = binder.getStreams();
+        for (FStream item : list)
+        {
+            if (mMapStreamBinder.get(item) == binder)
+                mMapStreamBinder.remove(item);
+        }
+        binder.destroy();
+
+        if (mIsDebug)
+        {
+            StreamLog.i(FStream.class.getSimpleName(), "unbindAll"
+                    + " target:" + target
+                    + " count:" + list.size()
+                    + " size:" + mMapStreamBinder.size());
+        }
+
+        return list.size();
+    }
+
+    private void checkHasBound(FStream stream)
+    {
+        final StreamBinder<?> binder = mMapStreamBinder.get(stream);
+        if (binder != null)
+            throw new IllegalArgumentException("stream has bound. stream: " + stream + " target:" + binder.getTarget());
+    }
+
+    /**
+     * 注册流对象
+     * <p>
+     * 注册成功之后会通知缓存的粘性调用（{@link Sticky}），通知在释放锁之后执行
+     *
+     * @param stream
+     * @return null-注册失败
+     */
+    public StreamConnection register(FStream stream)
+    {
+        return registerInternal(stream, true);
+    }
+
+    /**
+     * 取消注册流对象
+     *
+     * @param stream
+     */
+    public synchronized void unregister(FStream stream)
+    {
+        checkHasBound(stream);
+        unregisterInternal(stream);
+    }
+
+    StreamConnection registerInternal(FStream stream)
+    {
+        return registerInternal(stream, false);
+    }
+
+    private StreamConnection registerInternal(FStream stream, boolean checkBound)
+    {
+        checkConfinedThread();
+
+        final List<StickyCache.StickyCall> listSticky = new ArrayList<>();
+        final StreamConnection connection = registerLocked(stream, checkBound, listSticky);
+        if (connection == null)
+            return null;
+
+        final LeakWatcher watcher = mLeakWatcher;
+        if (watcher != null)
+            watcher.onRegister(stream, getStreamClass(stream), this);
+
+        if (!listSticky.isEmpty())
+        {
+            if (Thread.holdsLock(this))
+            {
+                // 粘性调用会执行流对象的方法，不能在持有锁的时候执行
+                List<PendingSticky> list = mPendingSticky.get();
+                if (list == null)
+                {
+                    list = new ArrayList<>();
+                    mPendingSticky.set(list);
+                }
+                list.add(new PendingSticky(stream, listSticky));
+            } else
+            {
+                replaySticky(stream, listSticky);
+            }
+        }
+        return connection;
+    }
+
+    private synchronized StreamConnection registerLocked(FStream stream, boolean checkBound, List<StickyCache.StickyCall> listSticky)
+    {
+        if (checkBound)
+            checkHasBound(stream);
+
+        final Class<? extends FStream>[] classes = getStreamClass(stream);
+        if (classes == null || classes.length <= 0)
+            return null;
+
+        final IdentityKey key = new IdentityKey(stream);
+        InternalStreamConnection streamConnection = mMapStreamConnection.get(key);
+        if (streamConnection == null)
+        {
+            streamConnection = new InternalStreamConnection(stream, classes);
+            final SerialMailbox mailbox = mMapRetiredMailbox.remove(stream);
+            if (mailbox != null)
+                streamConnection.setMailbox(mailbox);
+            mMapStreamConnection.put(key, streamConnection);
+        }
+
+        for (Class<? extends FStream> item : classes)
+        {
+            StreamHolder holder = mMapStream.get(item);
+            if (holder == null)
+            {
+                holder = new StreamHolder(item, FStreamManager.this);
+                holder.setAdaptiveOrdering(mAdaptiveOrderingClass.contains(item));
+                mMapStream.put(item, holder);
+            }
+
+            if (holder.add(streamConnection))
+            {
+                if (mIsDebug)
+                {
+                    StreamLog.i(FStream.class.getSimpleName(), "+++++ register"
+                            + " class:" + item.getName()
+                            + " stream:" + stream
+                            + " count:" + (holder.size()));
+                }
+
+                listSticky.addAll(mStickyCache.get(item, stream.getTagForStream(item)));
+            }
+        }
+        return streamConnection;
+    }
+
+    /**
+     * 把粘性调用通知给新注册的流对象，{@link Sticky}
+     * <p>
+     * 通过发起调用的代理对象通知，和普通分发一样处理{@link MainThreadDispatch}、串行邮箱和{@link DispatchGuard}；
+     * 真正通知的时候如果已经有新的调用，则跳过旧的调用
+     */
+    private void replaySticky(FStream stream, List<StickyCache.StickyCall> listSticky)
+    {
+        for (StickyCache.StickyCall item : listSticky)
+        {
+            final ProxyInvocationHandler handler = item.handler != null ? item.handler : newStickyHandler(item);
+            try
+            {
+                handler.deliverSticky(stream, item);
+            } catch (RuntimeException e)
+            {
+                StreamLog.e(FStream.class.getSimpleName(), "replay sticky " + item.method + " error stream:" + stream, e);
+                continue;
+            }
+
+            if (mIsDebug)
+                StreamLog.i(FStream.class.getSimpleName(), "replay sticky " + item.method + " stream:" + stream);
+        }
+    }
+
+    /**
+     * 从文件预加载的调用没有代理对象，按默认配置创建
+     */
+    private ProxyInvocationHandler newStickyHandler(StickyCache.StickyCall call)
+    {
+        final FStream.ProxyBuilder builder = new FStream.ProxyBuilder().setTag(call.tag);
+        builder.mClass = call.clazz;
+        return new ProxyInvocationHandler(this, builder);
+    }
+
+    /**
+     * 调用是否还是最新的粘性调用，{@link ProxyInvocationHandler#deliverSticky(FStream, StickyCache.StickyCall)}
+     */
+    boolean isStickyLatest(StickyCache.StickyCall call)
+    {
+        return mStickyCache.isLatest(call);
+    }
+
+    /**
+     * 通知持有锁的时候注册的流对象，需要在释放锁之后调用
+     */
+    private void replayPendingSticky()
+    {
+        final List<PendingSticky> list = mPendingSticky.get();
+        if (list == null)
+            return;
+
+        mPendingSticky.remove();
+        for (PendingSticky item : list)
+        {
+            replaySticky(item.stream, item.listSticky);
+        }
+    }
+
+    private static final class PendingSticky
+    {
+        public final FStream stream;
+        public final List<StickyCache.StickyCall> listSticky;
+
+        public PendingSticky(FStream stream, List<StickyCache.StickyCall> listSticky)
+        {
+            this.stream = stream;
+            this.listSticky = listSticky;
+        }
+    }
+
+    void registerInternal(Collection<FStream> streams)
+    {
+        for (FStream item : streams)
+        {
+            registerInternal(item);
+        }
+    }
+
+    synchronized void unregisterInternal(Collection<FStream> streams)
+    {
+        for (FStream item : streams)
+        {
+            unregisterInternal(item);
+        }
+    }
+
+    synchronized void unregisterInternal(FStream stream)
+    {
+        checkConfinedThread();
+
+        final Class<? extends FStream>[] classes = getStreamClass(stream);
+        if (classes == null || classes.length <= 0)
+            return;
+
+        final InternalStreamConnection streamConnection = mMapStreamConnection.remove(new IdentityKey(stream));
+        if (streamConnection == null)
+            return;
+
+        final SerialMailbox mailbox = streamConnection.peekMailbox();
+        if (mailbox != null)
+            mMapRetiredMailbox.put(stream, mailbox);
+
+        final LeakWatcher watcher = mLeakWatcher;
+        if (watcher != null)
+            watcher.onUnregister(stream);
+
+        for (Class<? extends FStream> item : classes)
+        {
+            final StreamHolder holder = mMapStream.get(item);
+            if (holder == null)
+                continue;
+
+            if (holder.remove(streamConnection))
+            {
+                if (holder.size() <= 0)
+                    mMapStream.remove(item);
+
+                if (mIsDebug)
+                {
+                    StreamLog.i(FStream.class.getSimpleName(), "----- unregister"
+                            + " class:" + item.getName()
+                            + " stream:" + stream
+                            + " count:" + (holder.size()));
+                }
+            }
+        }
+    }
+
+    /**
+     * 设置分发记录，null-不记录
+     *
+     * @param journal
+     */
+    public void setDispatchJournal(DispatchJournal journal)
+    {
+        mDispatchJournal = journal;
+    }
+
+    /**
+     * 返回分发记录
+     *
+     * @return
+     */
+    public DispatchJournal getDispatchJournal()
+    {
+        return mDispatchJournal;
+    }
+
+    /**
+     * 设置分发保护，null-不保护，流对象方法抛出的异常会直接抛给调用方
+     *
+     * @param guard
+     */
+    public void setDispatchGuard(DispatchGuard guard)
+    {
+        mDispatchGuard = guard;
+    }
+
+    /**
+     * 返回分发保护
+     *
+     * @return
+     */
+    public DispatchGuard getDispatchGuard()
+    {
+        return mDispatchGuard;
+    }
+
+    /**
+     * 设置注册泄漏检测，只对之后注册的流对象生效
+     *
+     * @param watcher null-不检测
+     */
+    public void setLeakWatcher(LeakWatcher watcher)
+    {
+        mLeakWatcher = watcher;
+    }
+
+    public LeakWatcher getLeakWatcher()
+    {
+        return mLeakWatcher;
+    }
+
+    /**
+     * 设置粘性调用的持久化，会在调用线程读取文件并预加载，{@link Sticky#persist()}
+     * <p>
+     * 建议在应用启动的时候尽早调用，预加载的调用不会覆盖已经保存在内存中的调用
+     *
+     * @param store null-不持久化
+     */
+    public void setStickyStore(StickyStore store)
+    {
+        final List<StickyCache.StickyCall> list = store == null ? null : store.load();
+        mStickyStore = store;
+
+        if (list != null && !list.isEmpty())
+        {
+            final int count = mStickyCache.preload(list);
+            if (mIsDebug)
+                StreamLog.i(FStream.class.getSimpleName(), "preload sticky count:" + count + " file:" + store.getFile());
+        }
+    }
+
+    public StickyStore getStickyStore()
+    {
+        return mStickyStore;
+    }
+
+    /**
+     * 清空流接口保存的粘性调用，包括持久化的调用
+     *
+     * @param clazz
+     */
+    public void clearSticky(Class<? extends FStream> clazz)
+    {
+        mStickyCache.remove(clazz);
+
+        final StickyStore store = mStickyStore;
+        if (store != null)
+            store.remove(clazz);
+    }
+
+    /**
+     * 保存粘性调用，{@link Sticky}
+     */
+    void putSticky(ProxyInvocationHandler handler, Class<? extends FStream> clazz, Method method, Object tag, Object[] args)
+    {
+        final StickyCache.StickyCall call = new StickyCache.StickyCall(clazz, method, tag, args == null ? new Object[0] : args, handler);
+        mStickyCache.put(call);
+
+        final StickyStore store = mStickyStore;
+        if (store != null && StickyCache.isPersist(method))
+            store.put(call);
+    }
+
+    /**
+     * 开始批次，{@link #beginBatch(BatchPolicy)}，默认{@link BatchPolicy#LAST_WINS}
+     */
+    public void beginBatch()
+    {
+        beginBatch(BatchPolicy.LAST_WINS);
+    }
+
+    /**
+     * 在当前线程开始批次
+     * <p>
+     * 批次中代理对象无返回值方法的调用不会立即分发，而是按照代理对象和方法合并，
+     * 在最外层的{@link #endBatch()}统一分发，适用于批量修改状态的时候让监听者只刷新一次。
+     * 批次可以嵌套，嵌套的批次使用最外层批次的策略
+     *
+     * @param policy
+     */
+    public void beginBatch(BatchPolicy policy)
+    {
+        if (policy == null)
+            throw new IllegalArgumentException("policy is null");
+
+        checkConfinedThread();
+
+        DispatchBatch batch = getBatch();
+        if (batch == null)
+        {
+            batch = new DispatchBatch(policy);
+            setBatch(batch);
+        }
+        batch.begin();
+    }
+
+    /**
+     * 结束当前线程的批次，最外层的批次结束的时候分发批次中的调用
+     */
+    public void endBatch()
+    {
+        checkConfinedThread();
+
+        final DispatchBatch batch = getBatch();
+        if (batch == null)
+            throw new IllegalStateException("endBatch() without beginBatch()");
+
+        if (batch.end())
+        {
+            setBatch(null);
+            batch.flush();
+        }
+    }
+
+    /**
+     * 返回当前线程的批次
+     *
+     * @return null-当前线程没有开始批次
+     */
+    DispatchBatch getBatch()
+    {
+        return mConfinedThread != null ? mConfinedBatch : mBatch.get();
+    }
+
+    private void setBatch(DispatchBatch batch)
+    {
+        if (mConfinedThread != null)
+            mConfinedBatch = batch;
+        else if (batch == null)
+            mBatch.remove();
+        else
+            mBatch.set(batch);
+    }
+
+    /**
+     * 设置单线程模式
+     * <p>
+     * 所有流对象的注册，绑定和代理对象的调用都只在这个线程发生的时候（例如Android的主线程）可以开启，
+     * 开启之后分发过程不再对流接口加锁，批次也不再使用{@link ThreadLocal}保存。
+     * <p>
+     * 只有分发路径去掉了同步：普通模式下每通知一个流对象都要对流接口加锁一次，这是高频调用的主要同步开销；
+     * 注册，取消注册，绑定和默认流对象仍然加锁，内部容器也仍然是线程安全的实现，这些操作频率低，锁没有竞争的时候开销很小。
+     * 同一个线程向10个流对象分发的基准测试（ConfinedDispatchBenchmark）中，单线程模式每次调用的耗时大约减少40%
+     * <p>
+     * 调试模式下（{@link #setDebug(boolean)}）在其他线程访问会立即抛出{@link IllegalStateException}，非调试模式不检查，
+     * 建议在应用启动的时候，注册流对象之前设置
+     * <p>
+     * 串行邮箱（{@link FStream.ProxyBuilder#setMailboxExecutor(java.util.concurrent.Executor)}）和尾部节流（{@link FStream.ThrottleMode#TRAILING}）
+     * 会在其他线程调用流对象，开启之后调用这两种代理对象会抛出{@link IllegalStateException}
+     *
+     * @param thread null-取消单线程模式
+     */
+    public synchronized void setConfinedThread(Thread thread)
+    {
+        if (getBatch() != null)
+            throw new IllegalStateException("can not change confined thread during batch");
+
+        mConfinedThread = thread;
+        mConfinedBatch = null;
+    }
+
+    /**
+     * 返回单线程模式的线程，{@link #setConfinedThread(Thread)}
+     *
+     * @return null-不是单线程模式
+     */
+    public Thread getConfinedThread()
+    {
+        return mConfinedThread;
+    }
+
+    boolean isConfined()
+    {
+        return mConfinedThread != null;
+    }
+
+    /**
+     * 调试模式下检查当前线程是否是单线程模式的线程
+     */
+    void checkConfinedThread()
+    {
+        final Thread thread = mConfinedThread;
+        if (thread == null || !mIsDebug)
+            return;
+
+        final Thread current = Thread.currentThread();
+        if (current != thread)
+        {
+            throw new IllegalStateException("FStreamManager is confined to thread:" + thread.getName()
+                    + " but accessed from thread:" + current.getName());
+        }
+    }
+
+    MainThreadDispatcher getMainThreadDispatcher()
+    {
+        return mMainThreadDispatcher;
+    }
+
+    /**
+     * 返回流对象绑定的目标对象
+     *
+     * @param stream
+     * @return null-未绑定或者目标对象已经被回收
+     */
+    Object getBindTarget(FStream stream)
+    {
+        final StreamBinder<?> binder = mMapStreamBinder.get(stream);
+        return binder == null ? null : binder.getTarget();
+    }
+
+    /**
+     * 返回某个流接口的流对象
+     *
+     * @param clazz
+     * @return
+     */
+    StreamHolder getStreamHolder(Class<? extends FStream> clazz)
+    {
+        return mMapStream.get(clazz);
+    }
+
+    /**
+     * 返回流对象连接对象
+     *
+     * @param stream
+     * @return
+     */
+    public StreamConnection getConnection(FStream stream)
+    {
+        if (stream == null)
+            return null;
+        return mMapStreamConnection.get(new IdentityKey(stream));
+    }
+
+    /**
+     * 设置某个流接口是否根据命中次数自适应排序
+     * <p>
+     * 开启之后，会统计每个流对象返回值被{@link FStream.ProxyBuilder#setFirstResponder(FStream.ResultPredicate)}接受
+     * 或者调用{@link StreamConnection#breakDispatch(Class)}的次数，定期在同一个优先级内把命中次数多的流对象排在前面
+     *
+     * @param clazz
+     * @param adaptive
+     */
+    public synchronized void setAdaptiveOrdering(Class<? extends FStream> clazz, boolean adaptive)
+    {
+        checkFStreamClass(clazz);
+
+        if (adaptive)
+            mAdaptiveOrderingClass.add(clazz);
+        else
+            mAdaptiveOrderingClass.remove(clazz);
+
+        final StreamHolder holder = mMapStream.get(clazz);
+        if (holder != null)
+            holder.setAdaptiveOrdering(adaptive);
+    }
+
+    /**
+     * 返回某个流接口的命中统计，只有开启了{@link #setAdaptiveOrdering(Class, boolean)}才会统计
+     *
+     * @param clazz
+     * @return
+     */
+    public HitStatistics getHitStatistics(Class<? extends FStream> clazz)
+    {
+        final StreamHolder holder = mMapStream.get(clazz);
+        if (holder == null)
+            return new HitStatistics(0, new IdentityHashMap<FStream, Integer>());
+
+        final Map<FStream, Integer> map = new IdentityHashMap<>();
+        for (StreamConnection item : holder.toConnectionList())
+        {
+            map.put(item.getStream(), item.getHitCount(clazz));
+        }
+        return new HitStatistics(holder.getDispatchCount(), map);
+    }
+
+    private final class InternalStreamConnection extends StreamConnection
+    {
+        InternalStreamConnection(FStream stream, Class<? extends FStream>[] classes)
+        {
+            super(stream, classes);
+        }
+
+        @Override
+        protected void onPriorityChanged(int priority, FStream stream, Class<? extends FStream> clazz)
+        {
+            final StreamHolder holder = mMapStream.get(clazz);
+            if (holder != null)
+                holder.onPriorityChanged(priority, this, clazz);
+        }
+
+        @Override
+        protected void onTagChanged(FStream stream, Class<? extends FStream> clazz)
+        {
+            final StreamHolder holder = mMapStream.get(clazz);
+            if (holder != null)
+                holder.onTagChanged(this);
+        }
+    }
+
+    private static final Map<Class<?>, Class<? extends FStream>[]> MAP_STREAM_CLASS = new ConcurrentHashMap<>();
+
+    private static boolean checkBindStream(FStream stream)
+    {
+        final Class<? extends FStream>[] classes = getStreamClass(stream, true);
+        return classes.length > 0;
+    }
+
+    private static Class<? extends FStream>[] getStreamClass(FStream stream)
+    {
+        return getStreamClass(stream, false);
+    }
+
+    private static Class<? extends FStream>[] getStreamClass(FStream stream, boolean getOne)
+    {
+        checkProxyStream(stream);
+        final Class<?> sourceClass = stream.getClass();
+
+        if (!getOne)
+        {
+            // 同一个实现类的流对象共享一个数组，大量注册同一类流对象的时候不重复创建
+            final Class<? extends FStream>[] cache = MAP_STREAM_CLASS.get(sourceClass);
+            if (cache != null)
+                return cache;
+        }
+
+        final Set<Class<? extends FStream>> set = findAllStreamClass(sourceClass, getOne);
+        // 不能直接创建泛型数组，数组里只有findAllStreamClass()找到的流接口
+        @SuppressWarnings("unchecked")
+        final Class<? extends FStream>[] classes = (Class<? extends FStream>[]) set.toArray(new Class<?>[set.size()]);
+        if (!getOne)
+            MAP_STREAM_CLASS.put(sourceClass, classes);
+
+        return classes;
+    }
+
+    private static Set<Class<? extends FStream>> findAllStreamClass(Class<?> clazz, boolean getOne)
+    {
+        final Set<Class<? extends FStream>> set = new HashSet<>();
+
+        while (true)
+        {
+            if (clazz == null)
+                break;
+            if (!FStream.class.isAssignableFrom(clazz))
+                break;
+            if (clazz.isInterface())
+                throw new RuntimeException("clazz must not be an interface");
+
+            for (Class<?> item : clazz.getInterfaces())
+            {
+                if (FStream.class.isAssignableFrom(item) && FStream.class != item)
+                {
+                    set.add((Class<? extends FStream>) item);
+
+                    if (getOne && set.size() > 0)
+                        return set;
+                }
+            }
+
+            clazz = clazz.getSuperclass();
+        }
+
+        return set;
+    }
+
+    /**
+     * 生成代理对象
+     *
+     * @param builder
+     * @return
+     */
+    FStream newProxyInstance(FStream.ProxyBuilder builder)
+    {
+        final Class<?> clazz = builder.mClass;
+        final InvocationHandler handler = new ProxyInvocationHandler(this, builder);
+        return (FStream) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, handler);
+    }
+
+    //---------- default stream start ----------
+
+    private final Map<Class<? extends FStream>, Class<? extends FStream>> mMapDefaultStreamClass = new ConcurrentHashMap<>();
+    private DefaultStreamFactory mDefaultStreamFactory;
+
+    /**
+     * 注册默认的流接口实现类
+     * <p>
+     * {@link DefaultStreamFactory}
+     *
+     * @param clazz
+     */
+    public synchronized void registerDefaultStream(Class<? extends FStream> clazz)
+    {
+        checkFStreamClass(clazz);
+        checkProxyClass(clazz);
+
+        final Set<Class<? extends FStream>> set = findAllStreamClass(clazz, false);
+        if (set.isEmpty())
+            throw new IllegalArgumentException("stream class was not found in " + clazz);
+
+        for (Class<? extends FStream> item : set)
+        {
+            mMapDefaultStreamClass.put(item, clazz);
+        }
+    }
+
+    /**
+     * 取消注册默认的流接口实现类
+     *
+     * @param clazz
+     */
+    public synchronized void unregisterDefaultStream(Class<? extends FStream> clazz)
+    {
+        checkFStreamClass(clazz);
+        checkProxyClass(clazz);
+
+        final Set<Class<? extends FStream>> set = findAllStreamClass(clazz, false);
+        if (set.isEmpty())
+            return;
+
+        for (Class<? extends FStream> item : set)
+        {
+            mMapDefaultStreamClass.remove(item);
+        }
+    }
+
+    /**
+     * 设置{@link DefaultStreamFactory}
+     *
+     * @param defaultStreamFactory
+     */
+    public synchronized void setDefaultStreamFactory(DefaultStreamFactory defaultStreamFactory)
+    {
+        mDefaultStreamFactory = defaultStreamFactory;
+    }
+
+    synchronized FStream getDefaultStream(Class<? extends FStream> clazz)
+    {
+        final Class<? extends FStream> defaultClass = mMapDefaultStreamClass.get(clazz);
+        if (defaultClass == null)
+            return null;
+
+        if (mDefaultStreamFactory == null)
+            mDefaultStreamFactory = new WeakCacheDefaultStreamFactory();
+
+        final DefaultStreamFactory.CreateParam param = new DefaultStreamFactory.CreateParam(clazz, defaultClass);
+        final FStream stream = mDefaultStreamFactory.create(param);
+        if (stream == null)
+            throw new RuntimeException(mDefaultStreamFactory + " create null for param:" + param);
+
+        return stream;
+    }
+
+    //---------- default stream end ----------
+
+    private static void checkProxyClass(Class<?> clazz)
+    {
+        if (Proxy.isProxyClass(clazz))
+            throw new IllegalArgumentException("proxy class is not supported");
+    }
+
+    /**
+     * 代理对象不能作为流对象，其他{@link InvocationHandler}生成的动态代理对象可以作为流对象，例如跨进程的远程流对象
+     *
+     * @param stream
+     */
+    private static void checkProxyStream(FStream stream)
+    {
+        if (Proxy.isProxyClass(stream.getClass()) && Proxy.getInvocationHandler(stream) instanceof ProxyInvocationHandler)
+            throw new IllegalArgumentException("proxy instance is not supported");
+    }
+
+    private static void checkFStreamClass(Class<?> clazz)
+    {
+        if (clazz == FStream.class)
+            throw new IllegalArgumentException("class must not be " + FStream.class);
+    }
+
+    /**
+     * 批次中调用的合并策略，{@link #beginBatch(BatchPolicy)}
+     */
+    public enum BatchPolicy
+    {
+        /**
+         * 同一个代理对象同一个方法的调用只分发最后一次
+         */
+        LAST_WINS,
+        /**
+         * 分发所有调用，只是推迟到批次结束
+         */
+        ALL_CALLS
+    }
+}
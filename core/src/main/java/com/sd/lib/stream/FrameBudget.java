@@ -0,0 +1,157 @@
+package com.sd.lib.stream;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 主线程分发的帧预算
+ * <p>
+ * 主线程上分发无返回值的方法时，如果累计耗时超过预算，剩下的流对象（按{@link StreamHolder}中的顺序，优先级低的在后面）
+ * 会延后到下一帧继续分发（{@link StreamPlatform#postFrame(Runnable)}），避免一次广播占用太多帧时间。
+ * 同一个帧预算对象延后的分发按顺序在下一帧一起执行并且共用一个预算，用完之后剩下的继续延后到再下一帧
+ * <p>
+ * {@link FStream.ProxyBuilder#setFrameBudget(FrameBudget)}
+ */
+public class FrameBudget
+{
+    /** 默认预算，一帧的时间 */
+    public static final long DEFAULT_BUDGET = 16;
+
+    private final long mBudgetNanos;
+
+    private final AtomicLong mDeferredCount = new AtomicLong();
+    private final AtomicLong mDeferredDispatchCount = new AtomicLong();
+
+    /** 延后的分发，只在主线程访问 */
+    private final ArrayDeque<DeferredWork> mDeferredQueue = new ArrayDeque<>();
+    private boolean mIsFrameScheduled;
+
+    public FrameBudget()
+    {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * @param budget 预算（毫秒）
+     */
+    public FrameBudget(long budget)
+    {
+        if (budget <= 0)
+            throw new IllegalArgumentException("budget must be greater than 0");
+
+        mBudgetNanos = budget * 1000000L;
+    }
+
+    /**
+     * 返回预算（毫秒）
+     *
+     * @return
+     */
+    public long getBudget()
+    {
+        return mBudgetNanos / 1000000L;
+    }
+
+    /**
+     * 返回被延后分发的流对象数量（每延后一个流对象加1）
+     *
+     * @return
+     */
+    public long getDeferredCount()
+    {
+        return mDeferredCount.get();
+    }
+
+    /**
+     * 返回被拆分到多帧执行的分发次数
+     *
+     * @return
+     */
+    public long getDeferredDispatchCount()
+    {
+        return mDeferredDispatchCount.get();
+    }
+
+    long getBudgetNanos()
+    {
+        return mBudgetNanos;
+    }
+
+    void onDeferred(int count, boolean isFirst)
+    {
+        mDeferredCount.addAndGet(count);
+        if (isFirst)
+            mDeferredDispatchCount.incrementAndGet();
+    }
+
+    /**
+     * 延后到下一帧执行，需要在主线程调用
+     *
+     * @param work
+     */
+    void defer(DeferredWork work)
+    {
+        mDeferredQueue.offerLast(work);
+        scheduleFrame();
+    }
+
+    private void scheduleFrame()
+    {
+        if (mIsFrameScheduled)
+            return;
+
+        mIsFrameScheduled = true;
+        StreamPlatform.get().postFrame(mFrameTask);
+    }
+
+    private final Runnable mFrameTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            mIsFrameScheduled = false;
+
+            final long frameStart = System.nanoTime();
+            try
+            {
+                while (!mDeferredQueue.isEmpty())
+                {
+                    if (System.nanoTime() - frameStart > mBudgetNanos)
+                        break;
+
+                    final DeferredWork work = mDeferredQueue.peekFirst();
+                    boolean done = true;
+                    try
+                    {
+                        done = work.run(frameStart);
+                    } catch (RuntimeException e)
+                    {
+                        StreamLog.e(FStream.class.getSimpleName(), "deferred dispatch error", e);
+                    }
+
+                    if (!done)
+                        break;
+                    mDeferredQueue.pollFirst();
+                }
+            } finally
+            {
+                if (!mDeferredQueue.isEmpty())
+                    scheduleFrame();
+            }
+        }
+    };
+
+    /**
+     * 延后的分发
+     */
+    interface DeferredWork
+    {
+        /**
+         * 继续分发
+         *
+         * @param frameStart 这一帧开始执行延后分发的时间（{@link System#nanoTime()}），用来计算剩余的预算
+         * @return false-预算用完了，还有没分发的流对象
+         */
+        boolean run(long frameStart);
+    }
+}
@@ -0,0 +1,49 @@
+package com.sd.lib.stream;
+
+import java.util.Map;
+
+/**
+ * 流接口的命中统计
+ * <p>
+ * {@link FStreamManager#setAdaptiveOrdering(Class, boolean)}
+ */
+public class HitStatistics
+{
+    /**
+     * 分发次数
+     */
+    public final long dispatchCount;
+    /**
+     * 每个流对象的命中次数，key按对象地址比较
+     */
+    public final Map<FStream, Integer> hitCount;
+
+    HitStatistics(long dispatchCount, Map<FStream, Integer> hitCount)
+    {
+        this.dispatchCount = dispatchCount;
+        this.hitCount = hitCount;
+    }
+
+    /**
+     * 返回某个流对象的命中率
+     *
+     * @param stream
+     * @return
+     */
+    public float getHitRate(FStream stream)
+    {
+        if (dispatchCount <= 0)
+            return 0;
+
+        final Integer count = hitCount.get(stream);
+        return count == null ? 0 : (float) count / dispatchCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return super.toString() + "\r\n" +
+                " dispatchCount:" + dispatchCount + "\r\n" +
+                " hitCount:" + hitCount;
+    }
+}
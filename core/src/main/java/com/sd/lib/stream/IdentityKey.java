@@ -0,0 +1,44 @@
+package com.sd.lib.stream;
+
+import java.lang.ref.Reference;
+
+/**
+ * 按对象地址比较的key，不依赖对象的{@link Object#equals(Object)}和{@link Object#hashCode()}
+ */
+final class IdentityKey
+{
+    private final Object mObject;
+    private final int mHashCode;
+
+    public IdentityKey(Object object)
+    {
+        if (object == null)
+            throw new IllegalArgumentException("object is null");
+
+        mObject = object;
+        mHashCode = System.identityHashCode(object);
+    }
+
+    public Object get()
+    {
+        return mObject;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (obj instanceof IdentityKey)
+            return ((IdentityKey) obj).mObject == mObject;
+        if (obj instanceof Reference)
+            return ((Reference<?>) obj).get() == mObject;
+        return false;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return mHashCode;
+    }
+}
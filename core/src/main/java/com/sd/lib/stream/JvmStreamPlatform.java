@@ -0,0 +1,133 @@
+package com.sd.lib.stream;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 普通JVM平台
+ * <p>
+ * 没有系统的主线程，用一个名为"FStream-main"的后台线程作为主线程，{@link MainThreadDispatch}的方法在这个线程分发
+ */
+final class JvmStreamPlatform extends StreamPlatform
+{
+    private volatile Thread mMainThread;
+    private final ScheduledThreadPoolExecutor mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            final Thread thread = new Thread(r, "FStream-main");
+            thread.setDaemon(true);
+            mMainThread = thread;
+            return thread;
+        }
+    });
+
+    /**
+     * 同一个任务可能被提交多次，每次提交对应一个{@link MainTask}，{@link #removeMain(Runnable)}要全部取消
+     */
+    private final Map<Runnable, List<MainTask>> mMapTask = new IdentityHashMap<>();
+
+    public JvmStreamPlatform()
+    {
+        mExecutor.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public boolean isMainThread()
+    {
+        return Thread.currentThread() == mMainThread;
+    }
+
+    @Override
+    public void postMain(Runnable task, long delay)
+    {
+        synchronized (mMapTask)
+        {
+            final MainTask mainTask = new MainTask(task);
+            mainTask.nFuture = mExecutor.schedule(mainTask, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+
+            List<MainTask> list = mMapTask.get(task);
+            if (list == null)
+            {
+                list = new ArrayList<>(1);
+                mMapTask.put(task, list);
+            }
+            list.add(mainTask);
+        }
+    }
+
+    @Override
+    public void removeMain(Runnable task)
+    {
+        final List<MainTask> list;
+        synchronized (mMapTask)
+        {
+            list = mMapTask.remove(task);
+        }
+        if (list == null)
+            return;
+
+        for (MainTask item : list)
+        {
+            item.nFuture.cancel(false);
+        }
+    }
+
+    @Override
+    public void log(int level, String tag, String msg, Throwable e)
+    {
+        final Level logLevel;
+        if (level == StreamLog.ERROR)
+            logLevel = Level.SEVERE;
+        else if (level == StreamLog.WARN)
+            logLevel = Level.WARNING;
+        else
+            logLevel = Level.INFO;
+
+        Logger.getLogger(tag).log(logLevel, msg, e);
+    }
+
+    private final class MainTask implements Runnable
+    {
+        private final Runnable nTask;
+        private ScheduledFuture<?> nFuture;
+
+        public MainTask(Runnable task)
+        {
+            nTask = task;
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized (mMapTask)
+            {
+                final List<MainTask> list = mMapTask.get(nTask);
+                if (list != null)
+                {
+                    list.remove(this);
+                    if (list.isEmpty())
+                        mMapTask.remove(nTask);
+                }
+            }
+
+            try
+            {
+                nTask.run();
+            } catch (RuntimeException | Error e)
+            {
+                // 线程池会吞掉任务抛出的异常，这里打印出来
+                StreamLog.e(FStream.class.getSimpleName(), "main thread task error:" + nTask, e);
+            }
+        }
+    }
+}
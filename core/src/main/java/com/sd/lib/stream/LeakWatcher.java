@@ -0,0 +1,315 @@
+package com.sd.lib.stream;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 注册泄漏检测
+ * <p>
+ * 记录流对象的注册位置（按间隔采样的调用栈），流对象所属的生命周期对象（Android平台为Activity，
+ * 绑定的流对象为绑定的目标对象，未绑定的流对象从字段中查找Activity或者View）销毁之后，流对象还处于注册状态的话通知{@link Callback#onLeak}；
+ * 还可以给流接口设置注册数量的预算，超过预算的时候通知{@link Callback#onBudgetExceeded}
+ * <p>
+ * 有额外的开销，建议只在调试的时候开启，{@link FStreamManager#setLeakWatcher(LeakWatcher)}
+ */
+public class LeakWatcher
+{
+    /**
+     * 默认的检查延迟（毫秒）
+     */
+    public static final long DEFAULT_CHECK_DELAY = 5000;
+
+    private final Map<IdentityKey, Record> mMapRecord = new ConcurrentHashMap<>();
+    private final Map<Class<? extends FStream>, Integer> mMapBudget = new ConcurrentHashMap<>();
+    private final AtomicInteger mRegisterCount = new AtomicInteger();
+
+    private volatile int mSampleInterval = 1;
+    private volatile long mCheckDelay = DEFAULT_CHECK_DELAY;
+    private volatile Callback mCallback;
+
+    /**
+     * 设置注册位置的采样间隔，0-不记录，1-每次注册都记录，n-每n次注册记录一次，默认1
+     *
+     * @param interval
+     */
+    public void setSampleInterval(int interval)
+    {
+        if (interval < 0)
+            throw new IllegalArgumentException("interval must not be less than 0");
+        mSampleInterval = interval;
+    }
+
+    /**
+     * 设置生命周期对象销毁之后延迟多久检查（毫秒），给正常的取消注册留出时间，默认{@link #DEFAULT_CHECK_DELAY}
+     *
+     * @param delay
+     */
+    public void setCheckDelay(long delay)
+    {
+        mCheckDelay = delay < 0 ? 0 : delay;
+    }
+
+    /**
+     * 设置流接口的注册数量预算
+     *
+     * @param clazz
+     * @param budget 小于等于0-取消预算
+     */
+    public void setBudget(Class<? extends FStream> clazz, int budget)
+    {
+        if (clazz == null)
+            throw new IllegalArgumentException("clazz is null");
+
+        if (budget <= 0)
+            mMapBudget.remove(clazz);
+        else
+            mMapBudget.put(clazz, budget);
+    }
+
+    /**
+     * 设置回调
+     *
+     * @param callback
+     */
+    public void setCallback(Callback callback)
+    {
+        mCallback = callback;
+    }
+
+    /**
+     * 返回流对象的注册位置
+     *
+     * @param stream
+     * @return null-流对象未注册或者这次注册没有被采样
+     */
+    public Throwable getRegistrationSite(FStream stream)
+    {
+        final Record record = mMapRecord.get(new IdentityKey(stream));
+        return record == null ? null : record.nSite;
+    }
+
+    /**
+     * 返回正在监测的流对象数量
+     *
+     * @return
+     */
+    public int size()
+    {
+        return mMapRecord.size();
+    }
+
+    /**
+     * 检查所有流对象，生命周期对象已经销毁但是流对象还处于注册状态的话通知{@link Callback#onLeak}，每个流对象只通知一次
+     * <p>
+     * Android平台在Activity销毁之后会自动检查，也可以手动调用
+     *
+     * @return 这次发现的泄漏数量
+     */
+    public int check()
+    {
+        final StreamPlatform platform = StreamPlatform.get();
+        final List<Record> listLeak = new ArrayList<>();
+        for (Record item : mMapRecord.values())
+        {
+            if (item.nIsReported)
+                continue;
+
+            final WeakReference<Object> ownerRef = item.nOwner;
+            final Object owner = ownerRef == null ? null : ownerRef.get();
+            if (owner == null)
+                continue;
+
+            if (platform.isLifecycleDestroyed(owner))
+            {
+                item.nIsReported = true;
+                listLeak.add(item);
+            }
+        }
+
+        for (Record item : listLeak)
+        {
+            final Object owner = item.nOwner.get();
+            StreamLog.w(FStream.class.getSimpleName(), "leak stream:" + item.nStream
+                    + " owner:" + owner + " has been destroyed but the stream is still registered", item.nSite);
+
+            final Callback callback = mCallback;
+            if (callback != null)
+                callback.onLeak(item.nStream, owner, item.nSite);
+        }
+        return listLeak.size();
+    }
+
+    private final Runnable mCheckTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            check();
+        }
+    };
+
+    private final Runnable mLifecycleCallback = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            final StreamPlatform platform = StreamPlatform.get();
+            platform.removeMain(mCheckTask);
+            platform.postMain(mCheckTask, mCheckDelay);
+        }
+    };
+
+    /**
+     * 流对象注册
+     *
+     * @param stream
+     * @param classes 流对象实现的流接口
+     * @param manager
+     */
+    void onRegister(FStream stream, Class<? extends FStream>[] classes, FStreamManager manager)
+    {
+        final IdentityKey key = new IdentityKey(stream);
+        if (mMapRecord.containsKey(key))
+            return;
+
+        final int interval = mSampleInterval;
+        final Throwable site = interval > 0 && mRegisterCount.getAndIncrement() % interval == 0
+                ? createSite()
+                : null;
+
+        final Record record = new Record(stream, site);
+        if (mMapRecord.put(key, record) != null)
+            return;
+
+        // 绑定的流对象在目标对象恢复之后重新注册，继续使用目标对象所属的生命周期对象
+        final Object target = manager.getBindTarget(stream);
+        setOwner(record, StreamPlatform.get().getLifecycleOwner(target != null ? target : stream));
+
+        if (mMapBudget.isEmpty())
+            return;
+
+        for (Class<? extends FStream> item : classes)
+        {
+            final Integer budget = mMapBudget.get(item);
+            if (budget == null)
+                continue;
+
+            final StreamHolder holder = manager.getStreamHolder(item);
+            final int count = holder == null ? 0 : holder.size();
+            if (count > budget)
+            {
+                StreamLog.w(FStream.class.getSimpleName(), "register budget exceeded class:" + item.getName()
+                        + " count:" + count
+                        + " budget:" + budget
+                        + " stream:" + stream, site);
+
+                final Callback callback = mCallback;
+                if (callback != null)
+                    callback.onBudgetExceeded(item, count, budget, stream, site);
+            }
+        }
+    }
+
+    /**
+     * 创建注册位置，去掉调用栈顶部库内部的调用
+     */
+    private static Throwable createSite()
+    {
+        final Throwable site = new Throwable("stream registered at");
+        final StackTraceElement[] elements = site.getStackTrace();
+        final String className = LeakWatcher.class.getName();
+        final String packageName = className.substring(0, className.lastIndexOf('.') + 1);
+
+        int start = 0;
+        while (start < elements.length - 1)
+        {
+            final String name = elements[start].getClassName();
+            if (!name.startsWith(packageName) || name.indexOf('.', packageName.length()) >= 0)
+                break;
+            start++;
+        }
+
+        if (start > 0)
+        {
+            final StackTraceElement[] trimmed = new StackTraceElement[elements.length - start];
+            System.arraycopy(elements, start, trimmed, 0, trimmed.length);
+            site.setStackTrace(trimmed);
+        }
+        return site;
+    }
+
+    /**
+     * 流对象绑定到目标对象，目标对象所属的生命周期对象作为流对象的生命周期对象
+     *
+     * @param stream
+     * @param target
+     */
+    void onBind(FStream stream, Object target)
+    {
+        final Record record = mMapRecord.get(new IdentityKey(stream));
+        if (record == null)
+            return;
+
+        setOwner(record, StreamPlatform.get().getLifecycleOwner(target));
+    }
+
+    /**
+     * 流对象取消注册
+     *
+     * @param stream
+     */
+    void onUnregister(FStream stream)
+    {
+        mMapRecord.remove(new IdentityKey(stream));
+    }
+
+    private void setOwner(Record record, Object owner)
+    {
+        if (owner == null)
+            return;
+
+        record.nOwner = new WeakReference<>(owner);
+        StreamPlatform.get().watchLifecycle(owner, mLifecycleCallback);
+    }
+
+    private static final class Record
+    {
+        public final FStream nStream;
+        public final Throwable nSite;
+        public volatile WeakReference<Object> nOwner;
+        public volatile boolean nIsReported;
+
+        public Record(FStream stream, Throwable site)
+        {
+            nStream = stream;
+            nSite = site;
+        }
+    }
+
+    public interface Callback
+    {
+        /**
+         * 流对象所属的生命周期对象已经销毁，但是流对象还处于注册状态
+         *
+         * @param stream
+         * @param owner  生命周期对象
+         * @param site   注册位置，没有采样的话为null
+         */
+        void onLeak(FStream stream, Object owner, Throwable site);
+
+        /**
+         * 流接口的注册数量超过预算
+         *
+         * @param clazz
+         * @param count  当前注册数量
+         * @param budget 预算
+         * @param stream 这次注册的流对象
+         * @param site   注册位置，没有采样的话为null
+         */
+        void onBudgetExceeded(Class<? extends FStream> clazz, int count, int budget, FStream stream, Throwable site);
+    }
+}
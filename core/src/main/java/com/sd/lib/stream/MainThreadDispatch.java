@@ -0,0 +1,22 @@
+package com.sd.lib.stream;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在流接口或者流接口的方法上，表示流对象的方法需要在主线程被通知
+ * <p>
+ * 如果代理对象的方法在非主线程被触发，则这次调用会被放入队列，和其他非主线程的调用一起在主线程的同一个消息中分发；
+ * 在主线程触发的调用依旧是同步分发
+ * <p>
+ * 注意：只对返回值为void的方法有效，有返回值的方法依旧在调用线程同步分发
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface MainThreadDispatch
+{
+}
@@ -0,0 +1,88 @@
+package com.sd.lib.stream;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 主线程分发队列
+ * <p>
+ * 所有非主线程提交的任务都放在同一个无锁队列中，由主线程的一个消息批量执行
+ */
+final class MainThreadDispatcher
+{
+    private final Queue<Runnable> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mCount = new AtomicInteger();
+    private final AtomicBoolean mIsScheduled = new AtomicBoolean();
+
+    /**
+     * 当前线程是否是主线程
+     *
+     * @return
+     */
+    public static boolean isMainThread()
+    {
+        return StreamPlatform.get().isMainThread();
+    }
+
+    /**
+     * 提交任务，任务会在主线程执行
+     *
+     * @param task
+     */
+    public void post(Runnable task)
+    {
+        if (task == null)
+            return;
+
+        mQueue.offer(task);
+        mCount.incrementAndGet();
+        schedule();
+    }
+
+    /**
+     * 队列中等待执行的任务数量
+     *
+     * @return
+     */
+    public int size()
+    {
+        return mCount.get();
+    }
+
+    private void schedule()
+    {
+        if (mIsScheduled.compareAndSet(false, true))
+            StreamPlatform.get().postMain(mDrainRunnable, 0);
+    }
+
+    private final Runnable mDrainRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            mIsScheduled.set(false);
+
+            // 只执行本次消息开始时已经在队列中的任务，之后提交的任务放到下一个消息执行，避免长时间占用主线程
+            int count = mCount.get();
+            try
+            {
+                while (count > 0)
+                {
+                    final Runnable task = mQueue.poll();
+                    if (task == null)
+                        break;
+
+                    mCount.decrementAndGet();
+                    count--;
+                    task.run();
+                }
+            } finally
+            {
+                if (mCount.get() > 0)
+                    schedule();
+            }
+        }
+    };
+}
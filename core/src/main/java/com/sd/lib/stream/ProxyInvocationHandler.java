@@ -0,0 +1,975 @@
+package com.sd.lib.stream;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代理对象方法调用处理
+ */
+final class ProxyInvocationHandler implements InvocationHandler
+{
+    private final FStreamManager mManager;
+
+    private final Class<? extends FStream> mClass;
+    private final Object mTag;
+    private final StreamTag mTagPattern;
+    private final boolean mIsTagPrefix;
+    private final FStream.DispatchCallback mDispatchCallback;
+    private final FStream.ResultFilter mResultFilter;
+    private final DispatchQueue mDispatchQueue;
+    private final Executor mMailboxExecutor;
+    private final SerialMailbox mDefaultStreamMailbox;
+    private final FStream.ResultPredicate mFirstResponder;
+    private final FrameBudget mFrameBudget;
+    private final boolean mIsDistinctUntilChanged;
+    private final long mThrottleInterval;
+    private final FStream.ThrottleMode mThrottleMode;
+    private final boolean mIsCacheTagMatch;
+
+    private final boolean mIsMainThreadClass;
+    private final Map<Method, Boolean> mMapMainThreadMethod = new ConcurrentHashMap<>();
+    private final Map<Method, Object[]> mMapLastArgs = new HashMap<>();
+    private final ConcurrentHashMap<Method, ThrottleState> mMapThrottleState = new ConcurrentHashMap<>();
+    /** 每个方法还没分发完的延后分发，只在主线程访问 */
+    private final Map<Method, DeferredTask> mMapDeferred = new HashMap<>();
+
+    private volatile DispatchPlan mDispatchPlan;
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    public ProxyInvocationHandler(FStreamManager manager, FStream.ProxyBuilder builder)
+    {
+        mManager = manager;
+
+        mClass = builder.mClass;
+        mTag = builder.mTag;
+        mTagPattern = mTag instanceof StreamTag ? (StreamTag) mTag : null;
+        mIsTagPrefix = builder.mIsTagPrefix;
+        mDispatchCallback = builder.mDispatchCallback;
+        mResultFilter = builder.mResultFilter;
+        mDispatchQueue = builder.mDispatchQueue;
+        mMailboxExecutor = builder.mMailboxExecutor;
+        mDefaultStreamMailbox = mMailboxExecutor == null ? null : new SerialMailbox();
+        mFirstResponder = builder.mFirstResponder;
+        mFrameBudget = builder.mFrameBudget;
+        mIsDistinctUntilChanged = builder.mIsDistinctUntilChanged;
+        mThrottleInterval = builder.mThrottleInterval;
+        mThrottleMode = builder.mThrottleInterval > 0 ? builder.mThrottleMode : null;
+        mIsCacheTagMatch = builder.mIsCacheTagMatch;
+
+        mIsMainThreadClass = mClass.isAnnotationPresent(MainThreadDispatch.class);
+    }
+
+    private boolean checkTag(FStream stream)
+    {
+        final Object tag = stream.getTagForStream(mClass);
+        if (mTagPattern != null)
+            return tag instanceof StreamTag && mTagPattern.matches((StreamTag) tag, mIsTagPrefix);
+
+        if (mTag == tag)
+            return true;
+
+        return mTag != null && mTag.equals(tag);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        mManager.checkConfinedThread();
+        checkConfinedMode();
+
+        final String methodName = method.getName();
+        final Class<?> returnType = method.getReturnType();
+
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        if ("getTagForStream".equals(methodName)
+                && parameterTypes.length == 1 && parameterTypes[0] == Class.class)
+        {
+            throw new RuntimeException(methodName + " method can not be called on proxy instance");
+        }
+
+
+        final boolean isVoid = returnType == void.class || returnType == Void.class;
+        if (isVoid && mThrottleMode != null)
+        {
+            if (!throttle(method, args))
+                return null;
+        }
+
+        return dispatch(isVoid, returnType, method, args);
+    }
+
+    /**
+     * 尾部节流和串行邮箱会在其他线程调用流对象，单线程模式下不支持
+     */
+    private void checkConfinedMode()
+    {
+        if (!mManager.isConfined())
+            return;
+
+        if (mMailboxExecutor != null)
+            throw new IllegalStateException("mailbox proxy is not supported in confined mode class:" + mClass.getName());
+        if (mThrottleMode == FStream.ThrottleMode.TRAILING)
+            throw new IllegalStateException("trailing throttle proxy is not supported in confined mode class:" + mClass.getName());
+    }
+
+    private Object dispatch(boolean isVoid, Class<?> returnType, Method method, Object[] args) throws Throwable
+    {
+        if (isVoid)
+        {
+            final DispatchBatch batch = mManager.getBatch();
+            if (batch != null)
+            {
+                batch.add(this, method, args);
+
+                if (mManager.isDebug())
+                    StreamLog.i(FStream.class.getSimpleName(), "add to batch " + method + " class:" + mClass.getName() + " size:" + batch.size());
+                return null;
+            }
+        }
+
+        return dispatchInternal(isVoid, returnType, method, args);
+    }
+
+    /**
+     * 分发批次中保存的调用，{@link DispatchBatch#flush()}
+     *
+     * @param method
+     * @param args
+     */
+    void dispatchBatchCall(Method method, Object[] args)
+    {
+        try
+        {
+            dispatchInternal(true, method.getReturnType(), method, args);
+        } catch (Throwable e)
+        {
+            throw wrapException(e);
+        }
+    }
+
+    private Object dispatchInternal(boolean isVoid, Class<?> returnType, Method method, Object[] args) throws Throwable
+    {
+        if (isVoid && mIsDistinctUntilChanged)
+        {
+            if (!distinct(method, args))
+            {
+                if (mManager.isDebug())
+                    StreamLog.i(FStream.class.getSimpleName(), "distinct until changed, drop " + method + " class:" + mClass.getName());
+                return null;
+            }
+        }
+
+        if (isVoid && StickyCache.isSticky(method))
+            mManager.putSticky(this, mClass, method, mTag, args);
+
+        if (isVoid && isMainThreadMethod(method) && !MainThreadDispatcher.isMainThread())
+        {
+            final MainThreadDispatcher dispatcher = mManager.getMainThreadDispatcher();
+            final MainThreadTask task = new MainThreadTask(method, args);
+            if (mDispatchQueue == null)
+            {
+                dispatcher.post(task);
+            } else
+            {
+                if (!mDispatchQueue.offer(this, method, task, dispatcher))
+                {
+                    if (mManager.isDebug())
+                        StreamLog.i(FStream.class.getSimpleName(), "dispatch queue overflow, drop " + method + " class:" + mClass.getName()
+                                + " dropped:" + mDispatchQueue.getDroppedCount());
+                    return null;
+                }
+            }
+
+            if (mManager.isDebug())
+                StreamLog.i(FStream.class.getSimpleName(), "post to main thread " + method + " class:" + mClass.getName());
+
+            return null;
+        }
+
+        if (isVoid && mMailboxExecutor != null)
+        {
+            processMailbox(method, args);
+            return null;
+        }
+
+        Object result = processMainLogic(isVoid, method, args);
+
+
+        if (isVoid)
+        {
+            result = null;
+        } else if (returnType.isPrimitive() && result == null)
+        {
+            if (boolean.class == returnType)
+                result = false;
+            else
+                result = 0;
+
+            if (mManager.isDebug())
+                StreamLog.i(FStream.class.getSimpleName(), "return type:" + returnType + " but method result is null, so set to " + result
+                        + " class:" + mClass.getName());
+        }
+
+        if (mManager.isDebug())
+            StreamLog.i(FStream.class.getSimpleName(), "notify finish return:" + result + " class:" + mClass.getName());
+
+        return result;
+    }
+
+    /**
+     * 参数和上一次分发的参数相同的话返回false
+     */
+    private boolean distinct(Method method, Object[] args)
+    {
+        final Object[] realArgs = args == null ? EMPTY_ARGS : args;
+        synchronized (mMapLastArgs)
+        {
+            final Object[] lastArgs = mMapLastArgs.get(method);
+            if (lastArgs != null && Arrays.deepEquals(lastArgs, realArgs))
+                return false;
+
+            mMapLastArgs.put(method, realArgs);
+            return true;
+        }
+    }
+
+    /**
+     * 节流，返回true-立即分发
+     */
+    private boolean throttle(Method method, Object[] args)
+    {
+        ThrottleState state = mMapThrottleState.get(method);
+        if (state == null)
+        {
+            state = new ThrottleState(method);
+            final ThrottleState old = mMapThrottleState.putIfAbsent(method, state);
+            if (old != null)
+                state = old;
+        }
+
+        return state.onCall(args);
+    }
+
+    private boolean isMainThreadMethod(Method method)
+    {
+        if (mIsMainThreadClass)
+            return true;
+
+        Boolean result = mMapMainThreadMethod.get(method);
+        if (result == null)
+        {
+            result = method.isAnnotationPresent(MainThreadDispatch.class);
+            mMapMainThreadMethod.put(method, result);
+        }
+        return result;
+    }
+
+    private final class MainThreadTask implements Runnable
+    {
+        private final Method nMethod;
+        private final Object[] nArgs;
+
+        public MainThreadTask(Method method, Object[] args)
+        {
+            nMethod = method;
+            nArgs = args;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                processMainLogic(true, nMethod, nArgs);
+            } catch (Throwable e)
+            {
+                throw wrapException(e);
+            }
+        }
+    }
+
+    private void processMailbox(Method method, Object[] args)
+    {
+        final StreamHolder holder = mManager.getStreamHolder(mClass);
+        final int holderSize = holder == null ? 0 : holder.size();
+
+        if (mManager.isDebug())
+        {
+            StreamLog.i(FStream.class.getSimpleName(), "mailbox -----> " + method + " " + (args == null ? "" : Arrays.toString(args))
+                    + " tag:" + mTag
+                    + " count:" + holderSize);
+        }
+
+        if (holderSize <= 0)
+        {
+            final FStream stream = mManager.getDefaultStream(mClass);
+            if (stream != null)
+                mDefaultStreamMailbox.post(new MailboxTask(stream, true, method, args), mMailboxExecutor);
+            return;
+        }
+
+        for (FStream item : holder.toCollection())
+        {
+            final StreamConnection connection = mManager.getConnection(item);
+            if (connection == null)
+                continue;
+
+            if (!checkTag(item))
+                continue;
+
+            connection.getMailbox().post(new MailboxTask(item, false, method, args), mMailboxExecutor);
+        }
+    }
+
+    /**
+     * 把粘性调用通知给新注册的流对象，和这个代理对象的普通分发一样处理{@link MainThreadDispatch}、串行邮箱、
+     * {@link DispatchGuard}和{@link FStream.DispatchCallback}
+     * <p>
+     * 真正通知之前如果同一个方法和tag已经有新的调用，新的调用已经或者即将分发给这个流对象，不再通知旧的调用
+     *
+     * @param stream
+     * @param call
+     */
+    void deliverSticky(FStream stream, StickyCache.StickyCall call)
+    {
+        final MailboxTask task = new MailboxTask(stream, false, call.method, call.args, call);
+        if (isMainThreadMethod(call.method) && !MainThreadDispatcher.isMainThread())
+        {
+            mManager.getMainThreadDispatcher().post(task);
+            return;
+        }
+
+        if (mMailboxExecutor != null)
+        {
+            final StreamConnection connection = mManager.getConnection(stream);
+            if (connection != null)
+                connection.getMailbox().post(task, mMailboxExecutor);
+            return;
+        }
+
+        task.run();
+    }
+
+    /**
+     * 通知单个流对象，串行邮箱和粘性调用使用
+     */
+    private final class MailboxTask implements Runnable
+    {
+        private final FStream nStream;
+        private final boolean nIsDefaultStream;
+        private final Method nMethod;
+        private final Object[] nArgs;
+        /** 粘性调用，null-普通调用 */
+        private final StickyCache.StickyCall nSticky;
+
+        public MailboxTask(FStream stream, boolean isDefaultStream, Method method, Object[] args)
+        {
+            this(stream, isDefaultStream, method, args, null);
+        }
+
+        public MailboxTask(FStream stream, boolean isDefaultStream, Method method, Object[] args, StickyCache.StickyCall sticky)
+        {
+            nStream = stream;
+            nIsDefaultStream = isDefaultStream;
+            nMethod = method;
+            nArgs = args;
+            nSticky = sticky;
+        }
+
+        @Override
+        public void run()
+        {
+            final StreamConnection connection = nIsDefaultStream ? null : mManager.getConnection(nStream);
+            if (!nIsDefaultStream && connection == null)
+            {
+                // 投递之前已经取消注册
+                return;
+            }
+
+            if (nSticky != null && !mManager.isStickyLatest(nSticky))
+            {
+                if (mManager.isDebug())
+                    StreamLog.i(FStream.class.getSimpleName(), "newer call exists, skip sticky " + nMethod + " stream:" + nStream);
+                return;
+            }
+
+            if (mDispatchCallback != null)
+                mDispatchCallback.beforeDispatch(nStream, nMethod, nArgs);
+
+            final DispatchGuard guard = mManager.getDispatchGuard();
+            if (guard != null && connection != null && guard.isQuarantined(connection, mClass))
+                return;
+
+            final Object itemResult;
+            if (guard != null)
+            {
+                itemResult = guard.invoke(nStream, connection, mClass, nMethod, nArgs);
+            } else
+            {
+                try
+                {
+                    itemResult = nMethod.invoke(nStream, nArgs);
+                } catch (Throwable e)
+                {
+                    throw wrapException(e);
+                }
+            }
+
+            if (mDispatchCallback != null)
+                mDispatchCallback.afterDispatch(nStream, nMethod, nArgs, itemResult);
+
+            if (mManager.isDebug())
+            {
+                StreamLog.i(FStream.class.getSimpleName(), "mailbox notify"
+                        + " class:" + mClass.getName()
+                        + " stream:" + nStream);
+            }
+        }
+    }
+
+    private static RuntimeException wrapException(Throwable e)
+    {
+        if (e instanceof InvocationTargetException && e.getCause() != null)
+            e = e.getCause();
+
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+
+        return new RuntimeException(e);
+    }
+
+    private Object processMainLogic(final boolean isVoid, final Method method, final Object[] args) throws Throwable
+    {
+        return processMainLogic(isVoid, method, args, null);
+    }
+
+    /**
+     * @param deferred 因为超过帧预算而延后到下一帧的分发，null-正常分发
+     */
+    private Object processMainLogic(final boolean isVoid, final Method method, final Object[] args,
+                                    final DeferredTask deferred) throws Throwable
+    {
+        if (deferred == null && isVoid && mFrameBudget != null && MainThreadDispatcher.isMainThread())
+        {
+            // 先分发完上一次调用延后的部分，否则延后的流对象会先收到这次调用，再收到上一次调用
+            final DeferredTask pending = mMapDeferred.remove(method);
+            if (pending != null)
+                pending.flush();
+        }
+
+        final DispatchPlan deferredPlan = deferred == null ? null : deferred.nPlan;
+        final int deferredStart = deferred == null ? 0 : deferred.nStart;
+
+        DispatchPlan plan = deferredPlan;
+        if (plan == null)
+        {
+            final StreamHolder holder = mManager.getStreamHolder(mClass);
+            if (holder != null && holder.size() > 0)
+                plan = getDispatchPlan(holder);
+        }
+
+        if (mManager.isDebug())
+        {
+            StreamLog.i(FStream.class.getSimpleName(), "notify -----> " + method + " " + (args == null ? "" : Arrays.toString(args))
+                    + " tag:" + mTag
+                    + " count:" + (plan == null ? 0 : plan.nStreams.length - deferredStart));
+        }
+
+        boolean isDefaultStream = false;
+        if (plan == null)
+        {
+            final FStream stream = mManager.getDefaultStream(mClass);
+            if (stream == null)
+                return null;
+
+            plan = new DispatchPlan(null, 0, new FStream[]{stream}, null, null);
+            isDefaultStream = true;
+
+            if (mManager.isDebug())
+                StreamLog.i(FStream.class.getSimpleName(), "create default stream:" + stream + " for class:" + mClass.getName());
+        }
+
+        final StreamHolder holder = plan.nHolder;
+        final FStream[] streams = plan.nStreams;
+
+        final boolean firstResponder = mFirstResponder != null && !isVoid;
+        final boolean filterResult = mResultFilter != null && !isVoid && !firstResponder;
+        final List<Object> listResult = filterResult ? new LinkedList<>() : null;
+
+        final boolean adaptiveOrdering = !isDefaultStream && holder.isAdaptiveOrdering();
+        if (adaptiveOrdering && deferredPlan == null)
+            holder.onDispatch();
+
+        final boolean frameBudget = isVoid && mFrameBudget != null && !isDefaultStream && MainThreadDispatcher.isMainThread()
+                && (deferred == null || !deferred.nIsFlushing);
+        // 延后的分发和同一帧中其他延后的分发共用一个预算
+        final long frameStart = !frameBudget ? 0 : (deferred != null ? deferred.nFrameStart : System.nanoTime());
+
+        final boolean confined = mManager.isConfined();
+        final DispatchGuard guard = mManager.getDispatchGuard();
+        final DispatchJournal journal = mManager.getDispatchJournal();
+        final DurationBuffer durationBuffer = journal == null ? null : DURATION_BUFFER.get();
+        final int durationOffset = durationBuffer == null ? 0 : durationBuffer.mSize;
+        final long timestamp = journal == null ? 0 : System.currentTimeMillis();
+
+        Object result = null;
+        int index = 0;
+        try
+        {
+            for (int i = deferredStart; i < streams.length; i++)
+            {
+                final FStream item = streams[i];
+                StreamConnection connection = null;
+                int slot = -1;
+                if (isDefaultStream)
+                {
+                    // 不判断
+                } else
+                {
+                    connection = plan.nConnections[i];
+                    slot = plan.nSlots[i];
+
+                    // 分发过程中有流对象取消注册的话，剩下的流对象需要重新检查
+                    if (holder.getVersion() != plan.nVersion && mManager.getConnection(item) != connection)
+                        continue;
+                }
+
+                if (isDefaultStream || !mIsCacheTagMatch)
+                {
+                    if (!checkTag(item))
+                        continue;
+                }
+
+                if (guard != null && connection != null && guard.isQuarantined(connection, mClass))
+                {
+                    if (mManager.isDebug())
+                        StreamLog.i(FStream.class.getSimpleName(), "quarantined stream skipped class:" + mClass.getName() + " stream:" + item);
+                    continue;
+                }
+
+                if (mDispatchCallback != null)
+                {
+                    if (mDispatchCallback.beforeDispatch(item, method, args))
+                    {
+                        if (mManager.isDebug())
+                            StreamLog.i(FStream.class.getSimpleName(), "proxy broken dispatch before class:" + mClass.getName());
+                        break;
+                    }
+                }
+
+                Object itemResult = null;
+                boolean shouldBreakDispatch = false;
+
+                final long invokeTime = durationBuffer == null ? 0 : System.nanoTime();
+                if (isDefaultStream || firstResponder)
+                {
+                    // 首个响应模式根据返回值停止分发，不需要检查停止分发标志
+                    itemResult = invokeStream(guard, item, connection, method, args);
+                } else if (confined)
+                {
+                    // 单线程模式不会有其他线程同时修改停止分发标志，不需要加锁
+                    connection.resetBreakDispatch(slot);
+
+                    itemResult = invokeStream(guard, item, connection, method, args);
+
+                    shouldBreakDispatch = connection.shouldBreakDispatch(slot);
+                    connection.resetBreakDispatch(slot);
+                } else
+                {
+                    synchronized (mClass)
+                    {
+                        connection.resetBreakDispatch(slot);
+
+                        itemResult = invokeStream(guard, item, connection, method, args);
+
+                        shouldBreakDispatch = connection.shouldBreakDispatch(slot);
+                        connection.resetBreakDispatch(slot);
+                    }
+                }
+                if (durationBuffer != null)
+                    durationBuffer.add(System.nanoTime() - invokeTime);
+
+                if (mManager.isDebug())
+                {
+                    StreamLog.i(FStream.class.getSimpleName(), "notify"
+                            + " index:" + index
+                            + " return:" + (isVoid ? "" : itemResult)
+                            + " class:" + mClass.getName()
+                            + " stream:" + item
+                            + " shouldBreakDispatch:" + shouldBreakDispatch);
+                }
+
+                boolean isAccepted = false;
+                if (firstResponder)
+                {
+                    if (mFirstResponder.accept(method, args, itemResult))
+                    {
+                        result = itemResult;
+                        isAccepted = true;
+
+                        if (mManager.isDebug())
+                            StreamLog.i(FStream.class.getSimpleName(), "first responder index:" + index + " class:" + mClass.getName());
+                    }
+                } else
+                {
+                    result = itemResult;
+                }
+
+                if (filterResult)
+                    listResult.add(itemResult);
+
+                if (mDispatchCallback != null)
+                {
+                    if (mDispatchCallback.afterDispatch(item, method, args, itemResult))
+                    {
+                        if (mManager.isDebug())
+                            StreamLog.i(FStream.class.getSimpleName(), "proxy broken dispatch after class:" + mClass.getName());
+                        break;
+                    }
+                }
+
+                if (shouldBreakDispatch || isAccepted)
+                {
+                    if (adaptiveOrdering)
+                        holder.onHit(connection);
+                    break;
+                }
+
+                index++;
+
+                if (frameBudget && i + 1 < streams.length && System.nanoTime() - frameStart > mFrameBudget.getBudgetNanos())
+                {
+                    if (deferred != null)
+                        deferred.defer(i + 1);
+                    else
+                        deferRemaining(method, args, plan, i + 1);
+                    break;
+                }
+            }
+        } finally
+        {
+            if (durationBuffer != null)
+            {
+                journal.record(mClass, method, mTag, timestamp,
+                        durationBuffer.mData, durationOffset, durationBuffer.mSize - durationOffset);
+                durationBuffer.mSize = durationOffset;
+            }
+        }
+
+        if (filterResult && !listResult.isEmpty())
+        {
+            result = mResultFilter.filter(method, args, listResult);
+
+            if (mManager.isDebug())
+                StreamLog.i(FStream.class.getSimpleName(), "proxy filter result: " + result + " class:" + mClass.getName());
+        }
+
+        return result;
+    }
+
+    /**
+     * 返回分发计划，流对象有变化的话重新生成
+     */
+    private DispatchPlan getDispatchPlan(StreamHolder holder)
+    {
+        final DispatchPlan plan = mDispatchPlan;
+        // 先读取版本号，生成计划的过程中如果有变化，下一次分发会重新生成
+        final int version = holder.getVersion();
+        if (plan != null && plan.nHolder == holder && plan.nVersion == version)
+            return plan;
+
+        // 层级tag直接从索引中查询匹配的流对象
+        final List<StreamConnection> listConnection = mTagPattern == null
+                ? holder.toConnectionList()
+                : holder.queryTag(mTagPattern, mIsTagPrefix);
+        final int size = listConnection.size();
+        FStream[] streams = new FStream[size];
+        StreamConnection[] connections = new StreamConnection[size];
+        int[] slots = new int[size];
+
+        int count = 0;
+        for (StreamConnection connection : listConnection)
+        {
+            final int slot = connection.getSlot(mClass);
+            if (slot < 0)
+                continue;
+
+            final FStream item = connection.getStream();
+            if (mIsCacheTagMatch && mTagPattern == null && !checkTag(item))
+                continue;
+
+            streams[count] = item;
+            connections[count] = connection;
+            slots[count] = slot;
+            count++;
+        }
+
+        if (count < size)
+        {
+            streams = Arrays.copyOf(streams, count);
+            connections = Arrays.copyOf(connections, count);
+            slots = Arrays.copyOf(slots, count);
+        }
+
+        final DispatchPlan newPlan = new DispatchPlan(holder, version, streams, connections, slots);
+        mDispatchPlan = newPlan;
+
+        if (mManager.isDebug())
+            StreamLog.i(FStream.class.getSimpleName(), "create dispatch plan version:" + version + " size:" + newPlan.nStreams.length + " class:" + mClass.getName());
+
+        return newPlan;
+    }
+
+    /**
+     * 分发计划，流对象没有变化的时候重复使用，避免每次分发都查找流对象的连接和流接口的槽位
+     */
+    private static final class DispatchPlan
+    {
+        public final StreamHolder nHolder;
+        public final int nVersion;
+        public final FStream[] nStreams;
+        public final StreamConnection[] nConnections;
+        public final int[] nSlots;
+
+        public DispatchPlan(StreamHolder holder, int version, FStream[] streams,
+                            StreamConnection[] connections, int[] slots)
+        {
+            nHolder = holder;
+            nVersion = version;
+            nStreams = streams;
+            nConnections = connections;
+            nSlots = slots;
+        }
+    }
+
+    private final class ThrottleState implements Runnable
+    {
+        private final Method nMethod;
+
+        private long nWindowEnd;
+        private boolean nIsScheduled;
+        private Object[] nPendingArgs;
+
+        public ThrottleState(Method method)
+        {
+            nMethod = method;
+        }
+
+        public synchronized boolean onCall(Object[] args)
+        {
+            final long now = System.nanoTime() / 1000000L;
+            if (mThrottleMode == FStream.ThrottleMode.LEADING)
+            {
+                if (now < nWindowEnd)
+                    return false;
+
+                nWindowEnd = now + mThrottleInterval;
+                return true;
+            }
+
+            // 尾部节流，窗口结束的时候分发窗口内最后一次调用
+            nPendingArgs = args;
+            if (!nIsScheduled)
+            {
+                nIsScheduled = true;
+                ThrottleScheduler.schedule(this, mThrottleInterval);
+            }
+            return false;
+        }
+
+        @Override
+        public void run()
+        {
+            final Object[] args;
+            synchronized (this)
+            {
+                args = nPendingArgs;
+                nPendingArgs = null;
+                nIsScheduled = false;
+            }
+
+            try
+            {
+                dispatch(true, nMethod.getReturnType(), nMethod, args);
+            } catch (Throwable e)
+            {
+                throw wrapException(e);
+            }
+        }
+    }
+
+    /**
+     * 尾部节流的调度，当前线程有消息循环的话在当前线程执行，否则在共享的后台线程执行
+     */
+    private static final class ThrottleScheduler
+    {
+        private static ScheduledExecutorService sExecutor;
+
+        public static void schedule(Runnable task, long delay)
+        {
+            if (StreamPlatform.get().postCurrent(task, delay))
+                return;
+
+            getExecutor().schedule(task, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private static synchronized ScheduledExecutorService getExecutor()
+        {
+            if (sExecutor == null)
+            {
+                sExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        final Thread thread = new Thread(r, "FStream-throttle");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return sExecutor;
+        }
+    }
+
+    private void deferRemaining(Method method, Object[] args, DispatchPlan plan, int start)
+    {
+        final int count = plan.nStreams.length - start;
+        final DeferredTask task = new DeferredTask(method, args, plan, start);
+        mFrameBudget.onDeferred(count, true);
+        mFrameBudget.defer(task);
+        mMapDeferred.put(method, task);
+
+        if (mManager.isDebug())
+            StreamLog.i(FStream.class.getSimpleName(), "frame budget exceeded, defer " + count + " stream class:" + mClass.getName());
+    }
+
+    /**
+     * 延后到下一帧的分发，{@link FrameBudget}
+     */
+    private final class DeferredTask implements FrameBudget.DeferredWork
+    {
+        private final Method nMethod;
+        private final Object[] nArgs;
+        private final DispatchPlan nPlan;
+        private int nStart;
+        private long nFrameStart;
+        private boolean nIsPending;
+        /** 同一个方法再次分发之前立即分发完，不受预算限制 */
+        private boolean nIsFlushing;
+        private boolean nIsDone;
+
+        public DeferredTask(Method method, Object[] args, DispatchPlan plan, int start)
+        {
+            nMethod = method;
+            nArgs = args;
+            nPlan = plan;
+            nStart = start;
+        }
+
+        /**
+         * 这一帧的预算用完了，剩下的流对象从start开始继续延后
+         */
+        public void defer(int start)
+        {
+            mFrameBudget.onDeferred(nPlan.nStreams.length - start, false);
+            nStart = start;
+            nIsPending = true;
+        }
+
+        /**
+         * 不受预算限制，立即分发剩下的流对象，之后帧预算队列执行到这个任务的时候直接跳过
+         */
+        public void flush() throws Throwable
+        {
+            if (nIsDone)
+                return;
+
+            nIsFlushing = true;
+            try
+            {
+                processMainLogic(true, nMethod, nArgs, this);
+            } finally
+            {
+                nIsFlushing = false;
+                nIsDone = true;
+            }
+        }
+
+        @Override
+        public boolean run(long frameStart)
+        {
+            if (nIsDone)
+                return true;
+
+            nFrameStart = frameStart;
+            nIsPending = false;
+            try
+            {
+                processMainLogic(true, nMethod, nArgs, this);
+            } catch (Throwable e)
+            {
+                nIsDone = true;
+                throw wrapException(e);
+            } finally
+            {
+                if (nIsDone || !nIsPending)
+                {
+                    nIsDone = true;
+                    if (mMapDeferred.get(nMethod) == this)
+                        mMapDeferred.remove(nMethod);
+                }
+            }
+            return !nIsPending;
+        }
+    }
+
+    private Object invokeStream(DispatchGuard guard, FStream stream, StreamConnection connection, Method method, Object[] args) throws Throwable
+    {
+        if (guard == null)
+            return method.invoke(stream, args);
+
+        return guard.invoke(stream, connection, mClass, method, args);
+    }
+
+    private static final ThreadLocal<DurationBuffer> DURATION_BUFFER = new ThreadLocal<DurationBuffer>()
+    {
+        @Override
+        protected DurationBuffer initialValue()
+        {
+            return new DurationBuffer();
+        }
+    };
+
+    /**
+     * 记录流对象方法耗时的缓存，每个线程一个，嵌套分发的时候依次往后使用
+     */
+    private static final class DurationBuffer
+    {
+        public long[] mData = new long[16];
+        public int mSize;
+
+        public void add(long duration)
+        {
+            if (mSize >= mData.length)
+                mData = Arrays.copyOf(mData, mData.length * 2);
+            mData[mSize++] = duration;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sd.lib.stream;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 串行邮箱
+ * <p>
+ * 提交的任务在共享的{@link Executor}上按提交顺序依次执行，同一时刻最多只有一个任务在执行，
+ * 不同邮箱之间的任务可以并行执行
+ */
+final class SerialMailbox
+{
+    /** 每次最多连续执行的任务数量，超过之后重新提交，让其他邮箱有机会执行 */
+    private static final int MAX_BATCH = 64;
+
+    private final Queue<Runnable> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mIsRunning = new AtomicBoolean();
+
+    /**
+     * 提交任务
+     *
+     * @param task
+     * @param executor
+     */
+    public void post(Runnable task, Executor executor)
+    {
+        if (task == null)
+            return;
+
+        mQueue.offer(task);
+        schedule(executor);
+    }
+
+    private void schedule(Executor executor)
+    {
+        if (mQueue.isEmpty())
+            return;
+
+        if (mIsRunning.compareAndSet(false, true))
+        {
+            try
+            {
+                executor.execute(new DrainTask(executor));
+            } catch (RejectedExecutionException e)
+            {
+                mIsRunning.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private final class DrainTask implements Runnable
+    {
+        private final Executor nExecutor;
+
+        public DrainTask(Executor executor)
+        {
+            nExecutor = executor;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for (int i = 0; i < MAX_BATCH; i++)
+                {
+                    final Runnable task = mQueue.poll();
+                    if (task == null)
+                        break;
+
+                    task.run();
+                }
+            } finally
+            {
+                mIsRunning.set(false);
+                schedule(nExecutor);
+            }
+        }
+    }
+}
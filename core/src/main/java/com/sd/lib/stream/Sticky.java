@@ -0,0 +1,26 @@
+package com.sd.lib.stream;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在流接口返回值为void的方法上，表示这个方法是粘性的
+ * <p>
+ * 管理类会按照流接口，方法和代理对象的tag保存代理对象最后一次调用的参数，
+ * 之后注册的流对象如果tag匹配，会在注册的时候收到保存的调用。
+ * 保存的调用按发起调用的代理对象的分发方式通知，例如{@link MainThreadDispatch}的方法在其他线程注册的话提交到主线程通知；
+ * 真正通知之前如果已经有新的调用，则不再通知保存的旧调用
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Sticky
+{
+    /**
+     * 是否持久化，true-保存到{@link FStreamManager#setStickyStore(StickyStore)}设置的文件中，下次启动的时候预加载
+     */
+    boolean persist() default false;
+}
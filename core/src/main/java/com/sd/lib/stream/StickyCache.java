@@ -0,0 +1,209 @@
+package com.sd.lib.stream;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 粘性调用缓存，{@link Sticky}
+ */
+final class StickyCache
+{
+    private static final int STICKY_NONE = 0;
+    private static final int STICKY = 1;
+    private static final int STICKY_PERSIST = 2;
+
+    /** 方法的{@link Sticky}注解，每个方法只读取一次 */
+    private static final Map<Method, Integer> MAP_STICKY_METHOD = new ConcurrentHashMap<>();
+
+    private final Map<Class<? extends FStream>, Map<StickyKey, StickyCall>> mMapCall = new HashMap<>();
+
+    /**
+     * 方法是否是粘性的
+     *
+     * @param method
+     * @return
+     */
+    public static boolean isSticky(Method method)
+    {
+        return getStickyState(method) != STICKY_NONE;
+    }
+
+    /**
+     * 方法是否需要持久化
+     *
+     * @param method
+     * @return
+     */
+    public static boolean isPersist(Method method)
+    {
+        return getStickyState(method) == STICKY_PERSIST;
+    }
+
+    private static int getStickyState(Method method)
+    {
+        Integer result = MAP_STICKY_METHOD.get(method);
+        if (result == null)
+        {
+            final Sticky sticky = method.getAnnotation(Sticky.class);
+            if (sticky == null)
+                result = STICKY_NONE;
+            else
+                result = sticky.persist() ? STICKY_PERSIST : STICKY;
+            MAP_STICKY_METHOD.put(method, result);
+        }
+        return result;
+    }
+
+    /**
+     * 保存调用，覆盖同一个方法和tag之前的调用
+     *
+     * @param call
+     */
+    public synchronized void put(StickyCall call)
+    {
+        Map<StickyKey, StickyCall> map = mMapCall.get(call.clazz);
+        if (map == null)
+        {
+            map = new LinkedHashMap<>();
+            mMapCall.put(call.clazz, map);
+        }
+        map.put(new StickyKey(call.method, call.tag), call);
+    }
+
+    /**
+     * 保存预加载的调用，已经存在的调用不会被覆盖
+     *
+     * @param calls
+     * @return 保存的数量
+     */
+    public synchronized int preload(Collection<StickyCall> calls)
+    {
+        int count = 0;
+        for (StickyCall item : calls)
+        {
+            Map<StickyKey, StickyCall> map = mMapCall.get(item.clazz);
+            if (map == null)
+            {
+                map = new LinkedHashMap<>();
+                mMapCall.put(item.clazz, map);
+            }
+
+            final StickyKey key = new StickyKey(item.method, item.tag);
+            if (!map.containsKey(key))
+            {
+                map.put(key, item);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 调用是否还是同一个方法和tag最新的调用
+     *
+     * @param call
+     * @return false-已经有新的调用或者已经被移除
+     */
+    public synchronized boolean isLatest(StickyCall call)
+    {
+        final Map<StickyKey, StickyCall> map = mMapCall.get(call.clazz);
+        return map != null && map.get(new StickyKey(call.method, call.tag)) == call;
+    }
+
+    /**
+     * 返回流接口下tag匹配的调用
+     *
+     * @param clazz
+     * @param tag
+     * @return
+     */
+    public synchronized List<StickyCall> get(Class<? extends FStream> clazz, Object tag)
+    {
+        final Map<StickyKey, StickyCall> map = mMapCall.get(clazz);
+        if (map == null || map.isEmpty())
+            return Collections.emptyList();
+
+        final List<StickyCall> list = new ArrayList<>(map.size());
+        for (StickyCall item : map.values())
+        {
+            if (item.tag == tag || (item.tag != null && item.tag.equals(tag)))
+                list.add(item);
+        }
+        return list;
+    }
+
+    /**
+     * 移除流接口下所有的调用
+     *
+     * @param clazz
+     */
+    public synchronized void remove(Class<? extends FStream> clazz)
+    {
+        mMapCall.remove(clazz);
+    }
+
+    /**
+     * 一次粘性调用
+     */
+    static final class StickyCall
+    {
+        public final Class<? extends FStream> clazz;
+        public final Method method;
+        public final Object tag;
+        public final Object[] args;
+        /** 发起调用的代理对象，通知新注册的流对象时使用相同的分发方式，null-从文件预加载的调用 */
+        public final ProxyInvocationHandler handler;
+
+        public StickyCall(Class<? extends FStream> clazz, Method method, Object tag, Object[] args)
+        {
+            this(clazz, method, tag, args, null);
+        }
+
+        public StickyCall(Class<? extends FStream> clazz, Method method, Object tag, Object[] args, ProxyInvocationHandler handler)
+        {
+            this.clazz = clazz;
+            this.method = method;
+            this.tag = tag;
+            this.args = args;
+            this.handler = handler;
+        }
+    }
+
+    static final class StickyKey
+    {
+        private final Method nMethod;
+        private final Object nTag;
+
+        public StickyKey(Method method, Object tag)
+        {
+            nMethod = method;
+            nTag = tag;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof StickyKey))
+                return false;
+
+            final StickyKey other = (StickyKey) obj;
+            return nMethod.equals(other.nMethod)
+                    && (nTag == other.nTag || (nTag != null && nTag.equals(other.nTag)));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * nMethod.hashCode() + (nTag == null ? 0 : nTag.hashCode());
+        }
+    }
+}
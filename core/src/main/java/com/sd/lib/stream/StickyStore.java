@@ -0,0 +1,489 @@
+package com.sd.lib.stream;
+
+import com.sd.lib.stream.internal.ReflectUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 粘性调用的持久化，{@link Sticky#persist()}
+ * <p>
+ * {@link FStreamManager#setStickyStore(StickyStore)}的时候在调用线程读取文件并预加载到管理类中，之后注册的流对象会立即收到文件中保存的调用；
+ * 运行过程中的调用在保存的时候立即编码，延迟一段时间后在后台线程合并写入文件。
+ * 写入的时候先写临时文件并同步到磁盘再重命名，避免写了一半的文件被读取；
+ * 平台不支持覆盖重命名的话，先把旧文件重命名为备份文件，读取的时候主文件不存在或者无法读取则读取备份文件
+ */
+public class StickyStore
+{
+    private static final int MAGIC = 0x46535354;
+    private static final int VERSION = 2;
+
+    /**
+     * 默认的写入延迟（毫秒）
+     */
+    public static final long DEFAULT_WRITE_DELAY = 1000;
+
+    private final File mFile;
+    private final Codec mCodec;
+    private final long mWriteDelay;
+
+    private final Map<StickyCache.StickyKey, Record> mMapRecord = new LinkedHashMap<>();
+    private boolean mIsDirty;
+    private boolean mIsWriteScheduled;
+
+    private ScheduledExecutorService mExecutor;
+
+    /**
+     * 使用{@link SerializableCodec}和{@link #DEFAULT_WRITE_DELAY}
+     *
+     * @param file 保存的文件，建议放在应用私有目录
+     */
+    public StickyStore(File file)
+    {
+        this(file, new SerializableCodec(), DEFAULT_WRITE_DELAY);
+    }
+
+    /**
+     * @param file       保存的文件，建议放在应用私有目录
+     * @param codec      tag和参数的编解码
+     * @param writeDelay 写入延迟（毫秒），这段时间内的变化合并为一次写入
+     */
+    public StickyStore(File file, Codec codec, long writeDelay)
+    {
+        if (file == null)
+            throw new IllegalArgumentException("file is null");
+        if (codec == null)
+            throw new IllegalArgumentException("codec is null");
+        if (writeDelay < 0)
+            throw new IllegalArgumentException("writeDelay must be greater than or equal to 0");
+
+        mFile = file;
+        mCodec = codec;
+        mWriteDelay = writeDelay;
+    }
+
+    public File getFile()
+    {
+        return mFile;
+    }
+
+    /**
+     * 读取文件中保存的调用，无法解析的调用（例如接口或者方法已经不存在）会被忽略
+     *
+     * @return
+     */
+    synchronized List<StickyCache.StickyCall> load()
+    {
+        final File backupFile = getBackupFile();
+        if (mFile.exists())
+        {
+            final List<StickyCache.StickyCall> list = new ArrayList<>();
+            if (load(mFile, list) || !backupFile.exists())
+                return list;
+        }
+
+        if (backupFile.exists())
+        {
+            final List<StickyCache.StickyCall> list = new ArrayList<>();
+            load(backupFile, list);
+            StreamLog.w(StickyStore.class.getSimpleName(), "load sticky backup file:" + backupFile + " count:" + list.size());
+            return list;
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * 读取文件，读取失败的话清空已经读取的内容
+     *
+     * @return false-读取失败
+     */
+    private boolean load(File file, List<StickyCache.StickyCall> list)
+    {
+        mMapRecord.clear();
+        DataInputStream input = null;
+        try
+        {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != MAGIC)
+                throw new IOException("illegal file:" + file);
+
+            final int version = input.readInt();
+            if (version != VERSION)
+                throw new IOException("unsupported version:" + version);
+
+            final int count = input.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                final String className = input.readUTF();
+                final String signature = input.readUTF();
+                final int length = input.readInt();
+                if (length < 0)
+                    throw new IOException("illegal length:" + length);
+
+                final byte[] data = new byte[length];
+                input.readFully(data);
+
+                final StickyCache.StickyCall call = decodeCall(className, signature, data);
+                if (call != null)
+                {
+                    list.add(call);
+                    mMapRecord.put(new StickyCache.StickyKey(call.method, call.tag), new Record(call.clazz, className, signature, data));
+                }
+            }
+            return true;
+        } catch (IOException e)
+        {
+            StreamLog.e(StickyStore.class.getSimpleName(), "load sticky file failed:" + file, e);
+            list.clear();
+            mMapRecord.clear();
+            return false;
+        } finally
+        {
+            closeQuietly(input);
+        }
+    }
+
+    private StickyCache.StickyCall decodeCall(String className, String signature, byte[] data)
+    {
+        try
+        {
+            final Class<?> clazz = Class.forName(className, false, FStream.class.getClassLoader());
+            if (!clazz.isInterface() || !FStream.class.isAssignableFrom(clazz))
+                return null;
+
+            final Method method = findMethod(clazz, signature);
+            if (method == null || method.getReturnType() != void.class || !StickyCache.isPersist(method))
+                return null;
+
+            final Object[] values = mCodec.decode(data);
+            if (values == null || values.length != method.getParameterTypes().length + 1)
+                return null;
+
+            final Object[] args = new Object[values.length - 1];
+            System.arraycopy(values, 1, args, 0, args.length);
+            return new StickyCache.StickyCall(clazz.asSubclass(FStream.class), method, values[0], args);
+        } catch (Exception e)
+        {
+            StreamLog.w(StickyStore.class.getSimpleName(), "ignore sticky call " + className + " " + signature + " " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 保存调用，在调用线程立即编码，之后修改参数对象不会影响保存的内容
+     * <p>
+     * 无法编码的话移除同一个方法和tag之前保存的调用，避免下次启动的时候收到旧的调用
+     *
+     * @param call
+     */
+    void put(StickyCache.StickyCall call)
+    {
+        final StickyCache.StickyKey key = new StickyCache.StickyKey(call.method, call.tag);
+        byte[] data = null;
+        try
+        {
+            final Object[] values = new Object[call.args.length + 1];
+            values[0] = call.tag;
+            System.arraycopy(call.args, 0, values, 1, call.args.length);
+            data = mCodec.encode(values);
+        } catch (IOException e)
+        {
+            StreamLog.w(StickyStore.class.getSimpleName(), "skip sticky call " + call.method + " " + e);
+        }
+
+        synchronized (this)
+        {
+            if (data == null)
+            {
+                if (mMapRecord.remove(key) != null)
+                    scheduleWrite();
+                return;
+            }
+
+            mMapRecord.put(key, new Record(call.clazz, call.clazz.getName(), ReflectUtils.getSignature(call.method), data));
+            scheduleWrite();
+        }
+    }
+
+    /**
+     * 移除流接口下所有的调用
+     *
+     * @param clazz
+     */
+    synchronized void remove(Class<? extends FStream> clazz)
+    {
+        final Iterator<Record> it = mMapRecord.values().iterator();
+        boolean changed = false;
+        while (it.hasNext())
+        {
+            if (it.next().clazz == clazz)
+            {
+                it.remove();
+                changed = true;
+            }
+        }
+
+        if (changed)
+            scheduleWrite();
+    }
+
+    private void scheduleWrite()
+    {
+        mIsDirty = true;
+        if (mIsWriteScheduled)
+            return;
+
+        mIsWriteScheduled = true;
+        getExecutor().schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                synchronized (StickyStore.this)
+                {
+                    mIsWriteScheduled = false;
+                }
+                flush();
+            }
+        }, mWriteDelay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 如果有未写入的变化，在当前线程立即写入文件，例如应用切换到后台的时候
+     *
+     * @return false-写入失败
+     */
+    public boolean flush()
+    {
+        final List<Record> list;
+        synchronized (this)
+        {
+            if (!mIsDirty)
+                return true;
+
+            mIsDirty = false;
+            list = new ArrayList<>(mMapRecord.values());
+        }
+
+        synchronized (mFile)
+        {
+            try
+            {
+                write(list);
+                return true;
+            } catch (IOException e)
+            {
+                synchronized (this)
+                {
+                    mIsDirty = true;
+                }
+                StreamLog.e(StickyStore.class.getSimpleName(), "write sticky file failed:" + mFile, e);
+                return false;
+            }
+        }
+    }
+
+    private void write(List<Record> list) throws IOException
+    {
+        final File parent = mFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+
+        final File tempFile = new File(mFile.getPath() + ".tmp");
+        FileOutputStream fileOutput = null;
+        try
+        {
+            fileOutput = new FileOutputStream(tempFile);
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(list.size());
+            for (Record item : list)
+            {
+                output.writeUTF(item.className);
+                output.writeUTF(item.signature);
+                output.writeInt(item.data.length);
+                output.write(item.data);
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+        } finally
+        {
+            closeQuietly(fileOutput);
+        }
+
+        if (tempFile.renameTo(mFile))
+        {
+            deleteBackupFile();
+            return;
+        }
+
+        // 不支持覆盖重命名，先把旧文件重命名为备份文件，任何时候都至少有一个完整的文件
+        final File backupFile = getBackupFile();
+        if (mFile.exists())
+        {
+            backupFile.delete();
+            if (!mFile.renameTo(backupFile))
+                throw new IOException("rename " + mFile + " to " + backupFile + " failed");
+        }
+
+        if (!tempFile.renameTo(mFile))
+            throw new IOException("rename " + tempFile + " to " + mFile + " failed");
+
+        deleteBackupFile();
+    }
+
+    private File getBackupFile()
+    {
+        return new File(mFile.getPath() + ".bak");
+    }
+
+    private void deleteBackupFile()
+    {
+        final File backupFile = getBackupFile();
+        if (backupFile.exists() && !backupFile.delete())
+            StreamLog.w(StickyStore.class.getSimpleName(), "delete sticky backup file failed:" + backupFile);
+    }
+
+    private synchronized ScheduledExecutorService getExecutor()
+    {
+        if (mExecutor == null)
+        {
+            mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    final Thread thread = new Thread(r, "FStream-sticky");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return mExecutor;
+    }
+
+    /**
+     * 编码之后的调用
+     */
+    private static final class Record
+    {
+        public final Class<? extends FStream> clazz;
+        public final String className;
+        public final String signature;
+        public final byte[] data;
+
+        public Record(Class<? extends FStream> clazz, String className, String signature, byte[] data)
+        {
+            this.clazz = clazz;
+            this.className = className;
+            this.signature = signature;
+            this.data = data;
+        }
+    }
+
+    private static Method findMethod(Class<?> clazz, String signature)
+    {
+        for (Method item : clazz.getMethods())
+        {
+            if (ReflectUtils.getSignature(item).equals(signature))
+                return item;
+        }
+        return null;
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        if (closeable == null)
+            return;
+        try
+        {
+            closeable.close();
+        } catch (IOException ignored)
+        {
+        }
+    }
+
+    /**
+     * tag和参数的编解码
+     */
+    public interface Codec
+    {
+        /**
+         * 编码
+         *
+         * @param values 第一个元素是代理对象的tag，后面是方法参数
+         * @return
+         * @throws IOException 无法编码，这个调用不会被保存
+         */
+        byte[] encode(Object[] values) throws IOException;
+
+        /**
+         * 解码，{@link #encode(Object[])}
+         *
+         * @param data
+         * @return
+         * @throws IOException
+         */
+        Object[] decode(byte[] data) throws IOException;
+    }
+
+    /**
+     * 基于java序列化的编解码，tag和参数需要实现{@link java.io.Serializable}
+     */
+    public static class SerializableCodec implements Codec
+    {
+        @Override
+        public byte[] encode(Object[] values) throws IOException
+        {
+            final ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+            final ObjectOutputStream output = new ObjectOutputStream(byteOutput);
+            try
+            {
+                output.writeObject(values);
+            } finally
+            {
+                output.close();
+            }
+            return byteOutput.toByteArray();
+        }
+
+        @Override
+        public Object[] decode(byte[] data) throws IOException
+        {
+            final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(data));
+            try
+            {
+                return (Object[]) input.readObject();
+            } catch (ClassNotFoundException e)
+            {
+                throw new IOException("decode failed:" + e);
+            } finally
+            {
+                input.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.sd.lib.stream;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+/**
+ * 将流对象和某个目标对象绑定，一个目标对象对应一个{@link StreamBinder}，目标对象绑定的所有流对象批量注册和取消注册
+ *
+ * @param <T>
+ */
+public abstract class StreamBinder<T>
+{
+    private final WeakReference<T> mTarget;
+    private final ConcurrentWeakIdentityMap<FStream, Boolean> mStreams = new ConcurrentWeakIdentityMap<>();
+
+    protected StreamBinder(T target)
+    {
+        if (target == null)
+            throw new IllegalArgumentException("target is null when create " + getClass().getName());
+
+        mTarget = new WeakReference<>(target);
+    }
+
+    /**
+     * 兼容一个流对象对应一个{@link StreamBinder}的旧版本子类，流对象在{@link #bind()}的时候注册
+     *
+     * @param stream
+     * @param target
+     * @deprecated 使用{@link #StreamBinder(Object)}和{@link #bind(FStream)}
+     */
+    @Deprecated
+    protected StreamBinder(FStream stream, T target)
+    {
+        this(target);
+        if (stream == null)
+            throw new IllegalArgumentException("stream is null when create " + getClass().getName());
+
+        addStream(stream);
+    }
+
+    /**
+     * 返回要绑定的对象
+     *
+     * @return
+     */
+    public final T getTarget()
+    {
+        return mTarget.get();
+    }
+
+    /**
+     * 绑定流对象，默认只保存并注册流对象，子类重写添加目标对象的监听
+     *
+     * @param stream
+     * @return
+     */
+    public boolean bind(FStream stream)
+    {
+        addStream(stream);
+        return registerStream(stream);
+    }
+
+    /**
+     * 绑定构造方法传入的流对象
+     *
+     * @return
+     * @deprecated 使用{@link #bind(FStream)}
+     */
+    @Deprecated
+    public boolean bind()
+    {
+        boolean result = true;
+        for (FStream item : mStreams.keys())
+        {
+            if (!bind(item))
+                result = false;
+        }
+        return result;
+    }
+
+    /**
+     * 设置流对象在目标对象失效之后延迟取消注册的时间（毫秒），默认不支持延迟，子类按需实现
+     * <p>
+     * 每个流对象单独保存，再次设置会覆盖之前的值，解绑之后移除
+     *
+     * @param stream
+     * @param delay  小于等于0-不延迟
+     */
+    public void setDetachDelay(FStream stream, long delay)
+    {
+    }
+
+    /**
+     * 取消注册流对象，并解除这个流对象的绑定关系
+     *
+     * @param stream
+     * @return
+     */
+    public boolean unbind(FStream stream)
+    {
+        if (mStreams.remove(stream) == null)
+            return false;
+
+        FStreamManager.getInstance().unregisterInternal(stream);
+        return true;
+    }
+
+    /**
+     * 返回绑定的流对象数量
+     *
+     * @return
+     */
+    public final int size()
+    {
+        return mStreams.size();
+    }
+
+    /**
+     * 返回绑定的流对象
+     *
+     * @return
+     */
+    public final List<FStream> getStreams()
+    {
+        return mStreams.keys();
+    }
+
+    /**
+     * 保存流对象
+     *
+     * @param stream
+     */
+    protected final void addStream(FStream stream)
+    {
+        mStreams.put(stream, Boolean.TRUE);
+    }
+
+    /**
+     * 注册流对象，注册失败的话会移除这个流对象
+     *
+     * @param stream
+     * @return
+     */
+    protected final boolean registerStream(FStream stream)
+    {
+        final StreamConnection connection = FStreamManager.getInstance().registerInternal(stream);
+        if (connection == null)
+        {
+            mStreams.remove(stream);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 注册所有流对象，注册失败的话解除所有绑定关系
+     *
+     * @return
+     * @deprecated 使用{@link #registerStream(FStream)}
+     */
+    @Deprecated
+    protected final boolean registerStream()
+    {
+        final List<FStream> list = mStreams.keys();
+        if (list.isEmpty())
+            return false;
+
+        for (FStream item : list)
+        {
+            if (!registerStream(item))
+            {
+                destroy();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 取消注册所有流对象
+     *
+     * @deprecated 使用{@link #unregisterStreams()}
+     */
+    @Deprecated
+    protected final void unregisterStream()
+    {
+        unregisterStreams();
+    }
+
+    /**
+     * 注册所有流对象
+     */
+    protected final void registerStreams()
+    {
+        final List<FStream> list = mStreams.keys();
+        if (list.isEmpty())
+            return;
+
+        FStreamManager.getInstance().registerInternal(list);
+    }
+
+    /**
+     * 取消注册所有流对象
+     */
+    protected final void unregisterStreams()
+    {
+        final List<FStream> list = mStreams.keys();
+        if (list.isEmpty())
+            return;
+
+        FStreamManager.getInstance().unregisterInternal(list);
+    }
+
+    /**
+     * 取消注册所有流对象，并解除绑定关系
+     */
+    public void destroy()
+    {
+        unregisterStreams();
+        for (FStream item : mStreams.keys())
+        {
+            mStreams.remove(item);
+        }
+    }
+}
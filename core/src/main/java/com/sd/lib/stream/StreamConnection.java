@@ -0,0 +1,373 @@
+package com.sd.lib.stream;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+public abstract class StreamConnection
+{
+    /** {@link #mBreakFlags}可以保存的槽位数量，每个流接口占一个bit，超过的槽位保存在{@link #mExtraBreakFlags} */
+    static final int MAX_FLAG_SLOT = 32;
+
+    private static final AtomicIntegerFieldUpdater<StreamConnection> BREAK_FLAGS_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(StreamConnection.class, "mBreakFlags");
+
+    private final FStream mStream;
+    /** 流对象实现的流接口，同一个实现类的流对象共享一个数组，流接口在数组中的位置就是它的槽位 */
+    private final Class<? extends FStream>[] mClasses;
+
+    /** 是否停止分发，每个槽位一个bit */
+    private volatile int mBreakFlags;
+    /** 流对象实现的流接口超过{@link #MAX_FLAG_SLOT}个的时候才创建，保存超过的槽位是否停止分发 */
+    private final AtomicIntegerArray mExtraBreakFlags;
+    /** 每个槽位的优先级，设置过优先级才创建 */
+    private int[] mPriority;
+    /** 每个槽位的命中次数，{@link FStreamManager#setAdaptiveOrdering(Class, boolean)}开启之后才创建 */
+    private int[] mHitCount;
+    /** 每个槽位的连续失败次数和隔离结束时间，{@link DispatchGuard}失败之后才创建 */
+    private int[] mFailureCount;
+    private volatile long[] mQuarantineUntil;
+
+    private volatile SerialMailbox mMailbox;
+
+    StreamConnection(FStream stream, Class<? extends FStream>[] classes)
+    {
+        for (Class<? extends FStream> item : classes)
+        {
+            checkClassInterface(item);
+        }
+        mStream = stream;
+        mClasses = classes;
+        mExtraBreakFlags = classes.length > MAX_FLAG_SLOT ? new AtomicIntegerArray(classes.length - MAX_FLAG_SLOT) : null;
+    }
+
+    /**
+     * 返回流接口的槽位
+     *
+     * @param clazz
+     * @return -1表示流对象没有实现这个流接口
+     */
+    int getSlot(Class<? extends FStream> clazz)
+    {
+        final Class<? extends FStream>[] classes = mClasses;
+        for (int i = 0; i < classes.length; i++)
+        {
+            if (classes[i] == clazz)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 返回优先级
+     *
+     * @param clazz
+     * @return
+     */
+    synchronized int getPriority(Class<? extends FStream> clazz)
+    {
+        checkClassInterface(clazz);
+        final int slot = getSlot(clazz);
+        if (slot < 0 || mPriority == null)
+            return 0;
+        return mPriority[slot];
+    }
+
+    /**
+     * 设置优先级
+     *
+     * @param priority
+     */
+    public void setPriority(int priority)
+    {
+        setPriority(priority, null);
+    }
+
+    /**
+     * 设置优先级
+     *
+     * @param priority
+     * @param clazz
+     */
+    public synchronized void setPriority(int priority, Class<? extends FStream> clazz)
+    {
+        if (clazz == null)
+        {
+            for (int i = 0; i < mClasses.length; i++)
+            {
+                setPriority(i, priority);
+            }
+        } else
+        {
+            checkClassInterface(clazz);
+            checkClassAssignable(clazz);
+
+            final int slot = getSlot(clazz);
+            if (slot >= 0)
+                setPriority(slot, priority);
+        }
+    }
+
+    private void setPriority(int slot, int priority)
+    {
+        final int old = mPriority == null ? 0 : mPriority[slot];
+        if (old == priority)
+            return;
+
+        if (mPriority == null)
+            mPriority = new int[mClasses.length];
+
+        mPriority[slot] = priority;
+        onPriorityChanged(priority, mStream, mClasses[slot]);
+    }
+
+    /**
+     * 停止分发
+     *
+     * @param clazz
+     */
+    public synchronized void breakDispatch(Class<? extends FStream> clazz)
+    {
+        checkClassInterface(clazz);
+        checkClassAssignable(clazz);
+
+        final int slot = getSlot(clazz);
+        if (slot >= 0)
+            setBreakFlag(slot, true);
+    }
+
+    /**
+     * 是否需要停止分发
+     *
+     * @param clazz
+     * @return
+     */
+    boolean shouldBreakDispatch(Class<? extends FStream> clazz)
+    {
+        checkClassInterface(clazz);
+        final int slot = getSlot(clazz);
+        return slot >= 0 && shouldBreakDispatch(slot);
+    }
+
+    /**
+     * 重置停止分发标志
+     *
+     * @param clazz
+     */
+    void resetBreakDispatch(Class<? extends FStream> clazz)
+    {
+        checkClassInterface(clazz);
+        final int slot = getSlot(clazz);
+        if (slot >= 0)
+            resetBreakDispatch(slot);
+    }
+
+    /**
+     * 某个槽位是否需要停止分发
+     *
+     * @param slot
+     * @return
+     */
+    boolean shouldBreakDispatch(int slot)
+    {
+        if (slot >= MAX_FLAG_SLOT)
+            return mExtraBreakFlags.get(slot - MAX_FLAG_SLOT) != 0;
+        return (mBreakFlags & (1 << slot)) != 0;
+    }
+
+    /**
+     * 重置某个槽位的停止分发标志
+     *
+     * @param slot
+     */
+    void resetBreakDispatch(int slot)
+    {
+        if (shouldBreakDispatch(slot))
+            setBreakFlag(slot, false);
+    }
+
+    private void setBreakFlag(int slot, boolean value)
+    {
+        if (slot >= MAX_FLAG_SLOT)
+        {
+            mExtraBreakFlags.set(slot - MAX_FLAG_SLOT, value ? 1 : 0);
+            return;
+        }
+
+        final int mask = 1 << slot;
+        while (true)
+        {
+            final int flags = mBreakFlags;
+            final int newFlags = value ? (flags | mask) : (flags & ~mask);
+            if (flags == newFlags || BREAK_FLAGS_UPDATER.compareAndSet(this, flags, newFlags))
+                return;
+        }
+    }
+
+    /**
+     * 流对象的tag发生变化之后调用，让代理对象重新匹配tag
+     * <p>
+     * 代理对象开启了{@link FStream.ProxyBuilder#setCacheTagMatch(boolean)}，或者流对象的tag是{@link StreamTag}的时候需要调用
+     */
+    public void notifyTagChanged()
+    {
+        for (Class<? extends FStream> item : mClasses)
+        {
+            onTagChanged(mStream, item);
+        }
+    }
+
+    /**
+     * 返回流对象
+     *
+     * @return
+     */
+    FStream getStream()
+    {
+        return mStream;
+    }
+
+    /**
+     * 返回命中次数
+     *
+     * @param clazz
+     * @return
+     */
+    synchronized int getHitCount(Class<? extends FStream> clazz)
+    {
+        final int slot = getSlot(clazz);
+        if (slot < 0 || mHitCount == null)
+            return 0;
+        return mHitCount[slot];
+    }
+
+    /**
+     * 命中次数加1
+     *
+     * @param clazz
+     */
+    synchronized void hit(Class<? extends FStream> clazz)
+    {
+        final int slot = getSlot(clazz);
+        if (slot < 0)
+            return;
+
+        if (mHitCount == null)
+            mHitCount = new int[mClasses.length];
+        mHitCount[slot]++;
+    }
+
+    /**
+     * 返回隔离结束的时间，{@link DispatchGuard}
+     *
+     * @param clazz
+     * @return
+     */
+    long getQuarantineUntil(Class<? extends FStream> clazz)
+    {
+        final long[] quarantineUntil = mQuarantineUntil;
+        if (quarantineUntil == null)
+            return 0;
+
+        final int slot = getSlot(clazz);
+        return slot < 0 ? 0 : quarantineUntil[slot];
+    }
+
+    /**
+     * 失败一次，{@link DispatchGuard}
+     *
+     * @param clazz
+     * @param threshold 连续失败多少次之后隔离
+     * @param coolDown  隔离时长
+     * @return true-本次失败之后开始隔离
+     */
+    synchronized boolean onFailure(Class<? extends FStream> clazz, int threshold, long coolDown)
+    {
+        final int slot = getSlot(clazz);
+        if (slot < 0)
+            return false;
+
+        if (mFailureCount == null)
+            mFailureCount = new int[mClasses.length];
+
+        mFailureCount[slot]++;
+        if (mFailureCount[slot] < threshold)
+            return false;
+
+        mFailureCount[slot] = 0;
+
+        // 复制之后再替换，不加锁读取的线程总是读到完整的数组
+        final long[] quarantineUntil = mQuarantineUntil == null ? new long[mClasses.length] : mQuarantineUntil.clone();
+        quarantineUntil[slot] = System.currentTimeMillis() + coolDown;
+        mQuarantineUntil = quarantineUntil;
+        return true;
+    }
+
+    /**
+     * 重置连续失败次数，{@link DispatchGuard}
+     *
+     * @param clazz
+     */
+    synchronized void resetFailure(Class<? extends FStream> clazz)
+    {
+        if (mFailureCount == null)
+            return;
+
+        final int slot = getSlot(clazz);
+        if (slot >= 0)
+            mFailureCount[slot] = 0;
+    }
+
+    /**
+     * 返回流对象的串行邮箱
+     *
+     * @return
+     */
+    SerialMailbox getMailbox()
+    {
+        if (mMailbox == null)
+        {
+            synchronized (this)
+            {
+                if (mMailbox == null)
+                    mMailbox = new SerialMailbox();
+            }
+        }
+        return mMailbox;
+    }
+
+    /**
+     * 返回已经创建的串行邮箱
+     *
+     * @return null-还没有创建
+     */
+    SerialMailbox peekMailbox()
+    {
+        return mMailbox;
+    }
+
+    /**
+     * 使用流对象之前注册时的串行邮箱，只在创建之后注册之前调用
+     *
+     * @param mailbox
+     */
+    void setMailbox(SerialMailbox mailbox)
+    {
+        mMailbox = mailbox;
+    }
+
+    private void checkClassAssignable(Class<? extends FStream> clazz)
+    {
+        if (!clazz.isAssignableFrom(mStream.getClass()))
+            throw new IllegalArgumentException("class is not assignable from " + mStream.getClass().getName() + " class:" + clazz.getName());
+    }
+
+    private static void checkClassInterface(Class<? extends FStream> clazz)
+    {
+        if (!clazz.isInterface())
+            throw new IllegalArgumentException("class must be an interface class:" + clazz.getName());
+    }
+
+    protected abstract void onPriorityChanged(int priority, FStream stream, Class<? extends FStream> clazz);
+
+    protected abstract void onTagChanged(FStream stream, Class<? extends FStream> clazz);
+}
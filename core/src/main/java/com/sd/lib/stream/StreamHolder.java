@@ -0,0 +1,337 @@
+package com.sd.lib.stream;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+class StreamHolder
+{
+    /** 自适应排序模式下，每命中多少次重新排序一次 */
+    private static final int ADAPTIVE_SORT_INTERVAL = 32;
+
+    private final Class<? extends FStream> mClass;
+    private final FStreamManager mManager;
+    /** 直接保存流对象的连接，连接按对象地址比较，不需要为每个流对象额外创建key */
+    private final Set<StreamConnection> mStreamHolder = new LinkedHashSet<>();
+
+    private final Map<StreamConnection, Integer> mPriorityStreamHolder = new ConcurrentHashMap<>();
+    /** 层级tag索引，{@link StreamTag} */
+    private final StreamTagIndex mTagIndex = new StreamTagIndex();
+    private volatile boolean mIsPriorityChanged = false;
+    private volatile boolean mHasDirtyStream = false;
+
+    private volatile boolean mIsAdaptiveOrdering = false;
+    private volatile boolean mIsHitChanged = false;
+    private final AtomicInteger mHitCountSinceSort = new AtomicInteger();
+    private final AtomicLong mDispatchCount = new AtomicLong();
+
+    /** 版本号，流对象，优先级，tag或者顺序有变化的时候增加 */
+    private final AtomicInteger mVersion = new AtomicInteger();
+
+    public StreamHolder(Class<? extends FStream> clazz, FStreamManager manager)
+    {
+        mClass = clazz;
+        mManager = manager;
+    }
+
+    public boolean add(StreamConnection connection)
+    {
+        if (connection == null)
+            return false;
+
+        if (!mStreamHolder.add(connection))
+            return false;
+
+        mTagIndex.put(connection, connection.getStream().getTagForStream(mClass));
+
+        if (hasPriorityStream())
+            mHasDirtyStream = true;
+
+        mVersion.incrementAndGet();
+
+        return true;
+    }
+
+    public boolean remove(StreamConnection connection)
+    {
+        if (connection == null)
+            return false;
+
+        final boolean result = mStreamHolder.remove(connection);
+        mPriorityStreamHolder.remove(connection);
+        mTagIndex.remove(connection);
+
+        if (result)
+            mVersion.incrementAndGet();
+
+        return result;
+    }
+
+    public int size()
+    {
+        return mStreamHolder.size();
+    }
+
+    public Collection<FStream> toCollection()
+    {
+        final List<StreamConnection> listConnection = toConnectionList();
+        final List<FStream> result = new ArrayList<>(listConnection.size());
+        for (StreamConnection item : listConnection)
+        {
+            result.add(item.getStream());
+        }
+        return result;
+    }
+
+    /**
+     * 按分发顺序返回流对象的连接
+     *
+     * @return
+     */
+    public List<StreamConnection> toConnectionList()
+    {
+        List<StreamConnection> result = null;
+
+        if (isNeedSort())
+        {
+            synchronized (mManager)
+            {
+                result = sort();
+            }
+        } else
+        {
+            result = new ArrayList<>(mStreamHolder);
+        }
+
+        return result;
+    }
+
+    public void onPriorityChanged(int priority, StreamConnection connection, Class<? extends FStream> clazz)
+    {
+        if (clazz != mClass)
+            throw new IllegalArgumentException("expect class:" + mClass + " but class:" + clazz);
+
+        if (priority == 0)
+        {
+            mPriorityStreamHolder.remove(connection);
+        } else
+        {
+            mPriorityStreamHolder.put(connection, priority);
+        }
+        mIsPriorityChanged = true;
+        mVersion.incrementAndGet();
+
+        if (mManager.isDebug())
+        {
+            StreamLog.i(FStream.class.getSimpleName(), "onPriorityChanged"
+                    + " priority:" + priority
+                    + " clazz:" + clazz.getName()
+                    + " priorityStreamHolder size:" + mPriorityStreamHolder.size()
+                    + " stream:" + connection.getStream());
+        }
+    }
+
+    /**
+     * 流对象的tag有变化
+     *
+     * @param connection
+     */
+    public void onTagChanged(StreamConnection connection)
+    {
+        synchronized (mManager)
+        {
+            if (mStreamHolder.contains(connection))
+                mTagIndex.put(connection, connection.getStream().getTagForStream(mClass));
+        }
+        mVersion.incrementAndGet();
+    }
+
+    /**
+     * 从层级tag索引中查询匹配的流对象，{@link StreamTag#matches(StreamTag, boolean)}
+     *
+     * @param pattern
+     * @param prefix
+     * @return 按分发顺序排序
+     */
+    public List<StreamConnection> queryTag(StreamTag pattern, boolean prefix)
+    {
+        final List<StreamConnection> list;
+        synchronized (mManager)
+        {
+            if (mTagIndex.isEmpty())
+                return Collections.emptyList();
+            list = mTagIndex.query(pattern, prefix);
+        }
+
+        if (list.size() <= 1 || (!hasPriorityStream() && !mIsAdaptiveOrdering))
+            return list;
+
+        // 有优先级或者自适应排序的时候，按照分发顺序重新排列
+        final Set<StreamConnection> set = Collections.newSetFromMap(new IdentityHashMap<StreamConnection, Boolean>());
+        set.addAll(list);
+
+        final List<StreamConnection> result = new ArrayList<>(list.size());
+        for (StreamConnection item : toConnectionList())
+        {
+            if (set.contains(item))
+                result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 返回版本号
+     *
+     * @return
+     */
+    public int getVersion()
+    {
+        return mVersion.get();
+    }
+
+    /**
+     * 设置是否根据命中次数自适应排序
+     *
+     * @param adaptive
+     */
+    public void setAdaptiveOrdering(boolean adaptive)
+    {
+        mIsAdaptiveOrdering = adaptive;
+        mIsHitChanged = adaptive;
+        mVersion.incrementAndGet();
+    }
+
+    public boolean isAdaptiveOrdering()
+    {
+        return mIsAdaptiveOrdering;
+    }
+
+    /**
+     * 分发一次
+     */
+    public void onDispatch()
+    {
+        mDispatchCount.incrementAndGet();
+    }
+
+    /**
+     * 返回分发次数
+     *
+     * @return
+     */
+    public long getDispatchCount()
+    {
+        return mDispatchCount.get();
+    }
+
+    /**
+     * 流对象命中（返回值被接受或者停止分发）
+     *
+     * @param connection
+     */
+    public void onHit(StreamConnection connection)
+    {
+        connection.hit(mClass);
+        if (mHitCountSinceSort.incrementAndGet() >= ADAPTIVE_SORT_INTERVAL)
+        {
+            mHitCountSinceSort.set(0);
+            mIsHitChanged = true;
+            mVersion.incrementAndGet();
+        }
+    }
+
+    private boolean hasPriorityStream()
+    {
+        return mPriorityStreamHolder.size() > 0;
+    }
+
+    private boolean isNeedSort()
+    {
+        if (mIsAdaptiveOrdering && mIsHitChanged)
+            return true;
+
+        if (hasPriorityStream())
+        {
+            return mIsPriorityChanged || mHasDirtyStream;
+        } else
+        {
+            mIsPriorityChanged = false;
+            mHasDirtyStream = false;
+            return false;
+        }
+    }
+
+    private List<StreamConnection> sort()
+    {
+        // 排序之前先复制优先级和命中次数，命中次数在锁外增加，直接比较实时的值会让比较结果前后不一致
+        final List<SortEntry> listSort = new ArrayList<>(mStreamHolder.size());
+        for (StreamConnection item : mStreamHolder)
+        {
+            listSort.add(new SortEntry(item, item.getPriority(mClass), mIsAdaptiveOrdering ? item.getHitCount(mClass) : 0));
+        }
+        Collections.sort(listSort, SORT_COMPARATOR);
+
+        final List<StreamConnection> listEntry = new ArrayList<>(listSort.size());
+        for (SortEntry item : listSort)
+        {
+            listEntry.add(item.nConnection);
+        }
+
+        mStreamHolder.clear();
+        mStreamHolder.addAll(listEntry);
+
+        mIsPriorityChanged = false;
+        mHasDirtyStream = false;
+        mIsHitChanged = false;
+
+        if (mManager.isDebug())
+            StreamLog.i(FStream.class.getSimpleName(), "sort stream for class:" + mClass.getName());
+
+        return listEntry;
+    }
+
+    private static final Comparator<SortEntry> SORT_COMPARATOR = new Comparator<SortEntry>()
+    {
+        @Override
+        public int compare(SortEntry o1, SortEntry o2)
+        {
+            final int result = compareInt(o2.nPriority, o1.nPriority);
+            if (result != 0)
+                return result;
+
+            // 同一个优先级的流对象，命中次数多的排在前面，非自适应排序的时候命中次数都是0
+            return compareInt(o2.nHitCount, o1.nHitCount);
+        }
+    };
+
+    private static int compareInt(int x, int y)
+    {
+        return x < y ? -1 : (x == y ? 0 : 1);
+    }
+
+    /**
+     * 排序时的快照
+     */
+    private static final class SortEntry
+    {
+        public final StreamConnection nConnection;
+        public final int nPriority;
+        public final int nHitCount;
+
+        public SortEntry(StreamConnection connection, int priority, int hitCount)
+        {
+            nConnection = connection;
+            nPriority = priority;
+            nHitCount = hitCount;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.sd.lib.stream;
+
+/**
+ * 日志，输出到{@link StreamPlatform#log(int, String, String, Throwable)}
+ */
+public final class StreamLog
+{
+    public static final int INFO = 0;
+    public static final int WARN = 1;
+    public static final int ERROR = 2;
+
+    private StreamLog()
+    {
+    }
+
+    public static void i(String tag, String msg)
+    {
+        StreamPlatform.get().log(INFO, tag, msg, null);
+    }
+
+    public static void w(String tag, String msg)
+    {
+        StreamPlatform.get().log(WARN, tag, msg, null);
+    }
+
+    public static void w(String tag, String msg, Throwable e)
+    {
+        StreamPlatform.get().log(WARN, tag, msg, e);
+    }
+
+    public static void e(String tag, String msg)
+    {
+        StreamPlatform.get().log(ERROR, tag, msg, null);
+    }
+
+    public static void e(String tag, String msg, Throwable e)
+    {
+        StreamPlatform.get().log(ERROR, tag, msg, e);
+    }
+}
@@ -0,0 +1,164 @@
+package com.sd.lib.stream;
+
+/**
+ * 运行平台，隔离对具体平台（Android）的依赖
+ * <p>
+ * 默认会检测当前是否运行在Android上（依赖了lib模块），是的话使用Android平台，否则使用普通JVM平台。
+ * 也可以调用{@link #install(StreamPlatform)}安装自定义的平台，需要在第一次使用流之前安装
+ */
+public abstract class StreamPlatform
+{
+    private static final String ANDROID_PLATFORM = "com.sd.lib.stream.AndroidStreamPlatform";
+
+    private static volatile StreamPlatform sPlatform;
+
+    /**
+     * 返回当前平台
+     *
+     * @return
+     */
+    public static StreamPlatform get()
+    {
+        StreamPlatform platform = sPlatform;
+        if (platform == null)
+        {
+            synchronized (StreamPlatform.class)
+            {
+                platform = sPlatform;
+                if (platform == null)
+                {
+                    platform = findPlatform();
+                    sPlatform = platform;
+                }
+            }
+        }
+        return platform;
+    }
+
+    /**
+     * 安装平台
+     *
+     * @param platform
+     */
+    public static synchronized void install(StreamPlatform platform)
+    {
+        if (platform == null)
+            throw new IllegalArgumentException("platform is null");
+        sPlatform = platform;
+    }
+
+    private static StreamPlatform findPlatform()
+    {
+        try
+        {
+            final Class<?> clazz = Class.forName(ANDROID_PLATFORM);
+            return (StreamPlatform) clazz.newInstance();
+        } catch (ClassNotFoundException e)
+        {
+            // 不是Android平台
+        } catch (Exception e)
+        {
+            throw new RuntimeException("create platform failed:" + ANDROID_PLATFORM, e);
+        }
+        return new JvmStreamPlatform();
+    }
+
+    /**
+     * 当前线程是否是主线程，{@link MainThreadDispatch}
+     *
+     * @return
+     */
+    public abstract boolean isMainThread();
+
+    /**
+     * 在主线程执行任务
+     *
+     * @param task
+     * @param delay 延迟（毫秒）
+     */
+    public abstract void postMain(Runnable task, long delay);
+
+    /**
+     * 取消{@link #postMain(Runnable, long)}提交的还未执行的任务
+     *
+     * @param task
+     */
+    public abstract void removeMain(Runnable task);
+
+    /**
+     * 在下一帧的主线程执行任务，{@link FrameBudget}
+     * <p>
+     * 默认延迟{@link FrameBudget#DEFAULT_BUDGET}毫秒在主线程执行
+     *
+     * @param task
+     */
+    public void postFrame(Runnable task)
+    {
+        postMain(task, FrameBudget.DEFAULT_BUDGET);
+    }
+
+    /**
+     * 在当前线程的消息循环中延迟执行任务
+     *
+     * @param task
+     * @param delay 延迟（毫秒）
+     * @return false-当前线程没有消息循环，任务没有被提交
+     */
+    public boolean postCurrent(Runnable task, long delay)
+    {
+        return false;
+    }
+
+    /**
+     * 为目标对象创建{@link StreamBinder}，{@link FStreamManager#bindStream(FStream, Object)}
+     *
+     * @param target
+     * @return null-不支持这个目标对象
+     */
+    public StreamBinder<?> createStreamBinder(Object target)
+    {
+        return null;
+    }
+
+    /**
+     * 返回对象所属的生命周期对象，{@link LeakWatcher}
+     *
+     * @param object 流对象或者绑定的目标对象
+     * @return null-没有生命周期对象
+     */
+    public Object getLifecycleOwner(Object object)
+    {
+        return null;
+    }
+
+    /**
+     * 生命周期对象是否已经销毁，{@link #getLifecycleOwner(Object)}
+     *
+     * @param owner
+     * @return
+     */
+    public boolean isLifecycleDestroyed(Object owner)
+    {
+        return false;
+    }
+
+    /**
+     * 监听生命周期对象的销毁，同一个生命周期对象重复添加同一个回调只会执行一次
+     *
+     * @param owner    {@link #getLifecycleOwner(Object)}
+     * @param callback 生命周期对象销毁之后执行
+     */
+    public void watchLifecycle(Object owner, Runnable callback)
+    {
+    }
+
+    /**
+     * 输出日志
+     *
+     * @param level {@link StreamLog#INFO}，{@link StreamLog#WARN}，{@link StreamLog#ERROR}
+     * @param tag
+     * @param msg
+     * @param e     可能为null
+     */
+    public abstract void log(int level, String tag, String msg, Throwable e);
+}
@@ -0,0 +1,186 @@
+package com.sd.lib.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 层级tag，由多段字符串组成，例如"room/42/row/3"
+ * <p>
+ * 流对象{@link FStream#getTagForStream(Class)}返回层级tag的话，注册的时候会按层级建立索引，
+ * 代理对象可以用{@link FStream.ProxyBuilder#setTagPrefix(StreamTag)}只通知某个层级下的流对象，
+ * 代理对象的tag中{@link #WILDCARD}可以匹配任意一段
+ */
+public final class StreamTag
+{
+    /**
+     * 通配符，只在代理对象的tag中有效，匹配任意一段
+     */
+    public static final String WILDCARD = "*";
+    /**
+     * 分隔符，{@link #parse(String)}
+     */
+    public static final char SEPARATOR = '/';
+
+    private final String[] mSegments;
+    private final int mHashCode;
+
+    private StreamTag(String[] segments)
+    {
+        mSegments = segments;
+        mHashCode = Arrays.hashCode(segments);
+    }
+
+    /**
+     * 创建层级tag
+     *
+     * @param segments 每一段，不能为空，不能包含{@link #SEPARATOR}
+     * @return
+     */
+    public static StreamTag of(String... segments)
+    {
+        if (segments == null || segments.length <= 0)
+            throw new IllegalArgumentException("segments is empty");
+
+        final String[] copy = segments.clone();
+        for (String item : copy)
+        {
+            checkSegment(item);
+        }
+        return new StreamTag(copy);
+    }
+
+    /**
+     * 解析用{@link #SEPARATOR}分隔的路径，空的段会被忽略
+     *
+     * @param path
+     * @return
+     */
+    public static StreamTag parse(String path)
+    {
+        if (path == null)
+            throw new IllegalArgumentException("path is null");
+
+        final List<String> list = new ArrayList<>();
+        int start = 0;
+        while (start <= path.length())
+        {
+            int end = path.indexOf(SEPARATOR, start);
+            if (end < 0)
+                end = path.length();
+
+            if (end > start)
+                list.add(path.substring(start, end));
+            start = end + 1;
+        }
+
+        if (list.isEmpty())
+            throw new IllegalArgumentException("path is empty:" + path);
+        return new StreamTag(list.toArray(new String[list.size()]));
+    }
+
+    private static void checkSegment(String segment)
+    {
+        if (segment == null || segment.length() <= 0)
+            throw new IllegalArgumentException("segment is empty");
+        if (segment.indexOf(SEPARATOR) >= 0)
+            throw new IllegalArgumentException("segment contains separator:" + segment);
+    }
+
+    /**
+     * 返回在当前tag下追加若干段之后的tag
+     *
+     * @param segments
+     * @return
+     */
+    public StreamTag child(String... segments)
+    {
+        if (segments == null || segments.length <= 0)
+            return this;
+
+        final String[] array = Arrays.copyOf(mSegments, mSegments.length + segments.length);
+        for (int i = 0; i < segments.length; i++)
+        {
+            checkSegment(segments[i]);
+            array[mSegments.length + i] = segments[i];
+        }
+        return new StreamTag(array);
+    }
+
+    /**
+     * 返回段数
+     *
+     * @return
+     */
+    public int size()
+    {
+        return mSegments.length;
+    }
+
+    /**
+     * 返回某一段
+     *
+     * @param index
+     * @return
+     */
+    public String get(int index)
+    {
+        return mSegments[index];
+    }
+
+    /**
+     * 把当前tag作为匹配规则，判断tag是否匹配
+     *
+     * @param tag
+     * @param prefix true-tag等于当前tag或者在当前tag的层级下就匹配；false-段数相同才匹配
+     * @return
+     */
+    public boolean matches(StreamTag tag, boolean prefix)
+    {
+        if (tag == null)
+            return false;
+
+        final String[] segments = tag.mSegments;
+        if (prefix ? segments.length < mSegments.length : segments.length != mSegments.length)
+            return false;
+
+        for (int i = 0; i < mSegments.length; i++)
+        {
+            final String item = mSegments[i];
+            if (!WILDCARD.equals(item) && !item.equals(segments[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof StreamTag))
+            return false;
+
+        final StreamTag other = (StreamTag) obj;
+        return mHashCode == other.mHashCode && Arrays.equals(mSegments, other.mSegments);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return mHashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mSegments.length; i++)
+        {
+            if (i > 0)
+                builder.append(SEPARATOR);
+            builder.append(mSegments[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,195 @@
+package com.sd.lib.stream;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 层级tag索引，按{@link StreamTag}的段建立前缀树，查询的时候只访问匹配的子树
+ * <p>
+ * 非线程安全，由{@link StreamHolder}加锁访问
+ */
+final class StreamTagIndex
+{
+    private final Node mRoot = new Node(null, null);
+    private final Map<StreamConnection, Entry> mMapEntry = new IdentityHashMap<>();
+    private long mSequence;
+
+    /**
+     * 添加或者更新流对象的tag，tag不是{@link StreamTag}的话移除索引
+     *
+     * @param connection
+     * @param tag
+     */
+    public void put(StreamConnection connection, Object tag)
+    {
+        final Entry old = mMapEntry.get(connection);
+        if (old != null)
+        {
+            if (old.nTag.equals(tag))
+                return;
+            remove(connection);
+        }
+
+        if (!(tag instanceof StreamTag))
+            return;
+
+        final StreamTag streamTag = (StreamTag) tag;
+        Node node = mRoot;
+        for (int i = 0; i < streamTag.size(); i++)
+        {
+            node = node.getOrCreateChild(streamTag.get(i));
+        }
+
+        // 更新tag的时候保留原来的顺序
+        final Entry entry = new Entry(connection, streamTag, node, old != null ? old.nSequence : mSequence++);
+        node.nEntries.add(entry);
+        mMapEntry.put(connection, entry);
+    }
+
+    /**
+     * 移除流对象
+     *
+     * @param connection
+     */
+    public void remove(StreamConnection connection)
+    {
+        final Entry entry = mMapEntry.remove(connection);
+        if (entry == null)
+            return;
+
+        Node node = entry.nNode;
+        node.nEntries.remove(entry);
+        while (node.nParent != null && node.isEmpty())
+        {
+            node.nParent.nChildren.remove(node.nSegment);
+            node = node.nParent;
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return mMapEntry.isEmpty();
+    }
+
+    /**
+     * 查询匹配的流对象，{@link StreamTag#matches(StreamTag, boolean)}
+     *
+     * @param pattern
+     * @param prefix
+     * @return 按添加的顺序排序
+     */
+    public List<StreamConnection> query(StreamTag pattern, boolean prefix)
+    {
+        final List<Entry> listEntry = new ArrayList<>();
+        collect(mRoot, pattern, 0, prefix, listEntry);
+
+        if (listEntry.size() > 1)
+            Collections.sort(listEntry, ENTRY_COMPARATOR);
+
+        final List<StreamConnection> result = new ArrayList<>(listEntry.size());
+        for (Entry item : listEntry)
+        {
+            result.add(item.nConnection);
+        }
+        return result;
+    }
+
+    private static void collect(Node node, StreamTag pattern, int depth, boolean prefix, List<Entry> out)
+    {
+        if (depth == pattern.size())
+        {
+            if (prefix)
+                collectAll(node, out);
+            else
+                out.addAll(node.nEntries);
+            return;
+        }
+
+        if (node.nChildren.isEmpty())
+            return;
+
+        final String segment = pattern.get(depth);
+        if (StreamTag.WILDCARD.equals(segment))
+        {
+            for (Node item : node.nChildren.values())
+            {
+                collect(item, pattern, depth + 1, prefix, out);
+            }
+        } else
+        {
+            final Node child = node.nChildren.get(segment);
+            if (child != null)
+                collect(child, pattern, depth + 1, prefix, out);
+        }
+    }
+
+    private static void collectAll(Node node, List<Entry> out)
+    {
+        out.addAll(node.nEntries);
+        for (Node item : node.nChildren.values())
+        {
+            collectAll(item, out);
+        }
+    }
+
+    private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>()
+    {
+        @Override
+        public int compare(Entry o1, Entry o2)
+        {
+            return o1.nSequence < o2.nSequence ? -1 : (o1.nSequence == o2.nSequence ? 0 : 1);
+        }
+    };
+
+    private static final class Node
+    {
+        public final Node nParent;
+        public final String nSegment;
+        public final Map<String, Node> nChildren = new HashMap<>(4);
+        public final Collection<Entry> nEntries = new ArrayList<>(1);
+
+        public Node(Node parent, String segment)
+        {
+            nParent = parent;
+            nSegment = segment;
+        }
+
+        public Node getOrCreateChild(String segment)
+        {
+            Node child = nChildren.get(segment);
+            if (child == null)
+            {
+                child = new Node(this, segment);
+                nChildren.put(segment, child);
+            }
+            return child;
+        }
+
+        public boolean isEmpty()
+        {
+            return nEntries.isEmpty() && nChildren.isEmpty();
+        }
+    }
+
+    private static final class Entry
+    {
+        public final StreamConnection nConnection;
+        public final StreamTag nTag;
+        public final Node nNode;
+        public final long nSequence;
+
+        public Entry(StreamConnection connection, StreamTag tag, Node node, long sequence)
+        {
+            nConnection = connection;
+            nTag = tag;
+            nNode = node;
+            nSequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.sd.lib.stream.ext;
+
+public interface Cancelable
+{
+    /**
+     * 取消
+     *
+     * @return true-取消成功；false-已经完成或者已经取消
+     */
+    boolean cancel();
+}
@@ -0,0 +1,24 @@
+package com.sd.lib.stream.ext;
+
+/**
+ * {@link StreamValueCallback#onError(int, String)}中库内部使用的错误码
+ */
+public final class StreamErrorCode
+{
+    private StreamErrorCode()
+    {
+    }
+
+    /**
+     * 超时
+     */
+    public static final int TIMEOUT = -1000;
+    /**
+     * 流对象方法抛出异常
+     */
+    public static final int EXCEPTION = -1001;
+    /**
+     * 线程池拒绝执行
+     */
+    public static final int REJECTED = -1002;
+}
@@ -0,0 +1,369 @@
+package com.sd.lib.stream.ext;
+
+import com.sd.lib.stream.DispatchQueue;
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.FStreamManager;
+import com.sd.lib.stream.internal.ReflectUtils;
+import com.sd.lib.stream.StreamLog;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把流接口的方法调用转换为Reactive Streams的{@link Publisher}
+ * <p>
+ * 有订阅者的时候注册一个内部的流对象，代理对象对这个流接口无返回值方法的调用会作为{@link Call}发送给订阅者，
+ * 最后一个订阅者取消订阅之后取消注册。每个订阅者有自己的缓冲区，按照订阅者{@link Subscription#request(long)}的数量发送，
+ * 缓冲区满了之后根据{@link DispatchQueue.OverflowPolicy}处理新的调用
+ * <p>
+ * 注意：{@link DispatchQueue.OverflowPolicy#BLOCK}会在分发线程（调用代理对象的线程）上等待，等待期间这个流接口的其他分发也会被阻塞，
+ * 直到订阅者在其他线程调用{@link Subscription#request(long)}或者取消订阅。不要在主线程调用使用这个策略的流接口的代理对象，
+ * 订阅者也不能只在{@link Subscriber#onNext(Object)}中请求数据，否则会一直阻塞
+ * <p>
+ * 需要依赖org.reactivestreams:reactive-streams
+ *
+ * @param <T>
+ */
+public class StreamPublisher<T extends FStream> implements Publisher<StreamPublisher.Call>
+{
+    private final Class<T> mClass;
+    private final Object mTag;
+    private final int mBufferSize;
+    private final DispatchQueue.OverflowPolicy mPolicy;
+    private final Set<String> mMethodNames;
+
+    private final List<StreamSubscription> mSubscriptions = new CopyOnWriteArrayList<>();
+    private T mStream;
+
+    /**
+     * @param clazz       流接口
+     * @param tag         内部流对象的tag，{@link FStream#getTagForStream(Class)}
+     * @param bufferSize  每个订阅者的缓冲区大小
+     * @param policy      缓冲区满了之后的处理策略，{@link DispatchQueue.OverflowPolicy#BLOCK}会阻塞分发线程，见类注释
+     * @param methodNames 要发送的方法名称，不传的话发送所有无返回值的方法
+     */
+    public StreamPublisher(Class<T> clazz, Object tag, int bufferSize, DispatchQueue.OverflowPolicy policy, String... methodNames)
+    {
+        if (clazz == null)
+            throw new IllegalArgumentException("clazz is null");
+        if (!clazz.isInterface())
+            throw new IllegalArgumentException("clazz must be an interface");
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("bufferSize must be greater than 0");
+        if (policy == null)
+            throw new IllegalArgumentException("policy is null");
+
+        mClass = clazz;
+        mTag = tag;
+        mBufferSize = bufferSize;
+        mPolicy = policy;
+        mMethodNames = methodNames == null || methodNames.length <= 0 ? null : new HashSet<>(Arrays.asList(methodNames));
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Call> subscriber)
+    {
+        if (subscriber == null)
+            throw new NullPointerException("subscriber is null");
+
+        final StreamSubscription subscription = new StreamSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+
+        if (subscription.nIsCancelled)
+            return;
+
+        synchronized (this)
+        {
+            // onSubscribe之后其他线程可能已经取消订阅，取消订阅的时候先设置标志再移除，所以在锁内再检查一次
+            if (subscription.nIsCancelled)
+                return;
+
+            mSubscriptions.add(subscription);
+            if (mStream == null)
+            {
+                mStream = createStream();
+                FStreamManager.getInstance().register(mStream);
+            }
+        }
+    }
+
+    /**
+     * 返回订阅者数量
+     *
+     * @return
+     */
+    public int getSubscriberCount()
+    {
+        return mSubscriptions.size();
+    }
+
+    private synchronized void removeSubscription(StreamSubscription subscription)
+    {
+        if (!mSubscriptions.remove(subscription))
+            return;
+
+        if (mSubscriptions.isEmpty() && mStream != null)
+        {
+            FStreamManager.getInstance().unregister(mStream);
+            mStream = null;
+        }
+    }
+
+    private boolean isPublishMethod(Method method)
+    {
+        if (method.getReturnType() != void.class)
+            return false;
+
+        return mMethodNames == null || mMethodNames.contains(method.getName());
+    }
+
+    private T createStream()
+    {
+        return mClass.cast(Proxy.newProxyInstance(mClass.getClassLoader(), new Class<?>[]{mClass}, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+                final Class<?> declaringClass = method.getDeclaringClass();
+                if (declaringClass == Object.class)
+                {
+                    final String name = method.getName();
+                    if ("equals".equals(name))
+                        return proxy == args[0];
+                    if ("hashCode".equals(name))
+                        return System.identityHashCode(proxy);
+                    if ("toString".equals(name))
+                        return StreamPublisher.class.getSimpleName() + "$Stream@" + Integer.toHexString(System.identityHashCode(proxy));
+                    return null;
+                }
+
+                if ("getTagForStream".equals(method.getName()) && declaringClass == FStream.class)
+                    return mTag;
+
+                if (isPublishMethod(method))
+                {
+                    final Call call = new Call(method, args);
+                    for (StreamSubscription item : mSubscriptions)
+                    {
+                        item.offer(call);
+                    }
+                }
+                return ReflectUtils.getDefaultValue(method.getReturnType());
+            }
+        }));
+    }
+
+    private final class StreamSubscription implements Subscription
+    {
+        private final Subscriber<? super Call> nSubscriber;
+
+        private final ArrayDeque<Call> nQueue = new ArrayDeque<>();
+        private final AtomicLong nRequested = new AtomicLong();
+        private final AtomicInteger nWip = new AtomicInteger();
+        private volatile boolean nIsCancelled;
+
+        public StreamSubscription(Subscriber<? super Call> subscriber)
+        {
+            nSubscriber = subscriber;
+        }
+
+        public void offer(Call call)
+        {
+            synchronized (this)
+            {
+                if (nIsCancelled)
+                    return;
+
+                if (mPolicy == DispatchQueue.OverflowPolicy.COALESCE)
+                {
+                    if (coalesce(call))
+                        return;
+                }
+
+                if (nQueue.size() >= mBufferSize)
+                {
+                    switch (mPolicy)
+                    {
+                        case BLOCK:
+                            try
+                            {
+                                while (nQueue.size() >= mBufferSize && !nIsCancelled)
+                                {
+                                    wait();
+                                }
+                            } catch (InterruptedException e)
+                            {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+
+                            if (nIsCancelled)
+                                return;
+                            break;
+                        case DROP_NEWEST:
+                            return;
+                        case DROP_OLDEST:
+                        case COALESCE:
+                            nQueue.pollFirst();
+                            break;
+                    }
+                }
+
+                nQueue.offerLast(call);
+            }
+            drain();
+        }
+
+        /**
+         * 用新的调用替换缓冲区中同一个方法的调用
+         */
+        private boolean coalesce(Call call)
+        {
+            final Iterator<Call> it = nQueue.iterator();
+            while (it.hasNext())
+            {
+                if (it.next().method.equals(call.method))
+                {
+                    it.remove();
+                    nQueue.offerLast(call);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized Call poll()
+        {
+            final Call call = nQueue.pollFirst();
+            if (call != null)
+                notifyAll();
+            return call;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (nIsCancelled)
+                return;
+
+            if (n <= 0)
+            {
+                cancel();
+                nSubscriber.onError(new IllegalArgumentException("request count must be greater than 0 but was " + n));
+                return;
+            }
+
+            while (true)
+            {
+                final long current = nRequested.get();
+                if (current == Long.MAX_VALUE)
+                    break;
+
+                long next = current + n;
+                if (next < 0)
+                    next = Long.MAX_VALUE;
+
+                if (nRequested.compareAndSet(current, next))
+                    break;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel()
+        {
+            if (nIsCancelled)
+                return;
+
+            synchronized (this)
+            {
+                nIsCancelled = true;
+                nQueue.clear();
+                notifyAll();
+            }
+            removeSubscription(this);
+        }
+
+        /**
+         * 按照订阅者的请求数量发送缓冲区中的调用，同一时间只有一个线程在发送
+         */
+        private void drain()
+        {
+            if (nWip.getAndIncrement() != 0)
+                return;
+
+            int missed = 1;
+            do
+            {
+                final long requested = nRequested.get();
+                long emitted = 0;
+                while (emitted != requested)
+                {
+                    if (nIsCancelled)
+                        return;
+
+                    final Call call = poll();
+                    if (call == null)
+                        break;
+
+                    try
+                    {
+                        nSubscriber.onNext(call);
+                    } catch (Throwable e)
+                    {
+                        StreamLog.e(StreamPublisher.class.getSimpleName(), "subscriber onNext error, cancel subscription", e);
+                        cancel();
+                        return;
+                    }
+                    emitted++;
+                }
+
+                if (emitted != 0 && requested != Long.MAX_VALUE)
+                    nRequested.addAndGet(-emitted);
+
+                missed = nWip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+    /**
+     * 一次方法调用
+     */
+    public static final class Call
+    {
+        /**
+         * 调用的方法
+         */
+        public final Method method;
+        /**
+         * 方法参数，没有参数的话为空数组
+         */
+        public final Object[] args;
+
+        Call(Method method, Object[] args)
+        {
+            this.method = method;
+            this.args = args == null ? new Object[0] : args;
+        }
+
+        @Override
+        public String toString()
+        {
+            return method.getName() + Arrays.toString(args);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.sd.lib.stream.ext;
+
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.StreamPlatform;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步查询
+ * <p>
+ * 在指定的线程池中调用代理对象有返回值的方法，结果在主线程通过{@link StreamValueCallback}回调，
+ * 调用线程不会被阻塞，可以同时发起多个查询
+ * <p>
+ * 代理对象设置的{@link FStream.ResultFilter}等配置依旧有效
+ */
+public class StreamQuery
+{
+    private final Executor mExecutor;
+    private final StreamPlatform mPlatform = StreamPlatform.get();
+
+    /**
+     * @param executor 执行查询的线程池
+     */
+    public StreamQuery(Executor executor)
+    {
+        if (executor == null)
+            throw new IllegalArgumentException("executor is null");
+        mExecutor = executor;
+    }
+
+    /**
+     * 查询
+     *
+     * @param proxy    代理对象
+     * @param method   代理对象的方法
+     * @param args     方法参数
+     * @param timeout  超时时间（毫秒），小于等于0不超时，超时之后回调{@link StreamErrorCode#TIMEOUT}
+     * @param callback 结果回调，在主线程触发；线程池拒绝执行的话回调{@link StreamErrorCode#REJECTED}
+     * @param <T>
+     * @return
+     */
+    public <T> Cancelable query(FStream proxy, Method method, Object[] args, long timeout, StreamValueCallback<T> callback)
+    {
+        if (proxy == null)
+            throw new IllegalArgumentException("proxy is null");
+        if (!Proxy.isProxyClass(proxy.getClass()))
+            throw new IllegalArgumentException("proxy is not a proxy instance:" + proxy);
+        if (method == null)
+            throw new IllegalArgumentException("method is null");
+        if (!method.getDeclaringClass().isInstance(proxy))
+            throw new IllegalArgumentException("method " + method + " is not declared by proxy");
+        if (callback == null)
+            throw new IllegalArgumentException("callback is null");
+
+        final QueryTask<T> task = new QueryTask<>(proxy, method, args, callback);
+        if (timeout > 0)
+            mPlatform.postMain(task.nTimeoutRunnable, timeout);
+
+        try
+        {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e)
+        {
+            // 结束任务的时候会移除超时回调
+            task.notifyError(StreamErrorCode.REJECTED, String.valueOf(e));
+        }
+        return task;
+    }
+
+    private final class QueryTask<T> implements Runnable, Cancelable
+    {
+        private final FStream nProxy;
+        private final Method nMethod;
+        private final Object[] nArgs;
+        private final StreamValueCallback<T> nCallback;
+
+        private final AtomicBoolean nIsFinish = new AtomicBoolean();
+
+        public QueryTask(FStream proxy, Method method, Object[] args, StreamValueCallback<T> callback)
+        {
+            nProxy = proxy;
+            nMethod = method;
+            nArgs = args;
+            nCallback = callback;
+        }
+
+        @Override
+        public void run()
+        {
+            if (nIsFinish.get())
+                return;
+
+            try
+            {
+                // 回调的类型由调用方保证和方法返回值类型一致
+                @SuppressWarnings("unchecked")
+                final T value = (T) nMethod.invoke(nProxy, nArgs);
+                notifySuccess(value);
+            } catch (InvocationTargetException e)
+            {
+                final Throwable cause = e.getCause() == null ? e : e.getCause();
+                notifyError(StreamErrorCode.EXCEPTION, String.valueOf(cause));
+            } catch (Exception e)
+            {
+                notifyError(StreamErrorCode.EXCEPTION, String.valueOf(e));
+            }
+        }
+
+        @Override
+        public boolean cancel()
+        {
+            return finish();
+        }
+
+        private boolean finish()
+        {
+            if (nIsFinish.compareAndSet(false, true))
+            {
+                mPlatform.removeMain(nTimeoutRunnable);
+                return true;
+            }
+            return false;
+        }
+
+        private void notifySuccess(final T value)
+        {
+            if (!finish())
+                return;
+
+            mPlatform.postMain(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    nCallback.onSuccess(value);
+                }
+            }, 0);
+        }
+
+        private void notifyError(final int code, final String desc)
+        {
+            if (!finish())
+                return;
+
+            mPlatform.postMain(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    nCallback.onError(code, desc);
+                }
+            }, 0);
+        }
+
+        private final Runnable nTimeoutRunnable = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (finish())
+                    nCallback.onError(StreamErrorCode.TIMEOUT, "timeout");
+            }
+        };
+    }
+}
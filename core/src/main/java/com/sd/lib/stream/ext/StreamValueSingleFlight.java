@@ -0,0 +1,314 @@
+package com.sd.lib.stream.ext;
+
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.StreamPlatform;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 合并相同的异步取值请求
+ * <p>
+ * 适用于参数中带有{@link StreamValueCallback}的流接口方法，同一个代理对象、同一个方法、相同参数的请求如果已经在进行中，
+ * 新的请求不会再次分发，而是等待进行中的请求结果，结果会回调给所有等待的{@link StreamValueCallback}。
+ * 不同的代理对象即使接口和tag相同也不会合并，因为它们的分发配置可能不同
+ * <p>
+ * 所有回调都在主线程触发；有多个流对象回调结果的时候，只有第一个结果有效
+ */
+public class StreamValueSingleFlight
+{
+    private final Map<Key, Flight> mMapFlight = new HashMap<>();
+    private final StreamPlatform mPlatform = StreamPlatform.get();
+
+    /**
+     * 发起请求
+     *
+     * @param proxy    代理对象
+     * @param method   代理对象的方法，参数中必须有且只有一个{@link StreamValueCallback}
+     * @param args     方法参数，{@link StreamValueCallback}参数的位置会被替换，可以传null
+     * @param timeout  超时时间（毫秒），必须大于0，超时之后回调{@link StreamErrorCode#TIMEOUT}；
+     *                 没有流对象处理请求的时候代理对象不会回调，只能靠超时结束请求
+     * @param callback 结果回调
+     * @param <T>
+     * @return
+     */
+    public <T> Cancelable request(FStream proxy, Method method, Object[] args, long timeout, StreamValueCallback<T> callback)
+    {
+        if (proxy == null)
+            throw new IllegalArgumentException("proxy is null");
+        if (method == null)
+            throw new IllegalArgumentException("method is null");
+        if (!method.getDeclaringClass().isInstance(proxy))
+            throw new IllegalArgumentException("method " + method + " is not declared by proxy");
+        if (callback == null)
+            throw new IllegalArgumentException("callback is null");
+        if (timeout <= 0)
+            throw new IllegalArgumentException("timeout must be greater than 0 but was " + timeout);
+
+        final int callbackIndex = findCallbackIndex(method);
+        final Object[] keyArgs = args == null ? new Object[method.getParameterTypes().length] : args.clone();
+        if (keyArgs.length != method.getParameterTypes().length)
+            throw new IllegalArgumentException("args length mismatch for method " + method);
+        keyArgs[callbackIndex] = null;
+
+        final Key key = new Key(proxy, method, keyArgs);
+
+        final Waiter<T> waiter;
+        final Flight newFlight;
+        synchronized (this)
+        {
+            Flight flight = mMapFlight.get(key);
+            if (flight != null)
+            {
+                newFlight = null;
+            } else
+            {
+                flight = new Flight(key);
+                mMapFlight.put(key, flight);
+                newFlight = flight;
+            }
+
+            waiter = new Waiter<>(flight, callback);
+            flight.nWaiters.add(waiter);
+        }
+
+        mPlatform.postMain(waiter.nTimeoutRunnable, timeout);
+
+        if (newFlight != null)
+        {
+            final Object[] invokeArgs = keyArgs.clone();
+            invokeArgs[callbackIndex] = newFlight;
+            try
+            {
+                method.invoke(proxy, invokeArgs);
+            } catch (InvocationTargetException e)
+            {
+                final Throwable cause = e.getCause() == null ? e : e.getCause();
+                newFlight.onError(StreamErrorCode.EXCEPTION, String.valueOf(cause));
+            } catch (Exception e)
+            {
+                newFlight.onError(StreamErrorCode.EXCEPTION, String.valueOf(e));
+            }
+        }
+
+        return waiter;
+    }
+
+    /**
+     * 返回进行中的请求数量
+     *
+     * @return
+     */
+    public synchronized int getFlightCount()
+    {
+        return mMapFlight.size();
+    }
+
+    private synchronized void removeWaiter(Waiter<?> waiter)
+    {
+        final Flight flight = waiter.nFlight;
+        if (flight.nIsFinish)
+            return;
+
+        flight.nWaiters.remove(waiter);
+        if (flight.nWaiters.isEmpty())
+        {
+            // 没有等待者了，移除请求，后续相同的请求会重新分发
+            flight.nIsFinish = true;
+            if (mMapFlight.get(flight.nKey) == flight)
+                mMapFlight.remove(flight.nKey);
+        }
+    }
+
+    private static int findCallbackIndex(Method method)
+    {
+        final Class<?>[] types = method.getParameterTypes();
+        int index = -1;
+        for (int i = 0; i < types.length; i++)
+        {
+            if (StreamValueCallback.class.isAssignableFrom(types[i]))
+            {
+                if (index >= 0)
+                    throw new IllegalArgumentException("more than one StreamValueCallback parameter was found in method " + method);
+                index = i;
+            }
+        }
+
+        if (index < 0)
+            throw new IllegalArgumentException("StreamValueCallback parameter was not found in method " + method);
+        return index;
+    }
+
+    private final class Flight implements StreamValueCallback<Object>
+    {
+        public final Key nKey;
+        public final List<Waiter<?>> nWaiters = new ArrayList<>(1);
+        public boolean nIsFinish;
+
+        public Flight(Key key)
+        {
+            nKey = key;
+        }
+
+        private List<Waiter<?>> finish()
+        {
+            synchronized (StreamValueSingleFlight.this)
+            {
+                if (nIsFinish)
+                    return null;
+
+                nIsFinish = true;
+                if (mMapFlight.get(nKey) == this)
+                    mMapFlight.remove(nKey);
+
+                return new ArrayList<>(nWaiters);
+            }
+        }
+
+        @Override
+        public void onSuccess(final Object value)
+        {
+            final List<Waiter<?>> waiters = finish();
+            if (waiters == null)
+                return;
+
+            mPlatform.postMain(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (Waiter<?> item : waiters)
+                    {
+                        item.notifySuccess(value);
+                    }
+                }
+            }, 0);
+        }
+
+        @Override
+        public void onError(final int code, final String desc)
+        {
+            final List<Waiter<?>> waiters = finish();
+            if (waiters == null)
+                return;
+
+            mPlatform.postMain(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (Waiter<?> item : waiters)
+                    {
+                        item.notifyError(code, desc);
+                    }
+                }
+            }, 0);
+        }
+    }
+
+    private final class Waiter<T> implements Cancelable
+    {
+        public final Flight nFlight;
+        private final StreamValueCallback<T> nCallback;
+        private boolean nIsFinish;
+
+        public Waiter(Flight flight, StreamValueCallback<T> callback)
+        {
+            nFlight = flight;
+            nCallback = callback;
+        }
+
+        private boolean finish()
+        {
+            synchronized (StreamValueSingleFlight.this)
+            {
+                if (nIsFinish)
+                    return false;
+
+                nIsFinish = true;
+            }
+
+            mPlatform.removeMain(nTimeoutRunnable);
+            removeWaiter(this);
+            return true;
+        }
+
+        @Override
+        public boolean cancel()
+        {
+            return finish();
+        }
+
+        void notifySuccess(Object value)
+        {
+            if (finish())
+            {
+                // 流对象按方法参数声明的回调类型回调，和发起请求时的回调类型一致
+                @SuppressWarnings("unchecked")
+                final T result = (T) value;
+                nCallback.onSuccess(result);
+            }
+        }
+
+        void notifyError(int code, String desc)
+        {
+            if (finish())
+                nCallback.onError(code, desc);
+        }
+
+        private final Runnable nTimeoutRunnable = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                notifyError(StreamErrorCode.TIMEOUT, "timeout");
+            }
+        };
+    }
+
+    private static final class Key
+    {
+        /** 代理对象的equals和hashCode会分发给流对象，只能按引用比较 */
+        private final FStream nProxy;
+        private final Method nMethod;
+        private final Object[] nArgs;
+        private final int nHashCode;
+
+        public Key(FStream proxy, Method method, Object[] args)
+        {
+            nProxy = proxy;
+            nMethod = method;
+            nArgs = args;
+
+            int hashCode = System.identityHashCode(proxy);
+            hashCode = 31 * hashCode + method.hashCode();
+            hashCode = 31 * hashCode + Arrays.deepHashCode(args);
+            nHashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+
+            final Key other = (Key) obj;
+            return nProxy == other.nProxy
+                    && nMethod.equals(other.nMethod)
+                    && Arrays.deepEquals(nArgs, other.nArgs);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return nHashCode;
+        }
+    }
+}
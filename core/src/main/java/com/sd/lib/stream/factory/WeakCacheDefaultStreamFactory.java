@@ -1,9 +1,8 @@
 package com.sd.lib.stream.factory;
 
-import android.util.Log;
-
 import com.sd.lib.stream.FStream;
 import com.sd.lib.stream.FStreamManager;
+import com.sd.lib.stream.StreamLog;
 
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
@@ -50,14 +49,14 @@ public class WeakCacheDefaultStreamFactory extends CacheableDefaultStreamFactory
             mMapReference.remove(oldReference);
 
             if (isDebug())
-                Log.i(WeakCacheDefaultStreamFactory.class.getSimpleName(), "remove old reference:" + oldReference + getSizeLog());
+                StreamLog.i(WeakCacheDefaultStreamFactory.class.getSimpleName(), "remove old reference:" + oldReference + getSizeLog());
         }
 
         mMapReference.put(reference, param.classStream);
 
         if (isDebug())
         {
-            Log.i(WeakCacheDefaultStreamFactory.class.getSimpleName(), "+++++ setCache for class:" + param.classStream.getName() + " stream:" + stream + " reference:" + reference
+            StreamLog.i(WeakCacheDefaultStreamFactory.class.getSimpleName(), "+++++ setCache for class:" + param.classStream.getName() + " stream:" + stream + " reference:" + reference
                     + getSizeLog());
         }
     }
@@ -76,7 +75,7 @@ public class WeakCacheDefaultStreamFactory extends CacheableDefaultStreamFactory
             {
                 // 如果为null，说明这个引用已经被手动从map中移除
                 if (isDebug())
-                    Log.i(WeakCacheDefaultStreamFactory.class.getSimpleName(), "releaseReference ghost reference was found:" + reference);
+                    StreamLog.i(WeakCacheDefaultStreamFactory.class.getSimpleName(), "releaseReference ghost reference was found:" + reference);
                 continue;
             }
 
@@ -88,7 +87,7 @@ public class WeakCacheDefaultStreamFactory extends CacheableDefaultStreamFactory
             {
                 if (isDebug())
                 {
-                    Log.e(WeakCacheDefaultStreamFactory.class.getSimpleName(), "releaseReference"
+                    StreamLog.e(WeakCacheDefaultStreamFactory.class.getSimpleName(), "releaseReference"
                             + " class:" + clazz.getName()
                             + " reference:" + reference
                             + " streamReference:" + streamReference
@@ -100,7 +99,7 @@ public class WeakCacheDefaultStreamFactory extends CacheableDefaultStreamFactory
         if (count > 0)
         {
             if (isDebug())
-                Log.i(WeakCacheDefaultStreamFactory.class.getSimpleName(), "releaseReference count:" + count + getSizeLog());
+                StreamLog.i(WeakCacheDefaultStreamFactory.class.getSimpleName(), "releaseReference count:" + count + getSizeLog());
         }
     }
 
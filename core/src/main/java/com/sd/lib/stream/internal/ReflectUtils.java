@@ -0,0 +1,63 @@
+package com.sd.lib.stream.internal;
+
+import java.lang.reflect.Method;
+
+/**
+ * 反射相关的工具方法
+ * <p>
+ * internal包只供库内部的各个子包共用，不属于公开API，后续版本可能修改或者删除，外部不要使用
+ */
+public final class ReflectUtils
+{
+    private ReflectUtils()
+    {
+    }
+
+    /**
+     * 返回方法签名，格式：方法名(参数类型1,参数类型2)
+     * <p>
+     * 写入文件或者跨进程传输的调用用这个签名查找方法，不能修改格式
+     *
+     * @param method
+     * @return
+     */
+    public static String getSignature(Method method)
+    {
+        final StringBuilder builder = new StringBuilder(method.getName()).append('(');
+        final Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++)
+        {
+            if (i > 0)
+                builder.append(',');
+            builder.append(types[i].getName());
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * 返回类型的默认值，基本类型返回对应的0值，其他类型（包括void）返回null
+     *
+     * @param clazz
+     * @return
+     */
+    public static Object getDefaultValue(Class<?> clazz)
+    {
+        if (!clazz.isPrimitive() || clazz == void.class)
+            return null;
+        if (clazz == boolean.class)
+            return false;
+        if (clazz == char.class)
+            return (char) 0;
+        if (clazz == byte.class)
+            return (byte) 0;
+        if (clazz == short.class)
+            return (short) 0;
+        if (clazz == int.class)
+            return 0;
+        if (clazz == long.class)
+            return 0L;
+        if (clazz == float.class)
+            return 0F;
+        return 0D;
+    }
+}
@@ -0,0 +1,57 @@
+package com.sd.lib.stream.ipc;
+
+import java.io.IOException;
+
+/**
+ * 内存中的传输通道，用于在同一个进程中测试{@link StreamBridge}
+ * <p>
+ * 数据帧在发送线程同步交给对端的接收者
+ */
+public class LoopbackTransport implements StreamTransport
+{
+    private volatile LoopbackTransport mPeer;
+    private volatile Receiver mReceiver;
+    private volatile boolean mIsClosed;
+
+    private LoopbackTransport()
+    {
+    }
+
+    /**
+     * 创建一对互相连接的通道
+     *
+     * @return
+     */
+    public static LoopbackTransport[] createPair()
+    {
+        final LoopbackTransport first = new LoopbackTransport();
+        final LoopbackTransport second = new LoopbackTransport();
+        first.mPeer = second;
+        second.mPeer = first;
+        return new LoopbackTransport[]{first, second};
+    }
+
+    @Override
+    public void send(byte[] frame) throws IOException
+    {
+        final LoopbackTransport peer = mPeer;
+        if (mIsClosed || peer == null || peer.mIsClosed)
+            throw new IOException("transport is closed");
+
+        final Receiver receiver = peer.mReceiver;
+        if (receiver != null)
+            receiver.onReceive(frame.clone());
+    }
+
+    @Override
+    public void setReceiver(Receiver receiver)
+    {
+        mReceiver = receiver;
+    }
+
+    @Override
+    public void close()
+    {
+        mIsClosed = true;
+    }
+}
@@ -0,0 +1,352 @@
+package com.sd.lib.stream.ipc;
+
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.FStreamManager;
+import com.sd.lib.stream.StreamConnection;
+import com.sd.lib.stream.StreamLog;
+import com.sd.lib.stream.internal.ReflectUtils;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 跨进程流接口桥
+ * <p>
+ * 发送端：{@link #registerRemote(Class, Object)}在本进程注册一个远程流对象，本进程代理对象触发这个接口返回值为void的方法时，
+ * 远程流对象会把调用编码之后批量发送到对端，同一批次的调用合并成一个数据帧<br>
+ * 接收端：{@link #export(Class, Object)}之后，对端发送过来的这个接口的调用会通过本进程的代理对象分发给本进程的流对象
+ * <p>
+ * 注意：有返回值的方法不会跨进程调用，远程流对象直接返回默认值；参数只支持基本类型、String、byte[]，
+ * 以及{@link #allowSerializable(Class)}添加到白名单中的Serializable类型
+ */
+public class StreamBridge
+{
+    private final StreamTransport mTransport;
+    private final Executor mFlushExecutor;
+    private final ExecutorService mOwnedExecutor;
+    private final StreamCallCodec mCodec = new StreamCallCodec();
+
+    private final Map<String, FStream> mMapExportProxy = new ConcurrentHashMap<>();
+    private final Map<Class<? extends FStream>, FStream> mMapRemoteStream = new ConcurrentHashMap<>();
+
+    /**
+     * 导出的代理对象正在通知的流对象
+     * <p>
+     * 在流对象被通知之前设置，所以代理对象在主线程、mailbox或者批量分发的时候也能标记，
+     * 远程流对象收到导出的代理对象分发的调用，说明调用来自对端，不再转发回去
+     */
+    private static final ThreadLocal<FStream> REMOTE_CALL_TARGET = new ThreadLocal<>();
+
+    private static final FStream.DispatchCallback REMOTE_CALL_MARKER = new FStream.DispatchCallback()
+    {
+        @Override
+        public boolean beforeDispatch(FStream stream, Method method, Object[] methodParams)
+        {
+            REMOTE_CALL_TARGET.set(stream);
+            return false;
+        }
+
+        @Override
+        public boolean afterDispatch(FStream stream, Method method, Object[] methodParams, Object methodResult)
+        {
+            REMOTE_CALL_TARGET.remove();
+            return false;
+        }
+    };
+
+    private List<StreamCallCodec.Call> mPendingCalls = new ArrayList<>();
+    private boolean mIsFlushScheduled;
+
+    private volatile boolean mIsClosed;
+
+    /**
+     * 使用内部的单线程发送数据帧
+     *
+     * @param transport
+     */
+    public StreamBridge(StreamTransport transport)
+    {
+        this(transport, null);
+    }
+
+    /**
+     * @param transport     传输通道
+     * @param flushExecutor 发送数据帧的线程池，为null的话使用内部的单线程
+     */
+    public StreamBridge(StreamTransport transport, Executor flushExecutor)
+    {
+        if (transport == null)
+            throw new IllegalArgumentException("transport is null");
+
+        mTransport = transport;
+        if (flushExecutor == null)
+        {
+            mOwnedExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    final Thread thread = new Thread(r, StreamBridge.class.getSimpleName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            mFlushExecutor = mOwnedExecutor;
+        } else
+        {
+            mOwnedExecutor = null;
+            mFlushExecutor = flushExecutor;
+        }
+
+        mTransport.setReceiver(mReceiver);
+    }
+
+    /**
+     * 允许某个{@link java.io.Serializable}类型作为参数跨进程传递，两端都需要添加；
+     * 解码的时候对象图中的每个类（包括字段的类型）都需要在白名单中
+     *
+     * @param clazz
+     */
+    public void allowSerializable(Class<?> clazz)
+    {
+        mCodec.allowSerializable(clazz);
+    }
+
+    /**
+     * 接收对端发送过来的某个接口的调用，用本进程tag为tag的代理对象分发
+     * <p>
+     * 这个代理对象分发给本进程远程流对象的调用不会再转发回对端，和分发是否切换线程无关
+     *
+     * @param clazz
+     * @param tag
+     */
+    public void export(Class<? extends FStream> clazz, Object tag)
+    {
+        final FStream proxy = new FStream.ProxyBuilder()
+                .setTag(tag)
+                .setDispatchCallback(REMOTE_CALL_MARKER)
+                .build(clazz);
+        mMapExportProxy.put(clazz.getName(), proxy);
+    }
+
+    /**
+     * 不再接收对端发送过来的某个接口的调用
+     *
+     * @param clazz
+     */
+    public void unexport(Class<? extends FStream> clazz)
+    {
+        mMapExportProxy.remove(clazz.getName());
+    }
+
+    /**
+     * 在本进程注册一个远程流对象，本进程代理对象触发这个接口的方法时，调用会转发到对端
+     *
+     * @param clazz 流接口
+     * @param tag   远程流对象的tag
+     * @return
+     */
+    public synchronized StreamConnection registerRemote(Class<? extends FStream> clazz, Object tag)
+    {
+        if (clazz == null || !clazz.isInterface() || clazz == FStream.class)
+            throw new IllegalArgumentException("clazz must be a sub interface of " + FStream.class.getName());
+
+        unregisterRemote(clazz);
+
+        final FStream stream = (FStream) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz},
+                new RemoteStreamHandler(clazz, tag));
+
+        final StreamConnection connection = FStreamManager.getInstance().register(stream);
+        if (connection != null)
+            mMapRemoteStream.put(clazz, stream);
+        return connection;
+    }
+
+    /**
+     * 取消注册远程流对象
+     *
+     * @param clazz
+     */
+    public synchronized void unregisterRemote(Class<? extends FStream> clazz)
+    {
+        final FStream stream = mMapRemoteStream.remove(clazz);
+        if (stream != null)
+            FStreamManager.getInstance().unregister(stream);
+    }
+
+    /**
+     * 关闭，取消注册所有远程流对象
+     */
+    public void close()
+    {
+        mIsClosed = true;
+        for (Class<? extends FStream> item : new ArrayList<>(mMapRemoteStream.keySet()))
+        {
+            unregisterRemote(item);
+        }
+        mMapExportProxy.clear();
+        mTransport.close();
+
+        if (mOwnedExecutor != null)
+            mOwnedExecutor.shutdown();
+    }
+
+    private void enqueue(StreamCallCodec.Call call)
+    {
+        synchronized (this)
+        {
+            mPendingCalls.add(call);
+            if (mIsFlushScheduled)
+                return;
+
+            mIsFlushScheduled = true;
+        }
+        mFlushExecutor.execute(mFlushRunnable);
+    }
+
+    private final Runnable mFlushRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            final List<StreamCallCodec.Call> calls;
+            synchronized (StreamBridge.this)
+            {
+                calls = mPendingCalls;
+                mPendingCalls = new ArrayList<>();
+                mIsFlushScheduled = false;
+            }
+
+            if (calls.isEmpty() || mIsClosed)
+                return;
+
+            try
+            {
+                mTransport.send(mCodec.encode(calls));
+            } catch (IOException e)
+            {
+                StreamLog.e(StreamBridge.class.getSimpleName(), "send calls failed count:" + calls.size(), e);
+            }
+        }
+    };
+
+    private final StreamTransport.Receiver mReceiver = new StreamTransport.Receiver()
+    {
+        @Override
+        public void onReceive(byte[] frame)
+        {
+            if (mIsClosed)
+                return;
+
+            final List<StreamCallCodec.Call> calls;
+            try
+            {
+                calls = mCodec.decode(frame);
+            } catch (IOException e)
+            {
+                StreamLog.e(StreamBridge.class.getSimpleName(), "decode frame failed", e);
+                return;
+            }
+
+            for (StreamCallCodec.Call item : calls)
+            {
+                dispatchRemoteCall(item);
+            }
+        }
+    };
+
+    private void dispatchRemoteCall(StreamCallCodec.Call call)
+    {
+        final FStream proxy = mMapExportProxy.get(call.interfaceName);
+        if (proxy == null)
+        {
+            if (FStreamManager.getInstance().isDebug())
+                StreamLog.i(StreamBridge.class.getSimpleName(), "interface was not exported:" + call.interfaceName);
+            return;
+        }
+
+        final Method[] methods = StreamCallCodec.getMethods(proxy.getClass().getInterfaces()[0]);
+        if (call.methodIndex >= methods.length)
+        {
+            StreamLog.e(StreamBridge.class.getSimpleName(), "illegal method index:" + call.methodIndex + " interface:" + call.interfaceName);
+            return;
+        }
+
+        try
+        {
+            methods[call.methodIndex].invoke(proxy, call.args);
+        } catch (Exception e)
+        {
+            StreamLog.e(StreamBridge.class.getSimpleName(), "dispatch remote call failed:" + methods[call.methodIndex], e);
+        }
+    }
+
+    private final class RemoteStreamHandler implements InvocationHandler
+    {
+        private final Class<? extends FStream> nClass;
+        private final Object nTag;
+
+        public RemoteStreamHandler(Class<? extends FStream> clazz, Object tag)
+        {
+            nClass = clazz;
+            nTag = tag;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            if (method.getDeclaringClass() == Object.class)
+            {
+                final String name = method.getName();
+                if ("equals".equals(name))
+                    return proxy == args[0];
+                if ("hashCode".equals(name))
+                    return System.identityHashCode(proxy);
+                if ("toString".equals(name))
+                    return "RemoteStream@" + Integer.toHexString(System.identityHashCode(proxy)) + "[" + nClass.getName() + "]";
+                return null;
+            }
+
+            if (method.getDeclaringClass() == FStream.class)
+                return nTag;
+
+            final Class<?> returnType = method.getReturnType();
+            if (returnType != void.class)
+                return ReflectUtils.getDefaultValue(returnType);
+
+            if (REMOTE_CALL_TARGET.get() == proxy)
+            {
+                // 对端发过来的调用，不再转发回去
+                return null;
+            }
+
+            final int methodIndex = StreamCallCodec.indexOfMethod(nClass, method);
+            if (methodIndex < 0)
+                return null;
+
+            // 入队的时候编码参数，不支持的参数只丢弃这一次调用，不影响同一批次的其他调用
+            final byte[] encodedArgs;
+            try
+            {
+                encodedArgs = mCodec.encodeArgs(args);
+            } catch (IOException e)
+            {
+                StreamLog.e(StreamBridge.class.getSimpleName(), "encode call failed, drop " + method, e);
+                return null;
+            }
+
+            enqueue(new StreamCallCodec.Call(nClass.getName(), methodIndex, args, encodedArgs));
+            return null;
+        }
+    }
+}
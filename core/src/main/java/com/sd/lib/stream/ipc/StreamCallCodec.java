@@ -0,0 +1,438 @@
+package com.sd.lib.stream.ipc;
+
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.internal.ReflectUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 流接口方法调用的二进制编解码
+ * <p>
+ * 数据帧格式：版本号、接口名表、调用列表；每个调用只记录接口名在表中的下标、方法下标和参数，
+ * 方法下标是方法在接口中按签名排序之后的位置，两端的接口定义需要一致
+ * <p>
+ * 数据帧来自其他进程，默认不支持{@link Serializable}参数；{@link #allowSerializable(Class)}之后，
+ * 解码的时候对象图中的每个类都需要在白名单中，避免反序列化任意类
+ */
+class StreamCallCodec
+{
+    private static final int VERSION = 2;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_BYTE = 2;
+    private static final byte TYPE_SHORT = 3;
+    private static final byte TYPE_CHAR = 4;
+    private static final byte TYPE_INT = 5;
+    private static final byte TYPE_LONG = 6;
+    private static final byte TYPE_FLOAT = 7;
+    private static final byte TYPE_DOUBLE = 8;
+    private static final byte TYPE_STRING = 9;
+    private static final byte TYPE_BYTES = 10;
+    private static final byte TYPE_SERIALIZABLE = 11;
+
+    private static final Map<Class<?>, Method[]> MAP_METHOD = new ConcurrentHashMap<>();
+
+    private final Set<String> mAllowedClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * 允许某个{@link Serializable}类型作为参数，对象图中用到的其他类（例如字段的类型）也需要添加
+     *
+     * @param clazz
+     */
+    public void allowSerializable(Class<?> clazz)
+    {
+        if (clazz == null)
+            throw new IllegalArgumentException("clazz is null");
+        mAllowedClasses.add(clazz.getName());
+    }
+
+    /**
+     * 编码参数，{@link Call#encodedArgs}
+     *
+     * @param args
+     * @return
+     * @throws IOException 有参数不支持编码
+     */
+    public byte[] encodeArgs(Object[] args) throws IOException
+    {
+        final ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(byteOutput);
+        writeArgs(output, args);
+        output.flush();
+        return byteOutput.toByteArray();
+    }
+
+    private void writeArgs(DataOutputStream output, Object[] args) throws IOException
+    {
+        final int argCount = args == null ? 0 : args.length;
+        output.writeByte(argCount);
+        for (int i = 0; i < argCount; i++)
+        {
+            writeValue(output, args[i]);
+        }
+    }
+
+    /**
+     * 编码调用列表
+     *
+     * @param calls
+     * @return
+     * @throws IOException
+     */
+    public byte[] encode(List<Call> calls) throws IOException
+    {
+        final Map<String, Integer> mapName = new LinkedHashMap<>();
+        for (Call item : calls)
+        {
+            if (!mapName.containsKey(item.interfaceName))
+                mapName.put(item.interfaceName, mapName.size());
+        }
+
+        final ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(byteOutput);
+        output.writeByte(VERSION);
+
+        output.writeShort(mapName.size());
+        for (String item : mapName.keySet())
+        {
+            output.writeUTF(item);
+        }
+
+        output.writeInt(calls.size());
+        for (Call item : calls)
+        {
+            output.writeShort(mapName.get(item.interfaceName));
+            output.writeShort(item.methodIndex);
+
+            if (item.encodedArgs != null)
+                output.write(item.encodedArgs);
+            else
+                writeArgs(output, item.args);
+        }
+
+        output.flush();
+        return byteOutput.toByteArray();
+    }
+
+    /**
+     * 解码数据帧
+     *
+     * @param frame
+     * @return
+     * @throws IOException
+     */
+    public List<Call> decode(byte[] frame) throws IOException
+    {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(frame));
+        final int version = input.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("unsupported version:" + version);
+
+        final int nameCount = input.readUnsignedShort();
+        // 每个接口名至少占2个字节（长度）
+        checkCount(nameCount, 2, input);
+        final String[] names = new String[nameCount];
+        for (int i = 0; i < nameCount; i++)
+        {
+            names[i] = input.readUTF();
+        }
+
+        final int callCount = input.readInt();
+        // 每个调用至少占5个字节（接口名下标、方法下标、参数数量）
+        checkCount(callCount, 5, input);
+        final List<Call> list = new ArrayList<>(callCount);
+        for (int i = 0; i < callCount; i++)
+        {
+            final int nameIndex = input.readUnsignedShort();
+            if (nameIndex >= nameCount)
+                throw new IOException("illegal name index:" + nameIndex);
+
+            final int methodIndex = input.readUnsignedShort();
+            final int argCount = input.readUnsignedByte();
+            // 每个参数至少占1个字节（类型）
+            checkCount(argCount, 1, input);
+            final Object[] args = argCount == 0 ? null : new Object[argCount];
+            for (int a = 0; a < argCount; a++)
+            {
+                args[a] = readValue(input);
+            }
+
+            list.add(new Call(names[nameIndex], methodIndex, args));
+        }
+        return list;
+    }
+
+    protected void writeValue(DataOutputStream output, Object value) throws IOException
+    {
+        if (value == null)
+        {
+            output.writeByte(TYPE_NULL);
+        } else if (value instanceof Boolean)
+        {
+            output.writeByte(TYPE_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte)
+        {
+            output.writeByte(TYPE_BYTE);
+            output.writeByte((Byte) value);
+        } else if (value instanceof Short)
+        {
+            output.writeByte(TYPE_SHORT);
+            output.writeShort((Short) value);
+        } else if (value instanceof Character)
+        {
+            output.writeByte(TYPE_CHAR);
+            output.writeChar((Character) value);
+        } else if (value instanceof Integer)
+        {
+            output.writeByte(TYPE_INT);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long)
+        {
+            output.writeByte(TYPE_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Float)
+        {
+            output.writeByte(TYPE_FLOAT);
+            output.writeFloat((Float) value);
+        } else if (value instanceof Double)
+        {
+            output.writeByte(TYPE_DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof String)
+        {
+            final byte[] bytes = ((String) value).getBytes("UTF-8");
+            output.writeByte(TYPE_STRING);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else if (value instanceof byte[])
+        {
+            final byte[] bytes = (byte[]) value;
+            output.writeByte(TYPE_BYTES);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else if (value instanceof Serializable && mAllowedClasses.contains(value.getClass().getName()))
+        {
+            final ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+            final ObjectOutputStream objectOutput = new ObjectOutputStream(byteOutput);
+            objectOutput.writeObject(value);
+            objectOutput.close();
+
+            final byte[] bytes = byteOutput.toByteArray();
+            output.writeByte(TYPE_SERIALIZABLE);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else
+        {
+            throw new IOException("unsupported value type:" + value.getClass().getName());
+        }
+    }
+
+    protected Object readValue(DataInputStream input) throws IOException
+    {
+        final int type = input.readByte();
+        switch (type)
+        {
+            case TYPE_NULL:
+                return null;
+            case TYPE_BOOLEAN:
+                return input.readBoolean();
+            case TYPE_BYTE:
+                return input.readByte();
+            case TYPE_SHORT:
+                return input.readShort();
+            case TYPE_CHAR:
+                return input.readChar();
+            case TYPE_INT:
+                return input.readInt();
+            case TYPE_LONG:
+                return input.readLong();
+            case TYPE_FLOAT:
+                return input.readFloat();
+            case TYPE_DOUBLE:
+                return input.readDouble();
+            case TYPE_STRING:
+                return new String(readBytes(input), "UTF-8");
+            case TYPE_BYTES:
+                return readBytes(input);
+            case TYPE_SERIALIZABLE:
+                if (mAllowedClasses.isEmpty())
+                    throw new IOException("serializable value is not allowed");
+
+                final ObjectInputStream objectInput = new AllowlistObjectInputStream(new ByteArrayInputStream(readBytes(input)), mAllowedClasses);
+                try
+                {
+                    return objectInput.readObject();
+                } catch (ClassNotFoundException e)
+                {
+                    throw new IOException("read serializable value failed:" + e);
+                } finally
+                {
+                    objectInput.close();
+                }
+            default:
+                throw new IOException("unknown value type:" + type);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream input) throws IOException
+    {
+        final int length = input.readInt();
+        checkCount(length, 1, input);
+
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * 检查数据帧中声明的数量，数据帧来自其他进程，不能根据未检查的数量分配内存
+     *
+     * @param count    声明的数量
+     * @param minBytes 每一项最少占用的字节数
+     * @param input
+     * @throws IOException 数量小于0或者剩余的数据不够
+     */
+    private static void checkCount(int count, int minBytes, DataInputStream input) throws IOException
+    {
+        if (count < 0)
+            throw new IOException("illegal count:" + count);
+
+        // 解码的输入是内存中的数组，available()就是剩余的字节数
+        final long remaining = input.available();
+        if ((long) count * minBytes > remaining)
+            throw new IOException("count exceeds frame, count:" + count + " remaining:" + remaining);
+    }
+
+    /**
+     * 返回接口的方法表，按方法签名排序，不包含{@link FStream}声明的方法
+     *
+     * @param clazz
+     * @return
+     */
+    public static Method[] getMethods(Class<?> clazz)
+    {
+        Method[] methods = MAP_METHOD.get(clazz);
+        if (methods != null)
+            return methods;
+
+        final List<Method> list = new ArrayList<>();
+        for (Method item : clazz.getMethods())
+        {
+            if (item.getDeclaringClass() == FStream.class)
+                continue;
+            list.add(item);
+        }
+
+        methods = list.toArray(new Method[list.size()]);
+        Arrays.sort(methods, new Comparator<Method>()
+        {
+            @Override
+            public int compare(Method o1, Method o2)
+            {
+                return ReflectUtils.getSignature(o1).compareTo(ReflectUtils.getSignature(o2));
+            }
+        });
+
+        MAP_METHOD.put(clazz, methods);
+        return methods;
+    }
+
+    /**
+     * 返回方法在方法表中的下标，未找到返回-1
+     *
+     * @param clazz
+     * @param method
+     * @return
+     */
+    public static int indexOfMethod(Class<?> clazz, Method method)
+    {
+        final Method[] methods = getMethods(clazz);
+        for (int i = 0; i < methods.length; i++)
+        {
+            if (methods[i].equals(method))
+                return i;
+        }
+
+        final String signature = ReflectUtils.getSignature(method);
+        for (int i = 0; i < methods.length; i++)
+        {
+            if (ReflectUtils.getSignature(methods[i]).equals(signature))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 只解析白名单中的类
+     */
+    private static final class AllowlistObjectInputStream extends ObjectInputStream
+    {
+        private final Set<String> nAllowedClasses;
+
+        public AllowlistObjectInputStream(InputStream input, Set<String> allowedClasses) throws IOException
+        {
+            super(input);
+            nAllowedClasses = allowedClasses;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            if (!nAllowedClasses.contains(desc.getName()))
+                throw new InvalidClassException(desc.getName(), "class is not allowed");
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException
+        {
+            throw new InvalidClassException("proxy class is not allowed");
+        }
+    }
+
+    public static final class Call
+    {
+        public final String interfaceName;
+        public final int methodIndex;
+        public final Object[] args;
+        /**
+         * 已经编码的参数，{@link #encodeArgs(Object[])}，null-编码帧的时候再编码
+         */
+        public final byte[] encodedArgs;
+
+        public Call(String interfaceName, int methodIndex, Object[] args)
+        {
+            this(interfaceName, methodIndex, args, null);
+        }
+
+        public Call(String interfaceName, int methodIndex, Object[] args, byte[] encodedArgs)
+        {
+            this.interfaceName = interfaceName;
+            this.methodIndex = methodIndex;
+            this.args = args;
+            this.encodedArgs = encodedArgs;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.sd.lib.stream.ipc;
+
+import com.sd.lib.stream.StreamLog;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 基于输入输出流的传输通道，每个数据帧以4字节长度开头
+ * <p>
+ * 可以用在Android的LocalSocket、Unix domain socket或者普通socket上
+ */
+public class StreamSocketTransport implements StreamTransport
+{
+    /** 单个数据帧的最大长度 */
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private final DataInputStream mInput;
+    private final DataOutputStream mOutput;
+
+    private volatile Receiver mReceiver;
+    private volatile boolean mIsClosed;
+    private Thread mReadThread;
+
+    public StreamSocketTransport(InputStream input, OutputStream output)
+    {
+        if (input == null)
+            throw new IllegalArgumentException("input is null");
+        if (output == null)
+            throw new IllegalArgumentException("output is null");
+
+        mInput = new DataInputStream(input);
+        mOutput = new DataOutputStream(output);
+    }
+
+    /**
+     * 开始读取数据帧，读取线程是守护线程
+     */
+    public synchronized void start()
+    {
+        if (mReadThread != null)
+            return;
+
+        mReadThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                readLoop();
+            }
+        }, StreamSocketTransport.class.getSimpleName());
+        mReadThread.setDaemon(true);
+        mReadThread.start();
+    }
+
+    private void readLoop()
+    {
+        try
+        {
+            while (!mIsClosed)
+            {
+                final int length = mInput.readInt();
+                if (length < 0 || length > MAX_FRAME_SIZE)
+                    throw new IOException("illegal frame length:" + length);
+
+                final byte[] frame = new byte[length];
+                mInput.readFully(frame);
+
+                final Receiver receiver = mReceiver;
+                if (receiver != null)
+                    receiver.onReceive(frame);
+            }
+        } catch (EOFException e)
+        {
+            // 对端关闭
+        } catch (IOException e)
+        {
+            if (!mIsClosed)
+                StreamLog.e(StreamSocketTransport.class.getSimpleName(), "read frame failed", e);
+        } finally
+        {
+            close();
+        }
+    }
+
+    @Override
+    public void send(byte[] frame) throws IOException
+    {
+        if (mIsClosed)
+            throw new IOException("transport is closed");
+
+        synchronized (mOutput)
+        {
+            mOutput.writeInt(frame.length);
+            mOutput.write(frame);
+            mOutput.flush();
+        }
+    }
+
+    @Override
+    public void setReceiver(Receiver receiver)
+    {
+        mReceiver = receiver;
+    }
+
+    @Override
+    public void close()
+    {
+        if (mIsClosed)
+            return;
+
+        mIsClosed = true;
+        try
+        {
+            mInput.close();
+        } catch (IOException e)
+        {
+            // 忽略
+        }
+        try
+        {
+            mOutput.close();
+        } catch (IOException e)
+        {
+            // 忽略
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.sd.lib.stream.ipc;
+
+import java.io.IOException;
+
+/**
+ * 跨进程传输通道，负责发送和接收{@link StreamBridge}编码之后的数据帧
+ */
+public interface StreamTransport
+{
+    /**
+     * 发送数据帧
+     *
+     * @param frame
+     * @throws IOException
+     */
+    void send(byte[] frame) throws IOException;
+
+    /**
+     * 设置数据帧接收者
+     *
+     * @param receiver
+     */
+    void setReceiver(Receiver receiver);
+
+    /**
+     * 关闭通道
+     */
+    void close();
+
+    interface Receiver
+    {
+        /**
+         * 收到数据帧
+         *
+         * @param frame
+         */
+        void onReceive(byte[] frame);
+    }
+}
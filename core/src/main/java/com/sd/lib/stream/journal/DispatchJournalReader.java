@@ -0,0 +1,151 @@
+package com.sd.lib.stream.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 读取{@link MappedDispatchJournal}写入的记录文件
+ */
+public class DispatchJournalReader
+{
+    private DispatchJournalReader()
+    {
+    }
+
+    /**
+     * 读取记录文件，按时间从旧到新返回所有完整的分发记录
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static List<Entry> read(File file) throws IOException
+    {
+        final ByteBuffer buffer;
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            final byte[] bytes = new byte[(int) randomAccessFile.length()];
+            randomAccessFile.readFully(bytes);
+            buffer = ByteBuffer.wrap(bytes);
+        } finally
+        {
+            randomAccessFile.close();
+        }
+
+        if (buffer.capacity() < JournalFormat.HEADER_SIZE || buffer.getInt(JournalFormat.OFFSET_MAGIC) != JournalFormat.MAGIC)
+            throw new IOException("not a dispatch journal file:" + file);
+
+        final int version = buffer.getInt(JournalFormat.OFFSET_VERSION);
+        if (version != JournalFormat.VERSION)
+            throw new IOException("unsupported version:" + version);
+
+        final int dictCapacity = buffer.getInt(JournalFormat.OFFSET_DICT_CAPACITY);
+        final int ringCapacity = buffer.getInt(JournalFormat.OFFSET_RING_CAPACITY);
+        final int dictSize = buffer.getInt(JournalFormat.OFFSET_DICT_SIZE);
+        final long recordCount = buffer.getLong(JournalFormat.OFFSET_RECORD_COUNT);
+
+        // 读取字典
+        final Map<Integer, String> mapInterface = new HashMap<>();
+        final Map<Integer, String[]> mapMethod = new HashMap<>();
+        int position = JournalFormat.HEADER_SIZE;
+        final int dictEnd = JournalFormat.HEADER_SIZE + dictSize;
+        while (position < dictEnd)
+        {
+            final byte type = buffer.get(position);
+            final int id = buffer.getInt(position + 1);
+            final int interfaceId = buffer.getInt(position + 5);
+            final int length = buffer.getShort(position + 9);
+            final String value = new String(buffer.array(), position + 11, length, "UTF-8");
+            position += 11 + length;
+
+            if (type == JournalFormat.DICT_INTERFACE)
+                mapInterface.put(id, value);
+            else if (type == JournalFormat.DICT_METHOD)
+                mapMethod.put(id, new String[]{mapInterface.get(interfaceId), value});
+        }
+
+        // 读取记录，写满之后最旧的记录在下一个写入位置
+        final int recordCapacity = ringCapacity / JournalFormat.RECORD_SIZE;
+        final long available = Math.min(recordCount, recordCapacity);
+        final long start = recordCount - available;
+        final int ringStart = JournalFormat.HEADER_SIZE + dictCapacity;
+
+        final List<Entry> list = new ArrayList<>();
+        Entry current = null;
+        int streamIndex = 0;
+        for (long i = start; i < recordCount; i++)
+        {
+            final int offset = ringStart + (int) (i % recordCapacity) * JournalFormat.RECORD_SIZE;
+            final int type = buffer.getInt(offset);
+            if (type == JournalFormat.RECORD_DISPATCH)
+            {
+                final int methodId = buffer.getInt(offset + 8);
+                final String[] method = mapMethod.get(methodId);
+                final int count = buffer.getInt(offset + 16);
+                final int streamCount = buffer.getInt(offset + 20);
+
+                current = new Entry(buffer.getLong(offset + 24),
+                        method == null ? null : method[0],
+                        method == null ? null : method[1],
+                        buffer.getInt(offset + 12),
+                        count,
+                        new long[streamCount]);
+                streamIndex = 0;
+                list.add(current);
+            } else if (type == JournalFormat.RECORD_STREAM)
+            {
+                // 分发记录已经被覆盖的流对象记录直接跳过
+                if (current != null && streamIndex < current.durations.length)
+                    current.durations[streamIndex++] = buffer.getLong(offset + 24);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 一次分发记录
+     */
+    public static final class Entry
+    {
+        /** 分发开始时间 */
+        public final long timestamp;
+        /** 接口名，字典已满的时候为null */
+        public final String interfaceName;
+        /** 方法签名，例如：onChanged(java.lang.String,int)，字典已满的时候为null */
+        public final String methodSignature;
+        /** 代理对象tag的hashCode，tag为null的时候为0 */
+        public final int tagHash;
+        /** 被通知的流对象数量 */
+        public final int count;
+        /** 每个流对象方法耗时（纳秒） */
+        public final long[] durations;
+
+        Entry(long timestamp, String interfaceName, String methodSignature, int tagHash, int count, long[] durations)
+        {
+            this.timestamp = timestamp;
+            this.interfaceName = interfaceName;
+            this.methodSignature = methodSignature;
+            this.tagHash = tagHash;
+            this.count = count;
+            this.durations = durations;
+        }
+
+        @Override
+        public String toString()
+        {
+            return super.toString() + "\r\n" +
+                    " timestamp:" + timestamp + "\r\n" +
+                    " interfaceName:" + interfaceName + "\r\n" +
+                    " methodSignature:" + methodSignature + "\r\n" +
+                    " tagHash:" + tagHash + "\r\n" +
+                    " count:" + count;
+        }
+    }
+}
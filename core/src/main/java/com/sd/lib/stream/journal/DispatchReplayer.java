@@ -0,0 +1,195 @@
+package com.sd.lib.stream.journal;
+
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.internal.ReflectUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 重放{@link DispatchJournalReader}读取的分发记录
+ * <p>
+ * 没有指定目标流对象的话，每条记录都会通过记录中接口的代理对象重新触发一次，
+ * 会通知{@link com.sd.lib.stream.FStreamManager}中所有注册的流对象，包括应用正在使用的流对象；
+ * 指定了目标流对象的话，只按顺序通知这些目标中实现了记录中接口并且tag相同的流对象，不经过{@link com.sd.lib.stream.FStreamManager}。
+ * 记录中没有保存方法参数和tag，默认参数为null或者基本类型的默认值，tag为null，可以重写{@link #getArgs}和{@link #getTag}修改
+ */
+public class DispatchReplayer
+{
+    private final ClassLoader mClassLoader;
+    private final List<FStream> mTargets;
+    private final Map<String, ReplayMethod> mMapMethod = new HashMap<>();
+
+    public DispatchReplayer()
+    {
+        this(DispatchReplayer.class.getClassLoader());
+    }
+
+    public DispatchReplayer(ClassLoader classLoader)
+    {
+        this(classLoader, null);
+    }
+
+    /**
+     * @param classLoader 加载记录中接口的类加载器
+     * @param targets     重放的目标流对象，null-通过代理对象通知{@link com.sd.lib.stream.FStreamManager}中注册的流对象
+     */
+    public DispatchReplayer(ClassLoader classLoader, Collection<? extends FStream> targets)
+    {
+        mClassLoader = classLoader;
+        mTargets = targets == null ? null : new ArrayList<FStream>(targets);
+    }
+
+    /**
+     * 重放
+     *
+     * @param entries     分发记录
+     * @param keepTiming  true-按记录之间的时间间隔重放；false-连续重放
+     * @return 成功重放的记录数量
+     * @throws InterruptedException
+     */
+    public int replay(List<DispatchJournalReader.Entry> entries, boolean keepTiming) throws InterruptedException
+    {
+        int count = 0;
+        long lastTimestamp = 0;
+        for (DispatchJournalReader.Entry item : entries)
+        {
+            if (keepTiming && lastTimestamp > 0)
+            {
+                final long delay = item.timestamp - lastTimestamp;
+                if (delay > 0)
+                    Thread.sleep(delay);
+            }
+            lastTimestamp = item.timestamp;
+
+            if (replay(item))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * 重放一条记录
+     *
+     * @param entry
+     * @return
+     */
+    public boolean replay(DispatchJournalReader.Entry entry)
+    {
+        final ReplayMethod replayMethod = findMethod(entry);
+        if (replayMethod == null)
+            return false;
+
+        final Class<? extends FStream> clazz = replayMethod.nClass;
+        final Method method = replayMethod.nMethod;
+        final Object tag = getTag(entry);
+        final Object[] args = getArgs(entry, method);
+        try
+        {
+            if (mTargets == null)
+            {
+                final FStream proxy = new FStream.ProxyBuilder().setTag(tag).build(clazz);
+                method.invoke(proxy, args);
+            } else
+            {
+                for (FStream item : mTargets)
+                {
+                    if (clazz.isInstance(item) && equalsTag(tag, item.getTagForStream(clazz)))
+                        method.invoke(item, args);
+                }
+            }
+        } catch (IllegalAccessException e)
+        {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e)
+        {
+            throw new RuntimeException(e.getCause() == null ? e : e.getCause());
+        }
+        return true;
+    }
+
+    /**
+     * 返回重放时代理对象的tag
+     *
+     * @param entry
+     * @return
+     */
+    protected Object getTag(DispatchJournalReader.Entry entry)
+    {
+        return null;
+    }
+
+    /**
+     * 返回重放时的方法参数
+     *
+     * @param entry
+     * @param method
+     * @return
+     */
+    protected Object[] getArgs(DispatchJournalReader.Entry entry, Method method)
+    {
+        final Class<?>[] types = method.getParameterTypes();
+        final Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++)
+        {
+            args[i] = ReflectUtils.getDefaultValue(types[i]);
+        }
+        return args;
+    }
+
+    private static boolean equalsTag(Object tag, Object streamTag)
+    {
+        return tag == null ? streamTag == null : tag.equals(streamTag);
+    }
+
+    private ReplayMethod findMethod(DispatchJournalReader.Entry entry)
+    {
+        if (entry.interfaceName == null || entry.methodSignature == null)
+            return null;
+
+        final String key = entry.interfaceName + "#" + entry.methodSignature;
+        if (mMapMethod.containsKey(key))
+            return mMapMethod.get(key);
+
+        ReplayMethod result = null;
+        try
+        {
+            final Class<?> clazz = Class.forName(entry.interfaceName, false, mClassLoader);
+            if (clazz.isInterface() && FStream.class.isAssignableFrom(clazz))
+            {
+                for (Method item : clazz.getMethods())
+                {
+                    if (ReflectUtils.getSignature(item).equals(entry.methodSignature))
+                    {
+                        // 方法可能声明在父接口中，分发的接口以记录中的接口为准
+                        result = new ReplayMethod(clazz.asSubclass(FStream.class), item);
+                        break;
+                    }
+                }
+            }
+        } catch (ClassNotFoundException e)
+        {
+            result = null;
+        }
+
+        mMapMethod.put(key, result);
+        return result;
+    }
+
+    private static final class ReplayMethod
+    {
+        private final Class<? extends FStream> nClass;
+        private final Method nMethod;
+
+        public ReplayMethod(Class<? extends FStream> clazz, Method method)
+        {
+            nClass = clazz;
+            nMethod = method;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.sd.lib.stream.journal;
+
+/**
+ * 分发记录文件格式
+ * <p>
+ * 文件头 | 字典区 | 环形记录区
+ * <p>
+ * 字典区保存接口名和方法签名，记录区是固定长度的记录，写满之后从头覆盖最旧的记录。
+ * 每次分发写一条{@link #RECORD_DISPATCH}记录，后面紧跟count条{@link #RECORD_STREAM}记录
+ */
+final class JournalFormat
+{
+    private JournalFormat()
+    {
+    }
+
+    public static final int MAGIC = 0x46534A31;
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 64;
+    public static final int OFFSET_MAGIC = 0;
+    public static final int OFFSET_VERSION = 4;
+    public static final int OFFSET_DICT_CAPACITY = 8;
+    public static final int OFFSET_RING_CAPACITY = 12;
+    public static final int OFFSET_DICT_SIZE = 16;
+    public static final int OFFSET_RECORD_COUNT = 24;
+
+    public static final int RECORD_SIZE = 32;
+    public static final int RECORD_DISPATCH = 1;
+    public static final int RECORD_STREAM = 2;
+
+    public static final byte DICT_INTERFACE = 1;
+    public static final byte DICT_METHOD = 2;
+}
@@ -0,0 +1,247 @@
+package com.sd.lib.stream.journal;
+
+import com.sd.lib.stream.DispatchJournal;
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.internal.ReflectUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于内存映射文件的分发记录
+ * <p>
+ * 记录区是固定大小的环形缓冲，写满之后覆盖最旧的记录；除了第一次遇到某个接口或者方法时写字典，记录过程没有对象分配。
+ * 文件可以用{@link DispatchJournalReader}读取，再用{@link DispatchReplayer}重放
+ * <p>
+ * 每次分发通过原子游标占用一段连续的记录位置，不同线程并发写入各自的位置，只有第一次写字典的时候加锁；
+ * 文件头的记录数量按占用的顺序更新，只包含已经写完的记录。
+ * 同时在写的记录超过记录区大小的话，后面的写入可能覆盖还没写完的记录，记录区需要留足空间
+ */
+public class MappedDispatchJournal implements DispatchJournal
+{
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+
+    private final int mDictCapacity;
+    private final int mRingCapacity;
+    private final int mRecordCapacity;
+
+    /** 下一个可以占用的记录位置 */
+    private final AtomicLong mRecordCursor = new AtomicLong();
+    /** 已经写完并且更新到文件头的记录数量 */
+    private final AtomicLong mRecordCount = new AtomicLong();
+
+    /** 写字典的锁 */
+    private final Object mDictLock = new Object();
+    private int mDictSize;
+    private final Map<Class<?>, Integer> mMapInterfaceId = new ConcurrentHashMap<>();
+    private final Map<Method, Integer> mMapMethodId = new ConcurrentHashMap<>();
+
+    private volatile boolean mIsClosed;
+
+    /**
+     * 创建记录文件，如果文件已经存在会被覆盖
+     *
+     * @param file         记录文件
+     * @param dictCapacity 字典区大小（字节）
+     * @param ringCapacity 记录区大小（字节），会向下对齐到记录长度的整数倍
+     * @throws IOException
+     */
+    public MappedDispatchJournal(File file, int dictCapacity, int ringCapacity) throws IOException
+    {
+        if (dictCapacity <= 0)
+            throw new IllegalArgumentException("dictCapacity must be greater than 0");
+
+        mRecordCapacity = ringCapacity / JournalFormat.RECORD_SIZE;
+        if (mRecordCapacity < 2)
+            throw new IllegalArgumentException("ringCapacity is too small");
+
+        mDictCapacity = dictCapacity;
+        mRingCapacity = mRecordCapacity * JournalFormat.RECORD_SIZE;
+
+        final long length = JournalFormat.HEADER_SIZE + (long) mDictCapacity + mRingCapacity;
+        mFile = new RandomAccessFile(file, "rw");
+        try
+        {
+            mFile.setLength(0);
+            mFile.setLength(length);
+            mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } catch (IOException e)
+        {
+            mFile.close();
+            throw e;
+        }
+
+        mBuffer.putInt(JournalFormat.OFFSET_MAGIC, JournalFormat.MAGIC);
+        mBuffer.putInt(JournalFormat.OFFSET_VERSION, JournalFormat.VERSION);
+        mBuffer.putInt(JournalFormat.OFFSET_DICT_CAPACITY, mDictCapacity);
+        mBuffer.putInt(JournalFormat.OFFSET_RING_CAPACITY, mRingCapacity);
+        mBuffer.putInt(JournalFormat.OFFSET_DICT_SIZE, 0);
+        mBuffer.putLong(JournalFormat.OFFSET_RECORD_COUNT, 0);
+    }
+
+    @Override
+    public void record(Class<? extends FStream> clazz, Method method, Object tag, long timestamp,
+                       long[] durations, int offset, int count)
+    {
+        if (mIsClosed)
+            return;
+
+        final int interfaceId = getInterfaceId(clazz);
+        final int methodId = interfaceId < 0 ? -1 : getMethodId(interfaceId, method);
+        final int tagHash = tag == null ? 0 : tag.hashCode();
+
+        // 保证同一次分发的记录不会覆盖自己的分发记录
+        final int streamCount = Math.min(count, mRecordCapacity - 1);
+
+        final long start = mRecordCursor.getAndAdd(1 + streamCount);
+        long index = start;
+
+        int position = getRecordPosition(index++);
+        mBuffer.putInt(position, JournalFormat.RECORD_DISPATCH);
+        mBuffer.putInt(position + 4, interfaceId);
+        mBuffer.putInt(position + 8, methodId);
+        mBuffer.putInt(position + 12, tagHash);
+        mBuffer.putInt(position + 16, count);
+        mBuffer.putInt(position + 20, streamCount);
+        mBuffer.putLong(position + 24, timestamp);
+
+        for (int i = 0; i < streamCount; i++)
+        {
+            position = getRecordPosition(index++);
+            mBuffer.putInt(position, JournalFormat.RECORD_STREAM);
+            mBuffer.putInt(position + 4, i);
+            mBuffer.putInt(position + 8, 0);
+            mBuffer.putInt(position + 12, 0);
+            mBuffer.putLong(position + 16, 0);
+            mBuffer.putLong(position + 24, durations[offset + i]);
+        }
+
+        publish(start, index);
+    }
+
+    private int getRecordPosition(long index)
+    {
+        return JournalFormat.HEADER_SIZE + mDictCapacity + (int) (index % mRecordCapacity) * JournalFormat.RECORD_SIZE;
+    }
+
+    /**
+     * 按占用的顺序更新文件头的记录数量，等前面占用的记录写完之后才更新，读取的时候不会读到没写完的记录
+     */
+    private void publish(long start, long end)
+    {
+        while (mRecordCount.get() != start)
+        {
+            Thread.yield();
+        }
+        mBuffer.putLong(JournalFormat.OFFSET_RECORD_COUNT, end);
+        mRecordCount.set(end);
+    }
+
+    private int getInterfaceId(Class<?> clazz)
+    {
+        final Integer id = mMapInterfaceId.get(clazz);
+        if (id != null)
+            return id;
+
+        synchronized (mDictLock)
+        {
+            final Integer lockedId = mMapInterfaceId.get(clazz);
+            if (lockedId != null)
+                return lockedId;
+
+            final int newId = mMapInterfaceId.size();
+            final int result = writeDict(JournalFormat.DICT_INTERFACE, newId, -1, clazz.getName()) ? newId : -1;
+            mMapInterfaceId.put(clazz, result);
+            return result;
+        }
+    }
+
+    private int getMethodId(int interfaceId, Method method)
+    {
+        final Integer id = mMapMethodId.get(method);
+        if (id != null)
+            return id;
+
+        synchronized (mDictLock)
+        {
+            final Integer lockedId = mMapMethodId.get(method);
+            if (lockedId != null)
+                return lockedId;
+
+            final int newId = mMapMethodId.size();
+            final int result = writeDict(JournalFormat.DICT_METHOD, newId, interfaceId, ReflectUtils.getSignature(method)) ? newId : -1;
+            mMapMethodId.put(method, result);
+            return result;
+        }
+    }
+
+    /**
+     * 写字典，需要持有{@link #mDictLock}，格式：类型(1) | id(4) | 接口id(4) | 长度(2) | UTF-8内容
+     */
+    private boolean writeDict(byte type, int id, int interfaceId, String value)
+    {
+        final byte[] bytes;
+        try
+        {
+            bytes = value.getBytes("UTF-8");
+        } catch (IOException e)
+        {
+            return false;
+        }
+
+        final int size = 1 + 4 + 4 + 2 + bytes.length;
+        if (bytes.length > Short.MAX_VALUE || mDictSize + size > mDictCapacity)
+            return false;
+
+        int position = JournalFormat.HEADER_SIZE + mDictSize;
+        mBuffer.put(position, type);
+        mBuffer.putInt(position + 1, id);
+        mBuffer.putInt(position + 5, interfaceId);
+        mBuffer.putShort(position + 9, (short) bytes.length);
+        position += 11;
+        for (byte item : bytes)
+        {
+            mBuffer.put(position++, item);
+        }
+
+        mDictSize += size;
+        mBuffer.putInt(JournalFormat.OFFSET_DICT_SIZE, mDictSize);
+        return true;
+    }
+
+    /**
+     * 把内容写入文件
+     */
+    public synchronized void flush()
+    {
+        if (!mIsClosed)
+            mBuffer.force();
+    }
+
+    /**
+     * 关闭，关闭之后不再记录
+     */
+    public synchronized void close()
+    {
+        if (mIsClosed)
+            return;
+
+        mBuffer.force();
+        mIsClosed = true;
+        try
+        {
+            mFile.close();
+        } catch (IOException e)
+        {
+            // 忽略
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveOrderingTest
+{
+    public interface QueryStream extends FStream
+    {
+        String getName();
+    }
+
+    private static final int CALL_COUNT = 40;
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private final List<String> mCalled = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        mManager.setAdaptiveOrdering(QueryStream.class, false);
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testMoveHitStreamForward()
+    {
+        mManager.setAdaptiveOrdering(QueryStream.class, true);
+        register(new QueryStreamImpl("first", null), 0);
+        register(new QueryStreamImpl("second", null), 0);
+        final QueryStreamImpl third = register(new QueryStreamImpl("third", "third"), 0);
+
+        final QueryStream proxy = newProxy();
+        assertEquals("third", proxy.getName());
+        assertEquals("[first, second, third]", mCalled.toString());
+
+        callMany(proxy);
+        mCalled.clear();
+        assertEquals("third", proxy.getName());
+        assertEquals("[third]", mCalled.toString());
+
+        final HitStatistics statistics = mManager.getHitStatistics(QueryStream.class);
+        assertEquals(CALL_COUNT + 2, statistics.dispatchCount);
+        assertEquals(CALL_COUNT + 2, (int) statistics.hitCount.get(third));
+        assertEquals(1f, statistics.getHitRate(third), 0f);
+    }
+
+    @Test
+    public void testPriorityFirst()
+    {
+        mManager.setAdaptiveOrdering(QueryStream.class, true);
+        register(new QueryStreamImpl("high", null), 1);
+        register(new QueryStreamImpl("first", null), 0);
+        register(new QueryStreamImpl("second", "second"), 0);
+
+        final QueryStream proxy = newProxy();
+        callMany(proxy);
+        mCalled.clear();
+
+        // 命中次数只在同一个优先级内调整顺序
+        assertEquals("second", proxy.getName());
+        assertEquals("[high, second]", mCalled.toString());
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        register(new QueryStreamImpl("first", null), 0);
+        register(new QueryStreamImpl("second", "second"), 0);
+
+        final QueryStream proxy = newProxy();
+        callMany(proxy);
+        mCalled.clear();
+
+        assertEquals("second", proxy.getName());
+        assertEquals("[first, second]", mCalled.toString());
+        assertEquals(0, mManager.getHitStatistics(QueryStream.class).dispatchCount);
+    }
+
+    private static QueryStream newProxy()
+    {
+        return new FStream.ProxyBuilder()
+                .setFirstResponder(FStream.ResultPredicate.NOT_NULL)
+                .build(QueryStream.class);
+    }
+
+    private static void callMany(QueryStream proxy)
+    {
+        for (int i = 0; i < CALL_COUNT; i++)
+        {
+            proxy.getName();
+        }
+    }
+
+    private QueryStreamImpl register(QueryStreamImpl stream, int priority)
+    {
+        mManager.register(stream).setPriority(priority);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private final class QueryStreamImpl implements QueryStream
+    {
+        private final String mId;
+        private final String mName;
+
+        public QueryStreamImpl(String id, String name)
+        {
+            mId = id;
+            mName = name;
+        }
+
+        @Override
+        public String getName()
+        {
+            mCalled.add(mId);
+            return mName;
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.sd.lib.stream;
+
+/**
+ * 单线程模式（{@link FStreamManager#setConfinedThread(Thread)}）分发耗时的基准，不是单元测试，直接运行main方法
+ * <p>
+ * 同一个线程分发无返回值方法，分别测量普通模式和单线程模式，结果是每次代理对象调用的平均耗时
+ */
+public class ConfinedDispatchBenchmark
+{
+    private static final int STREAM_COUNT = 10;
+    private static final int CALL_COUNT = 2000000;
+    private static final int ROUND = 5;
+
+    public interface CounterStream extends FStream
+    {
+        void onCount(int value);
+    }
+
+    private static final class Counter implements CounterStream
+    {
+        private int mValue;
+
+        @Override
+        public void onCount(int value)
+        {
+            mValue += value;
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        final FStreamManager manager = FStreamManager.getInstance();
+        final Counter[] counters = new Counter[STREAM_COUNT];
+        for (int i = 0; i < STREAM_COUNT; i++)
+        {
+            counters[i] = new Counter();
+            manager.register(counters[i]);
+        }
+
+        final CounterStream proxy = new FStream.ProxyBuilder().build(CounterStream.class);
+        for (int round = 0; round < ROUND; round++)
+        {
+            manager.setConfinedThread(null);
+            final long normal = run(proxy);
+
+            manager.setConfinedThread(Thread.currentThread());
+            final long confined = run(proxy);
+
+            System.out.println("round " + round
+                    + " normal ns/call:" + normal
+                    + " confined ns/call:" + confined);
+        }
+        manager.setConfinedThread(null);
+
+        for (Counter item : counters)
+        {
+            manager.unregister(item);
+        }
+    }
+
+    private static long run(CounterStream proxy)
+    {
+        final long start = System.nanoTime();
+        for (int i = 0; i < CALL_COUNT; i++)
+        {
+            proxy.onCount(i);
+        }
+        return (System.nanoTime() - start) / CALL_COUNT;
+    }
+}
@@ -0,0 +1,294 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConfinedModeTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+
+        String getName();
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+        mManager.setConfinedThread(Thread.currentThread());
+    }
+
+    @After
+    public void tearDown()
+    {
+        mManager.setDebug(false);
+        mManager.setConfinedThread(null);
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testDispatchOnConfinedThread()
+    {
+        assertSame(Thread.currentThread(), mManager.getConfinedThread());
+
+        final ValueStreamImpl first = register(new ValueStreamImpl("first"));
+        final ValueStreamImpl second = register(new ValueStreamImpl("second"));
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+        proxy.onValue(2);
+        assertEquals("[1, 2]", first.mValues.toString());
+        assertEquals("[1, 2]", second.mValues.toString());
+        assertEquals("second", proxy.getName());
+    }
+
+    @Test
+    public void testBreakDispatch()
+    {
+        final ValueStreamImpl first = register(new ValueStreamImpl("first")
+        {
+            @Override
+            public void onValue(int value)
+            {
+                super.onValue(value);
+                mManager.getConnection(this).breakDispatch(ValueStream.class);
+            }
+        });
+        final ValueStreamImpl second = register(new ValueStreamImpl("second"));
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+        assertEquals("[1]", first.mValues.toString());
+        assertEquals("[]", second.mValues.toString());
+
+        // 停止分发标志只对当次分发有效
+        mManager.unregister(first);
+        mStreams.remove(first);
+        proxy.onValue(2);
+        assertEquals("[2]", second.mValues.toString());
+    }
+
+    @Test
+    public void testBatchWithoutThreadLocal()
+    {
+        final ValueStreamImpl stream = register(new ValueStreamImpl("stream"));
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+
+        mManager.beginBatch();
+        proxy.onValue(1);
+        proxy.onValue(2);
+        assertEquals("[]", stream.mValues.toString());
+
+        try
+        {
+            mManager.setConfinedThread(null);
+            fail("confined thread should not change during batch");
+        } catch (IllegalStateException e)
+        {
+            // 期望的异常
+        }
+
+        mManager.endBatch();
+        assertEquals("[2]", stream.mValues.toString());
+    }
+
+    @Test
+    public void testWrongThreadInDebug() throws Exception
+    {
+        mManager.setDebug(true);
+        register(new ValueStreamImpl("stream"));
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+
+        assertNotNull(runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                proxy.onValue(1);
+            }
+        }));
+        assertNotNull(runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                mManager.register(new ValueStreamImpl("other"));
+            }
+        }));
+        assertNotNull(runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                mManager.beginBatch();
+            }
+        }));
+    }
+
+    @Test
+    public void testWrongThreadNotCheckedInRelease() throws Exception
+    {
+        final ValueStreamImpl stream = register(new ValueStreamImpl("stream"));
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+
+        assertNull(runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                proxy.onValue(1);
+            }
+        }));
+        assertEquals("[1]", stream.mValues.toString());
+    }
+
+    @Test
+    public void testRejectOffThreadProxies()
+    {
+        register(new ValueStreamImpl("stream"));
+
+        final ValueStream mailboxProxy = new FStream.ProxyBuilder()
+                .setMailboxExecutor(new Executor()
+                {
+                    @Override
+                    public void execute(Runnable command)
+                    {
+                        command.run();
+                    }
+                })
+                .build(ValueStream.class);
+        try
+        {
+            mailboxProxy.onValue(1);
+            fail("mailbox proxy should be rejected in confined mode");
+        } catch (IllegalStateException e)
+        {
+            // 期望的异常
+        }
+
+        final ValueStream trailingProxy = new FStream.ProxyBuilder()
+                .setThrottle(100, FStream.ThrottleMode.TRAILING)
+                .build(ValueStream.class);
+        try
+        {
+            trailingProxy.onValue(1);
+            fail("trailing throttle proxy should be rejected in confined mode");
+        } catch (IllegalStateException e)
+        {
+            // 期望的异常
+        }
+
+        // 头部节流在调用线程分发，可以使用
+        final ValueStream leadingProxy = new FStream.ProxyBuilder()
+                .setThrottle(100, FStream.ThrottleMode.LEADING)
+                .build(ValueStream.class);
+        leadingProxy.onValue(1);
+    }
+
+    @Test
+    public void testDisableConfinedMode() throws Exception
+    {
+        mManager.setDebug(true);
+        mManager.setConfinedThread(null);
+        assertNull(mManager.getConfinedThread());
+
+        final ValueStreamImpl stream = register(new ValueStreamImpl("stream"));
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        assertNull(runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                proxy.onValue(1);
+            }
+        }));
+        assertEquals("[1]", stream.mValues.toString());
+    }
+
+    private <T extends FStream> T register(T stream)
+    {
+        assertNotNull(mManager.register(stream));
+        mStreams.add(stream);
+        return stream;
+    }
+
+    /**
+     * 在其他线程执行
+     *
+     * @return 抛出的{@link IllegalStateException}，null-没有抛出
+     */
+    private static IllegalStateException runOnOtherThread(final Runnable runnable) throws InterruptedException
+    {
+        final AtomicReference<IllegalStateException> result = new AtomicReference<>();
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    runnable.run();
+                } catch (IllegalStateException e)
+                {
+                    result.set(e);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+
+        final IllegalStateException e = result.get();
+        if (e != null)
+            assertTrue(e.getMessage(), e.getMessage().contains("confined"));
+        return e;
+    }
+
+    private static class ValueStreamImpl implements ValueStream
+    {
+        private final String mName;
+        final List<Integer> mValues = new ArrayList<>();
+
+        public ValueStreamImpl(String name)
+        {
+            mName = name;
+        }
+
+        @Override
+        public void onValue(int value)
+        {
+            mValues.add(value);
+        }
+
+        @Override
+        public String getName()
+        {
+            return mName;
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.sd.lib.stream;
+
+/**
+ * 注册流对象的内存占用基准，不是单元测试，直接运行main方法
+ * <p>
+ * 建议参数：-Xmx512m -XX:+UseSerialGC，结果是full gc之后已用堆内存的差值除以流对象数量
+ */
+public class ConnectionMemoryBenchmark
+{
+    private static final int COUNT = 50000;
+
+    public interface StreamA extends FStream
+    {
+        void a(int value);
+    }
+
+    public interface StreamB extends FStream
+    {
+        void b(int value);
+    }
+
+    private static final class Row implements StreamA, StreamB
+    {
+        @Override
+        public void a(int value)
+        {
+        }
+
+        @Override
+        public void b(int value)
+        {
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        final FStreamManager manager = FStreamManager.getInstance();
+
+        final Row[] rows = new Row[COUNT];
+        for (int i = 0; i < COUNT; i++)
+        {
+            rows[i] = new Row();
+        }
+
+        // 先注册一个，创建流接口对应的容器
+        final Row warm = new Row();
+        manager.register(warm);
+
+        final long before = usedMemory();
+        for (Row item : rows)
+        {
+            manager.register(item);
+        }
+        final long after = usedMemory();
+        System.out.println("bytes/stream (2 interfaces): " + (after - before) / COUNT);
+
+        for (int i = 0; i < COUNT; i += 10)
+        {
+            manager.getConnection(rows[i]).setPriority(i % 7);
+        }
+        final long afterPriority = usedMemory();
+        System.out.println("extra bytes/stream with 10% priority: " + (afterPriority - after) / COUNT);
+
+        for (Row item : rows)
+        {
+            manager.unregister(item);
+        }
+        manager.unregister(warm);
+    }
+
+    private static long usedMemory()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+        {
+            System.gc();
+            try
+            {
+                Thread.sleep(50);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
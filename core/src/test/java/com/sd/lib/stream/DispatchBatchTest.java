@@ -0,0 +1,176 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class DispatchBatchTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+
+        void onName(String name);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        while (mManager.getBatch() != null)
+        {
+            mManager.endBatch();
+        }
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testLastWins()
+    {
+        final ValueStreamImpl stream = register(new ValueStreamImpl(null));
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+
+        mManager.beginBatch();
+        proxy.onValue(1);
+        proxy.onName("a");
+        proxy.onValue(2);
+        assertEquals("[]", stream.mCalls.toString());
+
+        // 嵌套的批次在最外层结束的时候分发
+        mManager.beginBatch(FStreamManager.BatchPolicy.ALL_CALLS);
+        proxy.onValue(3);
+        mManager.endBatch();
+        assertEquals("[]", stream.mCalls.toString());
+
+        mManager.endBatch();
+        assertNull(mManager.getBatch());
+
+        // 同一个调用只保留最后一次，并且移动到最后
+        assertEquals("[name:a, value:3]", stream.mCalls.toString());
+    }
+
+    @Test
+    public void testAllCalls()
+    {
+        final ValueStreamImpl stream = register(new ValueStreamImpl(null));
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+
+        mManager.beginBatch(FStreamManager.BatchPolicy.ALL_CALLS);
+        proxy.onValue(1);
+        proxy.onName("a");
+        proxy.onValue(2);
+        mManager.endBatch();
+        assertEquals("[value:1, name:a, value:2]", stream.mCalls.toString());
+    }
+
+    /**
+     * 接口和tag相同但是tag匹配方式不同的两个代理对象，调用不能合并
+     */
+    @Test
+    public void testNotMergeDifferentProxies()
+    {
+        final ValueStreamImpl parent = register(new ValueStreamImpl(StreamTag.of("a")));
+        final ValueStreamImpl child = register(new ValueStreamImpl(StreamTag.of("a", "b")));
+
+        final ValueStream exactProxy = new FStream.ProxyBuilder().setTag(StreamTag.of("a")).build(ValueStream.class);
+        final ValueStream prefixProxy = new FStream.ProxyBuilder().setTagPrefix(StreamTag.of("a")).build(ValueStream.class);
+
+        mManager.beginBatch();
+        exactProxy.onValue(1);
+        prefixProxy.onValue(2);
+        exactProxy.onValue(3);
+        mManager.endBatch();
+
+        assertEquals("[value:2, value:3]", parent.mCalls.toString());
+        assertEquals("[value:2]", child.mCalls.toString());
+    }
+
+    @Test
+    public void testFlushAllBeforeThrow()
+    {
+        final ValueStreamImpl stream = register(new ValueStreamImpl(null)
+        {
+            @Override
+            public void onValue(int value)
+            {
+                super.onValue(value);
+                throw new IllegalArgumentException("value:" + value);
+            }
+        });
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+
+        mManager.beginBatch();
+        proxy.onValue(1);
+        proxy.onName("a");
+        try
+        {
+            mManager.endBatch();
+            fail("exception should be thrown after flush");
+        } catch (IllegalArgumentException e)
+        {
+            assertEquals("value:1", e.getMessage());
+        }
+        assertEquals("[value:1, name:a]", stream.mCalls.toString());
+        assertNull(mManager.getBatch());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEndWithoutBegin()
+    {
+        mManager.endBatch();
+    }
+
+    private <T extends FStream> T register(T stream)
+    {
+        mManager.register(stream);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private static class ValueStreamImpl implements ValueStream
+    {
+        private final Object mTag;
+        final List<String> mCalls = new ArrayList<>();
+
+        public ValueStreamImpl(Object tag)
+        {
+            mTag = tag;
+        }
+
+        @Override
+        public void onValue(int value)
+        {
+            mCalls.add("value:" + value);
+        }
+
+        @Override
+        public void onName(String name)
+        {
+            mCalls.add("name:" + name);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return mTag;
+        }
+    }
+}
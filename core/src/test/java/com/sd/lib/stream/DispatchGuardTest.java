@@ -0,0 +1,233 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DispatchGuardTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+    }
+
+    public interface NameStream extends FStream
+    {
+        void onName(String name);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private final List<String> mEvents = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        mManager.setDispatchGuard(null);
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testIsolateException()
+    {
+        installGuard(0, 10, 1000);
+        final ValueStreamImpl failing = register(new ValueStreamImpl(true, 0));
+        final ValueStreamImpl normal = register(new ValueStreamImpl(false, 0));
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+
+        assertEquals("[1]", failing.mValues.toString());
+        assertEquals("[1]", normal.mValues.toString());
+        assertEquals("[exception]", mEvents.toString());
+    }
+
+    @Test
+    public void testQuarantineAndCoolDown() throws Exception
+    {
+        installGuard(0, 2, 100);
+        final ValueStreamImpl failing = register(new ValueStreamImpl(true, 0));
+        final ValueStreamImpl normal = register(new ValueStreamImpl(false, 0));
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+        proxy.onValue(2);
+        assertEquals("[exception, exception, quarantine]", mEvents.toString());
+
+        // 隔离期间跳过
+        proxy.onValue(3);
+        assertEquals("[1, 2]", failing.mValues.toString());
+        assertEquals("[1, 2, 3]", normal.mValues.toString());
+
+        // 冷却之后恢复分发
+        Thread.sleep(150);
+        failing.mIsFailing = false;
+        proxy.onValue(4);
+        assertEquals("[1, 2, 4]", failing.mValues.toString());
+    }
+
+    @Test
+    public void testSuccessResetsFailure()
+    {
+        installGuard(0, 2, 1000);
+        final ValueStreamImpl stream = register(new ValueStreamImpl(true, 0));
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+        stream.mIsFailing = false;
+        proxy.onValue(2);
+        stream.mIsFailing = true;
+        proxy.onValue(3);
+        proxy.onValue(4);
+
+        assertEquals("[1, 2, 3, 4]", stream.mValues.toString());
+        assertEquals("[exception, exception, exception, quarantine]", mEvents.toString());
+    }
+
+    @Test
+    public void testSlowStream()
+    {
+        installGuard(1, 1, 1000);
+        final ValueStreamImpl slow = register(new ValueStreamImpl(false, 20));
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+        assertEquals("[slow, quarantine]", mEvents.toString());
+
+        proxy.onValue(2);
+        assertEquals("[1]", slow.mValues.toString());
+    }
+
+    @Test
+    public void testQuarantinePerInterface()
+    {
+        installGuard(0, 1, 1000);
+        final BothStream stream = new BothStream();
+        mManager.register(stream);
+        mStreams.add(stream);
+
+        final ValueStream valueProxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        final NameStream nameProxy = new FStream.ProxyBuilder().build(NameStream.class);
+        valueProxy.onValue(1);
+        assertEquals("[exception, quarantine]", mEvents.toString());
+
+        valueProxy.onValue(2);
+        nameProxy.onName("name");
+        assertEquals("[1, name]", stream.mValues.toString());
+    }
+
+    private void installGuard(long latencyBudget, int failureThreshold, long coolDown)
+    {
+        final DispatchGuard guard = new DispatchGuard(latencyBudget, failureThreshold, coolDown);
+        guard.setCallback(new DispatchGuard.Callback()
+        {
+            @Override
+            public void onException(FStream stream, Class<? extends FStream> clazz, Method method, Throwable e)
+            {
+                assertSame(TestException.class, e.getClass());
+                mEvents.add("exception");
+            }
+
+            @Override
+            public void onSlow(FStream stream, Class<? extends FStream> clazz, Method method, long duration)
+            {
+                mEvents.add("slow");
+            }
+
+            @Override
+            public void onQuarantine(FStream stream, Class<? extends FStream> clazz, Method method, long coolDown)
+            {
+                mEvents.add("quarantine");
+            }
+        });
+        mManager.setDispatchGuard(guard);
+    }
+
+    private <T extends FStream> T register(T stream)
+    {
+        mManager.register(stream);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private static final class TestException extends RuntimeException
+    {
+    }
+
+    private static final class ValueStreamImpl implements ValueStream
+    {
+        final List<Integer> mValues = new ArrayList<>();
+        final long mSleep;
+        boolean mIsFailing;
+
+        public ValueStreamImpl(boolean failing, long sleep)
+        {
+            mIsFailing = failing;
+            mSleep = sleep;
+        }
+
+        @Override
+        public void onValue(int value)
+        {
+            mValues.add(value);
+            if (mSleep > 0)
+            {
+                try
+                {
+                    Thread.sleep(mSleep);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (mIsFailing)
+                throw new TestException();
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+
+    private static final class BothStream implements ValueStream, NameStream
+    {
+        final List<Object> mValues = new ArrayList<>();
+
+        @Override
+        public void onValue(int value)
+        {
+            mValues.add(value);
+            throw new TestException();
+        }
+
+        @Override
+        public void onName(String name)
+        {
+            mValues.add(name);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
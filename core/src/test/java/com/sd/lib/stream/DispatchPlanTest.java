@@ -0,0 +1,142 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DispatchPlanTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private final List<String> mCalled = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testRebuildAfterRegister()
+    {
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        register(new ValueStreamImpl("first", null));
+        proxy.onValue(1);
+
+        register(new ValueStreamImpl("second", null));
+        proxy.onValue(2);
+        assertEquals("[first, first, second]", mCalled.toString());
+
+        mManager.unregister(mStreams.get(0));
+        mCalled.clear();
+        proxy.onValue(3);
+        assertEquals("[second]", mCalled.toString());
+    }
+
+    @Test
+    public void testUnregisterDuringDispatch()
+    {
+        final List<ValueStreamImpl> list = new ArrayList<>();
+        register(new ValueStreamImpl("first", null)
+        {
+            @Override
+            public void onValue(int value)
+            {
+                super.onValue(value);
+                mManager.unregister(list.get(0));
+            }
+        });
+        list.add(register(new ValueStreamImpl("second", null)));
+        register(new ValueStreamImpl("third", null));
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+        assertEquals("[first, third]", mCalled.toString());
+    }
+
+    @Test
+    public void testRebuildAfterPriorityChanged()
+    {
+        register(new ValueStreamImpl("first", null));
+        final ValueStreamImpl second = register(new ValueStreamImpl("second", null));
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+        mManager.getConnection(second).setPriority(1);
+        proxy.onValue(2);
+        assertEquals("[first, second, second, first]", mCalled.toString());
+    }
+
+    @Test
+    public void testCacheTagMatch()
+    {
+        final ValueStreamImpl first = register(new ValueStreamImpl("first", "tag"));
+        register(new ValueStreamImpl("second", "other"));
+
+        final ValueStream proxy = new FStream.ProxyBuilder()
+                .setTag("tag")
+                .setCacheTagMatch(true)
+                .build(ValueStream.class);
+        proxy.onValue(1);
+        assertEquals("[first]", mCalled.toString());
+
+        // 缓存匹配结果，tag变化之后需要通知
+        first.mTag = "other";
+        proxy.onValue(2);
+        assertEquals("[first, first]", mCalled.toString());
+
+        mManager.getConnection(first).notifyTagChanged();
+        proxy.onValue(3);
+        assertEquals("[first, first]", mCalled.toString());
+    }
+
+    private <T extends FStream> T register(T stream)
+    {
+        mManager.register(stream);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private class ValueStreamImpl implements ValueStream
+    {
+        private final String mName;
+        Object mTag;
+
+        public ValueStreamImpl(String name, Object tag)
+        {
+            mName = name;
+            mTag = tag;
+        }
+
+        @Override
+        public void onValue(int value)
+        {
+            mCalled.add(mName);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return mTag;
+        }
+    }
+}
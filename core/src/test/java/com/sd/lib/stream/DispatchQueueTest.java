@@ -0,0 +1,153 @@
+package com.sd.lib.stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DispatchQueueTest
+{
+    private final List<String> mCalls = new ArrayList<>();
+    private TestStreamPlatform mPlatform;
+    private MainThreadDispatcher mDispatcher;
+
+    private Method mMethodA;
+    private Method mMethodB;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mPlatform = TestStreamPlatform.install();
+        mDispatcher = new MainThreadDispatcher();
+        mMethodA = Object.class.getMethod("toString");
+        mMethodB = Object.class.getMethod("hashCode");
+    }
+
+    @Test
+    public void testDropNewest()
+    {
+        final DispatchQueue queue = new DispatchQueue(2, DispatchQueue.OverflowPolicy.DROP_NEWEST);
+        assertTrue(queue.offer(this, mMethodA, task("1"), mDispatcher));
+        assertTrue(queue.offer(this, mMethodA, task("2"), mDispatcher));
+        assertFalse(queue.offer(this, mMethodA, task("3"), mDispatcher));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getDroppedCount());
+
+        mPlatform.runPending();
+        assertEquals(Arrays.asList("1", "2"), mCalls);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testDropOldest()
+    {
+        final DispatchQueue queue = new DispatchQueue(2, DispatchQueue.OverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offer(this, mMethodA, task("1"), mDispatcher));
+        assertTrue(queue.offer(this, mMethodA, task("2"), mDispatcher));
+        assertTrue(queue.offer(this, mMethodA, task("3"), mDispatcher));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getDroppedCount());
+
+        mPlatform.runPending();
+        assertEquals(Arrays.asList("2", "3"), mCalls);
+    }
+
+    @Test
+    public void testCoalesce()
+    {
+        final Object other = new Object();
+        final DispatchQueue queue = new DispatchQueue(3, DispatchQueue.OverflowPolicy.COALESCE);
+        assertTrue(queue.offer(this, mMethodA, task("a1"), mDispatcher));
+        assertTrue(queue.offer(this, mMethodB, task("b1"), mDispatcher));
+        assertTrue(queue.offer(other, mMethodA, task("other"), mDispatcher));
+        assertTrue(queue.offer(this, mMethodA, task("a2"), mDispatcher));
+
+        assertEquals(3, queue.size());
+        assertEquals(1, queue.getCoalescedCount());
+        assertEquals(0, queue.getDroppedCount());
+
+        // 合并的调用保持原来的位置
+        mPlatform.runPending();
+        assertEquals(Arrays.asList("a2", "b1", "other"), mCalls);
+    }
+
+    @Test
+    public void testCoalesceOverflowDropsOldest()
+    {
+        final DispatchQueue queue = new DispatchQueue(1, DispatchQueue.OverflowPolicy.COALESCE);
+        assertTrue(queue.offer(this, mMethodA, task("a"), mDispatcher));
+        assertTrue(queue.offer(this, mMethodB, task("b"), mDispatcher));
+
+        assertEquals(1, queue.getDroppedCount());
+        mPlatform.runPending();
+        assertEquals(Arrays.asList("b"), mCalls);
+    }
+
+    @Test
+    public void testBlock() throws Exception
+    {
+        final DispatchQueue queue = new DispatchQueue(1, DispatchQueue.OverflowPolicy.BLOCK);
+        assertTrue(queue.offer(this, mMethodA, task("1"), mDispatcher));
+
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                queue.offer(DispatchQueueTest.this, mMethodA, task("2"), mDispatcher);
+            }
+        });
+        thread.start();
+
+        // 队列满了，调用线程阻塞
+        thread.join(200);
+        assertTrue(thread.isAlive());
+        assertEquals(1, queue.size());
+
+        // 主线程取出第一个调用之后，阻塞的线程可以继续添加
+        mPlatform.runPending();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+
+        mPlatform.runPending();
+        assertEquals(Arrays.asList("1", "2"), mCalls);
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testDrainOnlyOncePerMessage()
+    {
+        final DispatchQueue queue = new DispatchQueue(4, DispatchQueue.OverflowPolicy.DROP_NEWEST);
+        queue.offer(this, mMethodA, task("1"), mDispatcher);
+        queue.offer(this, mMethodA, task("2"), mDispatcher);
+
+        // 只提交了一个主线程消息
+        assertEquals(1, mPlatform.getPendingCount());
+        mPlatform.runPending();
+        assertEquals(Arrays.asList("1", "2"), mCalls);
+    }
+
+    private Runnable task(final String name)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                synchronized (mCalls)
+                {
+                    mCalls.add(name);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,313 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventChannelTest
+{
+    public static final class ValueEvent
+    {
+        public long value;
+    }
+
+    private static final EventChannel.EventFactory<ValueEvent> FACTORY = new EventChannel.EventFactory<ValueEvent>()
+    {
+        @Override
+        public ValueEvent newInstance()
+        {
+            return new ValueEvent();
+        }
+    };
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp()
+    {
+        mExecutor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown()
+    {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testDeliverInOrder() throws Exception
+    {
+        final EventChannel<ValueEvent> channel = new EventChannel<>(null, 64, FACTORY);
+        final OrderedSubscriber first = new OrderedSubscriber();
+        final OrderedSubscriber second = new OrderedSubscriber();
+        assertTrue(channel.subscribe(first));
+        assertTrue(channel.subscribe(second));
+        assertFalse(channel.subscribe(first));
+
+        channel.start(mExecutor);
+        final int count = 10000;
+        for (int i = 0; i < count; i++)
+        {
+            publish(channel, i);
+        }
+
+        waitConsumed(channel);
+        first.assertReceived(count);
+        second.assertReceived(count);
+    }
+
+    @Test
+    public void testUnsubscribe() throws Exception
+    {
+        final EventChannel<ValueEvent> channel = new EventChannel<>(null, 8, FACTORY);
+        final OrderedSubscriber subscriber = new OrderedSubscriber();
+        channel.subscribe(subscriber);
+        assertTrue(channel.unsubscribe(subscriber));
+        assertFalse(channel.unsubscribe(subscriber));
+        assertEquals(0, channel.getSubscriberCount());
+
+        channel.start(mExecutor);
+        publish(channel, 0);
+        waitConsumed(channel);
+        subscriber.assertReceived(0);
+        channel.stop();
+    }
+
+    /**
+     * stop()之后马上start()，旧的处理线程不能和新的处理线程同时通知订阅者
+     */
+    @Test
+    public void testRestartDeliversEachEventOnce() throws Exception
+    {
+        final EventChannel<ValueEvent> channel = new EventChannel<>(null, 16, FACTORY);
+        final OrderedSubscriber subscriber = new OrderedSubscriber();
+        channel.subscribe(subscriber);
+        channel.start(mExecutor);
+
+        final int count = 20000;
+        final Thread producer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    while (!tryPublish(channel, i))
+                    {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+
+        while (producer.isAlive())
+        {
+            channel.stop();
+            channel.start(mExecutor);
+            Thread.sleep(0, 100000);
+        }
+        producer.join();
+
+        waitConsumed(channel);
+        subscriber.assertReceived(count);
+        channel.stop();
+    }
+
+    @Test
+    public void testStopKeepsPendingEvents() throws Exception
+    {
+        final EventChannel<ValueEvent> channel = new EventChannel<>(null, 8, FACTORY);
+        final OrderedSubscriber subscriber = new OrderedSubscriber();
+        channel.subscribe(subscriber);
+
+        // 启动之前可以先发布，最多缓冲区大小个事件
+        for (int i = 0; i < 8; i++)
+        {
+            assertTrue(tryPublish(channel, i));
+        }
+        assertFalse(tryPublish(channel, 8));
+        try
+        {
+            publish(channel, 8);
+            fail("publish should fail when buffer is full and channel is not running");
+        } catch (IllegalStateException e)
+        {
+            // 期望的异常
+        }
+
+        channel.start(mExecutor);
+        waitConsumed(channel);
+        subscriber.assertReceived(8);
+
+        channel.stop();
+        // 等处理线程退出
+        Thread.sleep(20);
+        assertTrue(tryPublish(channel, 8));
+        assertTrue(tryPublish(channel, 9));
+        Thread.sleep(50);
+        subscriber.assertReceived(8);
+        assertEquals(2, channel.getPendingCount());
+
+        // 停止期间发布的事件在再次启动之后处理
+        channel.start(mExecutor);
+        waitConsumed(channel);
+        subscriber.assertReceived(10);
+        channel.stop();
+    }
+
+    @Test
+    public void testSubscribeWithTarget() throws Exception
+    {
+        final LifecyclePlatform platform = new LifecyclePlatform();
+        StreamPlatform.install(platform);
+
+        final EventChannel<ValueEvent> channel = new EventChannel<>(null, 8, FACTORY);
+        final Owner owner = new Owner();
+        final OrderedSubscriber subscriber = new OrderedSubscriber();
+        assertTrue(channel.subscribe(subscriber, owner));
+        assertFalse(channel.subscribe(subscriber, owner));
+        assertEquals(1, channel.getSubscriberCount());
+
+        platform.destroy(owner);
+        assertEquals(0, channel.getSubscriberCount());
+
+        // 已经销毁的生命周期对象
+        assertFalse(channel.subscribe(new OrderedSubscriber(), owner));
+        assertEquals(0, channel.getSubscriberCount());
+
+        try
+        {
+            channel.subscribe(new OrderedSubscriber(), new Object());
+            fail("unsupported target should be rejected");
+        } catch (IllegalArgumentException e)
+        {
+            // 期望的异常
+        }
+    }
+
+    @Test
+    public void testUnsubscribeBeforeTargetDestroyed() throws Exception
+    {
+        final LifecyclePlatform platform = new LifecyclePlatform();
+        StreamPlatform.install(platform);
+
+        final EventChannel<ValueEvent> channel = new EventChannel<>(null, 8, FACTORY);
+        final Owner owner = new Owner();
+        final OrderedSubscriber subscriber = new OrderedSubscriber();
+        final OrderedSubscriber other = new OrderedSubscriber();
+        channel.subscribe(subscriber, owner);
+        channel.unsubscribe(subscriber);
+        channel.subscribe(other);
+
+        platform.destroy(owner);
+        assertEquals(1, channel.getSubscriberCount());
+    }
+
+    private static void publish(EventChannel<ValueEvent> channel, final long value)
+    {
+        channel.publishEvent(new EventChannel.EventTranslator<ValueEvent>()
+        {
+            @Override
+            public void translateTo(ValueEvent event, long sequence)
+            {
+                event.value = value;
+            }
+        });
+    }
+
+    private static boolean tryPublish(EventChannel<ValueEvent> channel, final long value)
+    {
+        return channel.tryPublishEvent(new EventChannel.EventTranslator<ValueEvent>()
+        {
+            @Override
+            public void translateTo(ValueEvent event, long sequence)
+            {
+                event.value = value;
+            }
+        });
+    }
+
+    private static void waitConsumed(EventChannel<?> channel) throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (channel.getPendingCount() > 0)
+        {
+            if (System.currentTimeMillis() > deadline)
+                fail("events were not consumed, pending:" + channel.getPendingCount());
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * 检查事件按序号连续到达，没有重复和丢失
+     */
+    private static final class OrderedSubscriber implements EventStream<ValueEvent>
+    {
+        private final AtomicLong mExpected = new AtomicLong();
+        private final AtomicInteger mError = new AtomicInteger();
+
+        @Override
+        public void onEvent(ValueEvent event, long sequence, boolean endOfBatch)
+        {
+            final long expected = mExpected.getAndIncrement();
+            if (sequence != expected || event.value != expected)
+                mError.incrementAndGet();
+        }
+
+        public void assertReceived(long count)
+        {
+            assertEquals("out of order or duplicated events", 0, mError.get());
+            assertEquals(count, mExpected.get());
+        }
+    }
+
+    private static final class Owner
+    {
+        private boolean mIsDestroyed;
+        private final List<Runnable> mCallbacks = new ArrayList<>();
+    }
+
+    private static final class LifecyclePlatform extends TestStreamPlatform
+    {
+        @Override
+        public Object getLifecycleOwner(Object object)
+        {
+            return object instanceof Owner ? object : null;
+        }
+
+        @Override
+        public boolean isLifecycleDestroyed(Object owner)
+        {
+            return ((Owner) owner).mIsDestroyed;
+        }
+
+        @Override
+        public void watchLifecycle(Object owner, Runnable callback)
+        {
+            ((Owner) owner).mCallbacks.add(callback);
+        }
+
+        public void destroy(Owner owner)
+        {
+            owner.mIsDestroyed = true;
+            for (Runnable item : new ArrayList<>(owner.mCallbacks))
+            {
+                item.run();
+            }
+            owner.mCallbacks.clear();
+        }
+    }
+}
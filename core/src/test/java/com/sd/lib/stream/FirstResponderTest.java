@@ -0,0 +1,169 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FirstResponderTest
+{
+    public interface QueryStream extends FStream
+    {
+        String getName();
+
+        int getCount();
+
+        void onValue(int value);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private final List<String> mCalled = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testStopAtFirstNonNull()
+    {
+        register(new QueryStreamImpl("first", null, 0), 3);
+        register(new QueryStreamImpl("second", "second", 0), 2);
+        register(new QueryStreamImpl("third", "third", 0), 1);
+
+        final QueryStream proxy = new FStream.ProxyBuilder()
+                .setFirstResponder(FStream.ResultPredicate.NOT_NULL)
+                .build(QueryStream.class);
+
+        assertEquals("second", proxy.getName());
+        assertEquals("[first, second]", mCalled.toString());
+    }
+
+    @Test
+    public void testNoResponder()
+    {
+        register(new QueryStreamImpl("first", null, 0), 0);
+        register(new QueryStreamImpl("second", null, 0), 0);
+
+        final QueryStream proxy = new FStream.ProxyBuilder()
+                .setFirstResponder(FStream.ResultPredicate.NOT_NULL)
+                .build(QueryStream.class);
+
+        assertNull(proxy.getName());
+        assertEquals(2, mCalled.size());
+
+        // 基本类型都不满足的话返回默认值
+        mCalled.clear();
+        final QueryStream positiveProxy = new FStream.ProxyBuilder()
+                .setFirstResponder(new FStream.ResultPredicate()
+                {
+                    @Override
+                    public boolean accept(Method method, Object[] methodParams, Object result)
+                    {
+                        return (Integer) result > 0;
+                    }
+                })
+                .build(QueryStream.class);
+        assertEquals(0, positiveProxy.getCount());
+        assertEquals(2, mCalled.size());
+    }
+
+    @Test
+    public void testCustomPredicate()
+    {
+        register(new QueryStreamImpl("first", "first", 1), 3);
+        register(new QueryStreamImpl("second", "second", 5), 2);
+        register(new QueryStreamImpl("third", "third", 9), 1);
+
+        final QueryStream proxy = new FStream.ProxyBuilder()
+                .setFirstResponder(new FStream.ResultPredicate()
+                {
+                    @Override
+                    public boolean accept(Method method, Object[] methodParams, Object result)
+                    {
+                        return (Integer) result > 3;
+                    }
+                })
+                .build(QueryStream.class);
+
+        assertEquals(5, proxy.getCount());
+        assertEquals("[first, second]", mCalled.toString());
+    }
+
+    @Test
+    public void testVoidMethodNotAffected()
+    {
+        register(new QueryStreamImpl("first", "first", 0), 2);
+        register(new QueryStreamImpl("second", "second", 0), 1);
+
+        final QueryStream proxy = new FStream.ProxyBuilder()
+                .setFirstResponder(FStream.ResultPredicate.NOT_NULL)
+                .build(QueryStream.class);
+
+        proxy.onValue(1);
+        assertEquals("[first, second]", mCalled.toString());
+    }
+
+    private void register(QueryStreamImpl stream, int priority)
+    {
+        mManager.register(stream).setPriority(priority);
+        mStreams.add(stream);
+    }
+
+    private final class QueryStreamImpl implements QueryStream
+    {
+        private final String mId;
+        private final String mName;
+        private final int mCount;
+
+        public QueryStreamImpl(String id, String name, int count)
+        {
+            mId = id;
+            mName = name;
+            mCount = count;
+        }
+
+        @Override
+        public String getName()
+        {
+            mCalled.add(mId);
+            return mName;
+        }
+
+        @Override
+        public int getCount()
+        {
+            mCalled.add(mId);
+            return mCount;
+        }
+
+        @Override
+        public void onValue(int value)
+        {
+            mCalled.add(mId);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FrameBudgetTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private TestStreamPlatform mPlatform;
+
+    @Before
+    public void setUp()
+    {
+        mPlatform = TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testDeferRemaining()
+    {
+        final ValueStreamImpl first = register(new ValueStreamImpl(1));
+        final ValueStreamImpl second = register(new ValueStreamImpl(0));
+        final ValueStreamImpl third = register(new ValueStreamImpl(0));
+
+        final FrameBudget budget = new FrameBudget(1);
+        final ValueStream proxy = new FStream.ProxyBuilder().setFrameBudget(budget).build(ValueStream.class);
+        proxy.onValue(1);
+
+        assertEquals("[1]", first.mValues.toString());
+        assertEquals("[]", second.mValues.toString());
+        assertEquals("[]", third.mValues.toString());
+        assertEquals(2, budget.getDeferredCount());
+        assertEquals(1, budget.getDeferredDispatchCount());
+
+        mPlatform.advance(FrameBudget.DEFAULT_BUDGET);
+        assertEquals("[1]", second.mValues.toString());
+        assertEquals("[1]", third.mValues.toString());
+    }
+
+    /**
+     * 同一个方法再次分发之前，上一次调用延后的部分要先分发，流对象收到的调用顺序不能颠倒
+     */
+    @Test
+    public void testFlushDeferredBeforeNextCall()
+    {
+        final ValueStreamImpl first = register(new ValueStreamImpl(1));
+        final ValueStreamImpl second = register(new ValueStreamImpl(0));
+        final ValueStreamImpl third = register(new ValueStreamImpl(0));
+
+        final FrameBudget budget = new FrameBudget(1);
+        final ValueStream proxy = new FStream.ProxyBuilder().setFrameBudget(budget).build(ValueStream.class);
+        proxy.onValue(1);
+        assertEquals("[]", second.mValues.toString());
+
+        proxy.onValue(2);
+        assertEquals("[1, 2]", first.mValues.toString());
+        assertEquals("[1, 2]", second.mValues.toString());
+        assertEquals("[1, 2]", third.mValues.toString());
+
+        // 已经分发过的延后任务在下一帧不会重复分发
+        mPlatform.advance(FrameBudget.DEFAULT_BUDGET);
+        assertEquals("[1, 2]", second.mValues.toString());
+        assertEquals("[1, 2]", third.mValues.toString());
+        assertEquals(2, budget.getDeferredCount());
+    }
+
+    private <T extends FStream> T register(T stream)
+    {
+        mManager.register(stream);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private static final class ValueStreamImpl implements ValueStream
+    {
+        /** 收到这个值的时候耗时超过预算 */
+        private final int mSlowValue;
+        final List<Integer> mValues = new ArrayList<>();
+
+        public ValueStreamImpl(int slowValue)
+        {
+            mSlowValue = slowValue;
+        }
+
+        @Override
+        public void onValue(int value)
+        {
+            mValues.add(value);
+            if (value == mSlowValue)
+            {
+                final long end = System.nanoTime() + 3000000L;
+                while (System.nanoTime() < end)
+                {
+                    Thread.yield();
+                }
+            }
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
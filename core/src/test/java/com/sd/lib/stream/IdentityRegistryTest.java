@@ -0,0 +1,139 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IdentityRegistryTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    /**
+     * 重写了equals和hashCode的流对象按对象地址区分
+     */
+    @Test
+    public void testEqualStreamsRegisteredSeparately()
+    {
+        final EqualStream first = register(new EqualStream());
+        final EqualStream second = register(new EqualStream());
+
+        final StreamConnection firstConnection = mManager.getConnection(first);
+        final StreamConnection secondConnection = mManager.getConnection(second);
+        assertNotNull(firstConnection);
+        assertNotNull(secondConnection);
+        assertNotSame(firstConnection, secondConnection);
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+        assertEquals("[1]", first.mValues.toString());
+        assertEquals("[1]", second.mValues.toString());
+
+        mManager.unregister(first);
+        assertNull(mManager.getConnection(first));
+        assertSame(secondConnection, mManager.getConnection(second));
+
+        proxy.onValue(2);
+        assertEquals("[1]", first.mValues.toString());
+        assertEquals("[1, 2]", second.mValues.toString());
+    }
+
+    @Test
+    public void testWeakIdentityMap()
+    {
+        final ConcurrentWeakIdentityMap<Object, String> map = new ConcurrentWeakIdentityMap<>();
+        final EqualStream first = new EqualStream();
+        final EqualStream second = new EqualStream();
+
+        map.put(first, "first");
+        map.put(second, "second");
+        assertEquals(2, map.size());
+        assertEquals("first", map.get(first));
+        assertEquals("second", map.get(second));
+
+        assertEquals("first", map.remove(first));
+        assertNull(map.get(first));
+        assertEquals(1, map.keys().size());
+        assertSame(second, map.keys().get(0));
+    }
+
+    @Test
+    public void testWeakIdentityMapReleasesKey() throws Exception
+    {
+        final ConcurrentWeakIdentityMap<Object, String> map = new ConcurrentWeakIdentityMap<>();
+        map.put(new Object(), "value");
+        assertEquals(1, map.size());
+
+        for (int i = 0; i < 50 && map.size() > 0; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, map.size());
+    }
+
+    private <T extends FStream> T register(T stream)
+    {
+        mManager.register(stream);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private static final class EqualStream implements ValueStream
+    {
+        final List<Integer> mValues = new ArrayList<>();
+
+        @Override
+        public void onValue(int value)
+        {
+            mValues.add(value);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof EqualStream;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 1;
+        }
+    }
+}
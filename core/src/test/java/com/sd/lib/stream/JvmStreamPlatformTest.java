@@ -0,0 +1,115 @@
+package com.sd.lib.stream;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JvmStreamPlatformTest
+{
+    @Test
+    public void testRemoveCancelsEveryPost() throws Exception
+    {
+        final JvmStreamPlatform platform = new JvmStreamPlatform();
+        final AtomicInteger count = new AtomicInteger();
+        final Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                count.incrementAndGet();
+            }
+        };
+
+        platform.postMain(task, 100);
+        platform.postMain(task, 150);
+        platform.removeMain(task);
+
+        awaitMain(platform, 300);
+        assertEquals(0, count.get());
+    }
+
+    @Test
+    public void testRemoveAfterRunOnlyCancelsPending() throws Exception
+    {
+        final JvmStreamPlatform platform = new JvmStreamPlatform();
+        final AtomicInteger count = new AtomicInteger();
+        final Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                count.incrementAndGet();
+            }
+        };
+
+        platform.postMain(task, 0);
+        awaitMain(platform, 0);
+        assertEquals(1, count.get());
+
+        platform.postMain(task, 100);
+        platform.removeMain(task);
+        awaitMain(platform, 200);
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testTaskRunsOnMainThread() throws Exception
+    {
+        final JvmStreamPlatform platform = new JvmStreamPlatform();
+        final AtomicBoolean isMain = new AtomicBoolean();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        assertTrue(!platform.isMainThread());
+        platform.postMain(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                isMain.set(platform.isMainThread());
+                latch.countDown();
+            }
+        }, 0);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(isMain.get());
+    }
+
+    @Test
+    public void testExceptionDoesNotStopLaterTasks() throws Exception
+    {
+        final JvmStreamPlatform platform = new JvmStreamPlatform();
+        platform.postMain(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new IllegalStateException("expected by test");
+            }
+        }, 0);
+
+        awaitMain(platform, 0);
+    }
+
+    /**
+     * 在主线程执行一个延迟任务并等待它执行完成，之前提交的时间更早的任务都已经执行
+     */
+    private static void awaitMain(JvmStreamPlatform platform, long delay) throws InterruptedException
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        platform.postMain(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                latch.countDown();
+            }
+        }, delay);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+}
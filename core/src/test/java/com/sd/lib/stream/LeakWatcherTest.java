@@ -0,0 +1,252 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class LeakWatcherTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private final List<Object> mLeaks = new ArrayList<>();
+    private LifecyclePlatform mPlatform;
+    private LeakWatcher mWatcher;
+
+    @Before
+    public void setUp()
+    {
+        mPlatform = new LifecyclePlatform();
+        StreamPlatform.install(mPlatform);
+
+        mWatcher = new LeakWatcher();
+        mWatcher.setCheckDelay(0);
+        mWatcher.setCallback(new LeakWatcher.Callback()
+        {
+            @Override
+            public void onLeak(FStream stream, Object owner, Throwable site)
+            {
+                mLeaks.add(stream);
+            }
+
+            @Override
+            public void onBudgetExceeded(Class<? extends FStream> clazz, int count, int budget, FStream stream, Throwable site)
+            {
+                mLeaks.add(clazz);
+            }
+        });
+        mManager.setLeakWatcher(mWatcher);
+    }
+
+    @After
+    public void tearDown()
+    {
+        mManager.setLeakWatcher(null);
+        for (FStream item : mStreams)
+        {
+            mManager.unbindStream(item);
+            mManager.unregister(item);
+        }
+        mPlatform.runPending();
+    }
+
+    @Test
+    public void testLeakAfterOwnerDestroyed()
+    {
+        final Owner owner = new Owner();
+        final ValueStreamImpl stream = newStream(owner);
+        mManager.register(stream);
+        assertEquals(1, mWatcher.size());
+        assertNotNull(mWatcher.getRegistrationSite(stream));
+
+        mPlatform.destroy(owner);
+        mPlatform.runPending();
+        assertEquals(1, mLeaks.size());
+        assertSame(stream, mLeaks.get(0));
+
+        // 每个流对象只通知一次
+        assertEquals(0, mWatcher.check());
+    }
+
+    @Test
+    public void testNoLeakAfterUnregister()
+    {
+        final Owner owner = new Owner();
+        final ValueStreamImpl stream = newStream(owner);
+        mManager.register(stream);
+        mManager.unregister(stream);
+        assertEquals(0, mWatcher.size());
+
+        mPlatform.destroy(owner);
+        mPlatform.runPending();
+        assertEquals(0, mLeaks.size());
+    }
+
+    /**
+     * 绑定的流对象在目标对象恢复之后重新注册，仍然使用目标对象所属的生命周期对象
+     */
+    @Test
+    public void testBoundOwnerKeptOnReRegister()
+    {
+        final Owner owner = new Owner();
+        final Target target = new Target(owner);
+        final ValueStreamImpl stream = newStream(null);
+        mManager.bindStream(stream, target);
+
+        final TargetBinder binder = mPlatform.mBinders.get(0);
+        binder.detach();
+        assertNull(mManager.getConnection(stream));
+        assertEquals(0, mWatcher.size());
+
+        binder.attach();
+        assertNotNull(mManager.getConnection(stream));
+        assertEquals(1, mWatcher.size());
+
+        mPlatform.destroy(owner);
+        mPlatform.runPending();
+        assertEquals(1, mLeaks.size());
+        assertSame(stream, mLeaks.get(0));
+    }
+
+    @Test
+    public void testBudgetExceeded()
+    {
+        mWatcher.setBudget(ValueStream.class, 1);
+        mManager.register(newStream(null));
+        assertEquals(0, mLeaks.size());
+
+        mManager.register(newStream(null));
+        assertEquals(1, mLeaks.size());
+        assertSame(ValueStream.class, mLeaks.get(0));
+
+        mWatcher.setBudget(ValueStream.class, 0);
+        mManager.register(newStream(null));
+        assertEquals(1, mLeaks.size());
+    }
+
+    private ValueStreamImpl newStream(Owner owner)
+    {
+        final ValueStreamImpl stream = new ValueStreamImpl(owner);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private static final class Owner
+    {
+        private boolean mIsDestroyed;
+        private final List<Runnable> mCallbacks = new ArrayList<>();
+    }
+
+    private static final class Target
+    {
+        private final Owner mOwner;
+
+        public Target(Owner owner)
+        {
+            mOwner = owner;
+        }
+    }
+
+    private static final class TargetBinder extends StreamBinder<Target>
+    {
+        public TargetBinder(Target target)
+        {
+            super(target);
+        }
+
+        public void attach()
+        {
+            registerStreams();
+        }
+
+        public void detach()
+        {
+            unregisterStreams();
+        }
+    }
+
+    private static final class LifecyclePlatform extends TestStreamPlatform
+    {
+        final List<TargetBinder> mBinders = new ArrayList<>();
+
+        @Override
+        public StreamBinder<?> createStreamBinder(Object target)
+        {
+            if (!(target instanceof Target))
+                return null;
+
+            final TargetBinder binder = new TargetBinder((Target) target);
+            mBinders.add(binder);
+            return binder;
+        }
+
+        @Override
+        public Object getLifecycleOwner(Object object)
+        {
+            if (object instanceof Owner)
+                return object;
+            if (object instanceof Target)
+                return ((Target) object).mOwner;
+            if (object instanceof ValueStreamImpl)
+                return ((ValueStreamImpl) object).mOwner;
+            return null;
+        }
+
+        @Override
+        public boolean isLifecycleDestroyed(Object owner)
+        {
+            return ((Owner) owner).mIsDestroyed;
+        }
+
+        @Override
+        public void watchLifecycle(Object owner, Runnable callback)
+        {
+            final List<Runnable> callbacks = ((Owner) owner).mCallbacks;
+            if (!callbacks.contains(callback))
+                callbacks.add(callback);
+        }
+
+        public void destroy(Owner owner)
+        {
+            owner.mIsDestroyed = true;
+            for (Runnable item : new ArrayList<>(owner.mCallbacks))
+            {
+                item.run();
+            }
+            owner.mCallbacks.clear();
+        }
+    }
+
+    private static final class ValueStreamImpl implements ValueStream
+    {
+        private final Owner mOwner;
+
+        public ValueStreamImpl(Owner owner)
+        {
+            mOwner = owner;
+        }
+
+        @Override
+        public void onValue(int value)
+        {
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
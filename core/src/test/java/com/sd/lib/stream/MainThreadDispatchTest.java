@@ -0,0 +1,198 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MainThreadDispatchTest
+{
+    @MainThreadDispatch
+    public interface UiStream extends FStream
+    {
+        void onValue(int value);
+
+        int getValue();
+    }
+
+    public interface MixedStream extends FStream
+    {
+        @MainThreadDispatch
+        void onMain(int value);
+
+        void onAny(int value);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private TestStreamPlatform mPlatform;
+
+    @Before
+    public void setUp()
+    {
+        mPlatform = TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        mPlatform.runPending();
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testBatchBackgroundCalls() throws Exception
+    {
+        final UiStreamImpl stream = register(new UiStreamImpl());
+        final UiStream proxy = new FStream.ProxyBuilder().build(UiStream.class);
+
+        runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                proxy.onValue(1);
+                proxy.onValue(2);
+                proxy.onValue(3);
+            }
+        });
+        assertEquals("[]", stream.mValues.toString());
+
+        // 多次调用只提交一个主线程消息
+        assertEquals(1, mPlatform.getPendingCount());
+        mPlatform.runPending();
+        assertEquals("[1, 2, 3]", stream.mValues.toString());
+        assertEquals(Collections.nCopies(3, Thread.currentThread()), stream.mThreads);
+    }
+
+    @Test
+    public void testMainThreadCallIsSynchronous()
+    {
+        final UiStreamImpl stream = register(new UiStreamImpl());
+        final UiStream proxy = new FStream.ProxyBuilder().build(UiStream.class);
+
+        proxy.onValue(1);
+        assertEquals("[1]", stream.mValues.toString());
+        assertEquals(0, mPlatform.getPendingCount());
+    }
+
+    @Test
+    public void testNonVoidMethodIsSynchronous() throws Exception
+    {
+        final UiStreamImpl stream = register(new UiStreamImpl());
+        stream.mValue = 5;
+        final UiStream proxy = new FStream.ProxyBuilder().build(UiStream.class);
+
+        final int[] result = new int[1];
+        runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                result[0] = proxy.getValue();
+            }
+        });
+        assertEquals(5, result[0]);
+        assertEquals(0, mPlatform.getPendingCount());
+    }
+
+    @Test
+    public void testMethodAnnotation() throws Exception
+    {
+        final MixedStreamImpl stream = register(new MixedStreamImpl());
+        final MixedStream proxy = new FStream.ProxyBuilder().build(MixedStream.class);
+
+        final Thread[] thread = new Thread[1];
+        runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                thread[0] = Thread.currentThread();
+                proxy.onMain(1);
+                proxy.onAny(2);
+            }
+        });
+        assertEquals("[2]", stream.mValues.toString());
+        assertSame(thread[0], stream.mThreads.get(0));
+
+        mPlatform.runPending();
+        assertEquals("[2, 1]", stream.mValues.toString());
+        assertSame(Thread.currentThread(), stream.mThreads.get(1));
+    }
+
+    private <T extends FStream> T register(T stream)
+    {
+        mManager.register(stream);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private static void runOnOtherThread(Runnable runnable) throws InterruptedException
+    {
+        final Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
+    }
+
+    private static class UiStreamImpl implements UiStream
+    {
+        final List<Integer> mValues = new ArrayList<>();
+        final List<Thread> mThreads = new ArrayList<>();
+        int mValue;
+
+        @Override
+        public void onValue(int value)
+        {
+            mValues.add(value);
+            mThreads.add(Thread.currentThread());
+        }
+
+        @Override
+        public int getValue()
+        {
+            return mValue;
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+
+    private static class MixedStreamImpl implements MixedStream
+    {
+        final List<Integer> mValues = new ArrayList<>();
+        final List<Thread> mThreads = new ArrayList<>();
+
+        @Override
+        public void onMain(int value)
+        {
+            mValues.add(value);
+            mThreads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void onAny(int value)
+        {
+            mValues.add(value);
+            mThreads.add(Thread.currentThread());
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
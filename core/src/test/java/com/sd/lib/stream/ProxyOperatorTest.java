@@ -0,0 +1,155 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProxyOperatorTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+
+        void onValues(int[] values);
+
+        int getValue();
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private ValueStreamImpl mStream;
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+        mStream = new ValueStreamImpl();
+        mManager.register(mStream);
+    }
+
+    @After
+    public void tearDown()
+    {
+        mManager.unregister(mStream);
+    }
+
+    @Test
+    public void testDistinctUntilChanged()
+    {
+        final ValueStream proxy = new FStream.ProxyBuilder()
+                .setDistinctUntilChanged(true)
+                .build(ValueStream.class);
+
+        proxy.onValue(1);
+        proxy.onValue(1);
+        proxy.onValue(2);
+        proxy.onValue(1);
+        assertEquals("[1, 2, 1]", mStream.mValues.toString());
+
+        // 数组参数按内容比较
+        proxy.onValues(new int[]{1, 2});
+        proxy.onValues(new int[]{1, 2});
+        assertEquals("[1, 2, 1, 2]", mStream.mValues.toString());
+
+        // 有返回值的方法不去重
+        proxy.getValue();
+        proxy.getValue();
+        assertEquals(2, mStream.mGetCount);
+    }
+
+    @Test
+    public void testDistinctPerProxy()
+    {
+        final ValueStream first = new FStream.ProxyBuilder().setDistinctUntilChanged(true).build(ValueStream.class);
+        final ValueStream second = new FStream.ProxyBuilder().setDistinctUntilChanged(true).build(ValueStream.class);
+
+        first.onValue(1);
+        second.onValue(1);
+        assertEquals("[1, 1]", mStream.mValues.toString());
+    }
+
+    @Test
+    public void testLeadingThrottle() throws Exception
+    {
+        final ValueStream proxy = new FStream.ProxyBuilder()
+                .setThrottle(200, FStream.ThrottleMode.LEADING)
+                .build(ValueStream.class);
+
+        proxy.onValue(1);
+        proxy.onValue(2);
+        proxy.onValue(3);
+        assertEquals("[1]", mStream.mValues.toString());
+
+        // 每个方法单独节流
+        proxy.onValues(new int[]{1});
+        assertEquals("[1, 1]", mStream.mValues.toString());
+
+        Thread.sleep(250);
+        proxy.onValue(4);
+        assertEquals("[1, 1, 4]", mStream.mValues.toString());
+    }
+
+    @Test
+    public void testTrailingThrottle() throws Exception
+    {
+        final ValueStream proxy = new FStream.ProxyBuilder()
+                .setThrottle(50, FStream.ThrottleMode.TRAILING)
+                .build(ValueStream.class);
+
+        mStream.mLatch = new CountDownLatch(1);
+        proxy.onValue(1);
+        proxy.onValue(2);
+        proxy.onValue(3);
+        assertEquals("[]", mStream.mValues.toString());
+
+        assertTrue(mStream.mLatch.await(5, TimeUnit.SECONDS));
+        assertEquals("[3]", mStream.mValues.toString());
+
+        // 有返回值的方法不节流
+        assertEquals(0, proxy.getValue());
+        assertEquals(1, mStream.mGetCount);
+    }
+
+    private static final class ValueStreamImpl implements ValueStream
+    {
+        final List<Integer> mValues = Collections.synchronizedList(new ArrayList<Integer>());
+        volatile int mGetCount;
+        volatile CountDownLatch mLatch;
+
+        @Override
+        public void onValue(int value)
+        {
+            mValues.add(value);
+            final CountDownLatch latch = mLatch;
+            if (latch != null)
+                latch.countDown();
+        }
+
+        @Override
+        public void onValues(int[] values)
+        {
+            mValues.add(values.length);
+        }
+
+        @Override
+        public int getValue()
+        {
+            mGetCount++;
+            return 0;
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SerialMailboxTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+    }
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp()
+    {
+        mExecutor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testOrderAndSerial() throws Exception
+    {
+        final int count = 1000;
+        final SerialMailbox mailbox = new SerialMailbox();
+        final List<Integer> result = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlapped = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            final int value = i;
+            mailbox.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if (running.incrementAndGet() > 1)
+                        overlapped.incrementAndGet();
+
+                    result.add(value);
+                    running.decrementAndGet();
+                    latch.countDown();
+                }
+            }, mExecutor);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, overlapped.get());
+        assertEquals(count, result.size());
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals(i, (int) result.get(i));
+        }
+    }
+
+    @Test
+    public void testDifferentMailboxRunInParallel() throws Exception
+    {
+        // 两个邮箱的任务互相等待，只有并行执行才能都完成
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch finished = new CountDownLatch(2);
+        final Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                started.countDown();
+                try
+                {
+                    if (started.await(5, TimeUnit.SECONDS))
+                        finished.countDown();
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        new SerialMailbox().post(task, mExecutor);
+        new SerialMailbox().post(task, mExecutor);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 流对象取消注册之后马上重新注册，之前提交的任务执行完之后才执行新的任务
+     */
+    @Test
+    public void testKeepOrderAcrossReRegister() throws Exception
+    {
+        TestStreamPlatform.install();
+        final FStreamManager manager = FStreamManager.getInstance();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(2);
+        final List<Integer> result = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlapped = new AtomicInteger();
+
+        final ValueStream stream = new ValueStream()
+        {
+            @Override
+            public void onValue(int value)
+            {
+                if (running.incrementAndGet() > 1)
+                    overlapped.incrementAndGet();
+
+                if (value == 1)
+                {
+                    blocked.countDown();
+                    try
+                    {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                result.add(value);
+                running.decrementAndGet();
+                finished.countDown();
+            }
+
+            @Override
+            public Object getTagForStream(Class<? extends FStream> clazz)
+            {
+                return null;
+            }
+        };
+
+        try
+        {
+            manager.register(stream);
+            final ValueStream proxy = new FStream.ProxyBuilder()
+                    .setMailboxExecutor(mExecutor)
+                    .build(ValueStream.class);
+
+            proxy.onValue(1);
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+            manager.unregister(stream);
+            manager.register(stream);
+            proxy.onValue(2);
+
+            // 给新的任务留出执行的机会
+            Thread.sleep(50);
+            release.countDown();
+
+            assertTrue(finished.await(5, TimeUnit.SECONDS));
+            assertEquals(0, overlapped.get());
+            assertEquals("[1, 2]", result.toString());
+        } finally
+        {
+            release.countDown();
+            manager.unregister(stream);
+        }
+    }
+
+    @Test
+    public void testRejectedExecution() throws Exception
+    {
+        final SerialMailbox mailbox = new SerialMailbox();
+        final AtomicInteger counter = new AtomicInteger();
+        final Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                counter.incrementAndGet();
+            }
+        };
+
+        final Executor rejected = new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                throw new RejectedExecutionException();
+            }
+        };
+
+        try
+        {
+            mailbox.post(task, rejected);
+            fail();
+        } catch (RejectedExecutionException e)
+        {
+        }
+
+        // 被拒绝之后邮箱可以继续使用，之前的任务也会执行
+        final CountDownLatch latch = new CountDownLatch(1);
+        mailbox.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                latch.countDown();
+            }
+        }, mExecutor);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, counter.get());
+    }
+}
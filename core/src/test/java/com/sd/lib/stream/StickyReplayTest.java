@@ -0,0 +1,210 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+public class StickyReplayTest
+{
+    public interface StateStream extends FStream
+    {
+        @Sticky
+        void onState(int state);
+    }
+
+    public interface MainStateStream extends FStream
+    {
+        @Sticky
+        @MainThreadDispatch
+        void onState(int state);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private TestStreamPlatform mPlatform;
+
+    @Before
+    public void setUp()
+    {
+        mPlatform = TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+        mManager.clearSticky(StateStream.class);
+        mManager.clearSticky(MainStateStream.class);
+    }
+
+    @Test
+    public void testReplayOnRegister()
+    {
+        final StateStream proxy = new FStream.ProxyBuilder().build(StateStream.class);
+        proxy.onState(1);
+        proxy.onState(2);
+
+        final StateStreamImpl stream = new StateStreamImpl();
+        register(stream);
+        assertEquals("[2]", stream.mStates.toString());
+    }
+
+    /**
+     * 在其他线程注册，粘性调用提交到主线程通知；通知之前有新的调用分发给了流对象，旧的调用不再通知
+     */
+    @Test
+    public void testSkipReplayWhenNewerCallDelivered() throws Exception
+    {
+        final MainStateStream proxy = new FStream.ProxyBuilder().build(MainStateStream.class);
+        proxy.onState(1);
+
+        final MainStateStreamImpl stream = new MainStateStreamImpl();
+        runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                register(stream);
+            }
+        });
+        assertEquals("[]", stream.mStates.toString());
+        assertEquals(1, mPlatform.getPendingCount());
+
+        proxy.onState(2);
+        mPlatform.runPending();
+        assertEquals("[2]", stream.mStates.toString());
+        assertEquals(Collections.singletonList(Thread.currentThread()), stream.mThreads);
+    }
+
+    @Test
+    public void testReplayOnMainThread() throws Exception
+    {
+        final MainStateStream proxy = new FStream.ProxyBuilder().build(MainStateStream.class);
+        proxy.onState(1);
+
+        final MainStateStreamImpl stream = new MainStateStreamImpl();
+        runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                register(stream);
+            }
+        });
+
+        mPlatform.runPending();
+        assertEquals("[1]", stream.mStates.toString());
+        assertEquals(Collections.singletonList(Thread.currentThread()), stream.mThreads);
+    }
+
+    /**
+     * 设置了串行邮箱的代理对象发起的粘性调用，通过新注册的流对象的邮箱通知
+     */
+    @Test
+    public void testReplayThroughMailbox()
+    {
+        final List<Runnable> tasks = new ArrayList<>();
+        final StateStream proxy = new FStream.ProxyBuilder()
+                .setMailboxExecutor(new Executor()
+                {
+                    @Override
+                    public void execute(Runnable command)
+                    {
+                        tasks.add(command);
+                    }
+                })
+                .build(StateStream.class);
+        proxy.onState(1);
+
+        final StateStreamImpl stream = new StateStreamImpl();
+        register(stream);
+        assertEquals("[]", stream.mStates.toString());
+        assertEquals(1, tasks.size());
+
+        tasks.remove(0).run();
+        assertEquals("[1]", stream.mStates.toString());
+    }
+
+    @Test
+    public void testSkipReplayAfterClear() throws Exception
+    {
+        final MainStateStream proxy = new FStream.ProxyBuilder().build(MainStateStream.class);
+        proxy.onState(1);
+
+        final MainStateStreamImpl stream = new MainStateStreamImpl();
+        runOnOtherThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                register(stream);
+            }
+        });
+
+        mManager.clearSticky(MainStateStream.class);
+        mPlatform.runPending();
+        assertEquals("[]", stream.mStates.toString());
+    }
+
+    private void register(FStream stream)
+    {
+        mManager.register(stream);
+        synchronized (mStreams)
+        {
+            mStreams.add(stream);
+        }
+    }
+
+    private static void runOnOtherThread(Runnable runnable) throws InterruptedException
+    {
+        final Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
+    }
+
+    private static final class StateStreamImpl implements StateStream
+    {
+        final List<Integer> mStates = new ArrayList<>();
+
+        @Override
+        public void onState(int state)
+        {
+            mStates.add(state);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+
+    private static final class MainStateStreamImpl implements MainStateStream
+    {
+        final List<Integer> mStates = new ArrayList<>();
+        final List<Thread> mThreads = new ArrayList<>();
+
+        @Override
+        public void onState(int state)
+        {
+            mStates.add(state);
+            mThreads.add(Thread.currentThread());
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
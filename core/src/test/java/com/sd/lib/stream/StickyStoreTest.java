@@ -0,0 +1,249 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StickyStoreTest
+{
+    public interface AccountStream extends FStream
+    {
+        @Sticky(persist = true)
+        void onAccount(String name, int level);
+
+        @Sticky
+        void onOnline(boolean online);
+
+        @Sticky(persist = true)
+        void onNames(ArrayList<String> names);
+    }
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        TestStreamPlatform.install();
+        mFile = new File(mFolder.getRoot(), "sticky/store.bin");
+    }
+
+    @After
+    public void tearDown()
+    {
+        FStreamManager.getInstance().clearSticky(AccountStream.class);
+        FStreamManager.getInstance().setStickyStore(null);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final StickyStore store = new StickyStore(mFile);
+        store.put(accountCall("tag1", "a", 1));
+        store.put(accountCall("tag1", "b", 2));
+        store.put(accountCall(null, "c", 3));
+        assertTrue(store.flush());
+        assertTrue(mFile.exists());
+
+        final List<StickyCache.StickyCall> list = new StickyStore(mFile).load();
+        assertEquals(2, list.size());
+
+        final Map<Object, Object[]> map = new HashMap<>();
+        for (StickyCache.StickyCall item : list)
+        {
+            assertEquals(AccountStream.class, item.clazz);
+            assertEquals("onAccount", item.method.getName());
+            map.put(item.tag, item.args);
+        }
+
+        // 同一个方法和tag只保存最后一次调用
+        assertArrayEquals(new Object[]{"b", 2}, map.get("tag1"));
+        assertArrayEquals(new Object[]{"c", 3}, map.get(null));
+    }
+
+    @Test
+    public void testIgnoreNotPersistMethod() throws Exception
+    {
+        final StickyStore store = new StickyStore(mFile);
+        store.put(new StickyCache.StickyCall(AccountStream.class,
+                AccountStream.class.getMethod("onOnline", boolean.class), null, new Object[]{true}));
+        store.put(accountCall(null, "a", 1));
+        assertTrue(store.flush());
+
+        final List<StickyCache.StickyCall> list = new StickyStore(mFile).load();
+        assertEquals(1, list.size());
+        assertEquals("onAccount", list.get(0).method.getName());
+    }
+
+    @Test
+    public void testSkipUnserializableArgs() throws Exception
+    {
+        final StickyStore store = new StickyStore(mFile);
+        store.put(accountCall(new Object(), "a", 1));
+        store.put(accountCall("tag", "b", 2));
+        assertTrue(store.flush());
+
+        final List<StickyCache.StickyCall> list = new StickyStore(mFile).load();
+        assertEquals(1, list.size());
+        assertEquals("tag", list.get(0).tag);
+    }
+
+    @Test
+    public void testRemove() throws Exception
+    {
+        final StickyStore store = new StickyStore(mFile);
+        store.put(accountCall(null, "a", 1));
+        assertTrue(store.flush());
+
+        store.remove(AccountStream.class);
+        assertTrue(store.flush());
+        assertEquals(0, new StickyStore(mFile).load().size());
+    }
+
+    @Test
+    public void testIllegalFile() throws Exception
+    {
+        mFile.getParentFile().mkdirs();
+        final FileOutputStream output = new FileOutputStream(mFile);
+        output.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        output.close();
+
+        assertEquals(0, new StickyStore(mFile).load().size());
+    }
+
+    /**
+     * 保存的时候立即编码，之后修改参数对象不影响写入的内容
+     */
+    @Test
+    public void testEncodeOnPut() throws Exception
+    {
+        final ArrayList<String> names = new ArrayList<>(Arrays.asList("a"));
+        final StickyStore store = new StickyStore(mFile);
+        store.put(new StickyCache.StickyCall(AccountStream.class,
+                AccountStream.class.getMethod("onNames", ArrayList.class), null, new Object[]{names}));
+        names.add("b");
+        assertTrue(store.flush());
+
+        final List<StickyCache.StickyCall> list = new StickyStore(mFile).load();
+        assertEquals(1, list.size());
+        assertEquals(Arrays.asList("a"), list.get(0).args[0]);
+    }
+
+    /**
+     * 无法编码的调用会移除之前保存的同一个方法和tag的调用
+     */
+    @Test
+    public void testUnserializableArgsRemovesOldCall() throws Exception
+    {
+        final Method method = AccountStream.class.getMethod("onNames", ArrayList.class);
+        final ArrayList<Object> names = new ArrayList<>();
+        names.add(new Object());
+
+        final StickyStore store = new StickyStore(mFile);
+        store.put(new StickyCache.StickyCall(AccountStream.class, method, null, new Object[]{new ArrayList<>(Arrays.asList("a"))}));
+        store.put(new StickyCache.StickyCall(AccountStream.class, method, null, new Object[]{names}));
+        assertTrue(store.flush());
+        assertEquals(0, new StickyStore(mFile).load().size());
+    }
+
+    @Test
+    public void testLoadBackupFile() throws Exception
+    {
+        final StickyStore store = new StickyStore(mFile);
+        store.put(accountCall(null, "a", 1));
+        assertTrue(store.flush());
+        assertFalse(new File(mFile.getPath() + ".bak").exists());
+
+        // 重命名的时候中断：旧文件已经重命名为备份文件，新文件还没有重命名
+        final File backupFile = new File(mFile.getPath() + ".bak");
+        assertTrue(mFile.renameTo(backupFile));
+        List<StickyCache.StickyCall> list = new StickyStore(mFile).load();
+        assertEquals(1, list.size());
+        assertArrayEquals(new Object[]{"a", 1}, list.get(0).args);
+
+        // 主文件无法读取
+        final FileOutputStream output = new FileOutputStream(mFile);
+        output.write(new byte[]{1, 2, 3});
+        output.close();
+        list = new StickyStore(mFile).load();
+        assertEquals(1, list.size());
+
+        // 写入成功之后删除备份文件
+        final StickyStore newStore = new StickyStore(mFile);
+        newStore.load();
+        newStore.put(accountCall(null, "b", 2));
+        assertTrue(newStore.flush());
+        assertFalse(backupFile.exists());
+        assertArrayEquals(new Object[]{"b", 2}, new StickyStore(mFile).load().get(0).args);
+    }
+
+    @Test
+    public void testPreloadAndReplay() throws Exception
+    {
+        final StickyStore store = new StickyStore(mFile);
+        store.put(accountCall(null, "a", 1));
+        assertTrue(store.flush());
+
+        // 模拟重新启动之后加载文件，新注册的流对象收到保存的调用
+        FStreamManager.getInstance().setStickyStore(new StickyStore(mFile));
+
+        final RecordStream stream = new RecordStream();
+        FStreamManager.getInstance().register(stream);
+        FStreamManager.getInstance().unregister(stream);
+
+        assertEquals(Arrays.asList("a:1"), stream.calls);
+    }
+
+    private static StickyCache.StickyCall accountCall(Object tag, String name, int level) throws Exception
+    {
+        return new StickyCache.StickyCall(AccountStream.class,
+                AccountStream.class.getMethod("onAccount", String.class, int.class), tag, new Object[]{name, level});
+    }
+
+    private static final class RecordStream implements AccountStream
+    {
+        public final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void onAccount(String name, int level)
+        {
+            calls.add(name + ":" + level);
+        }
+
+        @Override
+        public void onOnline(boolean online)
+        {
+            calls.add("online:" + online);
+        }
+
+        @Override
+        public void onNames(ArrayList<String> names)
+        {
+            calls.add("names:" + names);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
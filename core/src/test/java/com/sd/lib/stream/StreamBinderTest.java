@@ -0,0 +1,230 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamBinderTest
+{
+    public interface ValueStream extends FStream
+    {
+        void onValue(int value);
+    }
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private BinderPlatform mPlatform;
+
+    @Before
+    public void setUp()
+    {
+        mPlatform = new BinderPlatform();
+        StreamPlatform.install(mPlatform);
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (FStream item : mStreams)
+        {
+            mManager.unbindStream(item);
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testShareBinderPerTarget()
+    {
+        final Target target = new Target();
+        final ValueStreamImpl first = newStream();
+        final ValueStreamImpl second = newStream();
+
+        assertTrue(mManager.bindStream(first, target));
+        assertTrue(mManager.bindStream(second, target));
+        assertTrue(mManager.bindStream(second, target));
+        assertEquals(1, mPlatform.mBinders.size());
+        assertEquals(2, mPlatform.mBinders.get(0).size());
+
+        final ValueStream proxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        proxy.onValue(1);
+        assertEquals("[1]", first.mValues.toString());
+        assertEquals("[1]", second.mValues.toString());
+    }
+
+    @Test
+    public void testUnbindAll()
+    {
+        final Target target = new Target();
+        final Target otherTarget = new Target();
+        final ValueStreamImpl first = newStream();
+        final ValueStreamImpl second = newStream();
+        final ValueStreamImpl other = newStream();
+        mManager.bindStream(first, target);
+        mManager.bindStream(second, target);
+        mManager.bindStream(other, otherTarget);
+
+        assertEquals(2, mManager.unbindAll(target));
+        assertEquals(0, mManager.unbindAll(target));
+        assertTrue(mPlatform.mBinders.get(0).mIsDestroyed);
+        assertFalse(mPlatform.mBinders.get(1).mIsDestroyed);
+
+        // 解绑之后取消注册，其他目标对象绑定的流对象不受影响
+        assertNull(mManager.getConnection(first));
+        assertNull(mManager.getConnection(second));
+        assertNotNull(mManager.getConnection(other));
+
+        // 解绑之后可以直接注册和重新绑定
+        assertNotNull(mManager.register(first));
+        mManager.unregister(first);
+        assertTrue(mManager.bindStream(second, target));
+        assertEquals(3, mPlatform.mBinders.size());
+    }
+
+    @Test
+    public void testUnbindLastStreamDestroysBinder()
+    {
+        final Target target = new Target();
+        final ValueStreamImpl first = newStream();
+        final ValueStreamImpl second = newStream();
+        mManager.bindStream(first, target);
+        mManager.bindStream(second, target);
+
+        assertTrue(mManager.unbindStream(first));
+        assertFalse(mPlatform.mBinders.get(0).mIsDestroyed);
+        assertTrue(mManager.unbindStream(second));
+        assertTrue(mPlatform.mBinders.get(0).mIsDestroyed);
+        assertEquals(0, mManager.unbindAll(target));
+    }
+
+    @Test
+    public void testDetachDelayPerStream()
+    {
+        final Target target = new Target();
+        final ValueStreamImpl first = newStream();
+        final ValueStreamImpl second = newStream();
+        mManager.bindStream(first, target, 500);
+        mManager.bindStream(second, target, 100);
+
+        final TargetBinder binder = mPlatform.mBinders.get(0);
+        assertEquals(Long.valueOf(500), binder.mDetachDelay.get(first));
+        assertEquals(Long.valueOf(100), binder.mDetachDelay.get(second));
+
+        // 已绑定的流对象可以调低或者清除延迟
+        mManager.bindStream(first, target, 0);
+        assertEquals(Long.valueOf(0), binder.mDetachDelay.get(first));
+        assertEquals(Long.valueOf(100), binder.mDetachDelay.get(second));
+    }
+
+    @Test
+    public void testDeprecatedBinder()
+    {
+        final Target target = new Target();
+        final ValueStreamImpl stream = newStream();
+
+        final LegacyBinder binder = new LegacyBinder(stream, target);
+        assertEquals(1, binder.size());
+        assertTrue(binder.bind());
+        assertNotNull(mManager.getConnection(stream));
+
+        binder.destroy();
+        assertEquals(0, binder.size());
+        assertNull(mManager.getConnection(stream));
+    }
+
+    private ValueStreamImpl newStream()
+    {
+        final ValueStreamImpl stream = new ValueStreamImpl();
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private static final class Target
+    {
+    }
+
+    private static final class TargetBinder extends StreamBinder<Target>
+    {
+        private boolean mIsDestroyed;
+        final Map<FStream, Long> mDetachDelay = new HashMap<>();
+
+        public TargetBinder(Target target)
+        {
+            super(target);
+        }
+
+        @Override
+        public void setDetachDelay(FStream stream, long delay)
+        {
+            mDetachDelay.put(stream, delay);
+        }
+
+        @Override
+        public void destroy()
+        {
+            super.destroy();
+            mIsDestroyed = true;
+        }
+    }
+
+    /**
+     * 旧版本的子类，一个流对象对应一个{@link StreamBinder}
+     */
+    @SuppressWarnings("deprecation")
+    private static final class LegacyBinder extends StreamBinder<Target>
+    {
+        public LegacyBinder(FStream stream, Target target)
+        {
+            super(stream, target);
+        }
+
+        @Override
+        public boolean bind()
+        {
+            return getTarget() != null && registerStream();
+        }
+    }
+
+    private static final class BinderPlatform extends TestStreamPlatform
+    {
+        final List<TargetBinder> mBinders = new ArrayList<>();
+
+        @Override
+        public StreamBinder<?> createStreamBinder(Object target)
+        {
+            if (!(target instanceof Target))
+                return null;
+
+            final TargetBinder binder = new TargetBinder((Target) target);
+            mBinders.add(binder);
+            return binder;
+        }
+    }
+
+    private static final class ValueStreamImpl implements ValueStream
+    {
+        final List<Integer> mValues = new ArrayList<>();
+
+        @Override
+        public void onValue(int value)
+        {
+            mValues.add(value);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+}
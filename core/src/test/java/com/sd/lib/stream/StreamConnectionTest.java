@@ -0,0 +1,331 @@
+package com.sd.lib.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 流对象实现的流接口超过{@link StreamConnection#MAX_FLAG_SLOT}个的时候，超过的槽位也要正常工作
+ */
+public class StreamConnectionTest
+{
+    // 每个流接口的方法名不同，动态代理收到的Method才能区分是哪个流接口的分发
+    public interface S00 extends FStream
+    {
+        void onS00(int value);
+    }
+
+    public interface S01 extends FStream
+    {
+        void onS01(int value);
+    }
+
+    public interface S02 extends FStream
+    {
+        void onS02(int value);
+    }
+
+    public interface S03 extends FStream
+    {
+        void onS03(int value);
+    }
+
+    public interface S04 extends FStream
+    {
+        void onS04(int value);
+    }
+
+    public interface S05 extends FStream
+    {
+        void onS05(int value);
+    }
+
+    public interface S06 extends FStream
+    {
+        void onS06(int value);
+    }
+
+    public interface S07 extends FStream
+    {
+        void onS07(int value);
+    }
+
+    public interface S08 extends FStream
+    {
+        void onS08(int value);
+    }
+
+    public interface S09 extends FStream
+    {
+        void onS09(int value);
+    }
+
+    public interface S10 extends FStream
+    {
+        void onS10(int value);
+    }
+
+    public interface S11 extends FStream
+    {
+        void onS11(int value);
+    }
+
+    public interface S12 extends FStream
+    {
+        void onS12(int value);
+    }
+
+    public interface S13 extends FStream
+    {
+        void onS13(int value);
+    }
+
+    public interface S14 extends FStream
+    {
+        void onS14(int value);
+    }
+
+    public interface S15 extends FStream
+    {
+        void onS15(int value);
+    }
+
+    public interface S16 extends FStream
+    {
+        void onS16(int value);
+    }
+
+    public interface S17 extends FStream
+    {
+        void onS17(int value);
+    }
+
+    public interface S18 extends FStream
+    {
+        void onS18(int value);
+    }
+
+    public interface S19 extends FStream
+    {
+        void onS19(int value);
+    }
+
+    public interface S20 extends FStream
+    {
+        void onS20(int value);
+    }
+
+    public interface S21 extends FStream
+    {
+        void onS21(int value);
+    }
+
+    public interface S22 extends FStream
+    {
+        void onS22(int value);
+    }
+
+    public interface S23 extends FStream
+    {
+        void onS23(int value);
+    }
+
+    public interface S24 extends FStream
+    {
+        void onS24(int value);
+    }
+
+    public interface S25 extends FStream
+    {
+        void onS25(int value);
+    }
+
+    public interface S26 extends FStream
+    {
+        void onS26(int value);
+    }
+
+    public interface S27 extends FStream
+    {
+        void onS27(int value);
+    }
+
+    public interface S28 extends FStream
+    {
+        void onS28(int value);
+    }
+
+    public interface S29 extends FStream
+    {
+        void onS29(int value);
+    }
+
+    public interface S30 extends FStream
+    {
+        void onS30(int value);
+    }
+
+    public interface S31 extends FStream
+    {
+        void onS31(int value);
+    }
+
+    public interface S32 extends FStream
+    {
+        void onS32(int value);
+    }
+
+    public interface S33 extends FStream
+    {
+        void onS33(int value);
+    }
+
+    private static final Class<?>[] CLASSES = new Class<?>[]{
+            S00.class, S01.class, S02.class, S03.class, S04.class, S05.class,
+            S06.class, S07.class, S08.class, S09.class, S10.class, S11.class,
+            S12.class, S13.class, S14.class, S15.class, S16.class, S17.class,
+            S18.class, S19.class, S20.class, S21.class, S22.class, S23.class,
+            S24.class, S25.class, S26.class, S27.class, S28.class, S29.class,
+            S30.class, S31.class, S32.class, S33.class
+    };
+
+    private final FStreamManager mManager = FStreamManager.getInstance();
+    private final List<FStream> mStreams = new ArrayList<>();
+    private final List<String> mCalled = new ArrayList<>();
+    /** 流对象first收到这个流接口的分发之后停止分发 */
+    private Class<? extends FStream> mBreakClass;
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (FStream item : mStreams)
+        {
+            mManager.unregister(item);
+        }
+    }
+
+    @Test
+    public void testBreakFlagPerSlot()
+    {
+        final StreamConnection connection = mManager.register(newStream("stream"));
+        assertNotNull(connection);
+
+        final List<Class<? extends FStream>> extra = getClasses(connection, true);
+        final Class<? extends FStream> normal = getClasses(connection, false).get(0);
+        assertEquals(CLASSES.length - StreamConnection.MAX_FLAG_SLOT, extra.size());
+
+        connection.breakDispatch(normal);
+        connection.breakDispatch(extra.get(0));
+        assertTrue(connection.shouldBreakDispatch(normal));
+        assertTrue(connection.shouldBreakDispatch(extra.get(0)));
+        assertFalse(connection.shouldBreakDispatch(extra.get(1)));
+
+        connection.resetBreakDispatch(extra.get(0));
+        assertFalse(connection.shouldBreakDispatch(extra.get(0)));
+        assertTrue(connection.shouldBreakDispatch(normal));
+    }
+
+    @Test
+    public void testPriorityPerSlot()
+    {
+        final StreamConnection connection = mManager.register(newStream("stream"));
+        final Class<? extends FStream> extra = getClasses(connection, true).get(0);
+        final Class<? extends FStream> normal = getClasses(connection, false).get(0);
+
+        connection.setPriority(5, extra);
+        assertEquals(5, connection.getPriority(extra));
+        assertEquals(0, connection.getPriority(normal));
+    }
+
+    @Test
+    public void testDispatchOnExtraSlot() throws Exception
+    {
+        final StreamConnection first = mManager.register(newStream("first"));
+        mManager.register(newStream("second"));
+        first.setPriority(1);
+
+        final Class<? extends FStream> extra = getClasses(first, true).get(0);
+        final Class<? extends FStream> normal = getClasses(first, false).get(0);
+        mBreakClass = extra;
+
+        dispatch(extra, 1);
+        assertEquals("[first]", mCalled.toString());
+
+        // 停止分发只对当次分发和对应的流接口有效
+        dispatch(normal, 2);
+        assertEquals("[first, first, second]", mCalled.toString());
+        dispatch(extra, 3);
+        assertEquals("[first, first, second, first]", mCalled.toString());
+    }
+
+    private static void dispatch(Class<? extends FStream> clazz, int value) throws Exception
+    {
+        final FStream proxy = new FStream.ProxyBuilder().build(clazz);
+        clazz.getMethod("on" + clazz.getSimpleName(), int.class).invoke(proxy, value);
+    }
+
+    /**
+     * 返回槽位超过或者没超过{@link StreamConnection#MAX_FLAG_SLOT}的流接口，槽位的顺序和实现接口的顺序无关
+     */
+    private static List<Class<? extends FStream>> getClasses(StreamConnection connection, boolean extra)
+    {
+        final List<Class<? extends FStream>> list = new ArrayList<>();
+        for (Class<?> item : CLASSES)
+        {
+            final Class<? extends FStream> clazz = item.asSubclass(FStream.class);
+            if ((connection.getSlot(clazz) >= StreamConnection.MAX_FLAG_SLOT) == extra)
+                list.add(clazz);
+        }
+        return list;
+    }
+
+    /**
+     * 创建实现所有流接口的流对象
+     *
+     * @param name
+     */
+    private FStream newStream(final String name)
+    {
+        final FStream stream = (FStream) Proxy.newProxyInstance(getClass().getClassLoader(), CLASSES, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                final String methodName = method.getName();
+                if ("getTagForStream".equals(methodName))
+                    return null;
+                if ("hashCode".equals(methodName))
+                    return System.identityHashCode(proxy);
+                if ("equals".equals(methodName))
+                    return proxy == args[0];
+                if ("toString".equals(methodName))
+                    return name;
+
+                mCalled.add(name);
+                final Class<? extends FStream> breakClass = mBreakClass;
+                if ("first".equals(name) && method.getDeclaringClass() == breakClass)
+                    mManager.getConnection((FStream) proxy).breakDispatch(breakClass);
+                return null;
+            }
+        });
+        mStreams.add(stream);
+        return stream;
+    }
+}
@@ -0,0 +1,175 @@
+package com.sd.lib.stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamTagIndexTest
+{
+    public interface TestStream extends FStream
+    {
+        void onChanged();
+    }
+
+    private StreamTagIndex mIndex;
+
+    @Before
+    public void setUp()
+    {
+        mIndex = new StreamTagIndex();
+    }
+
+    @Test
+    public void testExactAndPrefix()
+    {
+        final StreamConnection a = newConnection();
+        final StreamConnection b = newConnection();
+        final StreamConnection c = newConnection();
+        mIndex.put(a, StreamTag.parse("room/1/chat"));
+        mIndex.put(b, StreamTag.parse("room/1"));
+        mIndex.put(c, StreamTag.parse("room/2/chat"));
+
+        assertEquals(Arrays.asList(b), mIndex.query(StreamTag.parse("room/1"), false));
+        assertEquals(Arrays.asList(a, b), mIndex.query(StreamTag.parse("room/1"), true));
+        assertEquals(Arrays.asList(a, b, c), mIndex.query(StreamTag.parse("room"), true));
+        assertEquals(Collections.emptyList(), mIndex.query(StreamTag.parse("room"), false));
+        assertEquals(Collections.emptyList(), mIndex.query(StreamTag.parse("room/3"), true));
+        assertEquals(Collections.emptyList(), mIndex.query(StreamTag.parse("room/1/chat/more"), true));
+    }
+
+    @Test
+    public void testWildcard()
+    {
+        final StreamConnection a = newConnection();
+        final StreamConnection b = newConnection();
+        final StreamConnection c = newConnection();
+        mIndex.put(a, StreamTag.parse("room/1/chat"));
+        mIndex.put(b, StreamTag.parse("room/2/gift"));
+        mIndex.put(c, StreamTag.parse("room/2/chat"));
+
+        assertEquals(Arrays.asList(a, c), mIndex.query(StreamTag.parse("room/*/chat"), false));
+        assertEquals(Arrays.asList(a, b, c), mIndex.query(StreamTag.parse("*/*"), true));
+        assertEquals(Collections.emptyList(), mIndex.query(StreamTag.parse("*/*"), false));
+    }
+
+    @Test
+    public void testUpdateKeepsOrder()
+    {
+        final StreamConnection a = newConnection();
+        final StreamConnection b = newConnection();
+        mIndex.put(a, StreamTag.parse("room/1"));
+        mIndex.put(b, StreamTag.parse("room/2"));
+
+        // 更新tag之后仍然在b前面
+        mIndex.put(a, StreamTag.parse("room/3"));
+        assertEquals(Arrays.asList(a, b), mIndex.query(StreamTag.parse("room"), true));
+        assertEquals(Collections.emptyList(), mIndex.query(StreamTag.parse("room/1"), false));
+        assertEquals(Arrays.asList(a), mIndex.query(StreamTag.parse("room/3"), false));
+    }
+
+    @Test
+    public void testRemove()
+    {
+        final StreamConnection a = newConnection();
+        final StreamConnection b = newConnection();
+        mIndex.put(a, StreamTag.parse("room/1/chat"));
+        mIndex.put(b, StreamTag.parse("room/1"));
+
+        // tag不是StreamTag的时候移除索引
+        mIndex.put(a, "room/1/chat");
+        assertEquals(Arrays.asList(b), mIndex.query(StreamTag.parse("room"), true));
+
+        mIndex.remove(b);
+        assertTrue(mIndex.isEmpty());
+        assertEquals(Collections.emptyList(), mIndex.query(StreamTag.parse("*"), true));
+
+        mIndex.put(a, StreamTag.parse("room/1/chat"));
+        assertFalse(mIndex.isEmpty());
+        assertEquals(Arrays.asList(a), mIndex.query(StreamTag.parse("room/*/chat"), false));
+    }
+
+    @Test
+    public void testSameAsMatches()
+    {
+        final String[] segments = {"a", "b", "c"};
+        final Random random = new Random(1);
+
+        final List<StreamConnection> listConnection = new ArrayList<>();
+        final List<StreamTag> listTag = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+        {
+            final StreamConnection connection = newConnection();
+            final StreamTag tag = randomTag(random, segments, false);
+            mIndex.put(connection, tag);
+            listConnection.add(connection);
+            listTag.add(tag);
+        }
+
+        for (int i = 0; i < 200; i++)
+        {
+            final StreamTag pattern = randomTag(random, segments, true);
+            final boolean prefix = random.nextBoolean();
+
+            final List<StreamConnection> expected = new ArrayList<>();
+            for (int j = 0; j < listTag.size(); j++)
+            {
+                if (pattern.matches(listTag.get(j), prefix))
+                    expected.add(listConnection.get(j));
+            }
+            assertEquals(pattern + " prefix:" + prefix, expected, mIndex.query(pattern, prefix));
+        }
+    }
+
+    private static StreamTag randomTag(Random random, String[] segments, boolean wildcard)
+    {
+        final int size = 1 + random.nextInt(3);
+        final String[] array = new String[size];
+        for (int i = 0; i < size; i++)
+        {
+            array[i] = wildcard && random.nextInt(4) == 0 ? StreamTag.WILDCARD : segments[random.nextInt(segments.length)];
+        }
+        return StreamTag.of(array);
+    }
+
+    private static StreamConnection newConnection()
+    {
+        final TestStream stream = new TestStream()
+        {
+            @Override
+            public void onChanged()
+            {
+            }
+
+            @Override
+            public Object getTagForStream(Class<? extends FStream> clazz)
+            {
+                return null;
+            }
+        };
+
+        // 不能直接创建泛型数组，数组里只有TestStream
+        @SuppressWarnings("unchecked")
+        final Class<? extends FStream>[] classes = (Class<? extends FStream>[]) new Class<?>[]{TestStream.class};
+        return new StreamConnection(stream, classes)
+        {
+            @Override
+            protected void onPriorityChanged(int priority, FStream stream, Class<? extends FStream> clazz)
+            {
+            }
+
+            @Override
+            protected void onTagChanged(FStream stream, Class<? extends FStream> clazz)
+            {
+            }
+        };
+    }
+}
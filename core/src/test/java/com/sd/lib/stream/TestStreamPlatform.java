@@ -0,0 +1,136 @@
+package com.sd.lib.stream;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 测试用的平台，主线程任务不会自动执行
+ * <p>
+ * 创建这个对象的线程作为主线程，{@link #runPending()}执行已经到期的主线程任务，{@link #advance(long)}让虚拟时间前进
+ */
+public class TestStreamPlatform extends StreamPlatform
+{
+    private final Thread mMainThread = Thread.currentThread();
+    private final List<Entry> mEntries = new ArrayList<>();
+    private long mNow;
+    private long mSequence;
+
+    /**
+     * 安装一个新的测试平台
+     *
+     * @return
+     */
+    public static TestStreamPlatform install()
+    {
+        final TestStreamPlatform platform = new TestStreamPlatform();
+        StreamPlatform.install(platform);
+        return platform;
+    }
+
+    @Override
+    public boolean isMainThread()
+    {
+        return Thread.currentThread() == mMainThread;
+    }
+
+    @Override
+    public synchronized void postMain(Runnable task, long delay)
+    {
+        mEntries.add(new Entry(task, mNow + Math.max(delay, 0), mSequence++));
+    }
+
+    @Override
+    public synchronized void removeMain(Runnable task)
+    {
+        final Iterator<Entry> it = mEntries.iterator();
+        while (it.hasNext())
+        {
+            if (it.next().task == task)
+                it.remove();
+        }
+    }
+
+    @Override
+    public void log(int level, String tag, String msg, Throwable e)
+    {
+    }
+
+    /**
+     * 返回等待执行的主线程任务数量，包括还没到期的任务
+     *
+     * @return
+     */
+    public synchronized int getPendingCount()
+    {
+        return mEntries.size();
+    }
+
+    /**
+     * 在当前线程按时间顺序执行已经到期的任务，包括执行过程中提交的到期任务
+     *
+     * @return 执行的任务数量
+     */
+    public int runPending()
+    {
+        int count = 0;
+        while (true)
+        {
+            final Entry entry = pollDue();
+            if (entry == null)
+                return count;
+
+            entry.task.run();
+            count++;
+        }
+    }
+
+    /**
+     * 虚拟时间前进，然后执行到期的任务
+     *
+     * @param millis
+     * @return 执行的任务数量
+     */
+    public int advance(long millis)
+    {
+        synchronized (this)
+        {
+            mNow += millis;
+        }
+        return runPending();
+    }
+
+    private synchronized Entry pollDue()
+    {
+        Entry result = null;
+        for (Entry item : mEntries)
+        {
+            if (item.time > mNow)
+                continue;
+
+            if (result == null || item.time < result.time
+                    || (item.time == result.time && item.sequence < result.sequence))
+            {
+                result = item;
+            }
+        }
+
+        if (result != null)
+            mEntries.remove(result);
+        return result;
+    }
+
+    private static final class Entry
+    {
+        public final Runnable task;
+        public final long time;
+        public final long sequence;
+
+        public Entry(Runnable task, long time, long sequence)
+        {
+            this.task = task;
+            this.time = time;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.sd.lib.stream.ext;
+
+import com.sd.lib.stream.DispatchQueue;
+import com.sd.lib.stream.FStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamPublisherTest
+{
+    public interface TestStream extends FStream
+    {
+        void onValue(int value);
+
+        void onName(String name);
+
+        int getValue();
+    }
+
+    private Object mTag;
+    private TestStream mProxy;
+
+    @Before
+    public void setUp()
+    {
+        // 每个测试使用不同的tag，互不影响
+        mTag = new Object();
+        mProxy = new FStream.ProxyBuilder().setTag(mTag).build(TestStream.class);
+    }
+
+    @Test
+    public void testRequest()
+    {
+        final StreamPublisher<TestStream> publisher = newPublisher(16, DispatchQueue.OverflowPolicy.DROP_NEWEST);
+        final RecordSubscriber subscriber = new RecordSubscriber(2);
+        publisher.subscribe(subscriber);
+        assertEquals(1, publisher.getSubscriberCount());
+
+        for (int i = 0; i < 5; i++)
+        {
+            mProxy.onValue(i);
+        }
+        assertEquals(Arrays.<Object>asList(0, 1), subscriber.values);
+
+        subscriber.subscription.request(2);
+        assertEquals(Arrays.<Object>asList(0, 1, 2, 3), subscriber.values);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        mProxy.onValue(5);
+        assertEquals(Arrays.<Object>asList(0, 1, 2, 3, 4, 5), subscriber.values);
+    }
+
+    @Test
+    public void testOnlyVoidMethod()
+    {
+        final StreamPublisher<TestStream> publisher = newPublisher(16, DispatchQueue.OverflowPolicy.DROP_NEWEST);
+        final RecordSubscriber subscriber = new RecordSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+
+        assertEquals(0, mProxy.getValue());
+        assertEquals(0, subscriber.values.size());
+    }
+
+    @Test
+    public void testDropNewest()
+    {
+        final StreamPublisher<TestStream> publisher = newPublisher(2, DispatchQueue.OverflowPolicy.DROP_NEWEST);
+        final RecordSubscriber subscriber = new RecordSubscriber(0);
+        publisher.subscribe(subscriber);
+
+        for (int i = 0; i < 5; i++)
+        {
+            mProxy.onValue(i);
+        }
+        subscriber.subscription.request(10);
+        assertEquals(Arrays.<Object>asList(0, 1), subscriber.values);
+    }
+
+    @Test
+    public void testDropOldest()
+    {
+        final StreamPublisher<TestStream> publisher = newPublisher(2, DispatchQueue.OverflowPolicy.DROP_OLDEST);
+        final RecordSubscriber subscriber = new RecordSubscriber(0);
+        publisher.subscribe(subscriber);
+
+        for (int i = 0; i < 5; i++)
+        {
+            mProxy.onValue(i);
+        }
+        subscriber.subscription.request(10);
+        assertEquals(Arrays.<Object>asList(3, 4), subscriber.values);
+    }
+
+    @Test
+    public void testCoalesce()
+    {
+        final StreamPublisher<TestStream> publisher = newPublisher(4, DispatchQueue.OverflowPolicy.COALESCE);
+        final RecordSubscriber subscriber = new RecordSubscriber(0);
+        publisher.subscribe(subscriber);
+
+        mProxy.onValue(1);
+        mProxy.onName("a");
+        mProxy.onValue(2);
+        mProxy.onName("b");
+        subscriber.subscription.request(10);
+        assertEquals(Arrays.<Object>asList(2, "b"), subscriber.values);
+    }
+
+    @Test
+    public void testBlock() throws Exception
+    {
+        final StreamPublisher<TestStream> publisher = newPublisher(1, DispatchQueue.OverflowPolicy.BLOCK);
+        final RecordSubscriber subscriber = new RecordSubscriber(0);
+        publisher.subscribe(subscriber);
+
+        mProxy.onValue(1);
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                mProxy.onValue(2);
+            }
+        });
+        thread.start();
+
+        // 缓冲区满了，分发线程阻塞
+        thread.join(200);
+        assertTrue(thread.isAlive());
+
+        subscriber.subscription.request(1);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+
+        subscriber.subscription.request(1);
+        assertEquals(Arrays.<Object>asList(1, 2), subscriber.values);
+    }
+
+    @Test
+    public void testCancel()
+    {
+        final StreamPublisher<TestStream> publisher = newPublisher(4, DispatchQueue.OverflowPolicy.DROP_NEWEST);
+        final RecordSubscriber subscriber1 = new RecordSubscriber(Long.MAX_VALUE);
+        final RecordSubscriber subscriber2 = new RecordSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber1);
+        publisher.subscribe(subscriber2);
+        assertEquals(2, publisher.getSubscriberCount());
+
+        mProxy.onValue(1);
+        subscriber1.subscription.cancel();
+        mProxy.onValue(2);
+
+        assertEquals(Arrays.<Object>asList(1), subscriber1.values);
+        assertEquals(Arrays.<Object>asList(1, 2), subscriber2.values);
+
+        subscriber2.subscription.cancel();
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void testCancelInOnSubscribe()
+    {
+        final StreamPublisher<TestStream> publisher = newPublisher(4, DispatchQueue.OverflowPolicy.DROP_NEWEST);
+        final RecordSubscriber subscriber = new RecordSubscriber(Long.MAX_VALUE)
+        {
+            @Override
+            public void onSubscribe(Subscription s)
+            {
+                super.onSubscribe(s);
+                s.cancel();
+            }
+        };
+        publisher.subscribe(subscriber);
+
+        assertEquals(0, publisher.getSubscriberCount());
+        mProxy.onValue(1);
+        assertEquals(0, subscriber.values.size());
+    }
+
+    @Test
+    public void testIllegalRequest()
+    {
+        final StreamPublisher<TestStream> publisher = newPublisher(4, DispatchQueue.OverflowPolicy.DROP_NEWEST);
+        final RecordSubscriber subscriber = new RecordSubscriber(0);
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+        assertEquals(1, subscriber.errors.size());
+        assertTrue(subscriber.errors.get(0) instanceof IllegalArgumentException);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    private StreamPublisher<TestStream> newPublisher(int bufferSize, DispatchQueue.OverflowPolicy policy)
+    {
+        return new StreamPublisher<>(TestStream.class, mTag, bufferSize, policy);
+    }
+
+    private static class RecordSubscriber implements Subscriber<StreamPublisher.Call>
+    {
+        private final long mInitialRequest;
+
+        public Subscription subscription;
+        public final List<Object> values = new ArrayList<>();
+        public final List<Throwable> errors = new ArrayList<>();
+
+        public RecordSubscriber(long initialRequest)
+        {
+            mInitialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s)
+        {
+            subscription = s;
+            if (mInitialRequest > 0)
+                s.request(mInitialRequest);
+        }
+
+        @Override
+        public void onNext(StreamPublisher.Call call)
+        {
+            synchronized (values)
+            {
+                values.add(call.args[0]);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t)
+        {
+            errors.add(t);
+        }
+
+        @Override
+        public void onComplete()
+        {
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.sd.lib.stream.ext;
+
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.FStreamManager;
+import com.sd.lib.stream.TestStreamPlatform;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamQueryTest
+{
+    public interface ValueStream extends FStream
+    {
+        String getValue(String key);
+    }
+
+    private TestStreamPlatform mPlatform;
+    private ManualExecutor mExecutor;
+    private StreamQuery mQuery;
+    private ValueStream mProxy;
+    private Method mMethod;
+    private ValueStreamImpl mStream;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mPlatform = TestStreamPlatform.install();
+        mExecutor = new ManualExecutor();
+        mQuery = new StreamQuery(mExecutor);
+        mProxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        mMethod = ValueStream.class.getMethod("getValue", String.class);
+        mStream = new ValueStreamImpl();
+        FStreamManager.getInstance().register(mStream);
+    }
+
+    @After
+    public void tearDown()
+    {
+        FStreamManager.getInstance().unregister(mStream);
+    }
+
+    @Test
+    public void testSuccess()
+    {
+        final RecordCallback callback = new RecordCallback();
+        mQuery.query(mProxy, mMethod, new Object[]{"a"}, 1000, callback);
+        assertEquals(1, mExecutor.size());
+
+        mExecutor.runAll();
+        assertEquals(0, callback.results.size());
+
+        // 结果在主线程回调，超时回调已经移除
+        mPlatform.runPending();
+        assertEquals(Arrays.asList("value:a"), callback.results);
+        assertEquals(0, mPlatform.getPendingCount());
+    }
+
+    @Test
+    public void testException()
+    {
+        mStream.mError = new IllegalStateException("error");
+        final RecordCallback callback = new RecordCallback();
+        mQuery.query(mProxy, mMethod, new Object[]{"a"}, 0, callback);
+        mExecutor.runAll();
+        mPlatform.runPending();
+        assertEquals(Arrays.asList(StreamErrorCode.EXCEPTION), callback.errors);
+    }
+
+    @Test
+    public void testTimeout()
+    {
+        final RecordCallback callback = new RecordCallback();
+        mQuery.query(mProxy, mMethod, new Object[]{"a"}, 100, callback);
+
+        mPlatform.advance(100);
+        assertEquals(Arrays.asList(StreamErrorCode.TIMEOUT), callback.errors);
+
+        // 超时之后不再查询
+        mExecutor.runAll();
+        mPlatform.runPending();
+        assertEquals(0, mStream.mCount);
+        assertEquals(0, callback.results.size());
+        assertEquals(1, callback.errors.size());
+    }
+
+    @Test
+    public void testCancel()
+    {
+        final RecordCallback callback = new RecordCallback();
+        final Cancelable cancelable = mQuery.query(mProxy, mMethod, new Object[]{"a"}, 100, callback);
+        assertTrue(cancelable.cancel());
+        assertFalse(cancelable.cancel());
+        assertEquals(0, mPlatform.getPendingCount());
+
+        mExecutor.runAll();
+        mPlatform.advance(100);
+        assertEquals(0, mStream.mCount);
+        assertEquals(0, callback.results.size());
+        assertEquals(0, callback.errors.size());
+    }
+
+    /**
+     * 线程池拒绝执行的时候回调错误，并且移除超时回调
+     */
+    @Test
+    public void testRejected()
+    {
+        final StreamQuery query = new StreamQuery(new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                throw new RejectedExecutionException("rejected");
+            }
+        });
+
+        final RecordCallback callback = new RecordCallback();
+        final Cancelable cancelable = query.query(mProxy, mMethod, new Object[]{"a"}, 100, callback);
+        assertFalse(cancelable.cancel());
+
+        mPlatform.advance(100);
+        assertEquals(Arrays.asList(StreamErrorCode.REJECTED), callback.errors);
+        assertEquals(0, mPlatform.getPendingCount());
+    }
+
+    /**
+     * 查询完成和超时同时发生，只回调一次
+     */
+    @Test
+    public void testSuccessAndTimeoutRace() throws Exception
+    {
+        for (int i = 0; i < 200; i++)
+        {
+            final RecordCallback callback = new RecordCallback();
+            mQuery.query(mProxy, mMethod, new Object[]{"a"}, 10, callback);
+
+            final Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    mExecutor.runAll();
+                }
+            });
+            thread.start();
+            mPlatform.advance(10);
+            thread.join();
+            mPlatform.runPending();
+
+            assertEquals(1, callback.results.size() + callback.errors.size());
+        }
+    }
+
+    private static final class ManualExecutor implements Executor
+    {
+        private final List<Runnable> mTasks = Collections.synchronizedList(new ArrayList<Runnable>());
+
+        @Override
+        public void execute(Runnable command)
+        {
+            mTasks.add(command);
+        }
+
+        public int size()
+        {
+            return mTasks.size();
+        }
+
+        public void runAll()
+        {
+            while (!mTasks.isEmpty())
+            {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+
+    private static final class ValueStreamImpl implements ValueStream
+    {
+        private volatile RuntimeException mError;
+        private volatile int mCount;
+
+        @Override
+        public String getValue(String key)
+        {
+            mCount++;
+            if (mError != null)
+                throw mError;
+            return "value:" + key;
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+
+    private static final class RecordCallback implements StreamValueCallback<String>
+    {
+        public final List<String> results = new ArrayList<>();
+        public final List<Integer> errors = new ArrayList<>();
+
+        @Override
+        public void onSuccess(String value)
+        {
+            results.add(value);
+        }
+
+        @Override
+        public void onError(int code, String desc)
+        {
+            errors.add(code);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.sd.lib.stream.ext;
+
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.FStreamManager;
+import com.sd.lib.stream.TestStreamPlatform;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamValueSingleFlightTest
+{
+    public interface ValueStream extends FStream
+    {
+        void load(String key, StreamValueCallback<String> callback);
+    }
+
+    private TestStreamPlatform mPlatform;
+    private StreamValueSingleFlight mSingleFlight;
+    private ValueStream mProxy;
+    private Method mMethod;
+    private LoaderStream mStream;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mPlatform = TestStreamPlatform.install();
+        mSingleFlight = new StreamValueSingleFlight();
+        mProxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        mMethod = ValueStream.class.getMethod("load", String.class, StreamValueCallback.class);
+        mStream = new LoaderStream();
+    }
+
+    @After
+    public void tearDown()
+    {
+        FStreamManager.getInstance().unregister(mStream);
+    }
+
+    @Test
+    public void testMergeSameRequest()
+    {
+        FStreamManager.getInstance().register(mStream);
+
+        final RecordCallback callback1 = new RecordCallback();
+        final RecordCallback callback2 = new RecordCallback();
+        mSingleFlight.request(mProxy, mMethod, new Object[]{"a", null}, 1000, callback1);
+        mSingleFlight.request(mProxy, mMethod, new Object[]{"a", null}, 1000, callback2);
+
+        assertEquals(Arrays.asList("a"), mStream.keys);
+        assertEquals(1, mSingleFlight.getFlightCount());
+
+        mStream.callbacks.get(0).onSuccess("value");
+        assertEquals(0, mSingleFlight.getFlightCount());
+
+        // 回调在主线程触发
+        assertEquals(0, callback1.results.size());
+        mPlatform.runPending();
+        assertEquals(Arrays.asList("value"), callback1.results);
+        assertEquals(Arrays.asList("value"), callback2.results);
+
+        // 请求结束之后相同的请求重新分发
+        mSingleFlight.request(mProxy, mMethod, new Object[]{"a", null}, 1000, new RecordCallback());
+        assertEquals(Arrays.asList("a", "a"), mStream.keys);
+    }
+
+    @Test
+    public void testDifferentArgs()
+    {
+        FStreamManager.getInstance().register(mStream);
+
+        mSingleFlight.request(mProxy, mMethod, new Object[]{"a", null}, 1000, new RecordCallback());
+        mSingleFlight.request(mProxy, mMethod, new Object[]{"b", null}, 1000, new RecordCallback());
+
+        assertEquals(Arrays.asList("a", "b"), mStream.keys);
+        assertEquals(2, mSingleFlight.getFlightCount());
+    }
+
+    /**
+     * 不同的代理对象不合并，即使接口、方法和参数相同
+     */
+    @Test
+    public void testDifferentProxies()
+    {
+        FStreamManager.getInstance().register(mStream);
+
+        final ValueStream otherProxy = new FStream.ProxyBuilder().build(ValueStream.class);
+        final ValueStream taggedProxy = new FStream.ProxyBuilder().setTag("tag").build(ValueStream.class);
+        mSingleFlight.request(mProxy, mMethod, new Object[]{"a", null}, 1000, new RecordCallback());
+        mSingleFlight.request(otherProxy, mMethod, new Object[]{"a", null}, 1000, new RecordCallback());
+        mSingleFlight.request(taggedProxy, mMethod, new Object[]{"a", null}, 1000, new RecordCallback());
+
+        // tag不匹配的代理对象不会通知到流对象，但仍然是单独的请求
+        assertEquals(Arrays.asList("a", "a"), mStream.keys);
+        assertEquals(3, mSingleFlight.getFlightCount());
+    }
+
+    @Test
+    public void testTimeoutWithoutStream()
+    {
+        final RecordCallback callback = new RecordCallback();
+        mSingleFlight.request(mProxy, mMethod, new Object[]{"a", null}, 100, callback);
+        assertEquals(1, mSingleFlight.getFlightCount());
+
+        mPlatform.advance(99);
+        assertEquals(0, callback.errors.size());
+
+        mPlatform.advance(1);
+        assertEquals(Arrays.asList(StreamErrorCode.TIMEOUT), callback.errors);
+        assertEquals(0, mSingleFlight.getFlightCount());
+    }
+
+    @Test
+    public void testCancel()
+    {
+        FStreamManager.getInstance().register(mStream);
+
+        final RecordCallback callback1 = new RecordCallback();
+        final RecordCallback callback2 = new RecordCallback();
+        final Cancelable cancelable = mSingleFlight.request(mProxy, mMethod, new Object[]{"a", null}, 1000, callback1);
+        mSingleFlight.request(mProxy, mMethod, new Object[]{"a", null}, 1000, callback2);
+
+        assertTrue(cancelable.cancel());
+        mStream.callbacks.get(0).onSuccess("value");
+        mPlatform.runPending();
+
+        assertEquals(0, callback1.results.size());
+        assertEquals(Arrays.asList("value"), callback2.results);
+    }
+
+    @Test
+    public void testIllegalTimeout()
+    {
+        try
+        {
+            mSingleFlight.request(mProxy, mMethod, new Object[]{"a", null}, 0, new RecordCallback());
+            fail();
+        } catch (IllegalArgumentException e)
+        {
+        }
+        assertEquals(0, mSingleFlight.getFlightCount());
+    }
+
+    private static final class LoaderStream implements ValueStream
+    {
+        public final List<String> keys = new ArrayList<>();
+        public final List<StreamValueCallback<String>> callbacks = new ArrayList<>();
+
+        @Override
+        public void load(String key, StreamValueCallback<String> callback)
+        {
+            keys.add(key);
+            callbacks.add(callback);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return null;
+        }
+    }
+
+    private static final class RecordCallback implements StreamValueCallback<String>
+    {
+        public final List<String> results = new ArrayList<>();
+        public final List<Integer> errors = new ArrayList<>();
+
+        @Override
+        public void onSuccess(String value)
+        {
+            results.add(value);
+        }
+
+        @Override
+        public void onError(int code, String desc)
+        {
+            errors.add(code);
+        }
+    }
+}
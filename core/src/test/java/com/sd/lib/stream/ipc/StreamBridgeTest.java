@@ -0,0 +1,315 @@
+package com.sd.lib.stream.ipc;
+
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.FStreamManager;
+import com.sd.lib.stream.MainThreadDispatch;
+import com.sd.lib.stream.TestStreamPlatform;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class StreamBridgeTest
+{
+    public interface MessageStream extends FStream
+    {
+        void onMessage(String text, int count, byte[] data);
+
+        void onValue(Object value);
+
+        int getCount();
+    }
+
+    public interface MainMessageStream extends FStream
+    {
+        @MainThreadDispatch
+        void onMessage(String text);
+    }
+
+    private TestStreamPlatform mPlatform;
+    private final List<FStream> mStreams = new ArrayList<>();
+    private final List<StreamBridge> mBridges = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        mPlatform = TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        // 执行完提交到主线程的任务，FStreamManager是单例，留下的任务会影响其他测试
+        mPlatform.runPending();
+        for (StreamBridge item : mBridges)
+        {
+            item.close();
+        }
+        for (FStream item : mStreams)
+        {
+            FStreamManager.getInstance().unregister(item);
+        }
+    }
+
+    @Test
+    public void testDispatchOverLoopback()
+    {
+        final LoopbackTransport[] pair = LoopbackTransport.createPair();
+        final StreamBridge sender = newBridge(pair[0], DIRECT_EXECUTOR);
+        final StreamBridge receiver = newBridge(pair[1], DIRECT_EXECUTOR);
+
+        final List<Object[]> received = Collections.synchronizedList(new ArrayList<Object[]>());
+        register(new MessageStreamImpl("receiver", received));
+
+        receiver.export(MessageStream.class, "receiver");
+        assertNotNull(sender.registerRemote(MessageStream.class, "sender"));
+
+        final MessageStream proxy = new FStream.ProxyBuilder().setTag("sender").build(MessageStream.class);
+        proxy.onMessage("hello", 3, new byte[]{1, 2});
+
+        // 有返回值的方法不跨进程调用，远程流对象返回默认值
+        assertEquals(0, proxy.getCount());
+
+        assertEquals(1, received.size());
+        assertEquals("hello", received.get(0)[0]);
+        assertEquals(3, received.get(0)[1]);
+        assertArrayEquals(new byte[]{1, 2}, (byte[]) received.get(0)[2]);
+
+        // 取消导出之后不再分发
+        receiver.unexport(MessageStream.class);
+        proxy.onMessage("ignored", 0, null);
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testBatchDropsOnlyUnsupportedCall()
+    {
+        final LoopbackTransport[] pair = LoopbackTransport.createPair();
+        final CountingTransport sendTransport = new CountingTransport(pair[0]);
+        final ManualExecutor executor = new ManualExecutor();
+        final StreamBridge sender = newBridge(sendTransport, executor);
+        final StreamBridge receiver = newBridge(pair[1], DIRECT_EXECUTOR);
+
+        final List<Object[]> received = Collections.synchronizedList(new ArrayList<Object[]>());
+        register(new MessageStreamImpl("receiver", received));
+        receiver.export(MessageStream.class, "receiver");
+        sender.registerRemote(MessageStream.class, "sender");
+
+        final MessageStream proxy = new FStream.ProxyBuilder().setTag("sender").build(MessageStream.class);
+        proxy.onMessage("first", 1, null);
+        proxy.onValue(new Object());
+        proxy.onValue(null);
+        proxy.onMessage(null, 2, null);
+        executor.runAll();
+
+        // 同一批次合并成一个数据帧，不支持的参数只丢弃那一次调用
+        assertEquals(1, sendTransport.getCount());
+        assertEquals(3, received.size());
+        assertEquals("first", received.get(0)[0]);
+        assertArrayEquals(new Object[]{null}, received.get(1));
+        assertEquals(2, received.get(2)[1]);
+    }
+
+    /**
+     * 对端的调用在主线程分发给本进程的远程流对象时，不能再转发回对端
+     */
+    @Test
+    public void testNoEchoWhenDeliveredOnMainThread() throws Exception
+    {
+        final LoopbackTransport[] pair = LoopbackTransport.createPair();
+        final CountingTransport sendTransport = new CountingTransport(pair[0]);
+        final ManualExecutor executor = new ManualExecutor();
+
+        // 同一个进程中两端共用一个FStreamManager：sender的远程流对象和receiver导出的代理对象tag相同
+        final StreamBridge sender = newBridge(sendTransport, executor);
+        final StreamBridge receiver = newBridge(pair[1], DIRECT_EXECUTOR);
+        receiver.export(MainMessageStream.class, null);
+        sender.registerRemote(MainMessageStream.class, null);
+
+        final AtomicInteger count = new AtomicInteger();
+        register(new MainMessageStream()
+        {
+            @Override
+            public void onMessage(String text)
+            {
+                count.incrementAndGet();
+            }
+
+            @Override
+            public Object getTagForStream(Class<? extends FStream> clazz)
+            {
+                return null;
+            }
+        });
+
+        final MainMessageStream proxy = new FStream.ProxyBuilder().build(MainMessageStream.class);
+        proxy.onMessage("hello");
+        assertEquals(1, count.get());
+
+        // 在其他线程接收，导出的代理对象把分发提交到主线程
+        runOnWorker(executor);
+        assertEquals(1, sendTransport.getCount());
+        assertEquals(1, mPlatform.getPendingCount());
+
+        mPlatform.runPending();
+        assertEquals(2, count.get());
+
+        // 远程流对象没有再把调用转发回去
+        runOnWorker(executor);
+        assertEquals(1, sendTransport.getCount());
+        assertEquals(0, mPlatform.getPendingCount());
+
+        // 本进程的调用仍然转发
+        proxy.onMessage("again");
+        runOnWorker(executor);
+        assertEquals(2, sendTransport.getCount());
+    }
+
+    private StreamBridge newBridge(StreamTransport transport, Executor executor)
+    {
+        final StreamBridge bridge = new StreamBridge(transport, executor);
+        mBridges.add(bridge);
+        return bridge;
+    }
+
+    private void register(FStream stream)
+    {
+        FStreamManager.getInstance().register(stream);
+        mStreams.add(stream);
+    }
+
+    private static void runOnWorker(final ManualExecutor executor) throws InterruptedException
+    {
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                executor.runAll();
+            }
+        });
+        thread.start();
+        thread.join();
+    }
+
+    private static final Executor DIRECT_EXECUTOR = new Executor()
+    {
+        @Override
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    private static final class ManualExecutor implements Executor
+    {
+        private final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public synchronized void execute(Runnable command)
+        {
+            mTasks.add(command);
+        }
+
+        public void runAll()
+        {
+            while (true)
+            {
+                final Runnable task;
+                synchronized (this)
+                {
+                    if (mTasks.isEmpty())
+                        return;
+                    task = mTasks.remove(0);
+                }
+                task.run();
+            }
+        }
+    }
+
+    private static final class CountingTransport implements StreamTransport
+    {
+        private static final int MAX_FRAME = 10;
+
+        private final StreamTransport mTransport;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        public CountingTransport(StreamTransport transport)
+        {
+            mTransport = transport;
+        }
+
+        public int getCount()
+        {
+            return mCount.get();
+        }
+
+        @Override
+        public void send(byte[] frame) throws IOException
+        {
+            // 出现回声的话不会停止，限制数量让测试失败而不是卡住
+            if (mCount.incrementAndGet() > MAX_FRAME)
+                throw new IOException("too many frames");
+            mTransport.send(frame);
+        }
+
+        @Override
+        public void setReceiver(Receiver receiver)
+        {
+            mTransport.setReceiver(receiver);
+        }
+
+        @Override
+        public void close()
+        {
+            mTransport.close();
+        }
+    }
+
+    private static final class MessageStreamImpl implements MessageStream
+    {
+        private final Object mTag;
+        private final List<Object[]> mReceived;
+
+        public MessageStreamImpl(Object tag, List<Object[]> received)
+        {
+            mTag = tag;
+            mReceived = received;
+        }
+
+        @Override
+        public void onMessage(String text, int count, byte[] data)
+        {
+            mReceived.add(new Object[]{text, count, data});
+        }
+
+        @Override
+        public void onValue(Object value)
+        {
+            mReceived.add(new Object[]{value});
+        }
+
+        @Override
+        public int getCount()
+        {
+            return 5;
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return mTag;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.sd.lib.stream.ipc;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class StreamCallCodecTest
+{
+    public static class Point implements Serializable
+    {
+        public int x;
+        public int y;
+
+        public Point(int x, int y)
+        {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final StreamCallCodec codec = new StreamCallCodec();
+        final Object[] args = new Object[]{true, (byte) 1, (short) 2, 'c', 3, 4L, 5.5F, 6.5D, "text", new byte[]{7, 8}, null};
+
+        final List<StreamCallCodec.Call> calls = new ArrayList<>();
+        calls.add(new StreamCallCodec.Call("a.Foo", 1, args));
+        calls.add(new StreamCallCodec.Call("a.Bar", 0, null, codec.encodeArgs(new Object[]{"encoded"})));
+        calls.add(new StreamCallCodec.Call("a.Foo", 2, null));
+
+        final List<StreamCallCodec.Call> result = codec.decode(codec.encode(calls));
+        assertEquals(3, result.size());
+
+        final StreamCallCodec.Call first = result.get(0);
+        assertEquals("a.Foo", first.interfaceName);
+        assertEquals(1, first.methodIndex);
+        assertEquals(args.length, first.args.length);
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i] instanceof byte[])
+                assertArrayEquals((byte[]) args[i], (byte[]) first.args[i]);
+            else
+                assertEquals(args[i], first.args[i]);
+        }
+
+        assertEquals("a.Bar", result.get(1).interfaceName);
+        assertEquals(Arrays.asList("encoded"), Arrays.asList(result.get(1).args));
+
+        assertEquals("a.Foo", result.get(2).interfaceName);
+        assertEquals(2, result.get(2).methodIndex);
+        assertNull(result.get(2).args);
+    }
+
+    @Test
+    public void testSerializableAllowlist() throws Exception
+    {
+        final StreamCallCodec sender = new StreamCallCodec();
+        sender.allowSerializable(Point.class);
+
+        final List<StreamCallCodec.Call> calls = new ArrayList<>();
+        calls.add(new StreamCallCodec.Call("a.Foo", 0, new Object[]{new Point(1, 2)}));
+        final byte[] frame = sender.encode(calls);
+
+        final StreamCallCodec receiver = new StreamCallCodec();
+        assertDecodeFails(receiver, frame);
+
+        receiver.allowSerializable(String.class);
+        assertDecodeFails(receiver, frame);
+
+        receiver.allowSerializable(Point.class);
+        final Point point = (Point) receiver.decode(frame).get(0).args[0];
+        assertEquals(1, point.x);
+        assertEquals(2, point.y);
+    }
+
+    @Test(expected = IOException.class)
+    public void testEncodeUnsupportedValue() throws Exception
+    {
+        new StreamCallCodec().encodeArgs(new Object[]{new Object()});
+    }
+
+    @Test
+    public void testMalformedFrames() throws Exception
+    {
+        final StreamCallCodec codec = new StreamCallCodec();
+
+        final List<StreamCallCodec.Call> calls = new ArrayList<>();
+        calls.add(new StreamCallCodec.Call("a.Foo", 0, new Object[]{"text", 1}));
+        final byte[] frame = codec.encode(calls);
+
+        // 截断
+        for (int i = 0; i < frame.length; i++)
+        {
+            assertDecodeFails(codec, Arrays.copyOf(frame, i));
+        }
+
+        // 版本号
+        final byte[] wrongVersion = frame.clone();
+        wrongVersion[0] = 1;
+        assertDecodeFails(codec, wrongVersion);
+
+        // 调用数量
+        assertDecodeFails(codec, newFrame(0, Integer.MAX_VALUE));
+        assertDecodeFails(codec, newFrame(0, -1));
+
+        // 接口名数量
+        assertDecodeFails(codec, newFrame(0xFFFF, 0));
+
+        // 接口名下标
+        final ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(byteOutput);
+        writeHeader(output, 0, 1);
+        output.writeShort(0);
+        output.writeShort(0);
+        output.writeByte(0);
+        assertDecodeFails(codec, byteOutput.toByteArray());
+    }
+
+    @Test
+    public void testIllegalValueLength() throws Exception
+    {
+        final StreamCallCodec codec = new StreamCallCodec();
+        for (int length : new int[]{-1, 100, Integer.MAX_VALUE})
+        {
+            final ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+            final DataOutputStream output = new DataOutputStream(byteOutput);
+            writeHeader(output, 1, 1);
+            output.writeShort(0);
+            output.writeShort(0);
+            output.writeByte(1);
+            output.writeByte(10); // byte[]
+            output.writeInt(length);
+            output.write(new byte[4]);
+            assertDecodeFails(codec, byteOutput.toByteArray());
+        }
+    }
+
+    @Test
+    public void testUnknownValueType() throws Exception
+    {
+        final ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(byteOutput);
+        writeHeader(output, 1, 1);
+        output.writeShort(0);
+        output.writeShort(0);
+        output.writeByte(1);
+        output.writeByte(99);
+        assertDecodeFails(new StreamCallCodec(), byteOutput.toByteArray());
+    }
+
+    private static byte[] newFrame(int nameCount, int callCount) throws IOException
+    {
+        final ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(byteOutput), nameCount, callCount);
+        return byteOutput.toByteArray();
+    }
+
+    /**
+     * 写入帧头，nameCount大于0的话只写入第一个接口名
+     */
+    private static void writeHeader(DataOutputStream output, int nameCount, int callCount) throws IOException
+    {
+        output.writeByte(2);
+        output.writeShort(nameCount);
+        if (nameCount > 0)
+            output.writeUTF("a.Foo");
+        output.writeInt(callCount);
+        output.flush();
+    }
+
+    private static void assertDecodeFails(StreamCallCodec codec, byte[] frame)
+    {
+        try
+        {
+            codec.decode(frame);
+            fail("decode should fail, frame length:" + frame.length);
+        } catch (IOException e)
+        {
+            // 期望的异常
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.sd.lib.stream.journal;
+
+import com.sd.lib.stream.FStream;
+import com.sd.lib.stream.FStreamManager;
+import com.sd.lib.stream.TestStreamPlatform;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DispatchReplayerTest
+{
+    public interface BaseStream extends FStream
+    {
+        void onChanged(String value, int count);
+    }
+
+    public interface ChildStream extends BaseStream
+    {
+    }
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final List<FStream> mStreams = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        TestStreamPlatform.install();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (FStream item : mStreams)
+        {
+            FStreamManager.getInstance().unregister(item);
+        }
+    }
+
+    /**
+     * 方法声明在父接口中，重放给记录中的子接口
+     */
+    @Test
+    public void testReplayRecordedInterface() throws Exception
+    {
+        final BaseStreamImpl base = register(new BaseStreamImpl(null));
+        final ChildStreamImpl child = register(new ChildStreamImpl(null));
+
+        final DispatchJournalReader.Entry entry = recordChildEntry();
+        assertEquals(ChildStream.class.getName(), entry.interfaceName);
+
+        assertTrue(new DispatchReplayer().replay(entry));
+        assertEquals("[]", base.mValues.toString());
+        assertEquals("[null:0]", child.mValues.toString());
+    }
+
+    /**
+     * 指定目标流对象的话，只通知目标中的流对象，不通知注册的流对象
+     */
+    @Test
+    public void testReplayToTargets() throws Exception
+    {
+        final ChildStreamImpl registered = register(new ChildStreamImpl(null));
+        final ChildStreamImpl target = new ChildStreamImpl(null);
+        final ChildStreamImpl otherTag = new ChildStreamImpl("tag");
+        final BaseStreamImpl otherInterface = new BaseStreamImpl(null);
+
+        final DispatchReplayer replayer = new DispatchReplayer(DispatchReplayer.class.getClassLoader(),
+                Arrays.asList(otherInterface, otherTag, target));
+        assertEquals(2, replayer.replay(Arrays.asList(recordChildEntry(), recordChildEntry()), false));
+
+        assertEquals("[null:0, null:0]", target.mValues.toString());
+        assertEquals("[]", otherTag.mValues.toString());
+        assertEquals("[]", otherInterface.mValues.toString());
+        assertEquals("[]", registered.mValues.toString());
+    }
+
+    @Test
+    public void testUnknownInterface()
+    {
+        final DispatchJournalReader.Entry entry = new DispatchJournalReader.Entry(1, "a.NotExist", "onChanged()", 0, 0, new long[0]);
+        assertFalse(new DispatchReplayer().replay(entry));
+    }
+
+    private DispatchJournalReader.Entry recordChildEntry() throws Exception
+    {
+        final File file = mFolder.newFile();
+        final MappedDispatchJournal journal = new MappedDispatchJournal(file, 1024, JournalFormat.RECORD_SIZE * 4);
+        journal.record(ChildStream.class, BaseStream.class.getMethod("onChanged", String.class, int.class),
+                null, 1, new long[]{1}, 0, 1);
+        journal.close();
+        return DispatchJournalReader.read(file).get(0);
+    }
+
+    private <T extends FStream> T register(T stream)
+    {
+        FStreamManager.getInstance().register(stream);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    private static class BaseStreamImpl implements BaseStream
+    {
+        private final Object mTag;
+        final List<String> mValues = new ArrayList<>();
+
+        public BaseStreamImpl(Object tag)
+        {
+            mTag = tag;
+        }
+
+        @Override
+        public void onChanged(String value, int count)
+        {
+            mValues.add(value + ":" + count);
+        }
+
+        @Override
+        public Object getTagForStream(Class<? extends FStream> clazz)
+        {
+            return mTag;
+        }
+    }
+
+    private static class ChildStreamImpl extends BaseStreamImpl implements ChildStream
+    {
+        public ChildStreamImpl(Object tag)
+        {
+            super(tag);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.sd.lib.stream.journal;
+
+import com.sd.lib.stream.FStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MappedDispatchJournalTest
+{
+    public interface TestStream extends FStream
+    {
+        void onChanged(String value, int count);
+    }
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadInOrder() throws Exception
+    {
+        final File file = mFolder.newFile();
+        final MappedDispatchJournal journal = new MappedDispatchJournal(file, 1024, JournalFormat.RECORD_SIZE * 16);
+        final Method method = getMethod();
+
+        journal.record(TestStream.class, method, "tag", 100, new long[]{1, 2}, 0, 2);
+        journal.record(TestStream.class, method, null, 200, new long[]{9, 3}, 1, 1);
+        journal.close();
+
+        final List<DispatchJournalReader.Entry> list = DispatchJournalReader.read(file);
+        assertEquals(2, list.size());
+
+        final DispatchJournalReader.Entry first = list.get(0);
+        assertEquals(100, first.timestamp);
+        assertEquals(TestStream.class.getName(), first.interfaceName);
+        assertEquals("onChanged(java.lang.String,int)", first.methodSignature);
+        assertEquals("tag".hashCode(), first.tagHash);
+        assertEquals(2, first.count);
+        assertArrayEquals(new long[]{1, 2}, first.durations);
+
+        final DispatchJournalReader.Entry second = list.get(1);
+        assertEquals(200, second.timestamp);
+        assertEquals(0, second.tagHash);
+        assertArrayEquals(new long[]{3}, second.durations);
+    }
+
+    @Test
+    public void testRingWrapAround() throws Exception
+    {
+        // 6条记录的空间，每次分发占2条
+        final File file = mFolder.newFile();
+        final MappedDispatchJournal journal = new MappedDispatchJournal(file, 1024, JournalFormat.RECORD_SIZE * 6);
+        final Method method = getMethod();
+
+        for (int i = 1; i <= 5; i++)
+        {
+            journal.record(TestStream.class, method, null, i, new long[]{i * 10}, 0, 1);
+        }
+        journal.close();
+
+        final List<DispatchJournalReader.Entry> list = DispatchJournalReader.read(file);
+        assertEquals(3, list.size());
+        for (int i = 0; i < list.size(); i++)
+        {
+            final DispatchJournalReader.Entry entry = list.get(i);
+            assertEquals(i + 3, entry.timestamp);
+            assertArrayEquals(new long[]{(i + 3) * 10}, entry.durations);
+        }
+    }
+
+    @Test
+    public void testWrapAroundSkipsOrphanStreamRecord() throws Exception
+    {
+        // 5条记录的空间，最旧的一条是分发记录已经被覆盖的流对象记录
+        final File file = mFolder.newFile();
+        final MappedDispatchJournal journal = new MappedDispatchJournal(file, 1024, JournalFormat.RECORD_SIZE * 5);
+        final Method method = getMethod();
+
+        for (int i = 1; i <= 3; i++)
+        {
+            journal.record(TestStream.class, method, null, i, new long[]{i}, 0, 1);
+        }
+        journal.close();
+
+        final List<DispatchJournalReader.Entry> list = DispatchJournalReader.read(file);
+        assertEquals(2, list.size());
+        assertEquals(2, list.get(0).timestamp);
+        assertEquals(3, list.get(1).timestamp);
+    }
+
+    @Test
+    public void testDispatchLargerThanRing() throws Exception
+    {
+        final File file = mFolder.newFile();
+        final MappedDispatchJournal journal = new MappedDispatchJournal(file, 1024, JournalFormat.RECORD_SIZE * 4);
+
+        final long[] durations = new long[10];
+        for (int i = 0; i < durations.length; i++)
+        {
+            durations[i] = i;
+        }
+        journal.record(TestStream.class, getMethod(), null, 1, durations, 0, durations.length);
+        journal.close();
+
+        // 流对象记录被截断，不会覆盖自己的分发记录
+        final List<DispatchJournalReader.Entry> list = DispatchJournalReader.read(file);
+        assertEquals(1, list.size());
+        assertEquals(10, list.get(0).count);
+        assertArrayEquals(new long[]{0, 1, 2}, list.get(0).durations);
+    }
+
+    @Test
+    public void testConcurrentRecord() throws Exception
+    {
+        final int threadCount = 4;
+        final int recordCount = 2000;
+        final File file = mFolder.newFile();
+        final MappedDispatchJournal journal = new MappedDispatchJournal(file, 1024,
+                JournalFormat.RECORD_SIZE * 3 * threadCount * recordCount);
+        final Method method = getMethod();
+
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            final long base = i * 1000000L;
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        startLatch.await();
+                    } catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    for (int j = 0; j < recordCount; j++)
+                    {
+                        final long timestamp = base + j;
+                        journal.record(TestStream.class, method, null, timestamp, new long[]{timestamp, -timestamp}, 0, 2);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        startLatch.countDown();
+        for (Thread item : threads)
+        {
+            item.join();
+        }
+        journal.close();
+
+        // 每次分发的流对象记录紧跟在自己的分发记录后面，没有丢失和交错
+        final List<DispatchJournalReader.Entry> list = DispatchJournalReader.read(file);
+        assertEquals(threadCount * recordCount, list.size());
+        final long[] next = new long[threadCount];
+        for (DispatchJournalReader.Entry item : list)
+        {
+            assertArrayEquals(new long[]{item.timestamp, -item.timestamp}, item.durations);
+            final int thread = (int) (item.timestamp / 1000000L);
+            assertEquals(next[thread]++, item.timestamp % 1000000L);
+        }
+    }
+
+    private static Method getMethod() throws NoSuchMethodException
+    {
+        return TestStream.class.getMethod("onChanged", String.class, int.class);
+    }
+}
@@ -0,0 +1,4 @@
+# StreamPlatform looks up the Android platform by class name
+-keep class com.sd.lib.stream.AndroidStreamPlatform {
+    <init>();
+}
@@ -0,0 +1,186 @@
+package com.sd.lib.stream;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Build;
+import android.os.Bundle;
+import android.view.View;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Activity生命周期监听，{@link AndroidStreamPlatform#watchLifecycle(Object, Runnable)}
+ */
+final class ActivityLifecycleWatcher implements Application.ActivityLifecycleCallbacks
+{
+    private static final Field[] EMPTY_FIELDS = new Field[0];
+
+    private final Map<Class<?>, Field[]> mMapOwnerField = new ConcurrentHashMap<>();
+    private final Map<Activity, Set<Runnable>> mMapCallback = new WeakHashMap<>();
+    private Application mApplication;
+
+    /**
+     * 查找对象所属的Activity
+     * <p>
+     * Activity返回自身，View返回所在的Activity，其他对象查找声明类型为Activity，View或者Context的字段（包括内部类持有的外部类对象）
+     *
+     * @param object
+     * @return
+     */
+    public Activity findActivity(Object object)
+    {
+        final Activity activity = toActivity(object);
+        if (activity != null)
+            return activity;
+
+        for (Field item : getOwnerFields(object.getClass()))
+        {
+            try
+            {
+                final Activity result = toActivity(item.get(object));
+                if (result != null)
+                    return result;
+            } catch (IllegalAccessException e)
+            {
+                // 忽略
+            }
+        }
+        return null;
+    }
+
+    public static boolean isDestroyed(Activity activity)
+    {
+        if (Build.VERSION.SDK_INT >= 17)
+            return activity.isDestroyed();
+        return activity.isFinishing();
+    }
+
+    public synchronized void watch(Activity activity, Runnable callback)
+    {
+        if (mApplication == null)
+        {
+            final Application application = activity.getApplication();
+            if (application == null)
+                return;
+
+            application.registerActivityLifecycleCallbacks(this);
+            mApplication = application;
+        }
+
+        Set<Runnable> callbacks = mMapCallback.get(activity);
+        if (callbacks == null)
+        {
+            callbacks = new LinkedHashSet<>();
+            mMapCallback.put(activity, callbacks);
+        }
+        callbacks.add(callback);
+    }
+
+    private static Activity toActivity(Object object)
+    {
+        if (object instanceof Activity)
+            return (Activity) object;
+
+        Context context = null;
+        if (object instanceof View)
+            context = ((View) object).getContext();
+        else if (object instanceof Context)
+            context = (Context) object;
+
+        while (context instanceof ContextWrapper)
+        {
+            if (context instanceof Activity)
+                return (Activity) context;
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+
+    private Field[] getOwnerFields(Class<?> clazz)
+    {
+        Field[] fields = mMapOwnerField.get(clazz);
+        if (fields != null)
+            return fields;
+
+        final List<Field> list = new ArrayList<>();
+        Class<?> current = clazz;
+        while (current != null && current != Object.class)
+        {
+            for (Field item : current.getDeclaredFields())
+            {
+                if (Modifier.isStatic(item.getModifiers()))
+                    continue;
+
+                final Class<?> type = item.getType();
+                if (Context.class.isAssignableFrom(type) || View.class.isAssignableFrom(type))
+                {
+                    item.setAccessible(true);
+                    list.add(item);
+                }
+            }
+            current = current.getSuperclass();
+        }
+
+        fields = list.isEmpty() ? EMPTY_FIELDS : list.toArray(new Field[list.size()]);
+        mMapOwnerField.put(clazz, fields);
+        return fields;
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity)
+    {
+        final Set<Runnable> callbacks;
+        synchronized (this)
+        {
+            callbacks = mMapCallback.remove(activity);
+        }
+
+        if (callbacks == null)
+            return;
+
+        for (Runnable item : callbacks)
+        {
+            item.run();
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState)
+    {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity)
+    {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity)
+    {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity)
+    {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity)
+    {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState)
+    {
+    }
+}
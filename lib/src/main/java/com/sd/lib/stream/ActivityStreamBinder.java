@@ -9,15 +9,15 @@ import java.lang.ref.WeakReference;
 /**
  * 将流对象和Activity绑定
  * <p>
- * 在{@link Activity#getWindow()}对象的{@link Window#getDecorView()}被移除的时候取消注册流对象
+ * 同一个Activity绑定的所有流对象共用一个监听，在{@link Activity#getWindow()}对象的{@link Window#getDecorView()}被移除的时候批量取消注册流对象
  */
 class ActivityStreamBinder extends StreamBinder<Activity>
 {
     private final WeakReference<View> mDecorView;
 
-    protected ActivityStreamBinder(FStream stream, Activity target)
+    protected ActivityStreamBinder(Activity target)
     {
-        super(stream, target);
+        super(target);
 
         final Window window = target.getWindow();
         if (window == null)
@@ -31,7 +31,7 @@ class ActivityStreamBinder extends StreamBinder<Activity>
     }
 
     @Override
-    public final boolean bind()
+    public final boolean bind(FStream stream)
     {
         final Activity activity = getTarget();
         if (activity == null || activity.isFinishing())
@@ -41,7 +41,9 @@ class ActivityStreamBinder extends StreamBinder<Activity>
         if (decorView == null)
             return false;
 
-        if (registerStream())
+        addStream(stream);
+
+        if (registerStream(stream))
         {
             decorView.removeOnAttachStateChangeListener(mOnAttachStateChangeListener);
             decorView.addOnAttachStateChangeListener(mOnAttachStateChangeListener);
@@ -61,7 +63,11 @@ class ActivityStreamBinder extends StreamBinder<Activity>
         @Override
         public void onViewDetachedFromWindow(View v)
         {
-            destroy();
+            final Activity activity = getTarget();
+            if (activity != null)
+                FStreamManager.getInstance().unbindAll(activity);
+            else
+                destroy();
         }
     };
 
@@ -0,0 +1,128 @@
+package com.sd.lib.stream;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * Android平台，{@link StreamPlatform}通过类名查找这个类，不能混淆
+ */
+final class AndroidStreamPlatform extends StreamPlatform
+{
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ActivityLifecycleWatcher mLifecycleWatcher = new ActivityLifecycleWatcher();
+
+    @Override
+    public boolean isMainThread()
+    {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    @Override
+    public void postMain(Runnable task, long delay)
+    {
+        if (delay > 0)
+            mMainHandler.postDelayed(task, delay);
+        else
+            mMainHandler.post(task);
+    }
+
+    @Override
+    public void removeMain(Runnable task)
+    {
+        mMainHandler.removeCallbacks(task);
+    }
+
+    @Override
+    public void postFrame(final Runnable task)
+    {
+        if (Build.VERSION.SDK_INT < 16)
+        {
+            super.postFrame(task);
+            return;
+        }
+
+        if (!isMainThread())
+        {
+            mMainHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    postFrame(task);
+                }
+            });
+            return;
+        }
+
+        Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback()
+        {
+            @Override
+            public void doFrame(long frameTimeNanos)
+            {
+                task.run();
+            }
+        });
+    }
+
+    @Override
+    public boolean postCurrent(Runnable task, long delay)
+    {
+        final Looper looper = Looper.myLooper();
+        if (looper == null)
+            return false;
+
+        new Handler(looper).postDelayed(task, delay);
+        return true;
+    }
+
+    @Override
+    public StreamBinder<?> createStreamBinder(Object target)
+    {
+        if (target instanceof Activity)
+            return new ActivityStreamBinder((Activity) target);
+        if (target instanceof View)
+            return new ViewStreamBinder((View) target);
+        return null;
+    }
+
+    @Override
+    public Object getLifecycleOwner(Object object)
+    {
+        return mLifecycleWatcher.findActivity(object);
+    }
+
+    @Override
+    public boolean isLifecycleDestroyed(Object owner)
+    {
+        return owner instanceof Activity && ActivityLifecycleWatcher.isDestroyed((Activity) owner);
+    }
+
+    @Override
+    public void watchLifecycle(Object owner, Runnable callback)
+    {
+        if (owner instanceof Activity)
+            mLifecycleWatcher.watch((Activity) owner, callback);
+    }
+
+    @Override
+    public void log(int level, String tag, String msg, Throwable e)
+    {
+        switch (level)
+        {
+            case StreamLog.ERROR:
+                Log.e(tag, msg, e);
+                break;
+            case StreamLog.WARN:
+                Log.w(tag, msg, e);
+                break;
+            default:
+                Log.i(tag, msg, e);
+                break;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.sd.lib.stream;
+
+import android.app.Activity;
+import android.view.View;
+
+/**
+ * Android平台绑定流对象的快捷方法
+ * <p>
+ * core不依赖Android，{@link FStreamManager}只提供参数为Object的绑定方法，
+ * 这里的方法在编译期限定目标对象的类型，实际都调用{@link FStreamManager#bindStream(FStream, Object, long)}
+ */
+public final class FStreamBinding
+{
+    private FStreamBinding()
+    {
+    }
+
+    /**
+     * 绑定流对象，Activity销毁的时候自动取消注册
+     *
+     * @param stream
+     * @param target
+     * @return true-绑定成功或者已绑定；false-绑定失败
+     */
+    public static boolean bindStream(FStream stream, Activity target)
+    {
+        return FStreamManager.getInstance().bindStream(stream, (Object) target);
+    }
+
+    /**
+     * 绑定流对象，View从Window上移除的时候自动取消注册
+     *
+     * @param stream
+     * @param target
+     * @return true-绑定成功或者已绑定；false-绑定失败
+     */
+    public static boolean bindStream(FStream stream, View target)
+    {
+        return FStreamManager.getInstance().bindStream(stream, (Object) target);
+    }
+
+    /**
+     * 绑定流对象，View从Window上移除之后延迟detachDelay毫秒才取消注册
+     *
+     * @param stream
+     * @param target
+     * @param detachDelay 延迟取消注册的时间（毫秒），小于等于0立即取消注册
+     * @return true-绑定成功或者已绑定；false-绑定失败
+     */
+    public static boolean bindStream(FStream stream, View target, long detachDelay)
+    {
+        return FStreamManager.getInstance().bindStream(stream, (Object) target, detachDelay);
+    }
+}
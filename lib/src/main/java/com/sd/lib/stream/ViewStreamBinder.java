@@ -3,24 +3,82 @@ package com.sd.lib.stream;
 import android.app.Activity;
 import android.content.Context;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.view.View;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 根据{@link View#isAttachedToWindow()}自动注册和取消注册流对象
  * <p>
+ * 同一个View绑定的所有流对象共用一个监听，在View被添加和移除的时候批量注册和取消注册
+ * <p>
+ * 如果设置了{@link #setDetachDelay(FStream, long)}，View被移除之后会延迟取消注册，在延迟时间内重新被添加的话，什么都不做，
+ * 避免列表快速滚动时View频繁移除添加导致的重复注册和取消注册。延迟按流对象保存，取当前绑定的流对象中的最大值
+ * <p>
+ * 监听和延迟取消注册只在主线程访问，在其他线程{@link #destroy()}的话提交到主线程移除
+ * <p>
  * 注意：不要在以下两个地方绑定，否则有可能导致流对象没办法被自动取消注册<br>
  * 1.目标View对象的{@link View#onDetachedFromWindow()}方法<br>
  * 2.监听目标View对象的{@link View.OnAttachStateChangeListener#onViewDetachedFromWindow(View)}方法
  */
 class ViewStreamBinder extends StreamBinder<View>
 {
-    protected ViewStreamBinder(FStream stream, View target)
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static DetachScheduler sDetachScheduler;
+
+    private final ConcurrentWeakIdentityMap<FStream, Long> mDetachDelay = new ConcurrentWeakIdentityMap<>();
+
+    protected ViewStreamBinder(View target)
+    {
+        super(target);
+    }
+
+    /**
+     * 设置View被移除之后延迟多久取消注册
+     *
+     * @param stream
+     * @param delay  毫秒，小于等于0-不延迟
+     */
+    @Override
+    public void setDetachDelay(FStream stream, long delay)
+    {
+        if (delay > 0)
+            mDetachDelay.put(stream, delay);
+        else
+            mDetachDelay.remove(stream);
+    }
+
+    /**
+     * 返回当前绑定的流对象中最大的延迟
+     */
+    private long getDetachDelay()
+    {
+        long result = 0;
+        for (FStream item : getStreams())
+        {
+            final Long delay = mDetachDelay.get(item);
+            if (delay != null && delay > result)
+                result = delay;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean unbind(FStream stream)
     {
-        super(stream, target);
+        mDetachDelay.remove(stream);
+        return super.unbind(stream);
     }
 
     @Override
-    public final boolean bind()
+    public final boolean bind(FStream stream)
     {
         final View target = getTarget();
         if (target == null)
@@ -37,8 +95,10 @@ class ViewStreamBinder extends StreamBinder<View>
         target.removeOnAttachStateChangeListener(mOnAttachStateChangeListener);
         target.addOnAttachStateChangeListener(mOnAttachStateChangeListener);
 
+        addStream(stream);
+
         if (isAttached(target))
-            return registerStream();
+            return registerStream(stream);
 
         return true;
     }
@@ -48,25 +108,62 @@ class ViewStreamBinder extends StreamBinder<View>
         @Override
         public void onViewAttachedToWindow(View v)
         {
-            registerStream();
+            if (sDetachScheduler != null && sDetachScheduler.cancel(ViewStreamBinder.this))
+            {
+                // 延迟取消注册还未执行，流对象依旧是注册状态
+                return;
+            }
+            registerStreams();
         }
 
         @Override
         public void onViewDetachedFromWindow(View v)
         {
-            unregisterStream();
+            final long delay = getDetachDelay();
+            if (delay > 0)
+            {
+                if (sDetachScheduler == null)
+                    sDetachScheduler = new DetachScheduler();
+                sDetachScheduler.schedule(ViewStreamBinder.this, delay);
+            } else
+            {
+                unregisterStreams();
+            }
         }
     };
 
     @Override
     public void destroy()
     {
+        for (FStream item : getStreams())
+        {
+            mDetachDelay.remove(item);
+        }
         super.destroy();
-        final View target = getTarget();
-        if (target != null)
-            target.removeOnAttachStateChangeListener(mOnAttachStateChangeListener);
+
+        if (Looper.myLooper() == Looper.getMainLooper())
+            mDestroyRunnable.run();
+        else
+            MAIN_HANDLER.post(mDestroyRunnable);
     }
 
+    /**
+     * 取消延迟取消注册并移除监听，只在主线程执行
+     */
+    private final Runnable mDestroyRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (sDetachScheduler != null)
+                sDetachScheduler.cancel(ViewStreamBinder.this);
+
+            final View target = getTarget();
+            if (target != null)
+                target.removeOnAttachStateChangeListener(mOnAttachStateChangeListener);
+        }
+    };
+
     private static boolean isAttached(View view)
     {
         if (Build.VERSION.SDK_INT >= 19)
@@ -74,4 +171,73 @@ class ViewStreamBinder extends StreamBinder<View>
         else
             return view.getWindowToken() != null;
     }
+
+    /**
+     * 延迟取消注册，到期的所有{@link ViewStreamBinder}在同一个消息中批量取消注册
+     * <p>
+     * 只在主线程访问
+     */
+    private static final class DetachScheduler
+    {
+        private final Map<ViewStreamBinder, Long> mMapDeadline = new LinkedHashMap<>();
+        private final Handler mHandler = MAIN_HANDLER;
+        private long mScheduledTime;
+
+        public void schedule(ViewStreamBinder binder, long delay)
+        {
+            final long deadline = SystemClock.uptimeMillis() + delay;
+            mMapDeadline.put(binder, deadline);
+            scheduleAt(deadline);
+        }
+
+        public boolean cancel(ViewStreamBinder binder)
+        {
+            return mMapDeadline.remove(binder) != null;
+        }
+
+        private void scheduleAt(long time)
+        {
+            if (mScheduledTime > 0 && mScheduledTime <= time)
+                return;
+
+            mHandler.removeCallbacks(mFlushRunnable);
+            mHandler.postAtTime(mFlushRunnable, time);
+            mScheduledTime = time;
+        }
+
+        private final Runnable mFlushRunnable = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                mScheduledTime = 0;
+
+                final long now = SystemClock.uptimeMillis();
+                final List<FStream> listStream = new ArrayList<>();
+                long nextDeadline = 0;
+
+                final Iterator<Map.Entry<ViewStreamBinder, Long>> it = mMapDeadline.entrySet().iterator();
+                while (it.hasNext())
+                {
+                    final Map.Entry<ViewStreamBinder, Long> item = it.next();
+                    final long deadline = item.getValue();
+                    if (deadline <= now)
+                    {
+                        listStream.addAll(item.getKey().getStreams());
+                        it.remove();
+                    } else
+                    {
+                        if (nextDeadline == 0 || deadline < nextDeadline)
+                            nextDeadline = deadline;
+                    }
+                }
+
+                if (!listStream.isEmpty())
+                    FStreamManager.getInstance().unregisterInternal(listStream);
+
+                if (nextDeadline > 0)
+                    scheduleAt(nextDeadline);
+            }
+        };
+    }
 }
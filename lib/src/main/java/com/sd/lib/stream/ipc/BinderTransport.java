@@ -0,0 +1,165 @@
+package com.sd.lib.stream.ipc;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.Process;
+import android.os.RemoteException;
+
+import com.sd.lib.stream.StreamLog;
+
+import java.io.IOException;
+
+/**
+ * 基于Binder的传输通道
+ * <p>
+ * {@link #getBinder()}返回本端接收数据帧的Binder对象，需要通过Service的onBind等方式交给对端，
+ * 对端再调用{@link #setRemote(IBinder)}设置之后才可以发送数据帧。数据帧以oneway的方式发送
+ * <p>
+ * 默认只接收和本进程uid相同的调用方（同一个应用的其他进程）发送的数据帧，
+ * 其他应用需要{@link #setAllowedUids(int...)}添加uid，或者{@link #setPermission(Context, String)}要求调用方有某个权限（建议使用signature级别的权限）
+ */
+public class BinderTransport implements StreamTransport
+{
+    private static final String DESCRIPTOR = "com.sd.lib.stream.ipc.BinderTransport";
+    private static final int TRANSACTION_FRAME = IBinder.FIRST_CALL_TRANSACTION;
+
+    private final LocalBinder mBinder = new LocalBinder();
+
+    private volatile IBinder mRemote;
+    private volatile Receiver mReceiver;
+    private volatile boolean mIsClosed;
+
+    private volatile int[] mAllowedUids = new int[]{Process.myUid()};
+    private volatile Context mContext;
+    private volatile String mPermission;
+
+    /**
+     * 设置允许发送数据帧的调用方uid，本进程的uid总是允许
+     *
+     * @param uids
+     */
+    public void setAllowedUids(int... uids)
+    {
+        final int length = uids == null ? 0 : uids.length;
+        final int[] array = new int[length + 1];
+        array[0] = Process.myUid();
+        if (length > 0)
+            System.arraycopy(uids, 0, array, 1, length);
+        mAllowedUids = array;
+    }
+
+    /**
+     * 设置调用方需要有的权限，设置之后不在{@link #setAllowedUids(int...)}中的调用方只要有这个权限也可以发送数据帧
+     *
+     * @param context
+     * @param permission null-不检查权限
+     */
+    public void setPermission(Context context, String permission)
+    {
+        if (permission != null && context == null)
+            throw new IllegalArgumentException("context is null");
+
+        mContext = context == null ? null : context.getApplicationContext();
+        mPermission = permission;
+    }
+
+    /**
+     * 检查当前Binder调用方是否允许发送数据帧
+     */
+    private boolean isCallerAllowed()
+    {
+        final int uid = Binder.getCallingUid();
+        for (int item : mAllowedUids)
+        {
+            if (item == uid)
+                return true;
+        }
+
+        final String permission = mPermission;
+        final Context context = mContext;
+        return permission != null && context != null
+                && context.checkCallingPermission(permission) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * 返回本端接收数据帧的Binder对象
+     *
+     * @return
+     */
+    public IBinder getBinder()
+    {
+        return mBinder;
+    }
+
+    /**
+     * 设置对端接收数据帧的Binder对象
+     *
+     * @param remote
+     */
+    public void setRemote(IBinder remote)
+    {
+        mRemote = remote;
+    }
+
+    @Override
+    public void send(byte[] frame) throws IOException
+    {
+        final IBinder remote = mRemote;
+        if (mIsClosed || remote == null)
+            throw new IOException("transport is closed or remote is null");
+
+        final Parcel data = Parcel.obtain();
+        try
+        {
+            data.writeInterfaceToken(DESCRIPTOR);
+            data.writeByteArray(frame);
+            remote.transact(TRANSACTION_FRAME, data, null, IBinder.FLAG_ONEWAY);
+        } catch (RemoteException e)
+        {
+            throw new IOException("transact failed:" + e);
+        } finally
+        {
+            data.recycle();
+        }
+    }
+
+    @Override
+    public void setReceiver(Receiver receiver)
+    {
+        mReceiver = receiver;
+    }
+
+    @Override
+    public void close()
+    {
+        mIsClosed = true;
+        mRemote = null;
+    }
+
+    private final class LocalBinder extends Binder
+    {
+        @Override
+        protected boolean onTransact(int code, Parcel data, Parcel reply, int flags) throws RemoteException
+        {
+            if (code != TRANSACTION_FRAME)
+                return super.onTransact(code, data, reply, flags);
+
+            if (!isCallerAllowed())
+            {
+                StreamLog.w(BinderTransport.class.getSimpleName(), "reject frame from uid:" + Binder.getCallingUid());
+                return true;
+            }
+
+            data.enforceInterface(DESCRIPTOR);
+            final byte[] frame = data.createByteArray();
+
+            final Receiver receiver = mReceiver;
+            if (!mIsClosed && receiver != null && frame != null)
+                receiver.onReceive(frame);
+            return true;
+        }
+    }
+}